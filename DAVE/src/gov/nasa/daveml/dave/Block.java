@@ -302,7 +302,12 @@ abstract public class Block
      * @since 0.9.4
      */
     
-    public void select() { selectedFlag = true; }
+    public void select() {
+        if (!selectedFlag && ourModel != null) {
+            ourModel.selectionChanged();
+        }
+        selectedFlag = true;
+    }
     
     /**
      * Sets the block and all ancestors as 'selected'
@@ -327,7 +332,12 @@ abstract public class Block
      * @since 0.9.4
      */
     
-    public void deselect() { selectedFlag = false; }
+    public void deselect() {
+        if (selectedFlag && ourModel != null) {
+            ourModel.selectionChanged();
+        }
+        selectedFlag = false;
+    }
     
     /**
      * Returns the status of selection
@@ -674,11 +684,15 @@ abstract public class Block
 
     protected void setName( String newName )
     {
+        String oldName = this.myName;
         if (this.nameList != null) {
             this.myName = this.nameList.addUnique( newName );
         } else {
             this.myName = newName;
         }
+        if (this.ourModel != null) {
+            this.ourModel.reindex( this, oldName );
+        }
         //System.out.println("Setting block name to " + this.myName);
     }
 
@@ -741,7 +755,7 @@ abstract public class Block
         String signalVarID = inVarIDs.get(port-1);
 
         // look for existing signal
-        Signal theSignal = ourModel.getSignals().findByID( signalVarID );
+        Signal theSignal = ourModel.getSignalByVarID( signalVarID );
         if (theSignal != null)
             {
                 //System.out.println("     found signal with name " + signalVarID + ", connecting...");
@@ -778,7 +792,7 @@ abstract public class Block
             String signalVarID = iVarIDIterator.next();
 
             // look for existing signal from previously built breakpoint block
-            Signal theSignal = ourModel.getSignals().findByID( signalVarID );
+            Signal theSignal = ourModel.getSignalByVarID( signalVarID );
             if (theSignal != null) {
                 //System.out.println("     found signal with name " + signalVarID + ", connecting...");
                 theSignal.addSink( this, portCount+1 ); // does double link
@@ -835,7 +849,7 @@ abstract public class Block
         	if (this.outVarID == null) {
         		throw new DAVEException("Block '" + this.myName + "' has no output signal identified.");
                 }
-            s = ourModel.getSignals().findByID( this.outVarID );
+            s = ourModel.getSignalByVarID( this.outVarID );
             // if null returned, generate exception
             if (s == null) {
                 throw new DAVEException("Unable to find signal '" + this.outVarID + "' for output");
@@ -922,7 +936,7 @@ abstract public class Block
             if (theOutVarID == null) { // no output to hook up
                 return false;
             } else {
-                s = ourModel.getSignals().findByID( theOutVarID );
+                s = ourModel.getSignalByVarID( theOutVarID );
                 try {
                     this.addOutput(s);
                 } catch (DAVEException e) {
@@ -1170,6 +1184,59 @@ abstract public class Block
     }
 
 
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry (see {@link
+     * ModelCache}). Subclasses with fields of their own extend this,
+     * calling it first. The name list and mask belong to translators and
+     * are not kept. </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        out.writeString( this.myName );
+        out.writeString( this.myType );
+        out.writeStrings( this.inVarIDs );
+        out.writeSignals( this.inputs );
+        out.writeString( this.outVarID );
+        out.writeSignal( this.output );
+        out.writeInt( this.resultsCycleCount );
+        out.writeDouble( this.value );
+        out.writeBoolean( this.verboseFlag );
+        out.writeBoolean( this.selectedFlag );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        this.ourModel = in.model;
+        this.myName = in.readString();
+        this.myType = in.readString();
+        this.inVarIDs = in.readStrings();
+        this.inputs = in.readSignals();
+        this.outVarID = in.readString();
+        this.output = in.readSignal();
+        this.resultsCycleCount = in.readInt();
+        this.value = in.readDouble();
+        this.verboseFlag = in.readBoolean();
+        this.selectedFlag = in.readBoolean();
+        if (this.inVarIDs == null || this.inputs == null) {
+            throw new IOException("Incomplete block in cache entry.");
+        }
+    }
+
+
     /**
      * Updates the output value of the block.
      **/
@@ -17,7 +17,6 @@ package gov.nasa.daveml.dave;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Iterator;
 
 /**
  *
@@ -33,6 +32,55 @@ public class BlockBP extends Block
 
     BreakpointSet bpSet;
 
+    /**
+     * Interval found on previous update; used as search hint
+     */
+
+    int lastInterval;
+
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockBP()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeBreakpointSet( this.bpSet );
+        out.writeInt( this.lastInterval );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.bpSet = in.readBreakpointSet();
+        this.lastInterval = in.readInt();
+    }
+
+
     /**
      *
      * <p> Constructor that builds BP block from scratch parts </p>
@@ -54,6 +102,7 @@ public class BlockBP extends Block
 
 	// Initialize superblock elements & connect to model
 	super(ourName, "breakpoint normalizer", 1, m);
+	this.lastInterval = -1;
 
 	// find breakpoint set
 	this.bpSet = m.getBPSetByID( bpID );
@@ -101,10 +150,6 @@ public class BlockBP extends Block
     
 	Signal theInput;
 	double inputValue;
-	double bpValue;
-	double prevValue;
-	double frac = 0;
-	int index = 0;
 
 	if (isVerbose()) {
 	    System.out.println();
@@ -144,65 +189,24 @@ public class BlockBP extends Block
 	    System.out.println(" Input value is " + inputValue);
         }
 	// calculate index-and-fraction
-
-	// find nearest breakpoint
-	Iterator<Double> bpIt = this.bpSet.values().iterator();
-	if (!bpIt.hasNext()) {
+	if (this.bpSet.length() < 1) {
 	    throw new DAVEException("Breakpoint block " + this.myName + 
                     " has no breakpoints.");
         }
 
-	bpValue = (bpIt.next()).doubleValue();	// get 0 index value
-	prevValue = bpValue;
-
+	// find interval, starting with the one we used last time
+	// (counting comparisons if profiling)
+	ModelProfiler profiler = ourModel.profiling ? ourModel.profiler : null;
+	this.lastInterval = this.bpSet.findInterval( inputValue, this.lastInterval, profiler );
 	if (this.isVerbose()) {
-	    System.out.println(" 0-index breakpoint set value is " + prevValue);
+	    System.out.println(" Input value lies in interval " + this.lastInterval +
+                    " of " + this.bpSet.length() + " breakpoints");
         }
-
-	// pathological case - lowest breakpoint value above inputValue
-	if (bpValue > inputValue) {
-	    this.value = 0;
-	    frac = 0;
-	    if (this.isVerbose()) {
-		System.out.println(" Input value of " + inputValue +
-                        " is lower than lowest breakpoint set entry of " + 
-                        bpValue);
-            }
-	} else {	// search for breakpoint just higher than inputValue
-	    while (bpIt.hasNext()) {
-		bpValue = (bpIt.next()).doubleValue();
-		if (this.isVerbose()) {
-		    System.out.println(" Found next bp value of " + bpValue +
-				       "; prev bp is " + prevValue);
-                }
-		if (bpValue > inputValue) {
-		    this.value = (double) index;
-		    frac = (inputValue - prevValue)/(bpValue - prevValue);
-		    if (this.isVerbose()) {
-			System.out.println(" Found next-higher breakpt of "
-					   + bpValue + " at index " + index);
-			System.out.println(" Prev breakpt was " + prevValue);
-			System.out.println(" Fraction computed to be " + frac);
-		    }
-		    break;	// jump out when next-higher breakpt found
-		} else {
-		    index++;
-		    prevValue = bpValue;
-		}
-	    }
-        }  // else clause
-
-	// pathological case - highest breakpoint below inputValue
-	if (bpValue <= inputValue) {
-	    this.value = this.bpSet.length()-1;
-	    frac = 0;
-	}
+	this.value = this.bpSet.indexAndFraction( inputValue, this.lastInterval );
 
 	// record current cycle counter
 	resultsCycleCount = ourModel.getCycleCounter();
 
-	// save answer
-	this.value = this.value + frac;
 	if (isVerbose()) { 
             System.out.println(" Index-and-weight set to " + this.value);
         }
@@ -72,6 +72,67 @@ public final class BlockFuncTable extends Block
     
     Namespace ns;
 
+    /**
+     *  index-and-weights vector, reused on each update
+     */
+
+    private double[] iwv;
+
+    /**
+     *  work space for interpolating tables of more than four dimensions
+     */
+
+    private double[] scratch;
+
+
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockFuncTable()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeBoolean( this.simple );
+        out.writeString( this.gtID );
+        out.writeTable( this.functionTableDef );
+        out.writeString( this.description );
+        out.writeString( this.functionDefName );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.simple = in.readBoolean();
+        this.gtID = in.readString();
+        this.functionTableDef = in.readTable();
+        this.description = in.readString();
+        this.functionDefName = in.readString();
+    }
+
 
     /**
      *
@@ -344,20 +405,10 @@ public final class BlockFuncTable extends Block
         }
 	String depVarID   = depVar.getAttributeValue("varID");
 
-	Iterator<Signal> sigIterator = this.ourModel.getSignals().iterator();
-	boolean depVarSignalFound = false;
-	Signal dVsig = null;
-
 	// Look for existing variable definition (signal)
 
-	while (sigIterator.hasNext()) {
-	    // look for matching explicit signal
-	    dVsig = sigIterator.next();
-	    if (depVarID.equals(dVsig.getVarID())) {
-		depVarSignalFound = true;
-		break;
-	    }
-	}
+	Signal dVsig = this.ourModel.getSignalByVarID( depVarID );
+	boolean depVarSignalFound = (dVsig != null);
 
 	/*
 	// if not found, make our own
@@ -405,7 +456,7 @@ public final class BlockFuncTable extends Block
 	if (this.isVerbose()) {
 	    System.out.print("Looking for input signal named '" + varID + "'...");			
         }
-	Signal theBPInputSignal = ourModel.getSignals().findByID( varID );
+	Signal theBPInputSignal = ourModel.getSignalByVarID( varID );
 
 	if( theBPInputSignal != null ) {
 	    if (this.isVerbose()) {
@@ -512,7 +563,7 @@ public final class BlockFuncTable extends Block
 
 	    // look for existing signal from previously built breakpoint block
 
-	    Signal theSignal = ourModel.getSignals().findByID( iwSignalID );
+	    Signal theSignal = ourModel.getSignalByVarID( iwSignalID );
 	    if (theSignal != null) {
 		theSignal.addSink( this, portCount+1 );	// does double link
 		if (this.isVerbose()) {
@@ -582,12 +633,8 @@ public final class BlockFuncTable extends Block
     public void update() throws DAVEException
     {
 	int numInputs;
-	Iterator<Signal> theInputs;
 	Signal theInput;
-	double[] iwv;	// index and weights vector
-	int[]    iv;	// index vector
 
-	int index = 0;
 	boolean ready = true;
 
 	boolean verbose = this.isVerbose();
@@ -604,37 +651,45 @@ public final class BlockFuncTable extends Block
 				    + this.getName() + "'");
         }
 
+	// index and weights vector and any scratch space are allocated once
+	if (this.iwv == null || this.iwv.length != numInputs) {
+	    this.iwv = new double[numInputs];
+	    this.scratch = new double[Interpolator.scratchSize(numInputs)];
+	    if (verbose) {
+		System.out.println(" Allocated index-and-weights vector of size " + numInputs);
+	    }
+	}
+
 	// see if each input variable is ready
-	theInputs = this.inputs.iterator();
-	iwv = new double[numInputs];	// index and weights vector
-	iv  = new int[numInputs];	// index vector
-	if (verbose) {
-	    System.out.println(" Allocated index-and-weights vector of size " + this.inputs.size());
-        }
-	// Here to do table lookup
-	while (theInputs.hasNext()) {
-	    theInput = theInputs.next();
+	for (int index = 0; index < numInputs; index++) {
+	    theInput = this.inputs.get(index);
 	    if (!theInput.sourceReady()) {
 		ready = false;
 		if (verbose) {
 		    System.out.println(" Upstream signal '" + theInput.getName() + "' is not ready.");
                 }
-		iwv[index] = 0.0;
-		iv[index] = 0;
+		this.iwv[index] = 0.0;
 	    } else {
-		iwv[index] = theInput.sourceValue();
-		iv[index] = (int) theInput.sourceValue();
+		this.iwv[index] = theInput.sourceValue();
 		if (verbose) {
-		    System.out.println(" Input # " + index + " value is " + iwv[index]);
+		    System.out.println(" Input # " + index + " value is " + this.iwv[index]);
                 }
 	    }
-	    index++;
 	}
 	if (!ready) { return; }
 
 	// At this point we have the index-and-weights vector in iwv.
-	// Call recursive interpolation routine
-	this.value = this.interpolate( iwv, iv, numInputs );
+	FuncTable ft = this.functionTableDef;
+	if (ft.isMapped()) {
+	    if (this.scratch.length < Interpolator.bufferScratchSize(numInputs)) {
+		this.scratch = new double[Interpolator.bufferScratchSize(numInputs)];
+	    }
+	    this.value = Interpolator.interpolate( ft.getValueBuffer(), ft.getDimensions(),
+						   ft.getStrides(), this.iwv, this.scratch );
+	} else {
+	    this.value = Interpolator.interpolate( ft.getValueArray(), ft.getDimensions(),
+						   ft.getStrides(), this.iwv, this.scratch );
+	}
 
 	if (verbose) {
 	    System.out.println(" Interpolate returned value " + this.value);
@@ -645,60 +700,6 @@ public final class BlockFuncTable extends Block
     }
 
     
-    /**
-     * <p> Performs interpolation based on normalized breakpoint vector </p>
-     *
-     **/
-
-    private double interpolate( double[] index_and_weights, int[] indices, int interpDimension )
-    {
-	int select;
-	double weight;
-	double a;
-	double b;
-	double interpolated_value;
-	boolean verbose = this.isVerbose();
-
-	if (verbose) {
-	    System.out.println();
-	    System.out.println("Entering interpolate method for function '" + this.myName + 
-			       "' with interpDimension set to " + interpDimension);
-	}
-	select = indices.length - interpDimension;	// 3, 2, 1, 0
-
-	// Check for index at upper limit; adjust so it uses lower bp
-	if (indices[ select ] >= (this.functionTableDef.dim(select)-1)) {	// 0-index adjust 
-	    indices[ select ]--;
-	    weight = 1.0;
-	    if (verbose) {
-		System.out.println(" Adjusted index/weight at end of dim " + interpDimension);
-            }
-	} else {
-	    weight = index_and_weights[ select ] - (double) indices[ select ];
-        }
-	if (verbose) {
-	    System.out.println(" For dim " + interpDimension + " and select = " + select 
-			       + " have index of " + indices[ select ] + " and weight of " 
-			       + weight);
-        }
-	if (interpDimension == 1) {
-	    a = this.functionTableDef.getPt( indices );
-	    indices[ select ]++;
-	    b = this.functionTableDef.getPt( indices );
-	    indices[ select ]--;
-	} else {
-	    a = this.interpolate( index_and_weights, indices, interpDimension-1 );
-	    indices[ select ]++;
-	    b = this.interpolate( index_and_weights, indices, interpDimension-1 );
-	    indices[ select ]--;
-	}
-	interpolated_value = a + (b-a)*weight;
-	if (verbose) {
-            System.out.println(" Interpolated between " + a + " and " + b + " is value " + interpolated_value);
-        }
-	return interpolated_value;
-    }
-    
     /**
      * Returns the contents of the description field, with spaces substituted for newlines
      * @return contents of the <code>description</code> field
@@ -36,6 +36,49 @@ public class BlockInput extends Block {
     
     boolean hasIC;
 
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockInput()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.units );
+        out.writeBoolean( this.hasIC );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.units = in.readString();
+        this.hasIC = in.readBoolean();
+    }
+
+
     /**
      *
      * <p> Constructor for input Block <p>
@@ -73,7 +116,12 @@ public class BlockInput extends Block {
      *
      */
     public void setInputValue(double theValue) {
-        this.value = theValue;
+        if (Double.compare(theValue, this.value) != 0) {
+            this.value = theValue;
+            if (this.ourModel != null) {
+                this.ourModel.inputChanged(this);  // for incremental evaluation
+            }
+        }
     }
 
     /**
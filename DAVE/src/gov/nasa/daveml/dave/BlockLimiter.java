@@ -60,6 +60,61 @@ public class BlockLimiter extends Block {
 
 
 
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockLimiter()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.units );
+        out.writeBoolean( this.lowerLim != null );
+        if (this.lowerLim != null) {
+            out.writeDouble( this.lowerLim.doubleValue() );
+        }
+        out.writeBoolean( this.upperLim != null );
+        if (this.upperLim != null) {
+            out.writeDouble( this.upperLim.doubleValue() );
+        }
+        out.writeBoolean( this.hasLowerLim );
+        out.writeBoolean( this.hasUpperLim );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.units = in.readString();
+        this.lowerLim = in.readBoolean() ? Double.valueOf( in.readDouble() ) : null;
+        this.upperLim = in.readBoolean() ? Double.valueOf( in.readDouble() ) : null;
+        this.hasLowerLim = in.readBoolean();
+        this.hasUpperLim = in.readBoolean();
+    }
+
+
     /**
      *
      * <p> Constructor for output Block <p>
@@ -31,6 +31,19 @@ import org.jdom.Element;
 public class BlockMathAbs extends BlockMath
 {
     
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathAbs()
+    {
+        super();
+    }
+
+
     /**
      *
      * <p> Constructor for abs Block <p>
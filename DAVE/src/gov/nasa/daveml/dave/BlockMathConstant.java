@@ -33,6 +33,47 @@ public class BlockMathConstant extends BlockMath
 
     String stringValue;
 
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathConstant()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.stringValue );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.stringValue = in.readString();
+    }
+
+
     /**
      *
      * <p> Constructor for constant value Block <p>
@@ -83,6 +124,7 @@ public class BlockMathConstant extends BlockMath
     			       + "content-identifier element <ci>? DAVE unable to continue.");
     	    System.exit(0);
     	}
+    	this.ourModel.inputChanged(this);
     }
     
     /**
@@ -92,6 +134,7 @@ public class BlockMathConstant extends BlockMath
     public void setValue( Double newValue ) {
     	this.value = newValue;
     	this.stringValue = newValue.toString();
+    	this.ourModel.inputChanged(this);
     }
     
     /**
@@ -0,0 +1,417 @@
+// BlockMathExpression
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+/**
+ *
+ * <p> Fused arithmetic expression block </p>
+ *
+ **/
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ *
+ * <p> The MathExpression block evaluates a small tree of sums,
+ * differences, products, quotients and absolute values in one step </p>
+ *
+ * <p> It is never read from a DAVE-ML file; {@link ModelOptimizer}
+ * creates it by fusing a chain of <code>BlockMathSum</code>,
+ * <code>BlockMathMinus</code>, <code>BlockMathProduct</code> and
+ * <code>BlockMathAbs</code> blocks whose intermediate results have no
+ * other use. The tree is held as a postfix program of
+ * <code>(operation, operand)</code> pairs; the operand of a load is an
+ * input port index (0-based), that of any other operation its number of
+ * arguments. Results, and generated code, are identical to those of the
+ * blocks it replaces. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class BlockMathExpression extends BlockMath
+{
+    /**
+     *  operations
+     */
+
+    static final int LOAD = 0;
+    static final int SUM  = 1;
+    static final int PROD = 2;
+    static final int DIV  = 3;
+    static final int NEG  = 4;
+    static final int SUB  = 5;
+    static final int ABS  = 6;
+
+    /**
+     *  postfix program
+     */
+
+    private int[] code;
+
+    /**
+     *  largest evaluation stack depth needed by program
+     */
+
+    private int maxDepth;
+
+    /**
+     *  scratch space for block-by-block evaluation
+     */
+
+    private double[] inputVals;
+    private int[] slots;
+    private double[] stack;
+
+
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathExpression()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeInts( this.code );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.code = in.readInts();
+        if (this.code == null) {
+            throw new IOException("Incomplete expression in cache entry.");
+        }
+        this.maxDepth = depthOf(this.code);
+    }
+
+
+    /**
+     *
+     * <p> Constructor for Expression Block <p>
+     *
+     * @param code postfix program
+     * @param m The parent <code>Model</code>
+     *
+     **/
+
+    BlockMathExpression( int[] code, Model m )
+    {
+        // Initialize superblock elements
+        super("pending", "expression", m);
+        this.setName( "expression_" + m.getNumBlocks() );
+        this.code = code;
+        this.maxDepth = depthOf(code);
+    }
+
+
+    /**
+     *
+     * <p> Returns postfix program </p>
+     *
+     **/
+
+    int[] getProgram() { return this.code; }
+
+
+    /**
+     *
+     * <p> Returns largest stack depth needed to evaluate program </p>
+     *
+     **/
+
+    int getMaxDepth() { return this.maxDepth; }
+
+
+    /**
+     *
+     * <p> Returns number of arithmetic operations performed </p>
+     *
+     **/
+
+    public int getNumOperations()
+    {
+        int count = 0;
+        for (int pc = 0; pc < this.code.length; pc += 2) {
+            if (this.code[pc] != LOAD) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     *
+     * <p> Computes stack depth needed to evaluate a program </p>
+     *
+     **/
+
+    static int depthOf( int[] code )
+    {
+        int sp = 0;
+        int max = 0;
+        for (int pc = 0; pc < code.length; pc += 2) {
+            if (code[pc] == LOAD) {
+                sp++;
+            } else {
+                sp = sp - code[pc+1] + 1;
+            }
+            max = Math.max(max, sp);
+        }
+        return max;
+    }
+
+
+    /**
+     *
+     * <p> Evaluates a program. Input port <code>k</code> is read from
+     * <code>values[slots[first+k]]</code>. </p>
+     *
+     * @param code postfix program
+     * @param values value array
+     * @param slots index of each input in <code>values</code>, starting
+     * at <code>first</code>
+     * @param first index into <code>slots</code> of first input
+     * @param stack scratch space of at least <code>depthOf(code)</code>
+     * @return value of expression
+     *
+     **/
+
+    static double evaluate( int[] code, double[] values, int[] slots, int first,
+                            double[] stack )
+    {
+        int sp = 0;
+        for (int pc = 0; pc < code.length; pc += 2) {
+            final int n = code[pc+1];
+            switch (code[pc]) {
+            case LOAD:
+                stack[sp++] = values[slots[first + n]];
+                break;
+            case SUM: {
+                double v = 0.0;
+                for (int k = sp - n; k < sp; k++) {
+                    v += stack[k];
+                }
+                sp -= n;
+                stack[sp++] = v;
+                break;
+            }
+            case PROD: {
+                double v = 1.0;
+                for (int k = sp - n; k < sp; k++) {
+                    v *= stack[k];
+                }
+                sp -= n;
+                stack[sp++] = v;
+                break;
+            }
+            case DIV:
+                sp--;
+                stack[sp-1] = stack[sp-1]/stack[sp];
+                break;
+            case NEG:
+                stack[sp-1] = -stack[sp-1];
+                break;
+            case SUB:
+                sp--;
+                stack[sp-1] = stack[sp-1] - stack[sp];
+                break;
+            case ABS:
+                stack[sp-1] = Math.abs(stack[sp-1]);
+                break;
+            default:
+                return Double.NaN;
+            }
+        }
+        return stack[0];
+    }
+
+
+    /**
+     * <p> Generate code equivalent of our operation</p>
+     */
+
+    @Override
+    public CodeAndVarNames genCode() {
+        ArrayList<CodeAndVarNames> terms = new ArrayList<CodeAndVarNames>();
+        ArrayList<Boolean> compound = new ArrayList<Boolean>();
+        for (int pc = 0; pc < this.code.length; pc += 2) {
+            int n = this.code[pc+1];
+            if (this.code[pc] == LOAD) {
+                terms.add(this.inputs.get(n).genCode());
+                compound.add(Boolean.FALSE);
+                continue;
+            }
+            int base = terms.size() - n;
+            CodeAndVarNames cvn = new CodeAndVarNames();
+            switch (this.code[pc]) {
+            case SUM:
+            case PROD:
+            case DIV:
+            case SUB:
+                String sep = (this.code[pc] == SUM) ? " + " :
+                             (this.code[pc] == PROD) ? "*" :
+                             (this.code[pc] == DIV) ? "/" : " - ";
+                for (int k = base; k < terms.size(); k++) {
+                    appendTerm(cvn, terms.get(k), compound.get(k));
+                    if (k < terms.size() - 1) {
+                        cvn.appendCode(sep);
+                    }
+                }
+                break;
+            case NEG:
+                cvn.appendCode("-");
+                appendTerm(cvn, terms.get(base), compound.get(base));
+                break;
+            case ABS:
+                String op = "fabs";
+                if (ourModel.getCodeDialect() == Model.DT_FORTRAN) {
+                    op = "ABS";
+                }
+                cvn.appendCode( op + "( ");
+                appendTerm(cvn, terms.get(base), compound.get(base));
+                cvn.appendCode(" )");
+                break;
+            default:
+                break;
+            }
+            while (terms.size() > base) {
+                terms.remove(terms.size() - 1);
+                compound.remove(compound.size() - 1);
+            }
+            terms.add(cvn);
+            compound.add(Boolean.TRUE);
+        }
+
+        CodeAndVarNames cvn = new CodeAndVarNames();
+        Signal outputSig = this.getOutput();
+        // check to see if we're derived variable (code fragment) or a whole statement
+        // if not derived, need preceding command and the LHS of the equation too
+        if (!outputSig.isDerived()) {
+            cvn.appendCode(indent() + outVarID + " = ");
+            cvn.addVarName(outVarID);
+        }
+        cvn.append(terms.get(0));
+        // if not derived, need trailing semicolon and new line
+        if (!outputSig.isDerived()) {
+            cvn.appendCode(endLine());
+        }
+        return cvn;
+    }
+
+
+    /**
+     *
+     * <p> Appends a term, in parentheses if it was itself an operation
+     * (as a fused block's output signal would have been) </p>
+     *
+     **/
+
+    private static void appendTerm( CodeAndVarNames cvn, CodeAndVarNames term,
+                                    boolean compound )
+    {
+        if (compound) {
+            cvn.appendCode("(");
+        }
+        cvn.append(term);
+        if (compound) {
+            cvn.appendCode(")");
+        }
+    }
+
+
+    /**
+     *
+     * <p> Generates description of self </p>
+     *
+     * @throws <code>IOException</code>
+     **/
+
+    @Override
+    public void describeSelf(Writer writer) throws IOException
+    {
+        super.describeSelf(writer);
+        writer.write(" and is a fused Expression math block of "
+                + this.getNumOperations() + " operations.");
+    }
+
+
+    /**
+     *
+     * <p> Implements update() method </p>
+     * @throws DAVEException
+     *
+     **/
+
+    @Override
+    public void update() throws DAVEException
+    {
+        boolean verbose = this.isVerbose();
+
+        if (verbose) {
+            System.out.println();
+            System.out.println("Method update() called for expression block '" + this.getName() + "'");
+        }
+
+        int numInputs = this.inputs.size();
+        if (this.inputVals == null || this.inputVals.length != numInputs) {
+            this.inputVals = new double[numInputs];
+            this.slots = new int[numInputs];
+            for (int i = 0; i < numInputs; i++) {
+                this.slots[i] = i;
+            }
+            this.stack = new double[this.maxDepth];
+        }
+
+        // Check to see if inputs are ready
+        for (int i = 0; i < numInputs; i++) {
+            Signal theInput = this.inputs.get(i);
+            if (!theInput.sourceReady()) {
+                if (verbose) {
+                    System.out.println(" Upstream signal '" +
+                            theInput.getName() + "' is not ready.");
+                }
+                return;
+            }
+            this.inputVals[i] = theInput.sourceValue();
+        }
+
+        this.value = evaluate(this.code, this.inputVals, this.slots, 0, this.stack);
+
+        // record current cycle counter
+        resultsCycleCount = ourModel.getCycleCounter();
+    }
+}
@@ -54,6 +54,36 @@ public class BlockMathFunction extends BlockMath
     String funcType;   // can be several types: "pow" is one
     int op;            // can be several ints: 10 = POWER
 
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.funcType );
+        out.writeInt( this.op );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.funcType = in.readString();
+        this.op = in.readInt();
+    }
+
+
     /**
      *
      * <p> Constructor for Function Block <p>
@@ -45,6 +45,19 @@ public class BlockMathFunctionExtension extends BlockMathFunction
     private static final int ATAN2 = 11;        // double-digits implies two inputs
     private static final String DAVEML_EXT_URL = "http://daveml.org/function_spaces.html";
 
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathFunctionExtension()
+    {
+        super();
+    }
+
+
     /**
      *
      * <p> Constructor for Math Extension Block <p>
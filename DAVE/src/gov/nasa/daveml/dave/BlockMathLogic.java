@@ -53,6 +53,49 @@ public class BlockMathLogic extends BlockMath
 
     int logic;
     
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathLogic()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.logicOp );
+        out.writeInt( this.logic );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.logicOp = in.readString();
+        this.logic = in.readInt();
+    }
+
+
     /**
      *
      * <p> Constructor for logic Block <p>
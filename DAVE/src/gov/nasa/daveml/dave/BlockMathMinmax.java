@@ -41,6 +41,49 @@ public class BlockMathMinmax extends BlockMath
     String funcType;    // can be "max" or "min"
     int op;             // can be 1 = MIN or 2 = MAX
     
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathMinmax()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.funcType );
+        out.writeInt( this.op );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.funcType = in.readString();
+        this.op = in.readInt();
+    }
+
+
     /**
      *
      * <p> Constructor for Min-Max Block <p>
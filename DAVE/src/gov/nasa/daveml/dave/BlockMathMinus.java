@@ -31,6 +31,19 @@ import org.jdom.Element;
 
 public class BlockMathMinus extends BlockMath
 {
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathMinus()
+    {
+        super();
+    }
+
+
     /**
      *
      * <p> Constructor for Minus Block <p>
@@ -40,6 +40,47 @@ public class BlockMathProduct extends BlockMath
     // quotient/divide blocks have only two inputs and calculate #1/#2.
     // product block inputs are multiplied together.
     
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathProduct()
+    {
+        super();
+    }
+
+
+    /**
+     *
+     * <p> Writes this block's fields to a cache entry </p>
+     *
+     **/
+
+    @Override
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        super.writeCache( out );
+        out.writeString( this.blockType );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     **/
+
+    @Override
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        super.readCache( in );
+        this.blockType = in.readString();
+    }
+
+
     /**
      *
      * <p> Constructor for Product Block <p>
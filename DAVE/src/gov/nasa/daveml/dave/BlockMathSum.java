@@ -31,6 +31,19 @@ import org.jdom.Element;
 public class BlockMathSum extends BlockMath
 {
     
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathSum()
+    {
+        super();
+    }
+
+
     /**
      *
      * <p> Constructor for Sum Block <p>
@@ -93,6 +93,19 @@ import org.jdom.Namespace;
 
 public class BlockMathSwitch extends BlockMath {
 
+    /**
+     *
+     * <p> Constructor for restoring a cached block (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    BlockMathSwitch()
+    {
+        super();
+    }
+
+
     /**
      *
      * <p> Constructor for switch Block <p>
@@ -20,7 +20,7 @@ package gov.nasa.daveml.dave;
  **/
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.List;
 import org.jdom.Element;
 import org.jdom.Namespace;
 
@@ -41,10 +41,16 @@ public class BreakpointSet // throws DAVEException
     String bpid;
 
     /**
-     *  stored as Doubles
+     *  breakpoint values, in increasing order
      */
 
-    ArrayList<Double> bpValues;
+    double[] bpValues;
+
+    /**
+     *  reciprocal of width of each interval between breakpoints
+     */
+
+    double[] invWidths;
 
     /**
      *  description of set - can be null
@@ -89,6 +95,7 @@ public class BreakpointSet // throws DAVEException
     {
         this.bpid = "";
         this.bpValues = null;
+        this.invWidths = null;
         this.myDescription = "";
         this.myName = "";
         this.myModel = m;
@@ -145,11 +152,10 @@ public class BreakpointSet // throws DAVEException
 
         // Parse down to and load table values
         Element set   = bpdef.getChild("bpVals",ns);
-        try {
-            this.bpValues = ParseText.toList(set.getTextTrim());
-        } catch (IOException e) {
-            throw new DAVEException("Unable to parse breakpoint set values for bpID " + this.bpid);
+        if (set == null) {
+            throw new DAVEException("Missing bpVals in breakpointDef " + this.bpid);
         }
+        this.setValues( m.resolveValues(set.getTextTrim()) );
 
         // check for returned object
         if (this.bpValues == null) {
@@ -157,7 +163,7 @@ public class BreakpointSet // throws DAVEException
         }
 
         // check # of dimensions
-        if (this.bpValues.size() < 1) {
+        if (this.bpValues.length < 1) {
             throw new DAVEException("Breakpoint set has zero length in bpID " + this.bpid);
         }
     }
@@ -185,11 +191,7 @@ public class BreakpointSet // throws DAVEException
         this.myDescription = description;
         this.bpid = bpID;
         this.verbose = false;
-        try { // load values from text
-            this.bpValues = ParseText.toList( setValues );
-        } catch (IOException e) {
-            throw new DAVEException("Unable to load breakpoint set " + this.myName);
-        }
+        this.setValues( m.resolveValues( setValues ) );  // load values from text
 
         // register with Model
         m.register( this );
@@ -254,14 +256,211 @@ public class BreakpointSet // throws DAVEException
     	if (bpValues == null) {
             return 0;
         }
-    	return this.bpValues.size(); 
+    	return this.bpValues.length; 
+    }
+
+
+    /**
+     * <p> Return our breakpoints as a read-only list backed by our array </p>
+     **/
+
+    public List<Double> values() {
+        if (this.bpValues == null) {
+            return null;
+        }
+        return new DoubleListView( this.bpValues );
+    }
+
+
+    /**
+     * <p> Return our breakpoint array; callers must not modify it </p>
+     *
+     * @since 0.9.8
+     **/
+
+    public double[] valueArray() { return this.bpValues; }
+
+
+    /**
+     *
+     * <p> Stores new breakpoint values and precomputes the reciprocal
+     * width of each interval </p>
+     *
+     * @param values list of breakpoint values, in increasing order
+     *
+     **/
+
+    private void setValues( double[] values ) {
+        if (values == null) {
+            this.bpValues = null;
+            this.invWidths = null;
+            return;
+        }
+        this.bpValues = values;
+        this.invWidths = new double[Math.max(this.bpValues.length-1, 0)];
+        for (int i = 0; i < this.invWidths.length; i++) {
+            this.invWidths[i] = 1.0/(this.bpValues[i+1] - this.bpValues[i]);
+        }
+    }
+
+
+    /**
+     *
+     * <p> Finds the interval containing <code>x</code>. </p>
+     *
+     * <p> Returns the index of the last breakpoint not greater than
+     * <code>x</code>, or -1 if <code>x</code> lies below the first
+     * breakpoint. The interval found by the previous call is supplied as
+     * a hint: it and its two neighbors are tried before falling back to
+     * a binary search, since successive frames rarely move far. </p>
+     *
+     * @param x value to locate
+     * @param hint interval returned by an earlier call, or -1
+     * @return index of interval, from -1 to <code>length()-1</code>
+     * @since 0.9.8
+     *
+     **/
+
+    public int findInterval( double x, int hint ) {
+        return this.findInterval( x, hint, null );
+    }
+
+
+    /**
+     *
+     * <p> Finds the interval containing <code>x</code>, as {@link
+     * #findInterval(double, int)} does, adding the number of breakpoints
+     * compared with <code>x</code> to a profile. Used when profiling. </p>
+     *
+     * @param x value to locate
+     * @param hint interval returned by an earlier call, or -1
+     * @param profiler profile of block being updated, or null
+     * @return index of interval, from -1 to <code>length()-1</code>
+     * @since 0.9.8
+     *
+     **/
+
+    int findInterval( double x, int hint, ModelProfiler profiler ) {
+        final double[] bp = this.bpValues;
+        final int last = bp.length-1;
+        int steps = 0;
+
+        // try the hinted interval, then its neighbors
+        if (hint >= 0 && hint < last) {
+            if (bp[hint] <= x) {
+                if (x < bp[hint+1]) {
+                    return counted( hint, 2, profiler );
+                }
+                if (hint+1 == last) {
+                    return counted( hint+1, 2, profiler );
+                }
+                if (x < bp[hint+2]) {
+                    return counted( hint+1, 3, profiler );
+                }
+                steps = 3;
+            } else if (hint > 0) {
+                if (bp[hint-1] <= x) {
+                    return counted( hint-1, 2, profiler );
+                }
+                steps = 2;
+            } else {
+                steps = 1;
+            }
+        }
+
+        // binary search for first breakpoint greater than x
+        int lo = 0;
+        int hi = bp.length;
+        while (lo < hi) {
+            steps++;
+            int mid = (lo + hi) >>> 1;
+            if (bp[mid] > x) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return counted( lo-1, steps, profiler );
     }
 
 
     /**
-     * <p> Return our breakpoint array </p>
+     *
+     * <p> Adds search steps to a profile, if any, and returns the
+     * interval found </p>
+     *
      **/
 
-    public ArrayList<Double> values() { return this.bpValues; }
+    private static int counted( int interval, int steps, ModelProfiler profiler ) {
+        if (profiler != null) {
+            profiler.addSearchSteps( steps );
+        }
+        return interval;
+    }
+
+
+    /**
+     *
+     * <p> Returns the index-and-fraction of <code>x</code> within the
+     * given interval (as found by {@link #findInterval(double, int)}). </p>
+     *
+     * <p> Values below the first breakpoint return 0; values at or above
+     * the last breakpoint return <code>length()-1</code>. </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public double indexAndFraction( double x, int interval ) {
+        if (x != x) {
+            return Double.NaN;          // propagate NaN inputs
+        }
+        if (interval < 0) {
+            return 0.0;
+        }
+        if (interval >= this.bpValues.length-1) {
+            return this.bpValues.length-1;
+        }
+        return interval + (x - this.bpValues[interval])*this.invWidths[interval];
+    }
+
+
+    /**
+     *
+     * <p> Writes this breakpoint set to a cache entry (see {@link
+     * ModelCache}) </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        out.writeString( this.bpid );
+        out.writeDoubles( this.bpValues );
+        out.writeString( this.myDescription );
+        out.writeString( this.myName );
+        out.writeBoolean( this.verbose );
+        out.writeBlocks( this.users );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        this.bpid = in.readString();
+        this.setValues( in.readDoubles() );
+        this.myDescription = in.readString();
+        this.myName = in.readString();
+        this.verbose = in.readBoolean();
+        this.users = in.readBlocks();
+    }
 
 }
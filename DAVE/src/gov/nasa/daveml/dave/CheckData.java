@@ -40,6 +40,19 @@ public class CheckData
 
     ArrayList<StaticShot> staticShots;
 
+    /**
+     *
+     * <p> Constructor for restoring cached checkcases (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    CheckData()
+    {
+        staticShots = new ArrayList<StaticShot>( 20);
+    }
+
+
     /** 
      *
      * Constructor to built from JDOM Elements
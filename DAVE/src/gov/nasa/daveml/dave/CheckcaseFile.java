@@ -0,0 +1,791 @@
+// CheckcaseFile
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+/**
+ *
+ * <p> Bulk checkcases kept in a file of their own, rather than as
+ * <code>staticShot</code> elements inside the DAVE-ML document </p>
+ *
+ * <p> Each row of the file holds one checkcase; each column holds one
+ * model input or output, matched to the model by name. Inputs not given
+ * keep their current values. Rows are read and checked a few at a time,
+ * so files of any length can be checked in bounded memory. </p>
+ *
+ * <p> Two formats are read. A comma-separated text file starts with a
+ * header row of column names, each optionally followed by its units in
+ * parentheses; lines starting with <code>#</code> are comments, except
+ * for an optional tolerance line of the form </p>
+ * <pre>
+ *   #tol, , , , 1e-6, 1e-6
+ * </pre>
+ * <p> giving one tolerance per column (blank for inputs and for outputs
+ * that use the default tolerance). A binary file starts with
+ * {@link #MAGIC}, the number of columns, and for each column its name,
+ * units (empty if unchecked) and tolerance (NaN for the default), as
+ * written by {@link #writeBinaryHeader}; rows of doubles follow until the
+ * end of the file. The format is recognized from the first bytes of the
+ * file. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class CheckcaseFile
+{
+    /**
+     *  first eight bytes of a binary checkcase file ("DAVECK01")
+     */
+
+    public static final long MAGIC = 0x44415645434b3031L;
+
+    /**
+     *  tolerance used for outputs that don't specify one
+     */
+
+    public static final double DEFAULT_TOLERANCE = 1.0e-6;
+
+    /**
+     *  file being read, or null if reading a stream
+     */
+
+    private final File file;
+
+    /**
+     *  name of file or stream, for messages
+     */
+
+    private final String name;
+
+    /**
+     *  column names, units (empty if unchecked) and tolerances (NaN if not given)
+     */
+
+    private String[] names;
+    private String[] units;
+    private double[] tolerances;
+
+    /**
+     *  text reader, for comma-separated files
+     */
+
+    private BufferedReader text;
+
+    /**
+     *  data reader, for binary files
+     */
+
+    private DataInputStream data;
+
+    /**
+     *  number of rows read so far
+     */
+
+    private long rowCount;
+
+    /**
+     *  line number of last text line read
+     */
+
+    private long lineNumber;
+
+
+    /**
+     *
+     * <p> Opens a checkcase file and reads its header </p>
+     *
+     * @param file comma-separated or binary checkcase file
+     * @throws IOException if the file cannot be read
+     * @throws DAVEException if the header is malformed
+     *
+     **/
+
+    public CheckcaseFile( File file ) throws IOException, DAVEException
+    {
+        this( new FileInputStream( file ), file, file.getPath() );
+    }
+
+
+    /**
+     *
+     * <p> Reads checkcases from a stream, such as standard input, and
+     * reads its header </p>
+     *
+     * @param stream comma-separated or binary checkcase data
+     * @param name name of stream, for messages
+     * @throws IOException if the stream cannot be read
+     * @throws DAVEException if the header is malformed
+     *
+     **/
+
+    public CheckcaseFile( InputStream stream, String name ) throws IOException, DAVEException
+    {
+        this( stream, null, name );
+    }
+
+
+    private CheckcaseFile( InputStream stream, File file, String name )
+        throws IOException, DAVEException
+    {
+        this.file = file;
+        this.name = name;
+        InputStream in = new BufferedInputStream( stream, 65536 );
+        try {
+            in.mark(8);
+            DataInputStream din = new DataInputStream( in );
+            long magic = 0;
+            try {
+                magic = din.readLong();
+            } catch (EOFException e) {
+                // too short to be binary
+            }
+            if (magic == MAGIC) {
+                this.data = din;
+                this.readBinaryHeader();
+            } else {
+                in.reset();
+                this.text = new BufferedReader( new InputStreamReader( in, "UTF-8" ), 65536 );
+                this.readTextHeader();
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        } catch (DAVEException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Reads column descriptions from a binary file </p>
+     *
+     **/
+
+    private void readBinaryHeader() throws IOException, DAVEException
+    {
+        int n = this.data.readInt();
+        if (n < 0) {
+            throw new DAVEException("Checkcase file '" + this.name
+                    + "' has a negative column count.");
+        }
+        this.names      = new String[n];
+        this.units      = new String[n];
+        this.tolerances = new double[n];
+        for (int i = 0; i < n; i++) {
+            this.names[i]      = this.data.readUTF();
+            this.units[i]      = this.data.readUTF();
+            this.tolerances[i] = this.data.readDouble();
+        }
+    }
+
+
+    /**
+     *
+     * <p> Reads the header row and any tolerance line from a text file,
+     * leaving the reader at the first data row </p>
+     *
+     **/
+
+    private void readTextHeader() throws IOException, DAVEException
+    {
+        String tolLine = null;
+        String line;
+        while (true) {
+            line = this.text.readLine();
+            this.lineNumber++;
+            if (line == null) {
+                throw new DAVEException("Checkcase file '" + this.name
+                        + "' has no header row.");
+            }
+            line = line.trim();
+            if (line.startsWith("#tol")) {
+                tolLine = line;
+            } else if (line.length() > 0 && !line.startsWith("#")) {
+                break;
+            }
+        }
+
+        String[] fields = line.split(",", -1);
+        int n = fields.length;
+        this.names      = new String[n];
+        this.units      = new String[n];
+        this.tolerances = new double[n];
+        for (int i = 0; i < n; i++) {
+            String field = fields[i].trim();
+            this.units[i] = "";
+            int paren = field.indexOf('(');
+            if (paren >= 0 && field.endsWith(")")) {
+                this.units[i] = field.substring(paren + 1, field.length() - 1).trim();
+                field = field.substring(0, paren).trim();
+            }
+            if (field.length() == 0) {
+                throw new DAVEException("Checkcase file '" + this.name
+                        + "' has an unnamed column (number " + (i + 1) + ").");
+            }
+            this.names[i] = field;
+            this.tolerances[i] = Double.NaN;
+        }
+
+        // tolerance line may come before or after the header
+        this.text.mark(65536);
+        while (tolLine == null) {
+            line = this.text.readLine();
+            if (line == null) {
+                break;
+            }
+            line = line.trim();
+            if (line.startsWith("#tol")) {
+                tolLine = line;
+                this.lineNumber++;
+                this.text.mark(65536);
+            } else if (line.length() == 0 || line.startsWith("#")) {
+                this.lineNumber++;
+                this.text.mark(65536);
+            } else {
+                break;
+            }
+        }
+        this.text.reset();
+
+        if (tolLine != null) {
+            String[] tols = tolLine.substring(4).split(",", -1);
+            // tolerances follow the marker's own field
+            if (tols.length != n + 1) {
+                throw new DAVEException("Tolerance line in checkcase file '" + this.name
+                        + "' has " + (tols.length - 1) + " fields; expected " + n + ".");
+            }
+            for (int i = 0; i < n; i++) {
+                String tol = tols[i + 1].trim();
+                if (tol.length() > 0) {
+                    try {
+                        this.tolerances[i] = Math.abs( Double.parseDouble( tol ) );
+                    } catch (NumberFormatException e) {
+                        throw new DAVEException("Can't read tolerance '" + tol + "' for column '"
+                                + this.names[i] + "' in checkcase file '" + this.name + "'.");
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Writes the header of a binary checkcase file; rows follow as
+     * <code>names.length</code> doubles each </p>
+     *
+     * @param out stream to write to
+     * @param names column names
+     * @param units column units, or null if not to be checked
+     * @param tolerances column tolerances (NaN for inputs and defaults),
+     * or null to use the default for every output
+     * @throws IOException if the header cannot be written
+     *
+     **/
+
+    public static void writeBinaryHeader( DataOutputStream out, String[] names,
+            String[] units, double[] tolerances ) throws IOException
+    {
+        out.writeLong( MAGIC );
+        out.writeInt( names.length );
+        for (int i = 0; i < names.length; i++) {
+            out.writeUTF( names[i] );
+            out.writeUTF( units == null ? "" : units[i] );
+            out.writeDouble( tolerances == null ? Double.NaN : tolerances[i] );
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns the file being read </p>
+     *
+     **/
+
+    public File getFile() { return this.file; }
+
+
+    /**
+     *
+     * <p> Returns the name of the file or stream being read </p>
+     *
+     **/
+
+    public String getName() { return this.name; }
+
+
+    /**
+     *
+     * <p> Returns true if the file is in binary form </p>
+     *
+     **/
+
+    public boolean isBinary() { return this.data != null; }
+
+
+    /**
+     *
+     * <p> Returns the number of columns </p>
+     *
+     **/
+
+    public int getNumColumns() { return this.names.length; }
+
+
+    /**
+     *
+     * <p> Returns the name of a column </p>
+     *
+     **/
+
+    public String getColumnName( int col ) { return this.names[col]; }
+
+
+    /**
+     *
+     * <p> Returns the units of a column, or an empty string if not given </p>
+     *
+     **/
+
+    public String getColumnUnits( int col ) { return this.units[col]; }
+
+
+    /**
+     *
+     * <p> Returns the tolerance of a column, or NaN if not given </p>
+     *
+     **/
+
+    public double getTolerance( int col ) { return this.tolerances[col]; }
+
+
+    /**
+     *
+     * <p> Returns the number of rows read so far </p>
+     *
+     **/
+
+    public long getRowCount() { return this.rowCount; }
+
+
+    /**
+     *
+     * <p> Reads the next row </p>
+     *
+     * @param row array, at least <code>getNumColumns()</code> long, to
+     * receive the row
+     * @return false at the end of the file
+     * @throws IOException if the file cannot be read
+     * @throws DAVEException if the row is malformed
+     *
+     **/
+
+    public boolean readRow( double[] row ) throws IOException, DAVEException
+    {
+        final int n = this.names.length;
+        if (this.data != null) {
+            try {
+                row[0] = this.data.readDouble();
+            } catch (EOFException e) {
+                return false;
+            }
+            try {
+                for (int i = 1; i < n; i++) {
+                    row[i] = this.data.readDouble();
+                }
+            } catch (EOFException e) {
+                throw new DAVEException("Checkcase file '" + this.name
+                        + "' ends part way through row " + (this.rowCount + 1) + ".");
+            }
+            this.rowCount++;
+            return true;
+        }
+
+        String line;
+        do {
+            line = this.text.readLine();
+            this.lineNumber++;
+            if (line == null) {
+                return false;
+            }
+            line = line.trim();
+        } while (line.length() == 0 || line.startsWith("#"));
+
+        int col = 0;
+        int start = 0;
+        while (true) {
+            int comma = line.indexOf(',', start);
+            int end = comma < 0 ? line.length() : comma;
+            if (col >= n) {
+                throw new DAVEException("Line " + this.lineNumber + " of checkcase file '"
+                        + this.name + "' has more than " + n + " fields.");
+            }
+            String field = line.substring(start, end).trim();
+            try {
+                row[col++] = Double.parseDouble( field );
+            } catch (NumberFormatException e) {
+                throw new DAVEException("Can't read value '" + field + "' on line "
+                        + this.lineNumber + " of checkcase file '" + this.name + "'.");
+            }
+            if (comma < 0) {
+                break;
+            }
+            start = comma + 1;
+        }
+        if (col < n) {
+            throw new DAVEException("Line " + this.lineNumber + " of checkcase file '"
+                    + this.name + "' has " + col + " fields; expected " + n + ".");
+        }
+        this.rowCount++;
+        return true;
+    }
+
+
+    /**
+     *
+     * <p> Closes the file </p>
+     *
+     **/
+
+    public void close() throws IOException
+    {
+        if (this.data != null) {
+            this.data.close();
+        }
+        if (this.text != null) {
+            this.text.close();
+        }
+    }
+
+
+    /**
+     *
+     * <p> Checks every row of the file against a model </p>
+     *
+     * <p> The model is evaluated through its compiled form, in batches,
+     * leaving the model itself untouched; a model that cannot be compiled,
+     * or that is being profiled, is cycled one row at a time instead. </p>
+     *
+     * @param m initialized model to check
+     * @param out where to list failing rows; null to list none
+     * @param maxListed most failing rows to list
+     * @return counts of passing and failing rows and worst error of each
+     * output
+     * @throws IOException if the file cannot be read
+     * @throws DAVEException if the file doesn't match the model
+     *
+     **/
+
+    public Summary check( Model m, PrintStream out, int maxListed )
+        throws IOException, DAVEException
+    {
+        VectorInfoArrayList inVec  = m.getInputVector();
+        VectorInfoArrayList outVec = m.getOutputVector();
+        final int n = this.names.length;
+
+        // match each column to a model input or output
+        int[] inCol  = new int[n];      // position in input vector, or -1
+        int[] outCol = new int[n];      // position in output vector, or -1
+        this.matchColumns( inVec, outVec, inCol, outCol );
+        int numChecked = 0;
+        for (int i = 0; i < n; i++) {
+            if (outCol[i] >= 0) {
+                numChecked++;
+            }
+        }
+
+        int[] checked = new int[numChecked];
+        String[] checkedNames = new String[numChecked];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (outCol[i] >= 0) {
+                checked[k] = i;
+                checkedNames[k++] = this.names[i];
+            }
+        }
+        Summary summary = new Summary( this.file == null ? this.name : this.file.getName(),
+                                       checkedNames );
+
+        // inputs not in file keep their current values
+        double[] defaults = new double[inVec.size()];
+        for (int j = 0; j < defaults.length; j++) {
+            defaults[j] = inVec.get(j).getValue();
+        }
+
+        EvaluationContext ctx = null;
+        if (!m.isProfiling()) {
+            try {
+                CompiledModel program = m.isCompiled() ? m.getCompiledModel()
+                        : new CompiledModel(m);
+                ctx = program.newContext();
+            } catch (DAVEException e) {
+                // check row by row through model
+            }
+        }
+
+        final int chunk = ctx == null ? 1 : EvaluationContext.BATCH_ROWS;
+        double[][] rows    = new double[chunk][n];
+        double[][] inputs  = new double[chunk][defaults.length];
+        double[][] outputs = new double[chunk][outVec.size()];
+        while (true) {
+            int count = 0;
+            while (count < chunk && this.readRow( rows[count] )) {
+                System.arraycopy( defaults, 0, inputs[count], 0, defaults.length );
+                for (int i = 0; i < n; i++) {
+                    if (inCol[i] >= 0) {
+                        inputs[count][inCol[i]] = rows[count][i];
+                    }
+                }
+                count++;
+            }
+            if (count == 0) {
+                break;
+            }
+
+            if (ctx != null) {
+                if (count < chunk) {
+                    double[][] in = new double[count][];
+                    System.arraycopy( inputs, 0, in, 0, count );
+                    ctx.cycleBatch( in, outputs );
+                } else {
+                    ctx.cycleBatch( inputs, outputs );
+                }
+            } else {
+                for (int j = 0; j < defaults.length; j++) {
+                    inVec.get(j).setValue( inputs[0][j] );
+                }
+                m.cycle();
+                VectorInfoArrayList results = m.getOutputVector();
+                for (int j = 0; j < results.size(); j++) {
+                    outputs[0][j] = results.get(j).getValue();
+                }
+            }
+
+            for (int r = 0; r < count; r++) {
+                long rowNum = this.rowCount - count + r + 1;
+                boolean passed = true;
+                for (int k = 0; k < checked.length; k++) {
+                    int i = checked[k];
+                    double expected = rows[r][i];
+                    double actual   = outputs[r][outCol[i]];
+                    double tol = Double.isNaN( this.tolerances[i] )
+                            ? DEFAULT_TOLERANCE : this.tolerances[i];
+                    if (!summary.record( k, rowNum, expected, actual, tol )) {
+                        if (passed && out != null && summary.failed < maxListed) {
+                            out.println();
+                            out.println("Checkcase file '" + summary.name
+                                    + "', row " + rowNum + ":");
+                        }
+                        if (out != null && summary.failed < maxListed) {
+                            out.println("For output '" + this.names[i] + "': expected " + expected
+                                    + " but found " + actual + "; tolerance is " + tol + ".");
+                        }
+                        passed = false;
+                    }
+                }
+                summary.rowDone( passed );
+            }
+        }
+        return summary;
+    }
+
+
+    /**
+     *
+     * <p> Finds the model input or output for each column, checking units
+     * where given </p>
+     *
+     * @param inVec model's input vector
+     * @param outVec model's output vector
+     * @param inCol receives, for each column, its position in the input
+     * vector, or -1
+     * @param outCol receives, for each column that is not an input, its
+     * position in the output vector, or -1
+     * @throws DAVEException if a column is neither an input nor an
+     * output, or its units don't match
+     *
+     **/
+
+    void matchColumns( VectorInfoArrayList inVec, VectorInfoArrayList outVec,
+                       int[] inCol, int[] outCol ) throws DAVEException
+    {
+        for (int i = 0; i < this.names.length; i++) {
+            inCol[i]  = indexOf( inVec,  this.names[i] );
+            outCol[i] = indexOf( outVec, this.names[i] );
+            VectorInfo vi;
+            if (inCol[i] >= 0) {
+                vi = inVec.get( inCol[i] );
+                outCol[i] = -1;
+            } else if (outCol[i] >= 0) {
+                vi = outVec.get( outCol[i] );
+            } else {
+                throw new DAVEException("Could not find signal '" + this.names[i]
+                        + "' of checkcase file '" + this.name + "' in model's inputs or outputs.");
+            }
+            if (this.units[i].length() > 0 && !this.units[i].equals( vi.getUnits() )) {
+                throw new DAVEException("Mismatched units - in checkcase file '" + this.name
+                        + "' for signal '" + this.names[i] + "', file specifies '"
+                        + this.units[i] + "' but model expects '" + vi.getUnits() + "'.");
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns position of named signal in vector, or -1 </p>
+     *
+     **/
+
+    private static int indexOf( VectorInfoArrayList vec, String name )
+    {
+        for (int i = 0; i < vec.size(); i++) {
+            if (vec.get(i).getName().equals( name )) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     *
+     * <p> Results of checking a checkcase file: numbers of rows passed and
+     * failed, and for each output checked, the number of failures and the
+     * worst error found </p>
+     *
+     **/
+
+    public static class Summary
+    {
+        private final String name;
+        private final String[] outputNames;
+        private final long[] failures;
+        private final double[] worstError;
+        private final long[] worstRow;
+        long passed;
+        long failed;
+
+        Summary( String name, String[] outputNames )
+        {
+            this.name        = name;
+            this.outputNames = outputNames;
+            this.failures    = new long[outputNames.length];
+            this.worstError  = new double[outputNames.length];
+            this.worstRow    = new long[outputNames.length];
+        }
+
+        /**
+         * Records one comparison; returns true if within tolerance. A NaN
+         * where none was expected (or the reverse) counts as an infinite error.
+         */
+
+        boolean record( int k, long row, double expected, double actual, double tol )
+        {
+            double err;
+            if (Double.isNaN(expected) || Double.isNaN(actual)) {
+                err = (Double.isNaN(expected) && Double.isNaN(actual))
+                        ? 0.0 : Double.POSITIVE_INFINITY;
+            } else {
+                err = Math.abs(actual - expected);
+            }
+            if (err > this.worstError[k] || this.worstRow[k] == 0) {
+                this.worstError[k] = err;
+                this.worstRow[k] = row;
+            }
+            if (err > tol) {
+                this.failures[k]++;
+                return false;
+            }
+            return true;
+        }
+
+        void rowDone( boolean ok )
+        {
+            if (ok) {
+                this.passed++;
+            } else {
+                this.failed++;
+            }
+        }
+
+        /** Returns the number of rows checked */
+        public long getNumRows() { return this.passed + this.failed; }
+
+        /** Returns the number of rows with every output within tolerance */
+        public long getNumPassed() { return this.passed; }
+
+        /** Returns the number of rows with an output out of tolerance */
+        public long getNumFailed() { return this.failed; }
+
+        /** Returns the number of outputs checked */
+        public int getNumOutputs() { return this.outputNames.length; }
+
+        /** Returns the name of a checked output */
+        public String getOutputName( int k ) { return this.outputNames[k]; }
+
+        /** Returns the number of rows where an output was out of tolerance */
+        public long getNumFailures( int k ) { return this.failures[k]; }
+
+        /** Returns the largest error found in an output */
+        public double getWorstError( int k ) { return this.worstError[k]; }
+
+        /** Returns the (one-based) row where the largest error was found */
+        public long getWorstRow( int k ) { return this.worstRow[k]; }
+
+        /** Returns true if every row passed */
+        public boolean allPassed() { return this.failed == 0; }
+
+        /**
+         * Writes a table of failures and worst errors, one line per output,
+         * followed by the number of rows verified
+         */
+
+        public void report( PrintStream out )
+        {
+            int width = "output".length();
+            for (int k = 0; k < this.outputNames.length; k++) {
+                width = Math.max( width, this.outputNames[k].length() );
+            }
+            out.println();
+            out.println(pad("  output", width + 2) + "  failures   worst error        at row");
+            for (int k = 0; k < this.outputNames.length; k++) {
+                out.println(pad("  " + this.outputNames[k], width + 2)
+                        + "  " + pad(Long.toString(this.failures[k]), 9)
+                        + "  " + pad(Double.toString(this.worstError[k]), 17)
+                        + "  " + this.worstRow[k]);
+            }
+            out.println("Verified " + this.passed + " of " + this.getNumRows()
+                    + " checkcases in '" + this.name + "'.");
+        }
+
+        private static String pad( String s, int width )
+        {
+            StringBuilder sb = new StringBuilder( s );
+            while (sb.length() < width) {
+                sb.append(' ');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,1279 @@
+// CompiledModel
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ *
+ * <p> Flat-array ("compiled") form of a {@link Model}'s execution order </p>
+ *
+ * <p> Once a <code>Model</code> has been initialized, its sorted list of
+ * blocks can be lowered into a simple instruction program. Each block is
+ * given a slot in a single <code>double[]</code> register file; each
+ * non-trivial block becomes one instruction consisting of an opcode, a
+ * destination slot and a list of argument slots. Running the program
+ * involves no allocation, no readiness checks and no virtual
+ * <code>update()</code> dispatch. </p>
+ *
+ * <p> The program is immutable once built and may be shared between
+ * threads. All values produced while running it, along with per-run
+ * search hints and scratch space, live in an {@link EvaluationContext};
+ * each thread evaluating the model should use its own context. Breakpoint
+ * sets and table data are shared, not copied. </p>
+ *
+ * <p> Input and constant blocks generate no instructions. When the owning
+ * <code>Model</code> runs in compiled mode their current block values are
+ * copied into its context by {@link #load(EvaluationContext)} before each
+ * pass, and output values are copied back by
+ * {@link #storeOutputs(EvaluationContext)}. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class CompiledModel
+{
+    /**
+     *  opcodes
+     */
+
+    private static final int OP_COPY   =  1;
+    private static final int OP_SUM    =  2;
+    private static final int OP_PROD   =  3;
+    private static final int OP_DIV    =  4;
+    private static final int OP_NEG    =  5;
+    private static final int OP_SUB    =  6;
+    private static final int OP_ABS    =  7;
+    private static final int OP_SIN    =  8;
+    private static final int OP_COS    =  9;
+    private static final int OP_TAN    = 10;
+    private static final int OP_ASIN   = 11;
+    private static final int OP_ACOS   = 12;
+    private static final int OP_ATAN   = 13;
+    private static final int OP_FLOOR  = 14;
+    private static final int OP_CEIL   = 15;
+    private static final int OP_POW    = 16;
+    private static final int OP_ATAN2  = 17;
+    private static final int OP_LT     = 18;
+    private static final int OP_LEQ    = 19;
+    private static final int OP_EQ     = 20;
+    private static final int OP_GEQ    = 21;
+    private static final int OP_GT     = 22;
+    private static final int OP_NEQ    = 23;
+    private static final int OP_NOT    = 24;
+    private static final int OP_AND    = 25;
+    private static final int OP_OR     = 26;
+    private static final int OP_MIN    = 27;
+    private static final int OP_MAX    = 28;
+    private static final int OP_SWITCH = 29;
+    private static final int OP_LIMIT  = 30;
+    private static final int OP_BP     = 31;
+    private static final int OP_TABLE  = 32;
+    private static final int OP_NAN    = 33;
+    private static final int OP_EXPR   = 34;
+
+    /**
+     *  model from which we were compiled
+     */
+
+    Model ourModel;
+
+    /**
+     *  block whose output lives in each register slot
+     */
+
+    Block[] slotBlocks;
+
+    /**
+     *  opcode of each instruction
+     */
+
+    int[] opcode;
+
+    /**
+     *  destination slot of each instruction
+     */
+
+    int[] dest;
+
+    /**
+     *  index into <code>args</code> of first argument of each instruction
+     */
+
+    int[] argStart;
+
+    /**
+     *  number of arguments of each instruction
+     */
+
+    int[] argCount;
+
+    /**
+     *  index into auxiliary data (limits, breakpoints, tables); -1 if none
+     */
+
+    int[] aux;
+
+    /**
+     *  argument slots of all instructions, packed end to end
+     */
+
+    int[] args;
+
+    /**
+     *  lower and upper limits for limiter instructions
+     */
+
+    double[] lowerLims;
+    double[] upperLims;
+
+    /**
+     *  breakpoint sets for breakpoint instructions
+     */
+
+    BreakpointSet[] bpSets;
+
+    /**
+     *  table values, dimensions and strides for table instructions; a
+     *  table mapped from a file has null values and a buffer instead
+     */
+
+    double[][] tableValues;
+    DoubleBuffer[] tableBuffers;
+    int[][] tableDims;
+    int[][] tableStrides;
+
+    /**
+     *  slots of input blocks, in model input block order
+     */
+
+    int[] inputSlots;
+
+    /**
+     *  slots of constant blocks
+     */
+
+    int[] constSlots;
+
+    /**
+     *  slots of output blocks, in model output block order
+     */
+
+    int[] outputSlots;
+
+    /**
+     *  largest number of dimensions of any table
+     */
+
+    int maxTableDim;
+
+    /**
+     *  postfix programs of fused expression instructions
+     */
+
+    int[][] exprPrograms;
+
+    /**
+     *  largest stack depth and argument count of any expression
+     */
+
+    int maxExprDepth;
+    int maxExprArgs;
+
+    /**
+     *  slots <code>0..maxExprArgs-1</code>, for expressions evaluated
+     *  from gathered arguments
+     */
+
+    int[] exprIdentity;
+
+    /**
+     *  batch column of each instruction's destination
+     */
+
+    int[] batchDest;
+
+    /**
+     *  batch column of each argument, packed like <code>args</code>; an
+     *  argument with no column is coded as <code>-(slot+1)</code> and
+     *  read from the register file
+     */
+
+    int[] batchArgs;
+
+    /**
+     *  batch columns of inputs and outputs, in model order
+     */
+
+    int[] batchInputs;
+    int[] batchOutputs;
+
+    /**
+     *  number of columns needed for batch evaluation
+     */
+
+    int numBatchColumns;
+
+
+    /**
+     *
+     * <p> Builds compiled program from an initialized model </p>
+     *
+     * @param m <code>Model</code> whose execution order is to be compiled
+     * @throws DAVEException if model is not initialized or contains a
+     * block that cannot be compiled
+     *
+     **/
+
+    public CompiledModel( Model m ) throws DAVEException
+    {
+        this.ourModel = m;
+
+        BlockArrayList order = m.getSortedBlocks();
+        if (order.size() != m.getNumBlocks()) {
+            throw new DAVEException("Model '" + m.getName() +
+                    "' must be initialized before it can be compiled.");
+        }
+
+        // assign a register slot to each block, in execution order
+        Map<Block, Integer> slotOf = new IdentityHashMap<Block, Integer>(2*order.size());
+        this.slotBlocks = new Block[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            this.slotBlocks[i] = order.get(i);
+            slotOf.put(order.get(i), i);
+        }
+
+        ArrayList<Integer> ops    = new ArrayList<Integer>(order.size());
+        ArrayList<Integer> dsts   = new ArrayList<Integer>(order.size());
+        ArrayList<Integer> starts = new ArrayList<Integer>(order.size());
+        ArrayList<Integer> counts = new ArrayList<Integer>(order.size());
+        ArrayList<Integer> auxs   = new ArrayList<Integer>(order.size());
+        ArrayList<Integer> argList = new ArrayList<Integer>(2*order.size());
+        ArrayList<Double> lowers = new ArrayList<Double>();
+        ArrayList<Double> uppers = new ArrayList<Double>();
+        ArrayList<BreakpointSet> bps = new ArrayList<BreakpointSet>();
+        ArrayList<FuncTable> tbls = new ArrayList<FuncTable>();
+        ArrayList<Integer> consts = new ArrayList<Integer>();
+        ArrayList<int[]> exprs = new ArrayList<int[]>();
+        int maxDim = 0;
+        int maxDepth = 0;
+        int maxExprIn = 0;
+
+        for (int slot = 0; slot < this.slotBlocks.length; slot++) {
+            Block b = this.slotBlocks[slot];
+            int auxIndex = -1;
+            int op;
+
+            if (b instanceof BlockInput) {
+                continue;               // loaded by load()
+            }
+            if (b instanceof BlockMathConstant) {
+                consts.add(slot);       // loaded by load()
+                continue;
+            }
+
+            int numIn = b.numInputs();
+            if (b instanceof BlockOutput) {
+                op = OP_COPY;
+                requireInputs(b, numIn, 1, 1);
+            } else if (b instanceof BlockMathExpression) {
+                BlockMathExpression e = (BlockMathExpression) b;
+                op = OP_EXPR;
+                auxIndex = exprs.size();
+                exprs.add(e.getProgram());
+                maxDepth = Math.max(maxDepth, e.getMaxDepth());
+                maxExprIn = Math.max(maxExprIn, numIn);
+            } else if (b instanceof BlockMathSum) {
+                op = OP_SUM;
+            } else if (b instanceof BlockMathProduct) {
+                if (((BlockMathProduct) b).getBlockType().equals("times")) {
+                    op = OP_PROD;
+                } else {
+                    op = OP_DIV;
+                    requireInputs(b, numIn, 2, 2);
+                }
+            } else if (b instanceof BlockMathMinus) {
+                requireInputs(b, numIn, 1, 2);
+                op = (numIn == 1) ? OP_NEG : OP_SUB;
+            } else if (b instanceof BlockMathAbs) {
+                op = OP_ABS;
+                requireInputs(b, numIn, 1, 1);
+            } else if (b instanceof BlockMathFunction) {
+                op = functionOpcode(((BlockMathFunction) b).getFuncType());
+                if (op == OP_POW || op == OP_ATAN2) {
+                    requireInputs(b, numIn, 2, 2);
+                } else if (op != OP_NAN) {
+                    requireInputs(b, numIn, 1, 1);
+                }
+            } else if (b instanceof BlockMathRelation) {
+                op = relationOpcode(((BlockMathRelation) b).getRelationOp());
+                requireInputs(b, numIn, 2, 2);
+            } else if (b instanceof BlockMathLogic) {
+                String logicOp = ((BlockMathLogic) b).getLogicOp();
+                if (logicOp.equals("not")) {
+                    op = OP_NOT;
+                    requireInputs(b, numIn, 1, 1);
+                } else {
+                    op = logicOp.equals("and") ? OP_AND : OP_OR;
+                    requireInputs(b, numIn, 2, Integer.MAX_VALUE);
+                }
+            } else if (b instanceof BlockMathMinmax) {
+                op = ((BlockMathMinmax) b).getFuncType().equals("min") ? OP_MIN : OP_MAX;
+            } else if (b instanceof BlockMathSwitch) {
+                op = OP_SWITCH;
+                requireInputs(b, numIn, 3, 3);
+            } else if (b instanceof BlockLimiter) {
+                BlockLimiter lim = (BlockLimiter) b;
+                op = OP_LIMIT;
+                requireInputs(b, numIn, 1, 1);
+                auxIndex = lowers.size();
+                lowers.add(lim.hasLowerLimit() ? lim.getLowerLimit() : Double.NEGATIVE_INFINITY);
+                uppers.add(lim.hasUpperLimit() ? lim.getUpperLimit() : Double.POSITIVE_INFINITY);
+            } else if (b instanceof BlockBP) {
+                op = OP_BP;
+                requireInputs(b, numIn, 1, 1);
+                BreakpointSet bpSet = ((BlockBP) b).getBPset();
+                if (bpSet.length() < 1) {
+                    throw new DAVEException("Breakpoint block " + b.getName() +
+                            " has no breakpoints.");
+                }
+                auxIndex = bps.size();
+                bps.add(bpSet);
+            } else if (b instanceof BlockFuncTable) {
+                FuncTable ft = ((BlockFuncTable) b).getFunctionTableDef();
+                op = OP_TABLE;
+                requireInputs(b, numIn, ft.numDim(), ft.numDim());
+                auxIndex = tbls.indexOf(ft);
+                if (auxIndex < 0) {
+                    auxIndex = tbls.size();
+                    tbls.add(ft);
+                }
+                if (ft.numDim() > maxDim) {
+                    maxDim = ft.numDim();
+                }
+            } else {
+                throw new DAVEException("Unable to compile block '" + b.getName() +
+                        "' of type " + b.getType() + ".");
+            }
+
+            ops.add(op);
+            dsts.add(slot);
+            starts.add(argList.size());
+            counts.add(numIn);
+            auxs.add(auxIndex);
+
+            Iterator<Signal> inIt = b.getInputIterator();
+            while (inIt.hasNext()) {
+                Signal s = inIt.next();
+                Block source = (s == null) ? null : s.getSourceBlock();
+                Integer srcSlot = (source == null) ? null : slotOf.get(source);
+                if (srcSlot == null) {
+                    throw new DAVEException("Unable to compile block '" + b.getName() +
+                            "': input is not connected to a sorted block.");
+                }
+                if (srcSlot.intValue() >= slot) {
+                    throw new DAVEException("Unable to compile block '" + b.getName() +
+                            "': input is computed later in execution order.");
+                }
+                argList.add(srcSlot);
+            }
+        }
+
+        // convert to flat arrays
+        this.opcode   = toIntArray(ops);
+        this.dest     = toIntArray(dsts);
+        this.argStart = toIntArray(starts);
+        this.argCount = toIntArray(counts);
+        this.aux      = toIntArray(auxs);
+        this.args     = toIntArray(argList);
+        this.constSlots = toIntArray(consts);
+
+        this.lowerLims = new double[lowers.size()];
+        this.upperLims = new double[uppers.size()];
+        for (int i = 0; i < lowers.size(); i++) {
+            this.lowerLims[i] = lowers.get(i);
+            this.upperLims[i] = uppers.get(i);
+        }
+
+        this.bpSets = bps.toArray(new BreakpointSet[bps.size()]);
+
+        this.tableValues  = new double[tbls.size()][];
+        this.tableBuffers = new DoubleBuffer[tbls.size()];
+        this.tableDims    = new int[tbls.size()][];
+        this.tableStrides = new int[tbls.size()][];
+        for (int i = 0; i < tbls.size(); i++) {
+            FuncTable ft = tbls.get(i);
+            this.tableValues[i]  = ft.getValueArray();
+            this.tableBuffers[i] = ft.getValueBuffer();
+            this.tableDims[i]    = ft.getDimensions();
+            this.tableStrides[i] = ft.getStrides();
+        }
+        this.maxTableDim = maxDim;
+
+        this.exprPrograms = exprs.toArray(new int[exprs.size()][]);
+        this.maxExprDepth = maxDepth;
+        this.maxExprArgs  = maxExprIn;
+        this.exprIdentity = new int[maxExprIn];
+        for (int i = 0; i < maxExprIn; i++) {
+            this.exprIdentity[i] = i;
+        }
+
+        // input and output slots, in model order
+        BlockArrayList ins = m.getInputBlocks();
+        this.inputSlots = new int[ins.size()];
+        for (int i = 0; i < ins.size(); i++) {
+            this.inputSlots[i] = slotOf.get(ins.get(i));
+        }
+        BlockArrayList outs = m.getOutputBlocks();
+        this.outputSlots = new int[outs.size()];
+        for (int i = 0; i < outs.size(); i++) {
+            this.outputSlots[i] = slotOf.get(outs.get(i));
+        }
+
+        this.planBatchColumns();
+
+        if (m.isVerbose()) {
+            System.out.println("");
+            System.out.println("Model '" + m.getName() + "' compiled into "
+                    + this.opcode.length + " instructions over "
+                    + this.slotBlocks.length + " registers.");
+            System.out.println("");
+        }
+    }
+
+
+    /**
+     *
+     * <p> Builds a program running only some of another program's
+     * instructions; everything else is shared </p>
+     *
+     * @param full program to take instructions from
+     * @param keep indicates, for each register slot, if the instruction
+     * writing that slot is to be kept
+     *
+     **/
+
+    private CompiledModel( CompiledModel full, boolean[] keep )
+    {
+        this.ourModel     = full.ourModel;
+        this.slotBlocks   = full.slotBlocks;
+        this.args         = full.args;
+        this.lowerLims    = full.lowerLims;
+        this.upperLims    = full.upperLims;
+        this.bpSets       = full.bpSets;
+        this.tableValues  = full.tableValues;
+        this.tableBuffers = full.tableBuffers;
+        this.tableDims    = full.tableDims;
+        this.tableStrides = full.tableStrides;
+        this.inputSlots   = full.inputSlots;
+        this.constSlots   = full.constSlots;
+        this.maxTableDim  = full.maxTableDim;
+        this.exprPrograms = full.exprPrograms;
+        this.maxExprDepth = full.maxExprDepth;
+        this.maxExprArgs  = full.maxExprArgs;
+        this.exprIdentity = full.exprIdentity;
+
+        int n = 0;
+        for (int pc = 0; pc < full.opcode.length; pc++) {
+            if (keep[full.dest[pc]]) {
+                n++;
+            }
+        }
+        this.opcode   = new int[n];
+        this.dest     = new int[n];
+        this.argStart = new int[n];
+        this.argCount = new int[n];
+        this.aux      = new int[n];
+        int i = 0;
+        for (int pc = 0; pc < full.opcode.length; pc++) {
+            if (keep[full.dest[pc]]) {
+                this.opcode[i]   = full.opcode[pc];
+                this.dest[i]     = full.dest[pc];
+                this.argStart[i] = full.argStart[pc];
+                this.argCount[i] = full.argCount[pc];
+                this.aux[i]      = full.aux[pc];
+                i++;
+            }
+        }
+
+        n = 0;
+        for (int k = 0; k < full.outputSlots.length; k++) {
+            if (keep[full.outputSlots[k]]) {
+                n++;
+            }
+        }
+        this.outputSlots = new int[n];
+        i = 0;
+        for (int k = 0; k < full.outputSlots.length; k++) {
+            if (keep[full.outputSlots[k]]) {
+                this.outputSlots[i++] = full.outputSlots[k];
+            }
+        }
+
+        this.planBatchColumns();
+    }
+
+
+    /**
+     *
+     * <p> Assigns batch columns to the inputs and to the slots written by
+     * instructions. Columns are handed out in execution order and taken
+     * back after the last instruction reading their slot, so the number
+     * of columns follows the largest set of values live at once rather
+     * than the number of blocks. Output columns are kept to the end of
+     * the program. Slots with no column (constants, and blocks left out
+     * of a sub-program) are read from the register file. </p>
+     *
+     **/
+
+    private void planBatchColumns()
+    {
+        final int numSlots = this.slotBlocks.length;
+        int[] lastUse = new int[numSlots];
+        Arrays.fill(lastUse, -1);
+        for (int pc = 0; pc < this.opcode.length; pc++) {
+            for (int k = this.argStart[pc]; k < this.argStart[pc] + this.argCount[pc]; k++) {
+                lastUse[this.args[k]] = pc;
+            }
+        }
+        boolean[] isOutput = new boolean[numSlots];
+        for (int j = 0; j < this.outputSlots.length; j++) {
+            isOutput[this.outputSlots[j]] = true;
+        }
+
+        int[] colOf = new int[numSlots];
+        Arrays.fill(colOf, -1);
+        ArrayList<Integer> free = new ArrayList<Integer>();
+        int numCols = 0;
+
+        this.batchInputs = new int[this.inputSlots.length];
+        for (int i = 0; i < this.inputSlots.length; i++) {
+            colOf[this.inputSlots[i]] = numCols;
+            this.batchInputs[i] = numCols++;
+        }
+
+        this.batchDest = new int[this.opcode.length];
+        this.batchArgs = new int[this.args.length];
+        for (int pc = 0; pc < this.opcode.length; pc++) {
+            final int a = this.argStart[pc];
+            final int na = this.argCount[pc];
+            for (int k = a; k < a + na; k++) {
+                int col = colOf[this.args[k]];
+                this.batchArgs[k] = (col >= 0) ? col : -(this.args[k] + 1);
+            }
+
+            // take the destination before releasing arguments, so that
+            // no instruction writes over a column it is still reading
+            int col = free.isEmpty() ? numCols++ : free.remove(free.size() - 1);
+            this.batchDest[pc] = col;
+            colOf[this.dest[pc]] = col;
+
+            for (int k = a; k < a + na; k++) {
+                int slot = this.args[k];
+                if (lastUse[slot] == pc && !isOutput[slot] && colOf[slot] >= 0) {
+                    free.add(colOf[slot]);
+                    colOf[slot] = -1;
+                }
+            }
+            if (lastUse[this.dest[pc]] < 0 && !isOutput[this.dest[pc]]) {
+                free.add(col);          // nothing reads it
+                colOf[this.dest[pc]] = -1;
+            }
+        }
+
+        this.batchOutputs = new int[this.outputSlots.length];
+        for (int j = 0; j < this.outputSlots.length; j++) {
+            this.batchOutputs[j] = colOf[this.outputSlots[j]];
+        }
+        this.numBatchColumns = numCols;
+    }
+
+
+    /**
+     *
+     * <p> Returns a program that computes only the currently selected
+     * blocks (see {@link Block#isSelected()}). It uses the same register
+     * layout, so it runs in contexts made for this program; its output
+     * vector holds only the selected outputs. </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    CompiledModel selectedProgram()
+    {
+        boolean[] keep = new boolean[this.slotBlocks.length];
+        for (int slot = 0; slot < keep.length; slot++) {
+            keep[slot] = this.slotBlocks[slot].isSelected();
+        }
+        return new CompiledModel( this, keep );
+    }
+
+
+    /**
+     *
+     * <p> Returns a program that computes only the blocks whose register
+     * slots are flagged. Like {@link #selectedProgram()}, it shares this
+     * program's register layout; its output vector holds only the
+     * flagged outputs. </p>
+     *
+     * @param keep indicates, for each register slot, if the block
+     * writing it is to be computed
+     * @since 0.9.8
+     *
+     **/
+
+    CompiledModel subProgram( boolean[] keep )
+    {
+        return new CompiledModel( this, keep );
+    }
+
+
+    /**
+     *
+     * <p> Returns number of instructions in compiled program </p>
+     *
+     **/
+
+    public int getNumInstructions() { return this.opcode.length; }
+
+
+    /**
+     *
+     * <p> Returns number of slots needed in register file </p>
+     *
+     **/
+
+    public int getNumRegisters() { return this.slotBlocks.length; }
+
+
+    /**
+     *
+     * <p> Returns number of columns needed to run the program over a
+     * batch of points (see {@link #executeBatch}) </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public int getNumBatchColumns() { return this.numBatchColumns; }
+
+
+    /**
+     *
+     * <p> Returns number of model inputs </p>
+     *
+     **/
+
+    public int getNumInputs() { return this.inputSlots.length; }
+
+
+    /**
+     *
+     * <p> Returns number of model outputs </p>
+     *
+     **/
+
+    public int getNumOutputs() { return this.outputSlots.length; }
+
+
+    /**
+     *
+     * <p> Returns position of named input in the input vector, or -1 </p>
+     *
+     * @param name name of input block (same as its signal)
+     *
+     **/
+
+    public int getInputIndex( String name )
+    {
+        for (int i = 0; i < this.inputSlots.length; i++) {
+            if (this.slotBlocks[this.inputSlots[i]].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     *
+     * <p> Returns position of named output in the output vector, or -1 </p>
+     *
+     * @param name name of output block (same as its signal)
+     *
+     **/
+
+    public int getOutputIndex( String name )
+    {
+        for (int i = 0; i < this.outputSlots.length; i++) {
+            if (this.slotBlocks[this.outputSlots[i]].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     *
+     * <p> Creates a new evaluation context for this program. Each
+     * context starts with the current values of the model's blocks,
+     * so inputs hold their initial conditions until set. </p>
+     *
+     **/
+
+    public EvaluationContext newContext()
+    {
+        return new EvaluationContext( this );
+    }
+
+
+    /**
+     *
+     * <p> Copies current values of input and constant blocks into the
+     * register file </p>
+     *
+     * @param ctx evaluation context to load
+     *
+     **/
+
+    public void load( EvaluationContext ctx )
+    {
+        final double[] r = ctx.registers;
+        for (int i = 0; i < this.inputSlots.length; i++) {
+            int slot = this.inputSlots[i];
+            r[slot] = this.slotBlocks[slot].value;
+        }
+        for (int i = 0; i < this.constSlots.length; i++) {
+            int slot = this.constSlots[i];
+            r[slot] = this.slotBlocks[slot].value;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Copies output values from the register file into the model's
+     * output blocks </p>
+     *
+     * @param ctx evaluation context holding results
+     *
+     **/
+
+    public void storeOutputs( EvaluationContext ctx )
+    {
+        final double[] r = ctx.registers;
+        int cycle = this.ourModel.getCycleCounter();
+        for (int i = 0; i < this.outputSlots.length; i++) {
+            Block b = this.slotBlocks[this.outputSlots[i]];
+            b.value = r[this.outputSlots[i]];
+            b.resultsCycleCount = cycle;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Copies every value from the register file back into its
+     * block, so that signal values reflect the last compiled cycle </p>
+     *
+     * @param ctx evaluation context holding results
+     *
+     **/
+
+    public void storeAll( EvaluationContext ctx )
+    {
+        final double[] r = ctx.registers;
+        int cycle = this.ourModel.getCycleCounter();
+        for (int i = 0; i < this.slotBlocks.length; i++) {
+            Block b = this.slotBlocks[i];
+            if (!(b instanceof BlockMathConstant)) {
+                b.value = r[i];
+                b.resultsCycleCount = cycle;
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Runs the compiled program once in the supplied context. The
+     * program itself is never modified, so any number of threads may
+     * execute it at once, each with its own context. </p>
+     *
+     * @param ctx evaluation context, with inputs already loaded
+     *
+     **/
+
+    public void execute( EvaluationContext ctx )
+    {
+        final double[] r = ctx.registers;
+        final int[] hints = ctx.bpHints;
+        final int[] op   = this.opcode;
+        final int[] dst  = this.dest;
+        final int[] arg  = this.args;
+        final int n = op.length;
+        double v;
+
+        for (int pc = 0; pc < n; pc++) {
+            final int a = this.argStart[pc];
+            switch (op[pc]) {
+            case OP_COPY:
+                v = r[arg[a]]; break;
+            case OP_SUM:
+                v = 0.0;
+                for (int k = a; k < a + this.argCount[pc]; k++) {
+                    v += r[arg[k]];
+                }
+                break;
+            case OP_PROD:
+                v = 1.0;
+                for (int k = a; k < a + this.argCount[pc]; k++) {
+                    v *= r[arg[k]];
+                }
+                break;
+            case OP_DIV:
+                v = r[arg[a]]/r[arg[a+1]]; break;
+            case OP_NEG:
+                v = -r[arg[a]]; break;
+            case OP_SUB:
+                v = r[arg[a]] - r[arg[a+1]]; break;
+            case OP_ABS:
+                v = Math.abs(r[arg[a]]); break;
+            case OP_SIN:
+                v = Math.sin(r[arg[a]]); break;
+            case OP_COS:
+                v = Math.cos(r[arg[a]]); break;
+            case OP_TAN:
+                v = Math.tan(r[arg[a]]); break;
+            case OP_ASIN:
+                v = Math.asin(r[arg[a]]); break;
+            case OP_ACOS:
+                v = Math.acos(r[arg[a]]); break;
+            case OP_ATAN:
+                v = Math.atan(r[arg[a]]); break;
+            case OP_FLOOR:
+                v = Math.floor(r[arg[a]]); break;
+            case OP_CEIL:
+                v = Math.ceil(r[arg[a]]); break;
+            case OP_POW:
+                v = Math.pow(r[arg[a]], r[arg[a+1]]); break;
+            case OP_ATAN2:
+                v = Math.atan2(r[arg[a]], r[arg[a+1]]); break;
+            case OP_LT:
+                v = (r[arg[a]] <  r[arg[a+1]]) ? 1.0 : 0.0; break;
+            case OP_LEQ:
+                v = (r[arg[a]] <= r[arg[a+1]]) ? 1.0 : 0.0; break;
+            case OP_EQ:
+                v = (r[arg[a]] == r[arg[a+1]]) ? 1.0 : 0.0; break;
+            case OP_GEQ:
+                v = (r[arg[a]] >= r[arg[a+1]]) ? 1.0 : 0.0; break;
+            case OP_GT:
+                v = (r[arg[a]] >  r[arg[a+1]]) ? 1.0 : 0.0; break;
+            case OP_NEQ:
+                v = (r[arg[a]] != r[arg[a+1]]) ? 1.0 : 0.0; break;
+            case OP_NOT:
+                v = (r[arg[a]] != 0.0) ? 0.0 : 1.0; break;
+            case OP_AND: {
+                boolean result = true;
+                for (int k = a; k < a + this.argCount[pc]; k++) {
+                    result = result && (r[arg[k]] != 0.0);
+                }
+                v = result ? 1.0 : 0.0;
+                break;
+            }
+            case OP_OR: {
+                boolean result = false;
+                for (int k = a; k < a + this.argCount[pc]; k++) {
+                    result = result || (r[arg[k]] != 0.0);
+                }
+                v = result ? 1.0 : 0.0;
+                break;
+            }
+            case OP_MIN:
+                v = Double.POSITIVE_INFINITY;
+                for (int k = a; k < a + this.argCount[pc]; k++) {
+                    v = Math.min(v, r[arg[k]]);
+                }
+                break;
+            case OP_MAX:
+                v = Double.NEGATIVE_INFINITY;
+                for (int k = a; k < a + this.argCount[pc]; k++) {
+                    v = Math.max(v, r[arg[k]]);
+                }
+                break;
+            case OP_SWITCH:
+                v = (Math.abs(r[arg[a+1]]) > 0.0001) ? r[arg[a]] : r[arg[a+2]]; break;
+            case OP_LIMIT:
+                v = r[arg[a]];
+                if (v < this.lowerLims[this.aux[pc]]) {
+                    v = this.lowerLims[this.aux[pc]];
+                }
+                if (v > this.upperLims[this.aux[pc]]) {
+                    v = this.upperLims[this.aux[pc]];
+                }
+                break;
+            case OP_BP: {
+                final int k = this.aux[pc];
+                final double x = r[arg[a]];
+                hints[k] = this.bpSets[k].findInterval(x, hints[k]);
+                v = this.bpSets[k].indexAndFraction(x, hints[k]);
+                break;
+            }
+            case OP_TABLE:
+                v = interpolate(ctx, this.aux[pc], a); break;
+            case OP_EXPR:
+                v = BlockMathExpression.evaluate(this.exprPrograms[this.aux[pc]],
+                        r, arg, a, ctx.exprStack);
+                break;
+            default:
+                v = Double.NaN;
+            }
+            r[dst[pc]] = v;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Interpolates table <code>t</code> at the index-and-fraction
+     * values held in the argument slots starting at <code>a</code> </p>
+     *
+     **/
+
+    private double interpolate( EvaluationContext ctx, int t, int a )
+    {
+        final int[] dims = this.tableDims[t];
+        final double[] iw = ctx.iwScratch;
+        for (int d = 0; d < dims.length; d++) {
+            iw[d] = ctx.registers[this.args[a+d]];
+        }
+        if (this.tableValues[t] == null) {
+            return Interpolator.interpolate(this.tableBuffers[t], dims,
+                    this.tableStrides[t], iw, ctx.cornerScratch);
+        }
+        return Interpolator.interpolate(this.tableValues[t], dims,
+                this.tableStrides[t], iw, ctx.cornerScratch);
+    }
+
+
+    /**
+     *
+     * <p> Runs the compiled program over many input points at once </p>
+     *
+     * <p> Values are held column-wise: <code>c[column][row]</code>.
+     * Each instruction is applied to every row before moving on to the
+     * next instruction, so most instructions become simple loops over
+     * contiguous arrays. Only slots written by an instruction, and the
+     * inputs, have a column (see {@link #getNumBatchColumns()}); a column
+     * is reused once nothing later reads it. Constants are read from the
+     * context's register file. Input columns must be filled in by the
+     * caller (see {@link EvaluationContext#cycleColumns}). </p>
+     *
+     * @param ctx evaluation context supplying constants, search hints and
+     * scratch space
+     * @param c batch columns, at least <code>getNumBatchColumns()</code>
+     * of them, each at least <code>numRows</code> long
+     * @param numRows number of points to evaluate
+     *
+     **/
+
+    public void executeBatch( EvaluationContext ctx, double[][] c, int numRows )
+    {
+        final double[] r = ctx.registers;
+        final int[] hints = ctx.bpHints;
+        final int[] arg  = this.batchArgs;
+        final int n = this.opcode.length;
+
+        for (int pc = 0; pc < n; pc++) {
+            final int a = this.argStart[pc];
+            final int na = this.argCount[pc];
+            final double[] d = c[this.batchDest[pc]];
+            double[] x = (na > 0 && arg[a] >= 0) ? c[arg[a]] : null;
+            final double[] y = (na > 1 && arg[a+1] >= 0) ? c[arg[a+1]] : null;
+            final double ys = (y == null && na > 1) ? r[-arg[a+1]-1] : 0.0;
+            if (x == null && na > 0) {
+                // a register operand is spread over the destination, which
+                // the elementwise cases below then update in place
+                Arrays.fill(d, 0, numRows, r[-arg[a]-1]);
+                x = d;
+            }
+            int i;
+            switch (this.opcode[pc]) {
+            case OP_COPY:
+                if (x != d) { System.arraycopy(x, 0, d, 0, numRows); }
+                break;
+            case OP_SUM:
+                for (i = 0; i < numRows; i++) { d[i] = 0.0; }
+                for (int k = a; k < a+na; k++) {
+                    if (arg[k] < 0) {
+                        final double s = r[-arg[k]-1];
+                        for (i = 0; i < numRows; i++) { d[i] += s; }
+                    } else {
+                        final double[] z = c[arg[k]];
+                        for (i = 0; i < numRows; i++) { d[i] += z[i]; }
+                    }
+                }
+                break;
+            case OP_PROD:
+                for (i = 0; i < numRows; i++) { d[i] = 1.0; }
+                for (int k = a; k < a+na; k++) {
+                    if (arg[k] < 0) {
+                        final double s = r[-arg[k]-1];
+                        for (i = 0; i < numRows; i++) { d[i] *= s; }
+                    } else {
+                        final double[] z = c[arg[k]];
+                        for (i = 0; i < numRows; i++) { d[i] *= z[i]; }
+                    }
+                }
+                break;
+            case OP_DIV:
+                for (i = 0; i < numRows; i++) { d[i] = x[i]/(y != null ? y[i] : ys); } break;
+            case OP_NEG:
+                for (i = 0; i < numRows; i++) { d[i] = -x[i]; } break;
+            case OP_SUB:
+                for (i = 0; i < numRows; i++) { d[i] = x[i] - (y != null ? y[i] : ys); } break;
+            case OP_ABS:
+                for (i = 0; i < numRows; i++) { d[i] = Math.abs(x[i]); } break;
+            case OP_SIN:
+                for (i = 0; i < numRows; i++) { d[i] = Math.sin(x[i]); } break;
+            case OP_COS:
+                for (i = 0; i < numRows; i++) { d[i] = Math.cos(x[i]); } break;
+            case OP_TAN:
+                for (i = 0; i < numRows; i++) { d[i] = Math.tan(x[i]); } break;
+            case OP_ASIN:
+                for (i = 0; i < numRows; i++) { d[i] = Math.asin(x[i]); } break;
+            case OP_ACOS:
+                for (i = 0; i < numRows; i++) { d[i] = Math.acos(x[i]); } break;
+            case OP_ATAN:
+                for (i = 0; i < numRows; i++) { d[i] = Math.atan(x[i]); } break;
+            case OP_FLOOR:
+                for (i = 0; i < numRows; i++) { d[i] = Math.floor(x[i]); } break;
+            case OP_CEIL:
+                for (i = 0; i < numRows; i++) { d[i] = Math.ceil(x[i]); } break;
+            case OP_POW:
+                for (i = 0; i < numRows; i++) { d[i] = Math.pow(x[i], y != null ? y[i] : ys); } break;
+            case OP_ATAN2:
+                for (i = 0; i < numRows; i++) { d[i] = Math.atan2(x[i], y != null ? y[i] : ys); } break;
+            case OP_LT:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] <  (y != null ? y[i] : ys)) ? 1.0 : 0.0; } break;
+            case OP_LEQ:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] <= (y != null ? y[i] : ys)) ? 1.0 : 0.0; } break;
+            case OP_EQ:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] == (y != null ? y[i] : ys)) ? 1.0 : 0.0; } break;
+            case OP_GEQ:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] >= (y != null ? y[i] : ys)) ? 1.0 : 0.0; } break;
+            case OP_GT:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] >  (y != null ? y[i] : ys)) ? 1.0 : 0.0; } break;
+            case OP_NEQ:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] != (y != null ? y[i] : ys)) ? 1.0 : 0.0; } break;
+            case OP_NOT:
+                for (i = 0; i < numRows; i++) { d[i] = (x[i] != 0.0) ? 0.0 : 1.0; } break;
+            case OP_AND:
+                for (i = 0; i < numRows; i++) { d[i] = 1.0; }
+                for (int k = a; k < a+na; k++) {
+                    if (arg[k] < 0) {
+                        if (r[-arg[k]-1] == 0.0) {
+                            for (i = 0; i < numRows; i++) { d[i] = 0.0; }
+                        }
+                    } else {
+                        final double[] z = c[arg[k]];
+                        for (i = 0; i < numRows; i++) { if (z[i] == 0.0) { d[i] = 0.0; } }
+                    }
+                }
+                break;
+            case OP_OR:
+                for (i = 0; i < numRows; i++) { d[i] = 0.0; }
+                for (int k = a; k < a+na; k++) {
+                    if (arg[k] < 0) {
+                        if (r[-arg[k]-1] != 0.0) {
+                            for (i = 0; i < numRows; i++) { d[i] = 1.0; }
+                        }
+                    } else {
+                        final double[] z = c[arg[k]];
+                        for (i = 0; i < numRows; i++) { if (z[i] != 0.0) { d[i] = 1.0; } }
+                    }
+                }
+                break;
+            case OP_MIN:
+                for (i = 0; i < numRows; i++) { d[i] = Double.POSITIVE_INFINITY; }
+                for (int k = a; k < a+na; k++) {
+                    if (arg[k] < 0) {
+                        final double s = r[-arg[k]-1];
+                        for (i = 0; i < numRows; i++) { d[i] = Math.min(d[i], s); }
+                    } else {
+                        final double[] z = c[arg[k]];
+                        for (i = 0; i < numRows; i++) { d[i] = Math.min(d[i], z[i]); }
+                    }
+                }
+                break;
+            case OP_MAX:
+                for (i = 0; i < numRows; i++) { d[i] = Double.NEGATIVE_INFINITY; }
+                for (int k = a; k < a+na; k++) {
+                    if (arg[k] < 0) {
+                        final double s = r[-arg[k]-1];
+                        for (i = 0; i < numRows; i++) { d[i] = Math.max(d[i], s); }
+                    } else {
+                        final double[] z = c[arg[k]];
+                        for (i = 0; i < numRows; i++) { d[i] = Math.max(d[i], z[i]); }
+                    }
+                }
+                break;
+            case OP_SWITCH: {
+                final double[] z = (arg[a+2] >= 0) ? c[arg[a+2]] : null;
+                final double zs = (z == null) ? r[-arg[a+2]-1] : 0.0;
+                for (i = 0; i < numRows; i++) {
+                    d[i] = (Math.abs(y != null ? y[i] : ys) > 0.0001) ? x[i]
+                            : (z != null ? z[i] : zs);
+                }
+                break;
+            }
+            case OP_LIMIT: {
+                final double lo = this.lowerLims[this.aux[pc]];
+                final double hi = this.upperLims[this.aux[pc]];
+                for (i = 0; i < numRows; i++) {
+                    double v = x[i];
+                    if (v < lo) { v = lo; }
+                    if (v > hi) { v = hi; }
+                    d[i] = v;
+                }
+                break;
+            }
+            case OP_BP: {
+                final int k = this.aux[pc];
+                final BreakpointSet bps = this.bpSets[k];
+                int hint = hints[k];
+                for (i = 0; i < numRows; i++) {
+                    final double v = x[i];
+                    hint = bps.findInterval(v, hint);
+                    d[i] = bps.indexAndFraction(v, hint);
+                }
+                hints[k] = hint;
+                break;
+            }
+            case OP_TABLE: {
+                final int t = this.aux[pc];
+                final int[] dims = this.tableDims[t];
+                final double[] iw = ctx.iwScratch;
+                final double[] values = this.tableValues[t];
+                for (i = 0; i < numRows; i++) {
+                    for (int k = 0; k < dims.length; k++) {
+                        final int col = arg[a+k];
+                        iw[k] = (col >= 0) ? c[col][i] : r[-col-1];
+                    }
+                    if (values == null) {
+                        d[i] = Interpolator.interpolate(this.tableBuffers[t], dims,
+                                this.tableStrides[t], iw, ctx.cornerScratch);
+                    } else {
+                        d[i] = Interpolator.interpolate(values, dims,
+                                this.tableStrides[t], iw, ctx.cornerScratch);
+                    }
+                }
+                break;
+            }
+            case OP_EXPR: {
+                final int[] program = this.exprPrograms[this.aux[pc]];
+                final double[] xa = ctx.exprArgs;
+                for (i = 0; i < numRows; i++) {
+                    for (int k = 0; k < na; k++) {
+                        final int col = arg[a+k];
+                        xa[k] = (col >= 0) ? c[col][i] : r[-col-1];
+                    }
+                    d[i] = BlockMathExpression.evaluate(program, xa, this.exprIdentity, 0,
+                            ctx.exprStack);
+                }
+                break;
+            }
+            default:
+                for (i = 0; i < numRows; i++) { d[i] = Double.NaN; }
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Checks number of inputs to a block being compiled </p>
+     *
+     **/
+
+    private static void requireInputs( Block b, int numIn, int min, int max )
+        throws DAVEException
+    {
+        if (numIn < min || numIn > max) {
+            throw new DAVEException("Unable to compile block '" + b.getName() +
+                    "': unexpected number of inputs (" + numIn + ").");
+        }
+    }
+
+
+    /**
+     *
+     * <p> Maps math function type to opcode </p>
+     *
+     **/
+
+    private static int functionOpcode( String funcType )
+    {
+        if (funcType == null)           { return OP_NAN;   }
+        if (funcType.equals("power"))   { return OP_POW;   }
+        if (funcType.equals("sin"))     { return OP_SIN;   }
+        if (funcType.equals("cos"))     { return OP_COS;   }
+        if (funcType.equals("tan"))     { return OP_TAN;   }
+        if (funcType.equals("arcsin"))  { return OP_ASIN;  }
+        if (funcType.equals("arccos"))  { return OP_ACOS;  }
+        if (funcType.equals("arctan"))  { return OP_ATAN;  }
+        if (funcType.equals("floor"))   { return OP_FLOOR; }
+        if (funcType.equals("ceiling")) { return OP_CEIL;  }
+        if (funcType.equals("atan2"))   { return OP_ATAN2; }
+        return OP_NAN;
+    }
+
+
+    /**
+     *
+     * <p> Maps relation operator to opcode </p>
+     *
+     **/
+
+    private static int relationOpcode( String relationOp )
+    {
+        if (relationOp.equals("lt" )) { return OP_LT;  }
+        if (relationOp.equals("leq")) { return OP_LEQ; }
+        if (relationOp.equals("eq" )) { return OP_EQ;  }
+        if (relationOp.equals("geq")) { return OP_GEQ; }
+        if (relationOp.equals("gt" )) { return OP_GT;  }
+        if (relationOp.equals("neq")) { return OP_NEQ; }
+        return OP_NAN;
+    }
+
+
+    /**
+     *
+     * <p> Unboxes a list of <code>Integer</code>s </p>
+     *
+     **/
+
+    private static int[] toIntArray( ArrayList<Integer> list )
+    {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+}
@@ -13,6 +13,11 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jdom.Document;
@@ -116,6 +121,63 @@ public class DAVE {
      * Flag set if user has asked to ignore checkcases
      */
     protected boolean ignoreCheckcases;
+    /**
+     * Flag set if user has asked to simplify the model after loading
+     * @since 0.9.8
+     */
+    protected boolean optimizeModel;
+    /**
+     * Flag set if arithmetic chains should be fused after optimizing
+     * (not wanted by tools that draw one diagram element per block)
+     * @since 0.9.8
+     */
+    protected boolean fuseExpressions;
+    /**
+     * Directory of cached models, or null if not caching
+     * @since 0.9.8
+     */
+    protected File cacheDirectory;
+    /**
+     * Directory of memory-mapped table files, or null to keep tables on
+     * the heap
+     * @since 0.9.8
+     */
+    protected File tableDirectory;
+    /**
+     * Smallest function table (in points) moved off the heap
+     * @since 0.9.8
+     */
+    public static final int MAPPED_TABLE_MIN_POINTS = 1024;
+    /**
+     * Number of threads used to verify checkcases
+     * @since 0.9.8
+     */
+    protected int verifyThreads;
+    /**
+     * External file of bulk checkcases, or null if none
+     * @since 0.9.8
+     */
+    protected File checkcaseFile;
+    /**
+     * True to evaluate rows of inputs from a file or standard input
+     * @since 0.9.8
+     */
+    protected boolean batchEvaluate;
+    /**
+     * File of input rows for batch evaluation, or null for standard input
+     * @since 0.9.8
+     */
+    protected File batchInputFile;
+    /**
+     * True to time each block and list the slowest
+     * @since 0.9.8
+     */
+    protected boolean profileModel;
+    /**
+     * Number of blocks listed by <code>reportProfile()</code>
+     * @since 0.9.8
+     */
+    public static final int PROFILE_ROWS = 25;
     /**
      * Internal variable definition count
      */
@@ -176,6 +238,15 @@ public class DAVE {
         this.genStatsFlag = false;
         this.noProcessingRequired = false;
 	this.ignoreCheckcases = false;
+        this.optimizeModel = false;
+        this.fuseExpressions = false;
+        this.cacheDirectory = null;
+        this.tableDirectory = null;
+        this.verifyThreads = Runtime.getRuntime().availableProcessors();
+        this.checkcaseFile = null;
+        this.batchEvaluate = false;
+        this.batchInputFile = null;
+        this.profileModel = false;
         this.helpRequested = false;
         this.checkCaseCount = 0;
         this.m = new Model(20, 20);
@@ -368,9 +439,36 @@ public class DAVE {
         return count;
     }
 
+    /**
+     * Sets the number of threads used by <code>verify()</code>; by
+     * default, one per available processor.
+     *
+     * @param numThreads number of threads (1 to verify sequentially)
+     * @since 0.9.8
+     */
+    public void setVerifyThreads(int numThreads) {
+        this.verifyThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Returns the number of threads used by <code>verify()</code>.
+     *
+     * @since 0.9.8
+     */
+    public int getVerifyThreads() {
+        return this.verifyThreads;
+    }
+
     /**
      * Verifies any checkcases provided in XML file.
      *
+     * <p> With more than one verify thread, and unless debugging output
+     * or internal values are wanted, checkcases are divided among threads
+     * that each evaluate the compiled model in their own
+     * {@link EvaluationContext}. Messages are still reported in checkcase
+     * order, and the model is left holding the results of the last
+     * checkcase, as when verifying one at a time.
+     *
      */
     public boolean verify() {
         boolean result = true;
@@ -379,6 +477,7 @@ public class DAVE {
         if (checkcases == null) { // no checkcases
             return true;
         }
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.VERIFY);
 
         // run the model with each checkcase
         ArrayList<StaticShot> shots = checkcases.getStaticShots();
@@ -391,7 +490,32 @@ public class DAVE {
             System.out.println("");
         }
 
-        while (shit.hasNext()) {
+        boolean checked = false;
+        int numThreads = Math.min(this.verifyThreads, shots.size());
+        if (numThreads > 1 && !this.isVerbose() && !this.createInternalValues
+                && !m.isProfiling()) {
+            CheckResult[] results = this.checkInParallel(shots, numThreads);
+            if (results != null) {
+                checked = true;
+                for (int i = 0; i < results.length; i++) {
+                    System.out.print(results[i].report);
+                    if (results[i].error != null) {
+                        System.err.println("Problem performing verification - ");
+                        System.err.println(results[i].error.getMessage());
+                        System.exit(exit_failure);
+                    }
+                    if (!results[i].matched) {
+                        System.err.println("Verification error - can't match case '"
+                                + shots.get(i).getName() + "'.");
+                        result = false;
+                    } else {
+                        goodCases++;
+                    }
+                }
+            }
+        }
+
+        while (!checked && shit.hasNext()) {
             StaticShot shot = shit.next();
             if (this.isVerbose()) {
                 System.out.println("");
@@ -446,9 +570,256 @@ public class DAVE {
 		System.out.println("Wrote internal values for each checkcase.");
 	    }
         }
+        if (m.getMonitor() != null) {
+            m.getMonitor().verified(goodCases, shots.size() - goodCases);
+        }
+        PhaseEvents.RECORDER.end(phaseEvent, "checkcases", m, -1);
         return result;
     }
 
+    /**
+     * Sets an external file of bulk checkcases, in comma-separated or
+     * binary form, to be checked by <code>verifyCheckcaseFile()</code>.
+     *
+     * @param file checkcase file, or null for none
+     * @see CheckcaseFile
+     * @since 0.9.8
+     */
+    public void setCheckcaseFile(File file) {
+        this.checkcaseFile = file;
+    }
+
+    /**
+     * Returns the external checkcase file, or null if none.
+     *
+     * @since 0.9.8
+     */
+    public File getCheckcaseFile() {
+        return this.checkcaseFile;
+    }
+
+    /**
+     * Verifies the model against every row of the external checkcase
+     * file, streaming rows through the model rather than loading the file.
+     * Lists the first few failing rows (all of them if debugging), then
+     * the number of failures and worst error of each output.
+     *
+     * @return true if every row matched, or if there is no checkcase file
+     * @since 0.9.8
+     */
+    public boolean verifyCheckcaseFile() {
+        if (this.checkcaseFile == null) {
+            return true;
+        }
+        try {
+            CheckcaseFile cf = new CheckcaseFile(this.checkcaseFile);
+            try {
+                if (this.isVerbose()) {
+                    System.out.println("");
+                    System.out.println("Verifying check-cases in '" + this.checkcaseFile + "'");
+                    System.out.println("------------------------");
+                }
+                int maxListed = this.isVerbose() ? Integer.MAX_VALUE : 10;
+                CheckcaseFile.Summary summary = cf.check(m, System.out, maxListed);
+                if (summary.getNumFailed() > maxListed) {
+                    System.out.println("");
+                    System.out.println("(" + (summary.getNumFailed() - maxListed)
+                            + " more failing rows not listed.)");
+                }
+                summary.report(System.out);
+                if (!summary.allPassed()) {
+                    System.err.println("Verification error - " + summary.getNumFailed()
+                            + " rows of '" + this.checkcaseFile + "' don't match.");
+                }
+                return summary.allPassed();
+            } finally {
+                cf.close();
+            }
+        } catch (Exception e) {
+            System.err.println("Problem performing verification - ");
+            System.err.println(e.getMessage());
+            System.exit(exit_failure);
+        }
+        return false;
+    }
+
+    /**
+     * Lists the blocks that took longest to update while profiling, with
+     * their call counts, times and breakpoint search steps.
+     *
+     * @see Model#setProfiling(boolean)
+     * @since 0.9.8
+     */
+    public void reportProfile() {
+        ModelProfiler profiler = m.getProfiler();
+        if (profiler == null) {
+            System.out.println("No model cycles were profiled.");
+        } else {
+            profiler.report(System.out, PROFILE_ROWS);
+        }
+    }
+
+    /**
+     * Outcome of one checkcase run by <code>checkInParallel()</code>
+     */
+    private static class CheckResult {
+        boolean matched;
+        String report = "";
+        Exception error;
+    }
+
+    /**
+     * Runs checkcases on several threads, each giving a contiguous run of
+     * checkcases to its own evaluation context of the compiled model.
+     * Output checks are written to a per-checkcase report rather than
+     * straight to <code>System.out</code>. Finally, the last checkcase is
+     * run through the model itself, so that it ends up in the same state
+     * as after sequential verification.
+     *
+     * <p> If a thread fails, is interrupted, or the final run of the
+     * model fails, the error is recorded against the first checkcase
+     * without a result (or the last checkcase), so that it is reported
+     * where sequential verification would have stopped. </p>
+     *
+     * @param shots checkcases to run
+     * @param numThreads number of threads to use
+     * @return outcome of each checkcase, in order, or null if the model
+     * cannot be compiled
+     * @since 0.9.8
+     */
+    private CheckResult[] checkInParallel(final ArrayList<StaticShot> shots, int numThreads) {
+        final CheckResult[] results = new CheckResult[shots.size()];
+        final CompiledModel program;
+        try {
+            program = m.isCompiled() ? m.getCompiledModel() : new CompiledModel(m);
+        } catch (DAVEException e) {
+            return null;            // not compilable; verify one at a time
+        }
+
+        Exception failure = null;
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            final VectorInfoArrayList modelInputs = m.getInputVector();
+            final VectorInfoArrayList modelOutputs = m.getOutputVector();
+
+            ArrayList<Future<Object>> done = new ArrayList<Future<Object>>(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                final int first = (int) ((long) shots.size() * t / numThreads);
+                final int last = (int) ((long) shots.size() * (t + 1) / numThreads);
+                // each thread gets its own input and output vectors
+                final VectorInfoArrayList inVec = copyVector(modelInputs);
+                final VectorInfoArrayList outVec = copyVector(modelOutputs);
+                done.add(pool.submit(new Callable<Object>() {
+                    public Object call() {
+                        EvaluationContext ctx = program.newContext();
+                        for (int i = first; i < last; i++) {
+                            results[i] = checkOne(shots.get(i), ctx, inVec, outVec);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            // wait for every thread, so none is still filling in results
+            for (int t = 0; t < done.size(); t++) {
+                try {
+                    done.get(t).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    if (failure == null) {
+                        failure = (Exception) e.getCause();
+                    }
+                }
+            }
+
+            // leave model as sequential verification would
+            if (failure == null) {
+                shots.get(shots.size() - 1).loadInputVector(modelInputs);
+                m.cycle();
+            }
+        } catch (DAVEException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            failure = new DAVEException("Verification interrupted.");
+        } finally {
+            pool.shutdown();
+        }
+
+        if (failure != null) {
+            int i = 0;
+            while (i < results.length - 1 && results[i] != null) {
+                i++;
+            }
+            if (results[i] == null) {
+                results[i] = new CheckResult();
+            }
+            if (results[i].error == null) {
+                results[i].error = failure;
+            }
+            for (i++; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = new CheckResult();
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs one checkcase through an evaluation context.
+     *
+     * @param shot checkcase to run
+     * @param ctx evaluation context to use
+     * @param inVec input vector to load checkcase inputs into
+     * @param outVec output vector to receive model outputs
+     * @return outcome of checkcase
+     * @since 0.9.8
+     */
+    private static CheckResult checkOne(StaticShot shot, EvaluationContext ctx,
+            VectorInfoArrayList inVec, VectorInfoArrayList outVec) {
+        CheckResult result = new CheckResult();
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(report);
+        try {
+            shot.loadInputVector(inVec);
+            for (int i = 0; i < inVec.size(); i++) {
+                ctx.setInput(i, inVec.get(i).getValue());
+            }
+            ctx.cycle();
+            for (int i = 0; i < outVec.size(); i++) {
+                outVec.get(i).setValue(ctx.getOutput(i));
+            }
+            result.matched = shot.checkOutputs(outVec, out);
+        } catch (DAVEException e) {
+            result.error = e;
+        }
+        out.flush();
+        result.report = report.toString();
+        return result;
+    }
+
+    /**
+     * Returns a copy of an input or output vector, with the same names,
+     * units, blocks and values.
+     *
+     * @since 0.9.8
+     */
+    private static VectorInfoArrayList copyVector(VectorInfoArrayList vec) {
+        VectorInfoArrayList copy = new VectorInfoArrayList();
+        for (int i = 0; i < vec.size(); i++) {
+            VectorInfo vi = vec.get(i);
+            Block blk = vi.isInput() ? vi.getSink() : vi.getSource();
+            VectorInfo c = new VectorInfo(vi.getName(), vi.getUnits(), blk, vi.isInput());
+            c.setValue(vi.getValue());
+            copy.add(c);
+        }
+        return copy;
+    }
+
     /**
      * Creates new {@link Signal} for each variableDef in model.
      *
@@ -456,27 +827,31 @@ public class DAVE {
     @SuppressWarnings("unchecked") // since Element.getChildren() method returns generic List
     public void parseVariableDefs() {
         Signal dummySig;
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.PARSE);
+        try {
+            List<Element> variableList = root.getChildren("variableDef", this.ns);
+            if (variableList.size() > 0) {
+                Iterator<Element> variableIterator = variableList.iterator();
+                this.varDefCount = variableList.size();
+                if (this.isVerbose()) {
+                    System.out.println("");
+                    System.out.println("Parsing " + varDefCount + " variable definitions");
+                    System.out.println("--------------------------------");
+                    System.out.println("");
+                }
+                while (variableIterator.hasNext()) {
+                    try {
+                        dummySig = new Signal(variableIterator.next(), m);
+                    } catch (DAVEException ex) {
+                        System.err.println("Exception thrown while parsing variableDefs: " +
+                                ex.getLocalizedMessage());
+                        System.err.println("aborting further parsing.");
 
-        List<Element> variableList = root.getChildren("variableDef", this.ns);
-        if (variableList.size() > 0) {
-            Iterator<Element> variableIterator = variableList.iterator();
-            this.varDefCount = variableList.size();
-            if (this.isVerbose()) {
-                System.out.println("");
-                System.out.println("Parsing " + varDefCount + " variable definitions");
-                System.out.println("--------------------------------");
-                System.out.println("");
-            }
-            while (variableIterator.hasNext()) {
-                try {
-                    dummySig = new Signal(variableIterator.next(), m);
-                } catch (DAVEException ex) {
-                    System.err.println("Exception thrown while parsing variableDefs: " +
-                            ex.getLocalizedMessage());
-                    System.err.println("aborting further parsing.");
-                    
+                    }
                 }
             }
+        } finally {
+            PhaseEvents.RECORDER.end(phaseEvent, "variableDefs", m, -1);
         }
     }
 
@@ -492,25 +867,30 @@ public class DAVE {
     @SuppressWarnings("unchecked")
     public void parseTableDefs() {
         FuncTable dummyFuncTable;
-        List<Element> gtdList = root.getChildren("griddedTableDef", this.ns);
-        if (gtdList.size() > 0) {
-            Iterator gtdi = gtdList.iterator();
-            this.gtDefCount = gtdList.size();
-            if (this.isVerbose()) {
-                System.out.println("");
-                System.out.println("Parsing " + gtDefCount + " table definitions");
-                System.out.println("----------------------------");
-                System.out.println("");
-            }
-            while (gtdi.hasNext()) {
-                try {
-                    dummyFuncTable = new FuncTable((Element) gtdi.next(), m);
-                } catch (IOException e) {
-                    System.err.println(
-                            "Error in DAVE.parseTableDefs() while looking for griddedTableDefs");
-                    System.exit(exit_failure);
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.PARSE);
+        try {
+            List<Element> gtdList = root.getChildren("griddedTableDef", this.ns);
+            if (gtdList.size() > 0) {
+                Iterator gtdi = gtdList.iterator();
+                this.gtDefCount = gtdList.size();
+                if (this.isVerbose()) {
+                    System.out.println("");
+                    System.out.println("Parsing " + gtDefCount + " table definitions");
+                    System.out.println("----------------------------");
+                    System.out.println("");
+                }
+                while (gtdi.hasNext()) {
+                    try {
+                        dummyFuncTable = new FuncTable((Element) gtdi.next(), m);
+                    } catch (IOException e) {
+                        System.err.println(
+                                "Error in DAVE.parseTableDefs() while looking for griddedTableDefs");
+                        System.exit(exit_failure);
+                    }
                 }
             }
+        } finally {
+            PhaseEvents.RECORDER.end(phaseEvent, "griddedTableDefs", m, -1);
         }
     }
 
@@ -527,25 +907,30 @@ public class DAVE {
     @SuppressWarnings("unchecked")
     public void parseBreakpointDefs() {
         BreakpointSet ignored;
-        List<Element> bpList = root.getChildren("breakpointDef", this.ns);
-        if (bpList.size() > 0) {
-            Iterator bpIt = bpList.iterator();
-            this.bpDefCount = bpList.size();
-            if (this.isVerbose()) {
-                System.out.println("");
-                System.out.println("Parsing " + bpDefCount + " breakpoint definitions");
-                System.out.println("---------------------------------");
-                System.out.println("");
-            }
-            while (bpIt.hasNext()) {
-                try {
-                    ignored = new BreakpointSet((Element) bpIt.next(), m);
-                } catch (Exception e) {
-                    System.err.println("Error in DAVE.parseBreakpointDefs() :"
-                            + e.getMessage());
-                    System.exit(exit_failure);
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.PARSE);
+        try {
+            List<Element> bpList = root.getChildren("breakpointDef", this.ns);
+            if (bpList.size() > 0) {
+                Iterator bpIt = bpList.iterator();
+                this.bpDefCount = bpList.size();
+                if (this.isVerbose()) {
+                    System.out.println("");
+                    System.out.println("Parsing " + bpDefCount + " breakpoint definitions");
+                    System.out.println("---------------------------------");
+                    System.out.println("");
+                }
+                while (bpIt.hasNext()) {
+                    try {
+                        ignored = new BreakpointSet((Element) bpIt.next(), m);
+                    } catch (Exception e) {
+                        System.err.println("Error in DAVE.parseBreakpointDefs() :"
+                                + e.getMessage());
+                        System.exit(exit_failure);
+                    }
                 }
             }
+        } finally {
+            PhaseEvents.RECORDER.end(phaseEvent, "breakpointDefs", m, -1);
         }
     }
 
@@ -562,25 +947,30 @@ public class DAVE {
     @SuppressWarnings("unchecked")
     public void parseFunctions() {
         BlockFuncTable ignored;
-        List<Element> functionList = root.getChildren("function", this.ns);
-        if (functionList.size() > 0) {
-            Iterator functionIterator = functionList.iterator();
-            this.functionCount = functionList.size();
-            if (this.isVerbose()) {
-                System.out.println("");
-                System.out.println("Parsing " + functionCount + " function definitions");
-                System.out.println("-------------------------------");
-                System.out.println("");
-            }
-            while (functionIterator.hasNext()) {
-                try {
-                    ignored = new BlockFuncTable((Element) functionIterator.next(), m);
-                } catch (IOException e) {
-                    System.err.println("Error in DAVE.parseFunctions() ");
-                    System.exit(exit_failure);
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.PARSE);
+        try {
+            List<Element> functionList = root.getChildren("function", this.ns);
+            if (functionList.size() > 0) {
+                Iterator functionIterator = functionList.iterator();
+                this.functionCount = functionList.size();
+                if (this.isVerbose()) {
+                    System.out.println("");
+                    System.out.println("Parsing " + functionCount + " function definitions");
+                    System.out.println("-------------------------------");
+                    System.out.println("");
+                }
+                while (functionIterator.hasNext()) {
+                    try {
+                        ignored = new BlockFuncTable((Element) functionIterator.next(), m);
+                    } catch (IOException e) {
+                        System.err.println("Error in DAVE.parseFunctions() ");
+                        System.exit(exit_failure);
+                    }
                 }
-            }
 
+            }
+        } finally {
+            PhaseEvents.RECORDER.end(phaseEvent, "functions", m, -1);
         }
     }
 
@@ -644,9 +1034,21 @@ public class DAVE {
         // Hack the start time
         this.parseStartTime = System.currentTimeMillis();
 
+        // Reuse the model built from an unchanged file, if caching
+        ModelCache cache = null;
+        String cacheKey = null;
+        if (this.cacheDirectory != null) {
+            cache = new ModelCache(this.cacheDirectory);
+            cacheKey = ModelCache.keyOf(f, this.getVersion() + " O=" + this.optimizeModel
+                    + " F=" + this.fuseExpressions + " T=" + this.tableDirectory);
+            if (this.loadCachedModel(cache, cacheKey)) {
+                return true;
+            }
+        }
+
         // Build XML tree
 
-        Document doc = load();
+        Document doc = load(true);
 
         root = doc.getRootElement();
 
@@ -677,6 +1079,10 @@ public class DAVE {
 
         parseFunctions();
 
+        // Table and breakpoint values have been copied into their owners
+
+        this.m.clearLoadedValues();
+
         // Hook all the blocks together
         // loop through model, telling each block to wire up its inputs and outputs to predefined signals.
 
@@ -697,8 +1103,22 @@ public class DAVE {
 
         // Initialize model
         // This builds the exection order lists; was happening only for models with checkcases
+        boolean built = false;
         try {
             m.initialize();
+            if (this.optimizeModel) {
+                int numChanged = m.optimize();
+                if (this.fuseExpressions) {
+                    numChanged += m.fuseExpressions();
+                }
+                if (this.isVerbose()) {
+                    System.out.println("Optimizer changed " + numChanged + " blocks.");
+                }
+            }
+            if (this.tableDirectory != null) {
+                m.mapTables(this.tableDirectory, MAPPED_TABLE_MIN_POINTS);
+            }
+            built = true;
         } catch (DAVEException ex) {
             Logger.getLogger(DAVE.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -711,9 +1131,140 @@ public class DAVE {
             System.out.println("");
         }
 
+        // only a fully built model is worth reusing
+        if (cache != null && result && built) {
+            this.storeCachedModel(cache, cacheKey);
+        }
+
         return result;
     }
 
+    /**
+     * Replaces our model and checkcases with those cached for a file.
+     *
+     * @param cache model cache to look in
+     * @param key cache key of input file
+     * @return true if a cached model was found
+     * @since 0.9.8
+     */
+    private boolean loadCachedModel(ModelCache cache, String key) {
+        ModelCache.Entry entry = cache.load(key);
+        if (entry == null) {
+            if (this.isVerbose()) {
+                System.out.println("No usable cached model in '" + cache.getDirectory() + "'.");
+            }
+            return false;
+        }
+        this.m = entry.model;
+        this.m.setName(this.stubName);
+        if (this.isVerbose()) {
+            this.m.makeVerbose();
+        } else {
+            this.m.silence();
+        }
+        this.checkcases = entry.checkcases;
+        this.varDefCount = entry.counts[0];
+        this.bpDefCount = entry.counts[1];
+        this.gtDefCount = entry.counts[2];
+        this.functionCount = entry.counts[3];
+        this.checkCaseCount = entry.counts[4];
+        this.parseStopTime = System.currentTimeMillis();
+        if (this.isVerbose()) {
+            System.out.println("Loaded model from cache file '" + cache.fileFor(key) + "'.");
+        }
+        return true;
+    }
+
+    /**
+     * Saves our model and checkcases in the cache; failure to do so is
+     * reported but not fatal.
+     *
+     * @param cache model cache to store into
+     * @param key cache key of input file
+     * @since 0.9.8
+     */
+    private void storeCachedModel(ModelCache cache, String key) {
+        ModelCache.Entry entry = new ModelCache.Entry();
+        entry.model = this.m;
+        entry.checkcases = this.checkcases;
+        entry.counts = new int[]{this.varDefCount, this.bpDefCount,
+            this.gtDefCount, this.functionCount, this.checkCaseCount};
+        try {
+            cache.store(key, entry);
+            if (this.isVerbose()) {
+                System.out.println("Saved model to cache file '" + cache.fileFor(key) + "'.");
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: unable to cache model: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Enables reuse of previously built models, kept in the given
+     * directory. A model is rebuilt from its DAVE-ML file only when the
+     * file's contents (or the optimization options) differ from those of
+     * every cached model.
+     *
+     * @param dir cache directory, or null to stop caching
+     * @since 0.9.8
+     */
+    public void setCacheDirectory(File dir) {
+        this.cacheDirectory = dir;
+    }
+
+    /**
+     * Returns the model cache directory, or null if not caching.
+     *
+     * @since 0.9.8
+     */
+    public File getCacheDirectory() {
+        return this.cacheDirectory;
+    }
+
+    /**
+     * Keeps the values of large function tables (of at least
+     * <code>MAPPED_TABLE_MIN_POINTS</code> points) in memory-mapped files
+     * in the given directory rather than on the heap. Files are shared by
+     * identical tables, and by every process using the same directory.
+     *
+     * @param dir table file directory, or null to keep tables on the heap
+     * @since 0.9.8
+     */
+    public void setTableDirectory(File dir) {
+        this.tableDirectory = dir;
+    }
+
+    /**
+     * Returns the mapped table directory, or null if tables are kept on
+     * the heap.
+     *
+     * @since 0.9.8
+     */
+    public File getTableDirectory() {
+        return this.tableDirectory;
+    }
+
+    /**
+     * Returns the default mapped table directory, used by the
+     * <code>--map-tables</code> option. It is kept under the user's home
+     * directory, so other users cannot plant table files in it.
+     *
+     * @since 0.9.8
+     */
+    public static File getDefaultTableDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".DAVEtools"), "tables");
+    }
+
+    /**
+     * Returns the default model cache directory, used by the
+     * <code>--cache</code> option.
+     *
+     * @since 0.9.8
+     */
+    public static File getDefaultCacheDirectory() {
+        return ModelCache.defaultDirectory();
+    }
+
     /**
      * loads the JDOM document from file, resolving any catalog entries for
      * local copies of DAVEfunc.dtd. When on-line, will automatically try to
@@ -728,6 +1279,22 @@ public class DAVE {
      *
      * @return Document object with the parsed file
      */
+    public Document load() throws IOException {
+        return load(false);
+    }
+
+    /**
+     * Loads the JDOM document from file, as {@link #load()} does. If
+     * <code>streamNumericData</code> is set, the text of table and breakpoint
+     * value elements is parsed into arrays as the file is read (see
+     * {@link NumericDataFilter}) and each such element holds only a
+     * reference to its array, to be resolved by
+     * {@link Model#resolveValues(String)}.
+     *
+     * @param streamNumericData true to parse bulk numeric data while reading
+     * @return Document object with the parsed file
+     * @since 0.9.8
+     */
 // Example catalog.xml file contents
 //
 // <?xml version="1.0"?>
@@ -747,7 +1314,7 @@ public class DAVE {
 //
 //    </group>
 // </catalog>
-    public Document load() throws IOException {
+    Document load(boolean streamNumericData) throws IOException {
         Document doc = null;
         XMLCatalogResolver cr = null;
         String directory_uri = this.base_uri.substring(0, this.base_uri.lastIndexOf('/'));
@@ -755,6 +1322,7 @@ public class DAVE {
         boolean tryValidationFlag = true;
         int numberOfFailures = 0;
         boolean success = false;
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.LOAD);
         while (numberOfFailures < 2 && !success) {
             success = true;
             errorLine = "Error when attempting validation...";
@@ -774,6 +1342,10 @@ public class DAVE {
             try {
                 // Load XML into JDOM Document
                 SAXBuilder builder = new SAXBuilder(tryValidationFlag);
+                if (streamNumericData) {
+                    this.m.clearLoadedValues();     // discard any from failed attempt
+                    builder.setXMLFilter(new NumericDataFilter(this.m));
+                }
                 // must turn off Xerces desire to load external DTD regardless of validation
                 builder.setFeature(
                         "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
@@ -871,6 +1443,8 @@ public class DAVE {
             }
         }
 
+        PhaseEvents.RECORDER.end(phaseEvent, numberOfFailures == 0 ? "validate" : "load",
+                                 m, new File(this.inputFileName).length());
         return doc;
     }
 
@@ -1070,6 +1644,189 @@ public class DAVE {
         return 0;       // indicate keep going
     }
 
+    /**
+     * Evaluates the model at every row of inputs read from a stream, and
+     * writes one row of results for each.
+     *
+     * <p> Input rows are read as by {@link CheckcaseFile}: comma-separated
+     * text with a header row naming (and optionally giving units of) the
+     * model inputs supplied, or the equivalent binary form. Inputs not
+     * named keep their current values; columns naming model outputs are
+     * ignored, so a checkcase file can be used as input.
+     *
+     * <p> Results are written in the same form as the input, with a
+     * header naming each column: every model input, then every model
+     * output, then (if internal values were requested) every internal
+     * value. Without internal values, the results are themselves a valid
+     * checkcase file, and rows are evaluated in batches through the
+     * compiled model; with them, or while profiling, the model is cycled
+     * once per row.
+     *
+     * @param in stream of input rows
+     * @param name name of the stream, for messages
+     * @param out stream to receive result rows
+     * @return number of rows evaluated
+     * @throws IOException if a stream cannot be read or written
+     * @throws DAVEException if the input doesn't match the model
+     * @since 0.9.8
+     */
+    public long evaluateBatch(InputStream in, String name, OutputStream out)
+            throws IOException, DAVEException {
+        CheckcaseFile rows = new CheckcaseFile(in, name);
+        VectorInfoArrayList inVec = m.getInputVector();
+        VectorInfoArrayList outVec = m.getOutputVector();
+        int n = rows.getNumColumns();
+        int[] inCol = new int[n];
+        int[] outCol = new int[n];
+        rows.matchColumns(inVec, outVec, inCol, outCol);
+
+        // columns written: inputs, outputs, then any internals
+        VectorInfoArrayList internals = this.createInternalValues
+                ? m.getInternalsVector() : new VectorInfoArrayList();
+        int numIn = inVec.size();
+        int numOut = outVec.size();
+        int width = numIn + numOut + internals.size();
+        String[] names = new String[width];
+        String[] units = new String[width];
+        for (int j = 0; j < width; j++) {
+            VectorInfo vi = j < numIn ? inVec.get(j)
+                    : j < numIn + numOut ? outVec.get(j - numIn)
+                    : internals.get(j - numIn - numOut);
+            names[j] = vi.getName();
+            units[j] = vi.getUnits() == null ? "" : vi.getUnits();
+        }
+
+        EvaluationContext ctx = null;
+        if (!this.createInternalValues && !m.isProfiling()) {
+            try {
+                CompiledModel program = m.isCompiled() ? m.getCompiledModel()
+                        : new CompiledModel(m);
+                ctx = program.newContext();
+            } catch (DAVEException e) {
+                // evaluate row by row through model
+            }
+        }
+
+        RowWriter writer = new RowWriter(out, rows.isBinary(), names, units);
+        double[] defaults = new double[numIn];
+        for (int j = 0; j < numIn; j++) {
+            defaults[j] = inVec.get(j).getValue();
+        }
+        int chunk = ctx == null ? 1 : EvaluationContext.BATCH_ROWS;
+        double[] row = new double[n];
+        double[][] inputs = new double[chunk][numIn];
+        double[][] outputs = new double[chunk][numOut];
+        double[] result = new double[width];
+        long count = 0;
+        while (true) {
+            int k = 0;
+            while (k < chunk && rows.readRow(row)) {
+                System.arraycopy(defaults, 0, inputs[k], 0, numIn);
+                for (int i = 0; i < n; i++) {
+                    if (inCol[i] >= 0) {
+                        inputs[k][inCol[i]] = row[i];
+                    }
+                }
+                k++;
+            }
+            if (k == 0) {
+                break;
+            }
+            if (ctx != null) {
+                if (k < chunk) {
+                    double[][] part = new double[k][];
+                    System.arraycopy(inputs, 0, part, 0, k);
+                    ctx.cycleBatch(part, outputs);
+                } else {
+                    ctx.cycleBatch(inputs, outputs);
+                }
+            } else {
+                for (int j = 0; j < numIn; j++) {
+                    inVec.get(j).setValue(inputs[0][j]);
+                }
+                m.cycle();
+                VectorInfoArrayList results = m.getOutputVector();
+                for (int j = 0; j < numOut; j++) {
+                    outputs[0][j] = results.get(j).getValue();
+                }
+                if (this.createInternalValues) {
+                    internals = m.getInternalsVector();
+                    for (int j = 0; j < internals.size(); j++) {
+                        result[numIn + numOut + j] = internals.get(j).getValue();
+                    }
+                }
+            }
+            for (int r = 0; r < k; r++) {
+                System.arraycopy(inputs[r], 0, result, 0, numIn);
+                System.arraycopy(outputs[r], 0, result, numIn, numOut);
+                writer.write(result);
+            }
+            count += k;
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Writes rows of results, as comma-separated text or in the binary
+     * form read by {@link CheckcaseFile}, through a buffer.
+     */
+    private static class RowWriter {
+
+        private final Writer text;
+        private final DataOutputStream data;
+        private final StringBuilder line = new StringBuilder(256);
+
+        RowWriter(OutputStream out, boolean binary, String[] names, String[] units)
+                throws IOException {
+            if (binary) {
+                this.text = null;
+                this.data = new DataOutputStream(new BufferedOutputStream(out, 65536));
+                CheckcaseFile.writeBinaryHeader(this.data, names, units, null);
+            } else {
+                this.data = null;
+                this.text = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 65536);
+                for (int j = 0; j < names.length; j++) {
+                    if (j > 0) {
+                        this.line.append(',');
+                    }
+                    this.line.append(names[j]);
+                    if (units[j].length() > 0) {
+                        this.line.append(" (").append(units[j]).append(')');
+                    }
+                }
+                this.line.append('\n');
+                this.text.write(this.line.toString());
+            }
+        }
+
+        void write(double[] values) throws IOException {
+            if (this.data != null) {
+                for (int j = 0; j < values.length; j++) {
+                    this.data.writeDouble(values[j]);
+                }
+            } else {
+                this.line.setLength(0);
+                for (int j = 0; j < values.length; j++) {
+                    if (j > 0) {
+                        this.line.append(',');
+                    }
+                    this.line.append(values[j]);
+                }
+                this.line.append('\n');
+                this.text.write(this.line.toString());
+            }
+        }
+
+        void flush() throws IOException {
+            if (this.data != null) {
+                this.data.flush();
+            } else {
+                this.text.flush();
+            }
+        }
+    }
+
     /**
      *
      * Reports contents of model output vector to user on
@@ -1198,6 +1955,12 @@ public class DAVE {
         System.out.println("    --list         (-o)    output text description to optional output file");
         System.out.println("    --internal     (-i)    show intermediate results in calcs and checkcases");
 	System.out.println("    --no-checkcase (-x)    ignore failing checkcases");
+        System.out.println("    --optimize     (-O)    fold constants, merge and fuse arithmetic after loading");
+        System.out.println("    --cache        (-C)    reuse model built from unchanged file (in " + ModelCache.defaultDirectory() + ")");
+        System.out.println("    --map-tables   (-M)    keep large tables in mapped files (in " + getDefaultTableDirectory() + ")");
+        System.out.println("    --checkfile    (-k)    verify against rows of following CSV or binary file");
+        System.out.println("    --batch        (-b)    evaluate rows of inputs from optional file (or stdin)");
+        System.out.println("    --profile      (-p)    time each block's updates and list the slowest");
         System.out.println("");
     }
 
@@ -1206,7 +1969,7 @@ public class DAVE {
      *
      */
     private void parseOptions(String inArgs[]) {
-        String exampleUse = "Usage: java DAVE [-v][-c][-d][-e][-h][-x][-i] [-o [Text_output_file]] DAVE-ML_document";
+        String exampleUse = "Usage: java DAVE [-v][-c][-d][-e][-h][-x][-i][-O][-C][-M] [-k Checkcase_file] [-b [Input_file]] [-p] [-o [Text_output_file]] DAVE-ML_document";
         int numArgs = inArgs.length;
 
         // Make sure we have at least the input file
@@ -1270,6 +2033,44 @@ public class DAVE {
 		parsedArgs++;
 		System.out.println("Ignoring checkcases");
             }
+            if (matchOptionArgs("O", "optimize")) {
+                this.optimizeModel = true;
+                this.fuseExpressions = true;
+                parsedArgs++;
+            }
+            if (matchOptionArgs("C", "cache")) {
+                this.cacheDirectory = ModelCache.defaultDirectory();
+                parsedArgs++;
+            }
+            if (matchOptionArgs("M", "map-tables")) {
+                this.tableDirectory = getDefaultTableDirectory();
+                parsedArgs++;
+            }
+            if (matchOptionArgs("k", "checkfile")) {
+                if (numArgs > (this.argNum + 2)
+                        && !this.args[this.argNum + 1].startsWith("-")) {
+                    this.checkcaseFile = new File(this.args[this.argNum + 1]);
+                } else {
+                    System.err.println("Option '" + this.args[this.argNum]
+                            + "' needs the name of a checkcase file.");
+                    System.err.println(exampleUse);
+                    System.exit(0);
+                }
+                parsedArgs++;
+            }
+            if (matchOptionArgs("b", "batch")) {
+                this.batchEvaluate = true;
+                if (numArgs > (this.argNum + 2)) {
+                    if (!this.args[this.argNum + 1].startsWith("-")) {
+                        this.batchInputFile = new File(this.args[this.argNum + 1]);
+                    }
+                }
+                parsedArgs++;
+            }
+            if (matchOptionArgs("p", "profile")) {
+                this.profileModel = true;
+                parsedArgs++;
+            }
             if (matchOptionArgs("h", "help")) {
                 this.noProcessingRequired = true;
                 this.helpRequested = true;
@@ -1310,6 +2111,12 @@ public class DAVE {
         if (dave.noProcessingRequired) {
             System.exit(exit_success);  // short circuit if just help requested
         }
+
+        // keep standard output for batch results; messages go to stderr
+        OutputStream results = new FileOutputStream(FileDescriptor.out);
+        if (dave.batchEvaluate) {
+            System.setOut(System.err);
+        }
         try {
             success = dave.parseFile();
         } catch (IOException e) {
@@ -1321,11 +2128,29 @@ public class DAVE {
             System.exit(exit_failure);
         }
 
+        // time each block from here on if asked
+        if (dave.profileModel) {
+            dave.m.setProfiling(true);
+        }
+
         // If checkcase data is included, run quick verification
         if (dave.checkcases != null) {
             if (dave.ignoreCheckcases) {
                 System.out.println("(Verification cases(s) ignored.)");
             } else if (!dave.verify()) {
+                if (dave.profileModel) {
+                    dave.reportProfile();
+                }
+                System.exit(exit_failure);
+            }
+        }
+
+        // Check any external checkcase file too
+        if (dave.checkcaseFile != null) {
+            if (!dave.verifyCheckcaseFile() && !dave.ignoreCheckcases) {
+                if (dave.profileModel) {
+                    dave.reportProfile();
+                }
                 System.exit(exit_failure);
             }
         }
@@ -1340,6 +2165,34 @@ public class DAVE {
             dave.describeSelf();
         }
 
+        // Did user ask for batch evaluation?
+        if (dave.batchEvaluate) {
+            try {
+                InputStream in = dave.batchInputFile == null
+                        ? new FileInputStream(FileDescriptor.in)
+                        : new FileInputStream(dave.batchInputFile);
+                String name = dave.batchInputFile == null
+                        ? "standard input" : dave.batchInputFile.getPath();
+                long count = dave.evaluateBatch(in, name, results);
+                in.close();
+                if (dave.isVerbose()) {
+                    System.err.println("Evaluated " + count + " rows.");
+                }
+                if (dave.profileModel) {
+                    dave.reportProfile();
+                }
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+                System.exit(exit_failure);
+            }
+            System.exit(exit_success);
+        }
+
+        // Did user ask for a profile of verification?
+        if (dave.profileModel && !dave.evaluate) {
+            dave.reportProfile();
+        }
+
         // Did user ask to perform evalution?
         if (dave.evaluate) {
             while (true) {      // run until ^D entered
@@ -1348,6 +2201,9 @@ public class DAVE {
                     int eof = dave.loadInputs(inputVec);
                     if (eof == -1) {
                         System.out.println();
+                        if (dave.profileModel) {
+                            dave.reportProfile();
+                        }
                         System.exit(exit_success);
                     }
 
@@ -0,0 +1,90 @@
+// DoubleListView
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ *
+ * <p> Read-only <code>List&lt;Double&gt;</code> view of a primitive
+ * array or <code>DoubleBuffer</code> </p>
+ *
+ * <p> Lets the table and breakpoint writers keep iterating values as a
+ * list while <code>FuncTable</code> and <code>BreakpointSet</code> store
+ * them unboxed. Elements are boxed only as they are read; nothing is
+ * copied. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+class DoubleListView extends AbstractList<Double> implements RandomAccess
+{
+    /**
+     *  backing array
+     */
+
+    private final double[] values;
+
+    /**
+     *  backing buffer, if no array
+     */
+
+    private final DoubleBuffer buffer;
+
+
+    /**
+     *
+     * <p> Creates a view of the given array </p>
+     *
+     **/
+
+    DoubleListView( double[] values )
+    {
+        this.values = values;
+        this.buffer = null;
+    }
+
+
+    /**
+     *
+     * <p> Creates a view of the given buffer, from index zero to its
+     * capacity </p>
+     *
+     **/
+
+    DoubleListView( DoubleBuffer buffer )
+    {
+        this.values = null;
+        this.buffer = buffer;
+    }
+
+
+    @Override
+    public Double get( int index )
+    {
+        if (this.values == null) {
+            return this.buffer.get(index);
+        }
+        return this.values[index];
+    }
+
+
+    @Override
+    public int size()
+    {
+        if (this.values == null) {
+            return this.buffer.capacity();
+        }
+        return this.values.length;
+    }
+}
@@ -0,0 +1,366 @@
+// EvaluationContext
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.util.Arrays;
+
+/**
+ *
+ * <p> Per-thread evaluation state for a {@link CompiledModel} </p>
+ *
+ * <p> A <code>CompiledModel</code> holds the model's topology and data
+ * (instructions, breakpoint sets and tables) and is never modified while
+ * running. An <code>EvaluationContext</code> holds everything that changes
+ * from one evaluation to the next: the register file, the last interval
+ * found by each breakpoint lookup, and interpolation scratch space. Any
+ * number of contexts may run the same compiled model at once, provided
+ * each context is used by only one thread at a time. </p>
+ *
+ * <p> Typical use: </p>
+ * <pre>
+ *   EvaluationContext ctx = model.newEvaluationContext();
+ *   ctx.setInputs( inputs );
+ *   ctx.cycle();
+ *   ctx.getOutputs( outputs );
+ * </pre>
+ *
+ * <p> Inputs and outputs are ordered as in the model's input and output
+ * vectors; {@link CompiledModel#getInputIndex(String)} and
+ * {@link CompiledModel#getOutputIndex(String)} map names to positions. </p>
+ *
+ * <p> Many points can be evaluated in one call with
+ * {@link #cycleBatch(double[][], double[][])} (one row per point) or
+ * {@link #cycleColumns(double[][], double[][], int)} (one column per
+ * input or output). These work through the points in chunks of
+ * {@link #BATCH_ROWS}, running each instruction over the whole chunk
+ * before moving on to the next. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class EvaluationContext
+{
+    /**
+     *  number of points evaluated together by the batch methods
+     */
+
+    public static final int BATCH_ROWS = 128;
+
+    /**
+     *  program we evaluate
+     */
+
+    final CompiledModel program;
+
+    /**
+     *  register file, one slot per block
+     */
+
+    final double[] registers;
+
+    /**
+     *  last interval found by each breakpoint instruction
+     */
+
+    final int[] bpHints;
+
+    /**
+     *  scratch space for table interpolation
+     */
+
+    final double[] iwScratch;
+    final double[] cornerScratch;
+
+    /**
+     *  scratch space for fused expression instructions
+     */
+
+    final double[] exprStack;
+    final double[] exprArgs;
+
+    /**
+     *  value columns for batch evaluation, shared out by the program
+     *  according to liveness; allocated on first use
+     */
+
+    private double[][] columns;
+
+
+    /**
+     *
+     * <p> Creates a context loaded with the current block values of the
+     * program's model </p>
+     *
+     * @param program compiled model to evaluate
+     *
+     **/
+
+    EvaluationContext( CompiledModel program )
+    {
+        this.program = program;
+        this.registers = new double[program.slotBlocks.length];
+        for (int i = 0; i < this.registers.length; i++) {
+            this.registers[i] = program.slotBlocks[i].getValue();
+        }
+        this.bpHints = new int[program.bpSets.length];
+        Arrays.fill(this.bpHints, -1);
+        this.iwScratch = new double[program.maxTableDim];
+        this.cornerScratch = new double[Interpolator.bufferScratchSize(program.maxTableDim)];
+        this.exprStack = new double[program.maxExprDepth];
+        this.exprArgs = new double[program.maxExprArgs];
+    }
+
+
+    /**
+     *
+     * <p> Returns the compiled model this context evaluates </p>
+     *
+     **/
+
+    public CompiledModel getCompiledModel() { return this.program; }
+
+
+    /**
+     *
+     * <p> Returns number of model inputs </p>
+     *
+     **/
+
+    public int getNumInputs() { return this.program.inputSlots.length; }
+
+
+    /**
+     *
+     * <p> Returns number of model outputs </p>
+     *
+     **/
+
+    public int getNumOutputs() { return this.program.outputSlots.length; }
+
+
+    /**
+     *
+     * <p> Sets value of one input </p>
+     *
+     * @param index position in input vector
+     * @param value new input value
+     *
+     **/
+
+    public void setInput( int index, double value )
+    {
+        this.registers[this.program.inputSlots[index]] = value;
+    }
+
+
+    /**
+     *
+     * <p> Sets value of all inputs </p>
+     *
+     * @param values new input values, in input vector order
+     *
+     **/
+
+    public void setInputs( double[] values )
+    {
+        final int[] slots = this.program.inputSlots;
+        for (int i = 0; i < slots.length; i++) {
+            this.registers[slots[i]] = values[i];
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns value of one input </p>
+     *
+     * @param index position in input vector
+     *
+     **/
+
+    public double getInput( int index )
+    {
+        return this.registers[this.program.inputSlots[index]];
+    }
+
+
+    /**
+     *
+     * <p> Returns value of one output, as of the last cycle </p>
+     *
+     * @param index position in output vector
+     *
+     **/
+
+    public double getOutput( int index )
+    {
+        return this.registers[this.program.outputSlots[index]];
+    }
+
+
+    /**
+     *
+     * <p> Copies all outputs into caller's array </p>
+     *
+     * @param values array to receive outputs, in output vector order
+     *
+     **/
+
+    public void getOutputs( double[] values )
+    {
+        final int[] slots = this.program.outputSlots;
+        for (int i = 0; i < slots.length; i++) {
+            values[i] = this.registers[slots[i]];
+        }
+    }
+
+
+    /**
+     *
+     * <p> Evaluates the model once with the current inputs </p>
+     *
+     **/
+
+    public void cycle()
+    {
+        this.program.execute( this );
+    }
+
+
+    /**
+     *
+     * <p> Evaluates the model at many points, given row by row </p>
+     *
+     * <p> The register file used by {@link #cycle()} is not changed;
+     * constant values are taken from it. </p>
+     *
+     * @param inputs one row per point, each holding the inputs in input
+     * vector order
+     * @param outputs one row per point, each at least
+     * <code>getNumOutputs()</code> long, to receive the outputs
+     * @throws DAVEException if array sizes do not agree with the model
+     *
+     **/
+
+    public void cycleBatch( double[][] inputs, double[][] outputs )
+        throws DAVEException
+    {
+        final int[] inSlots  = this.program.inputSlots;
+        final int[] outSlots = this.program.outputSlots;
+        if (outputs.length < inputs.length) {
+            throw new DAVEException("Output array has fewer rows (" + outputs.length
+                    + ") than input array (" + inputs.length + ").");
+        }
+        for (int row = 0; row < inputs.length; row++) {
+            if (inputs[row].length != inSlots.length) {
+                throw new DAVEException("Input row " + row + " has " + inputs[row].length
+                        + " elements; model has " + inSlots.length + " inputs.");
+            }
+            if (outputs[row].length < outSlots.length) {
+                throw new DAVEException("Output row " + row + " has " + outputs[row].length
+                        + " elements; model has " + outSlots.length + " outputs.");
+            }
+        }
+
+        final double[][] c = this.getColumns();
+        final int[] inCols  = this.program.batchInputs;
+        final int[] outCols = this.program.batchOutputs;
+        for (int start = 0; start < inputs.length; start += BATCH_ROWS) {
+            final int n = Math.min(BATCH_ROWS, inputs.length - start);
+            for (int i = 0; i < inCols.length; i++) {
+                final double[] col = c[inCols[i]];
+                for (int k = 0; k < n; k++) {
+                    col[k] = inputs[start+k][i];
+                }
+            }
+            this.program.executeBatch( this, c, n );
+            for (int j = 0; j < outCols.length; j++) {
+                final double[] col = c[outCols[j]];
+                for (int k = 0; k < n; k++) {
+                    outputs[start+k][j] = col[k];
+                }
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Evaluates the model at many points, given column by column </p>
+     *
+     * <p> The register file used by {@link #cycle()} is not changed;
+     * constant values are taken from it. </p>
+     *
+     * @param inputs one array per input, in input vector order, each at
+     * least <code>numRows</code> long
+     * @param outputs one array per output, in output vector order, each
+     * at least <code>numRows</code> long, to receive the outputs
+     * @param numRows number of points to evaluate
+     * @throws DAVEException if array sizes do not agree with the model
+     *
+     **/
+
+    public void cycleColumns( double[][] inputs, double[][] outputs, int numRows )
+        throws DAVEException
+    {
+        final int[] inSlots  = this.program.inputSlots;
+        final int[] outSlots = this.program.outputSlots;
+        if (inputs.length != inSlots.length) {
+            throw new DAVEException("Found " + inputs.length + " input columns; model has "
+                    + inSlots.length + " inputs.");
+        }
+        if (outputs.length < outSlots.length) {
+            throw new DAVEException("Found " + outputs.length + " output columns; model has "
+                    + outSlots.length + " outputs.");
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].length < numRows) {
+                throw new DAVEException("Input column " + i + " is shorter than "
+                        + numRows + " rows.");
+            }
+        }
+        for (int j = 0; j < outSlots.length; j++) {
+            if (outputs[j].length < numRows) {
+                throw new DAVEException("Output column " + j + " is shorter than "
+                        + numRows + " rows.");
+            }
+        }
+
+        final double[][] c = this.getColumns();
+        final int[] inCols  = this.program.batchInputs;
+        final int[] outCols = this.program.batchOutputs;
+        for (int start = 0; start < numRows; start += BATCH_ROWS) {
+            final int n = Math.min(BATCH_ROWS, numRows - start);
+            for (int i = 0; i < inCols.length; i++) {
+                System.arraycopy(inputs[i], start, c[inCols[i]], 0, n);
+            }
+            this.program.executeBatch( this, c, n );
+            for (int j = 0; j < outCols.length; j++) {
+                System.arraycopy(c[outCols[j]], 0, outputs[j], start, n);
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns the batch columns, allocating them if needed </p>
+     *
+     **/
+
+    private double[][] getColumns()
+    {
+        if (this.columns == null) {
+            this.columns = new double[this.program.numBatchColumns][BATCH_ROWS];
+        }
+        return this.columns;
+    }
+}
@@ -17,8 +17,16 @@ package gov.nasa.daveml.dave;
  *
  **/
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -44,10 +52,22 @@ public class FuncTable
     ArrayList<String> bpIDs;
 
     /**
-     *  stored as Doubles
+     *  function values, row-major; null if mapped
      */
 
-    ArrayList<Double> functionValues;
+    double[] valueArray;
+
+    /**
+     *  function values, if mapped from a file
+     */
+
+    DoubleBuffer mappedValues;
+
+    /**
+     *  file holding mapped values, or null if on the heap
+     */
+
+    File mappedFile;
 
     /**
      *  dimensions of table
@@ -55,6 +75,12 @@ public class FuncTable
 
     int[] myDimensions;
 
+    /**
+     *  row-major strides of each dimension, built on first use
+     */
+
+    int[] myStrides;
+
     /**
      *  description of table
      */
@@ -97,6 +123,18 @@ public class FuncTable
     
     Namespace ns;
 
+    /**
+     *  most values a table file can hold (one mapping is limited to 2 GB)
+     */
+
+    static final int MAX_MAPPED_VALUES = Integer.MAX_VALUE/8;
+
+    /**
+     *  values written or hashed at a time
+     */
+
+    private static final int CHUNK_VALUES = 8192;
+
     /**
      *
      * <p> Common constructor </p>
@@ -108,8 +146,11 @@ public class FuncTable
         // Set up bpID array
         this.bpIDs = new ArrayList<String>(5);
 
-        this.functionValues = null;
+        this.valueArray = null;
+        this.mappedValues = null;
+        this.mappedFile = null;
         this.myDimensions = null;
+        this.myStrides = null;
         this.description = "No description available.";
         this.tableName = "No table name set.";
         this.gtID = "";
@@ -163,7 +204,7 @@ public class FuncTable
 
         // Parse down to and load table values
         Element table       = gtd.getChild("dataTable",this.ns);
-        this.functionValues = ParseText.toList(table.getTextTrim());
+        this.setValues( m.resolveValues(table.getTextTrim()) );
 
         // Parse and record breakpoint IDs; set # of dimensions
         this.parseBPIDsFromTableDef( gtd );
@@ -219,12 +260,7 @@ public class FuncTable
         this.description = description;
         this.myDimensions = new int [ ndim ];
         this.verbose = false;
-        try { // load values from text
-            this.functionValues = ParseText.toList( tableValues );
-        } catch (IOException e) {
-            System.err.println("Unable to load table " + this.tableName + "... aborting.");
-            System.exit(0);
-        }
+        this.setValues( m.resolveValues( tableValues ) );   // load values from text
 
         // Register with model
         m.register( this );
@@ -384,6 +420,7 @@ public class FuncTable
     {
         // Verify the number of dimensions
         this.myDimensions = new int[ bpIDs.size() ];
+        this.myStrides = null;
 
         // Find length of each breakpoint set
         int i = 0;
@@ -406,10 +443,13 @@ public class FuncTable
      **/
 
     public int size() { 
-        if (this.functionValues == null) {
+        if (this.mappedValues != null) {
+            return this.mappedValues.capacity();
+        }
+        if (this.valueArray == null) {
             return 0;
         }
-        return this.functionValues.size(); 
+        return this.valueArray.length; 
     }
 
 
@@ -449,11 +489,321 @@ public class FuncTable
 
     /**
      *
-     * Return the function values as an ArrayList
+     * <p> Stores table values </p>
+     *
+     * @param values function values, row-major
+     *
+     **/
+
+    private void setValues( double[] values )
+    {
+        this.valueArray = values;
+    }
+
+
+    /**
+     *
+     * Return the function values as a read-only list backed by our array
+     *
+     **/
+
+    public List<Double> getValues() {
+        if (this.mappedValues != null) {
+            return new DoubleListView( this.mappedValues );
+        }
+        if (this.valueArray == null) {
+            return null;
+        }
+        return new DoubleListView( this.valueArray );
+    }
+
+
+    /**
+     *
+     * <p> Return the function values as a primitive array, row-major
+     * (last dimension changes most rapidly); callers must not modify it.
+     * Returns null if the values have been mapped from a file; use
+     * <code>getValueBuffer()</code> then. </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public double[] getValueArray() { return this.valueArray; }
+
+
+    /**
+     *
+     * <p> Return the function values mapped from a file, row-major, as a
+     * read-only buffer; null if they are held on the heap. Use absolute
+     * <code>get(int)</code> only, as the buffer may be shared. </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public DoubleBuffer getValueBuffer() { return this.mappedValues; }
+
+
+    /**
+     *
+     * <p> Indicates if the function values are mapped from a file </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public boolean isMapped() { return this.mappedValues != null; }
+
+
+    /**
+     *
+     * <p> Returns the file holding mapped function values, or null </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public File getMappedFile() { return this.mappedFile; }
+
+
+    /**
+     *
+     * <p> Moves the function values off the heap, into a memory-mapped
+     * file in the given directory. </p>
+     *
+     * <p> The file holds the values as little-endian doubles and is named
+     * by a SHA-1 hash of them, so identical tables share one file, and
+     * an existing file is reused rather than written again once its
+     * contents have been checked against its name (a file that fails the
+     * check is replaced). Any number of processes mapping the same file
+     * share one page-cached copy. The file must not be changed or
+     * deleted while in use. Does nothing if the values are already
+     * mapped. </p>
+     *
+     * @param dir directory to keep table files in (created if need be)
+     * @throws IOException if the file cannot be written or mapped
+     * @since 0.9.8
+     *
+     **/
+
+    public void mapValues( File dir ) throws IOException
+    {
+        if (this.mappedValues != null || this.valueArray == null) {
+            return;
+        }
+        int count = this.valueArray.length;
+        if (count > MAX_MAPPED_VALUES) {
+            throw new IOException("Table '" + this.tableName + "' has " + count
+                    + " values; no more than " + MAX_MAPPED_VALUES + " can be mapped.");
+        }
+
+        MessageDigest sha = ModelCache.sha1();
+        this.writeValues( null, sha );
+        File f = new File( dir, ModelCache.hex( sha.digest() ) + ".tbl" );
+
+        DoubleBuffer values = null;
+        if (f.isFile()) {
+            try {
+                values = mapFile( f, count );
+            } catch (IOException e) {
+                if (this.verbose) {
+                    System.out.println(e.getMessage() + " Replacing it.");
+                }
+            }
+        }
+
+        if (values == null) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create table directory '" + dir + "'.");
+            }
+            File tmp = File.createTempFile( "table", ".tmp", dir );
+            try {
+                FileOutputStream out = new FileOutputStream( tmp );
+                try {
+                    this.writeValues( out.getChannel(), null );
+                } finally {
+                    out.close();
+                }
+                f.delete();     // renameTo() won't replace on all platforms
+                if (!tmp.renameTo( f )) {
+                    throw new IOException("Unable to rename '" + tmp + "' to '" + f + "'.");
+                }
+            } finally {
+                tmp.delete();
+            }
+            values = mapFile( f, count );
+        }
+
+        this.mappedValues = values;
+        this.mappedFile = f;
+        this.valueArray = null;
+        if (this.verbose) {
+            System.out.println("Mapped table '" + this.tableName + "' from file '" + f + "'.");
+        }
+    }
+
+
+    /**
+     *
+     * <p> Streams the function values, as little-endian doubles, a chunk
+     * at a time to a channel, a digest, or both </p>
+     *
+     * @param ch channel to write to, or null
+     * @param sha digest to update, or null
+     *
+     **/
+
+    private void writeValues( FileChannel ch, MessageDigest sha ) throws IOException
+    {
+        int count = this.valueArray.length;
+        ByteBuffer chunk = ByteBuffer.allocate( 8*Math.min( count, CHUNK_VALUES ) );
+        DoubleBuffer doubles = chunk.order( ByteOrder.LITTLE_ENDIAN ).asDoubleBuffer();
+        for (int i = 0; i < count; i += CHUNK_VALUES) {
+            int len = Math.min( count - i, CHUNK_VALUES );
+            doubles.clear();
+            doubles.put( this.valueArray, i, len );
+            chunk.clear();
+            chunk.limit( 8*len );
+            if (sha != null) {
+                sha.update( chunk.array(), 0, 8*len );
+            }
+            while (ch != null && chunk.hasRemaining()) {
+                ch.write( chunk );
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Maps a file of little-endian doubles, read-only, after checking
+     * that its contents hash to its name </p>
+     *
+     * @param f file to map
+     * @param count number of values it must hold
+     * @throws IOException if the file cannot be mapped, is the wrong
+     *         size or does not match its name
+     *
+     **/
+
+    static DoubleBuffer mapFile( File f, int count ) throws IOException
+    {
+        FileInputStream in = new FileInputStream( f );
+        try {
+            FileChannel ch = in.getChannel();
+            if (ch.size() != 8L*count) {
+                throw new IOException("Table file '" + f + "' holds "
+                        + ch.size()/8 + " values instead of " + count + ".");
+            }
+            ByteBuffer bytes = ch.map( FileChannel.MapMode.READ_ONLY, 0, ch.size() );
+            MessageDigest sha = ModelCache.sha1();
+            sha.update( bytes.duplicate() );
+            if (!(ModelCache.hex( sha.digest() ) + ".tbl").equals( f.getName() )) {
+                throw new IOException("Table file '" + f + "' does not match its name.");
+            }
+            return bytes.order( ByteOrder.LITTLE_ENDIAN ).asDoubleBuffer();
+        } finally {
+            in.close();     // the mapping stays valid
+        }
+    }
+
+
+    /**
+     *
+     * <p> Writes this table to a cache entry (see {@link ModelCache}).
+     * A mapped table is written as the name of its file; otherwise the
+     * values are written in full. </p>
+     *
+     * @since 0.9.8
      *
      **/
 
-    public ArrayList<Double> getValues() { return this.functionValues; }
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        out.writeStrings( this.bpIDs );
+        out.writeInts( this.myDimensions );
+        out.writeString( this.description );
+        out.writeString( this.tableName );
+        out.writeString( this.gtID );
+        out.writeBoolean( this.verbose );
+        out.writeBlocks( this.users );
+        if (this.mappedFile != null) {
+            out.writeBoolean( true );
+            out.writeString( this.mappedFile.getPath() );
+        } else {
+            out.writeBoolean( false );
+            out.writeDoubles( this.valueArray );
+        }
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code>, mapping
+     * the table's file again if it had one </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        this.bpIDs = in.readStrings();
+        this.myDimensions = in.readInts();
+        this.description = in.readString();
+        this.tableName = in.readString();
+        this.gtID = in.readString();
+        this.verbose = in.readBoolean();
+        this.users = in.readBlocks();
+        if (this.bpIDs == null || this.myDimensions == null || this.users == null) {
+            throw new IOException("Incomplete table in cache entry.");
+        }
+        if (in.readBoolean()) {
+            long count = 1;
+            for (int i = 0; i < this.myDimensions.length; i++) {
+                count *= this.myDimensions[i];
+                if (count < 0 || count > MAX_MAPPED_VALUES) {
+                    throw new IOException("Bad table size in cache entry.");
+                }
+            }
+            this.mappedFile = new File( in.readString() );
+            this.mappedValues = mapFile( this.mappedFile, (int) count );
+        } else {
+            this.valueArray = in.readDoubles();
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns the function value at a row-major offset </p>
+     *
+     **/
+
+    double valueAt( int offset )
+    {
+        if (this.mappedValues != null) {
+            return this.mappedValues.get( offset );
+        }
+        return this.valueArray[offset];
+    }
+
+
+    /**
+     *
+     * <p> Return the row-major stride of each dimension </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public int[] getStrides() {
+        if (this.myStrides == null && this.myDimensions != null) {
+            this.myStrides = Interpolator.strides( this.myDimensions );
+        }
+        return this.myStrides;
+    }
 
 
     /** 
@@ -464,7 +814,7 @@ public class FuncTable
      *
      **/
 
-    protected int printTable( Writer writer, ArrayList<Double> table, int[] dims, int startIndex)
+    protected int printTable( Writer writer, double[] table, int[] dims, int startIndex)
         throws IOException
     {
         int offset;
@@ -482,8 +832,7 @@ public class FuncTable
                 return 0;
             case 1:
                 for ( i = 0; i < dims[0]; i++) {
-                        Double theValue = table.get(i+startIndex);
-                        String valueStr = form.format( theValue );
+                        String valueStr = form.format( table[i+startIndex] );
                         writer.write( valueStr );
                         if( i < dims[0]-1) {
                             writer.write(", ");
@@ -532,7 +881,12 @@ public class FuncTable
     public void printTable( Writer writer )
         throws IOException
     {
-        printTable(writer, this.functionValues, this.myDimensions, 0);
+        double[] values = this.valueArray;
+        if (values == null && this.mappedValues != null) {
+            values = new double[this.mappedValues.capacity()];
+            this.mappedValues.duplicate().get( values );    // listing only
+        }
+        printTable(writer, values, this.myDimensions, 0);
     }
 
 
@@ -569,8 +923,7 @@ public class FuncTable
                 System.out.println("   getPt: offset " + offset + " mult " + mult);
             }
         }
-        Double value = functionValues.get(offset);
-        double val = value.doubleValue();
+        double val = this.valueAt(offset);
         if (verbose) {
             System.out.println("  returned value " + val);
         }
@@ -0,0 +1,367 @@
+// Interpolator
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.nio.DoubleBuffer;
+
+/**
+ *
+ * <p> Multi-linear interpolation kernel for gridded function tables </p>
+ *
+ * <p> Tables are flat <code>double[]</code> arrays in row-major order
+ * (last dimension changes most rapidly) with precomputed strides. Each
+ * independent variable is supplied as an index-and-weight value, as
+ * produced by {@link BlockBP}: the integer part selects the lower
+ * breakpoint and the fractional part is the interpolation weight. </p>
+ *
+ * <p> Tables of one to four dimensions are handled by unrolled code;
+ * higher-dimension tables gather the corners of the enclosing hypercube
+ * into a caller-supplied scratch array and reduce them one dimension at
+ * a time. Tables held in a <code>DoubleBuffer</code> (see
+ * {@link FuncTable#mapValues(java.io.File)}) always go the latter way.
+ * No method allocates memory. In all cases the arithmetic is
+ * performed in the same order as the original recursive algorithm: the
+ * last dimension is interpolated first. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public final class Interpolator
+{
+    /**
+     *  highest dimension handled without scratch space
+     */
+
+    public static final int MAX_UNROLLED_DIM = 4;
+
+
+    /**
+     *
+     * <p> Not instantiable </p>
+     *
+     **/
+
+    private Interpolator() {}
+
+
+    /**
+     *
+     * <p> Returns row-major strides for a table of the given dimensions </p>
+     *
+     * @param dims length of each dimension
+     *
+     **/
+
+    public static int[] strides( int[] dims )
+    {
+        int[] result = new int[dims.length];
+        int stride = 1;
+        for (int d = dims.length-1; d >= 0; d--) {
+            result[d] = stride;
+            stride *= dims[d];
+        }
+        return result;
+    }
+
+
+    /**
+     *
+     * <p> Returns size of scratch array needed to interpolate a table of
+     * <code>nDim</code> dimensions (zero if none is needed) </p>
+     *
+     **/
+
+    public static int scratchSize( int nDim )
+    {
+        return (nDim > MAX_UNROLLED_DIM) ? (1 << nDim) : 0;
+    }
+
+
+    /**
+     *
+     * <p> Returns size of scratch array needed to interpolate a table of
+     * <code>nDim</code> dimensions held in a buffer </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public static int bufferScratchSize( int nDim )
+    {
+        return 1 << nDim;
+    }
+
+
+    /**
+     *
+     * <p> Interpolates a table at the given index-and-weight values </p>
+     *
+     * @param values table data, row-major
+     * @param dims length of each dimension
+     * @param strides stride of each dimension, from {@link #strides(int[])}
+     * @param iw index-and-weight value for each dimension
+     * @param scratch work array of at least {@link #scratchSize(int)}
+     * elements; may be null for tables of four or fewer dimensions
+     * @return interpolated value
+     *
+     **/
+
+    public static double interpolate( double[] values, int[] dims, int[] strides,
+                                      double[] iw, double[] scratch )
+    {
+        switch (dims.length) {
+        case 1:
+            return interpolate1(values, dims, iw);
+        case 2:
+            return interpolate2(values, dims, strides, iw);
+        case 3:
+            return interpolate3(values, dims, strides, iw);
+        case 4:
+            return interpolate4(values, dims, strides, iw);
+        default:
+            return interpolateN(values, dims, strides, iw, scratch);
+        }
+    }
+
+
+    /**
+     *
+     * <p> Interpolates a table held in a buffer, such as a memory-mapped
+     * file. Only absolute <code>get()</code>s are used, so the buffer's
+     * position is left alone and it may be shared between threads. </p>
+     *
+     * @param values table data, row-major
+     * @param dims length of each dimension
+     * @param strides stride of each dimension, from {@link #strides(int[])}
+     * @param iw index-and-weight value for each dimension
+     * @param scratch work array of at least {@link #bufferScratchSize(int)}
+     * elements
+     * @return interpolated value
+     *
+     **/
+
+    public static double interpolate( DoubleBuffer values, int[] dims, int[] strides,
+                                      double[] iw, double[] scratch )
+    {
+        final int base = lowerCorner(dims, strides, iw);
+        final int numCorners = 1 << dims.length;
+        for (int corner = 0; corner < numCorners; corner++) {
+            scratch[corner] = values.get(cornerOffset(base, corner, dims, strides));
+        }
+        return reduce(dims, iw, scratch);
+    }
+
+
+    /**
+     *
+     * <p> Linear interpolation between two points </p>
+     *
+     **/
+
+    private static double lerp( double a, double b, double w )
+    {
+        return a + (b-a)*w;
+    }
+
+
+    /**
+     *
+     * <p> Returns lower index for dimension with given length; an index
+     * at the last breakpoint is moved down one so the upper corner stays
+     * inside the table </p>
+     *
+     **/
+
+    private static int lowerIndex( double iw, int dim )
+    {
+        int index = (int) iw;
+        if (index >= dim-1) {
+            index = dim-2;
+        }
+        return (index < 0) ? 0 : index;
+    }
+
+
+    /**
+     *
+     * <p> Returns weight to go with <code>lowerIndex()</code> </p>
+     *
+     **/
+
+    private static double weight( double iw, int index, int dim )
+    {
+        if (dim < 2) {
+            return 0.0;
+        }
+        if ((int) iw >= dim-1) {
+            return 1.0;
+        }
+        return iw - index;
+    }
+
+
+    /**
+     *
+     * <p> Returns offset to upper corner along one dimension; zero for
+     * degenerate, single-point dimensions </p>
+     *
+     **/
+
+    private static int step( int stride, int dim )
+    {
+        return (dim > 1) ? stride : 0;
+    }
+
+
+    private static double interpolate1( double[] v, int[] dims, double[] iw )
+    {
+        int i0 = lowerIndex(iw[0], dims[0]);
+        double w0 = weight(iw[0], i0, dims[0]);
+        int s0 = step(1, dims[0]);
+        return lerp(v[i0], v[i0+s0], w0);
+    }
+
+
+    private static double interpolate2( double[] v, int[] dims, int[] strides, double[] iw )
+    {
+        int i0 = lowerIndex(iw[0], dims[0]);
+        int i1 = lowerIndex(iw[1], dims[1]);
+        double w0 = weight(iw[0], i0, dims[0]);
+        double w1 = weight(iw[1], i1, dims[1]);
+        int s0 = step(strides[0], dims[0]);
+        int s1 = step(strides[1], dims[1]);
+
+        int p = i0*strides[0] + i1*strides[1];
+        double lo = lerp(v[p],    v[p+s1],    w1);
+        double hi = lerp(v[p+s0], v[p+s0+s1], w1);
+        return lerp(lo, hi, w0);
+    }
+
+
+    private static double interpolate3( double[] v, int[] dims, int[] strides, double[] iw )
+    {
+        int i0 = lowerIndex(iw[0], dims[0]);
+        int i1 = lowerIndex(iw[1], dims[1]);
+        int i2 = lowerIndex(iw[2], dims[2]);
+        double w0 = weight(iw[0], i0, dims[0]);
+        double w1 = weight(iw[1], i1, dims[1]);
+        double w2 = weight(iw[2], i2, dims[2]);
+        int s0 = step(strides[0], dims[0]);
+        int s1 = step(strides[1], dims[1]);
+        int s2 = step(strides[2], dims[2]);
+
+        int p = i0*strides[0] + i1*strides[1] + i2*strides[2];
+        int q = p + s0;
+        double lo = lerp(lerp(v[p],    v[p+s2],    w2),
+                         lerp(v[p+s1], v[p+s1+s2], w2), w1);
+        double hi = lerp(lerp(v[q],    v[q+s2],    w2),
+                         lerp(v[q+s1], v[q+s1+s2], w2), w1);
+        return lerp(lo, hi, w0);
+    }
+
+
+    private static double interpolate4( double[] v, int[] dims, int[] strides, double[] iw )
+    {
+        int i0 = lowerIndex(iw[0], dims[0]);
+        int i1 = lowerIndex(iw[1], dims[1]);
+        int i2 = lowerIndex(iw[2], dims[2]);
+        int i3 = lowerIndex(iw[3], dims[3]);
+        double w0 = weight(iw[0], i0, dims[0]);
+        double w1 = weight(iw[1], i1, dims[1]);
+        double w2 = weight(iw[2], i2, dims[2]);
+        double w3 = weight(iw[3], i3, dims[3]);
+        int s0 = step(strides[0], dims[0]);
+        int s1 = step(strides[1], dims[1]);
+        int s2 = step(strides[2], dims[2]);
+        int s3 = step(strides[3], dims[3]);
+
+        int p = i0*strides[0] + i1*strides[1] + i2*strides[2] + i3*strides[3];
+        int q = p + s0;
+        double lo = lerp(lerp(lerp(v[p],       v[p+s3],       w3),
+                              lerp(v[p+s2],    v[p+s2+s3],    w3), w2),
+                         lerp(lerp(v[p+s1],    v[p+s1+s3],    w3),
+                              lerp(v[p+s1+s2], v[p+s1+s2+s3], w3), w2), w1);
+        double hi = lerp(lerp(lerp(v[q],       v[q+s3],       w3),
+                              lerp(v[q+s2],    v[q+s2+s3],    w3), w2),
+                         lerp(lerp(v[q+s1],    v[q+s1+s3],    w3),
+                              lerp(v[q+s1+s2], v[q+s1+s2+s3], w3), w2), w1);
+        return lerp(lo, hi, w0);
+    }
+
+
+    private static double interpolateN( double[] v, int[] dims, int[] strides,
+                                        double[] iw, double[] c )
+    {
+        final int base = lowerCorner(dims, strides, iw);
+        final int numCorners = 1 << dims.length;
+        for (int corner = 0; corner < numCorners; corner++) {
+            c[corner] = v[cornerOffset(base, corner, dims, strides)];
+        }
+        return reduce(dims, iw, c);
+    }
+
+
+    /**
+     *
+     * <p> Returns offset of lower corner of enclosing hypercube </p>
+     *
+     **/
+
+    private static int lowerCorner( int[] dims, int[] strides, double[] iw )
+    {
+        int base = 0;
+        for (int d = 0; d < dims.length; d++) {
+            base += lowerIndex(iw[d], dims[d])*strides[d];
+        }
+        return base;
+    }
+
+
+    /**
+     *
+     * <p> Returns offset of a corner of the enclosing hypercube; bit k
+     * of corner number selects upper index of dim nDim-1-k </p>
+     *
+     **/
+
+    private static int cornerOffset( int base, int corner, int[] dims, int[] strides )
+    {
+        final int nDim = dims.length;
+        int offset = base;
+        for (int k = 0; k < nDim; k++) {
+            if ((corner & (1 << k)) != 0) {
+                offset += step(strides[nDim-1-k], dims[nDim-1-k]);
+            }
+        }
+        return offset;
+    }
+
+
+    /**
+     *
+     * <p> Reduces gathered corner values, last dimension first </p>
+     *
+     **/
+
+    private static double reduce( int[] dims, double[] iw, double[] c )
+    {
+        final int nDim = dims.length;
+        int numCorners = 1 << nDim;
+        for (int d = nDim-1; d >= 0; d--) {
+            double w = weight(iw[d], lowerIndex(iw[d], dims[d]), dims[d]);
+            numCorners = numCorners >> 1;
+            for (int j = 0; j < numCorners; j++) {
+                c[j] = lerp(c[2*j], c[2*j+1], w);
+            }
+        }
+        return c[0];
+    }
+}
@@ -0,0 +1,122 @@
+// JfrPhaseEvents
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *
+ * <p> Records {@link PhaseEvents} with the JDK Flight Recorder </p>
+ *
+ * <p> Only loaded (by {@link PhaseEvents#RECORDER}) when the running
+ * JVM provides <code>jdk.jfr</code>. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+class JfrPhaseEvents extends PhaseEvents
+{
+    /**
+     *  fields common to every phase event
+     */
+
+    @Category("DAVEtools")
+    abstract static class PhaseEvent extends Event
+    {
+        @Label("Model")
+        String model;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Blocks")
+        int blocks;
+
+        @Label("Tables")
+        int tables;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("gov.nasa.daveml.Load")
+    @Label("Model Load")
+    @Description("Reading (and validating, if possible) a DAVE-ML file")
+    static class Load extends PhaseEvent { }
+
+    @Name("gov.nasa.daveml.Parse")
+    @Label("Model Parse")
+    @Description("Building signals, tables, breakpoint sets or functions from definitions")
+    static class Parse extends PhaseEvent { }
+
+    @Name("gov.nasa.daveml.Wire")
+    @Label("Model Wire")
+    @Description("Connecting blocks to signals and creating I/O blocks")
+    static class Wire extends PhaseEvent { }
+
+    @Name("gov.nasa.daveml.Sort")
+    @Label("Model Sort")
+    @Description("Initializing a model and establishing its execution order")
+    static class Sort extends PhaseEvent { }
+
+    @Name("gov.nasa.daveml.Verify")
+    @Label("Model Verify")
+    @Description("Checking a model against its embedded checkcases")
+    static class Verify extends PhaseEvent { }
+
+    @Name("gov.nasa.daveml.Cycle")
+    @Label("Model Cycle")
+    @Description("One sampled evaluation of a model")
+    static class Cycle extends PhaseEvent { }
+
+
+    Object begin( int kind )
+    {
+        PhaseEvent event;
+        switch (kind) {
+            case LOAD:   event = new Load();   break;
+            case PARSE:  event = new Parse();  break;
+            case WIRE:   event = new Wire();   break;
+            case SORT:   event = new Sort();   break;
+            case VERIFY: event = new Verify(); break;
+            default:     event = new Cycle();  break;
+        }
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+
+    void end( Object event, String phase, Model m, long bytes )
+    {
+        if (event == null) {
+            return;
+        }
+        PhaseEvent e = (PhaseEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.phase  = phase;
+            e.model  = m.getName();
+            e.blocks = m.getNumBlocks();
+            e.tables = m.getNumTables();
+            e.bytes  = bytes < 0 ? tableBytes(m) : bytes;
+            e.commit();
+        }
+    }
+}
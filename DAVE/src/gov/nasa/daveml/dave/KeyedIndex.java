@@ -0,0 +1,205 @@
+// KeyedIndex
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ *
+ * <p> Hashed lookup by string key (varID, name) into one of a
+ * <code>Model</code>'s lists </p>
+ *
+ * <p> Returns the same object a linear search of the list would: the
+ * earliest-added member whose key matches. Members must be registered with
+ * {@link #add} in the same order they are appended to the list, and
+ * {@link #rekey} must be called whenever a member's key changes. Keys
+ * shared by more than one member are remembered so that renaming the
+ * indexed one can fall back to the next match. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+abstract class KeyedIndex<T>
+{
+    /**
+     *  list being indexed, in model order
+     */
+
+    private final List<T> list;
+
+    /**
+     *  earliest member for each key
+     */
+
+    private final HashMap<String, T> first;
+
+    /**
+     *  keys that have been held by more than one member
+     */
+
+    private final HashSet<String> shared;
+
+    /**
+     *  order in which each member was added
+     */
+
+    private final IdentityHashMap<T, Integer> order;
+
+    /**
+     *  sequence number for next member added
+     */
+
+    private int nextOrder;
+
+
+    /**
+     *
+     * <p> Creates an empty index for the given list </p>
+     *
+     * @param list list whose members will be indexed
+     *
+     **/
+
+    KeyedIndex( List<T> list )
+    {
+        this.list   = list;
+        this.first  = new HashMap<String, T>();
+        this.shared = new HashSet<String>();
+        this.order  = new IdentityHashMap<T, Integer>();
+        this.nextOrder = 0;
+    }
+
+
+    /**
+     *
+     * <p> Returns current key of a member, or null if it has none </p>
+     *
+     **/
+
+    abstract String keyOf( T item );
+
+
+    /**
+     *
+     * <p> Records a member just appended to the list </p>
+     *
+     **/
+
+    void add( T item )
+    {
+        this.order.put( item, this.nextOrder++ );
+        this.put( item );
+    }
+
+
+    /**
+     *
+     * <p> Returns earliest member with the given key, or null </p>
+     *
+     **/
+
+    T get( String key )
+    {
+        if (key == null) {
+            return null;
+        }
+        return this.first.get( key );
+    }
+
+
+    /**
+     *
+     * <p> Updates the index after a member's key has changed. Objects
+     * that are not members are ignored. </p>
+     *
+     * @param item member that has been renamed
+     * @param oldKey key it was indexed under before
+     *
+     **/
+
+    void rekey( T item, String oldKey )
+    {
+        if (!this.order.containsKey( item )) {
+            return;
+        }
+        if (oldKey != null && this.first.get( oldKey ) == item) {
+            this.first.remove( oldKey );
+            if (this.shared.contains( oldKey )) {
+                // rare: find next member with the same key
+                for (T other : this.list) {
+                    if (other != item && oldKey.equals( this.keyOf( other ) )) {
+                        this.first.put( oldKey, other );
+                        break;
+                    }
+                }
+            }
+        }
+        this.put( item );
+    }
+
+
+    /**
+     *
+     * <p> Forgets a member that has been taken out of the list. If it was
+     * the indexed member for its key, the next remaining match (if any)
+     * takes its place. </p>
+     *
+     * @param item member already removed from the list
+     *
+     **/
+
+    void remove( T item )
+    {
+        if (this.order.remove( item ) == null) {
+            return;
+        }
+        String key = this.keyOf( item );
+        if (key != null && this.first.get( key ) == item) {
+            this.first.remove( key );
+            if (this.shared.contains( key )) {
+                for (T other : this.list) {
+                    if (other != item && key.equals( this.keyOf( other ) )) {
+                        this.first.put( key, other );
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Indexes a member under its current key, unless an earlier
+     * member already has that key </p>
+     *
+     **/
+
+    private void put( T item )
+    {
+        String key = this.keyOf( item );
+        if (key == null) {
+            return;
+        }
+        T existing = this.first.get( key );
+        if (existing == null) {
+            this.first.put( key, item );
+        } else if (existing != item) {
+            this.shared.add( key );
+            if (this.order.get( item ) < this.order.get( existing )) {
+                this.first.put( key, item );
+            }
+        }
+    }
+}
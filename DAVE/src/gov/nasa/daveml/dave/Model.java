@@ -9,14 +9,22 @@
 
 package gov.nasa.daveml.dave;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  *
@@ -64,6 +72,24 @@ public class Model
 
     Map<String, BlockBP> bpBlocks;
 
+    /**
+     *  numeric arrays parsed while loading, keyed by reference string
+     */
+
+    HashMap<String, double[]> loadedValues;
+
+    /**
+     *  hashed lookup of signals by varID
+     */
+
+    KeyedIndex<Signal> signalIndex;
+
+    /**
+     *  hashed lookup of blocks by name
+     */
+
+    KeyedIndex<Block> blockIndex;
+
     /**
      *  blocks in order of execution
      */
@@ -123,6 +149,94 @@ public class Model
      */
     
     int codeDialect;
+
+    /**
+     *  compiled form of execution order (if null, blocks are interpreted)
+     */
+
+    CompiledModel compiled;
+
+    /**
+     *  evaluation state used by our own compiled <code>cycle()</code>
+     */
+
+    EvaluationContext context;
+
+    /**
+     *  if true, <code>cycle()</code> updates only selected blocks
+     */
+
+    boolean selectiveEvaluation;
+
+    /**
+     *  selected blocks in execution order; null until needed
+     */
+
+    BlockArrayList selectedSchedule;
+
+    /**
+     *  compiled program for selected blocks only; null until needed
+     */
+
+    CompiledModel selectedProgram;
+
+    /**
+     *  if true, <code>cycle()</code> updates only blocks downstream of
+     *  changed inputs
+     */
+
+    boolean incrementalEvaluation;
+
+    /**
+     *  flags, by execution order position, of blocks needing update;
+     *  null means every block does
+     */
+
+    boolean[] dirty;
+
+    /**
+     *  position of each block in execution order; null until needed
+     */
+
+    IdentityHashMap<Block,Integer> orderPosition;
+
+    /**
+     *  compiled program for last set of dirty blocks, and that set
+     */
+
+    CompiledModel incrementalProgram;
+    boolean[] incrementalKeep;
+
+    /**
+     *  if true, <code>cycle()</code> times each block's update
+     */
+
+    boolean profiling;
+
+    /**
+     *  block timings; null until first profiled cycle
+     */
+
+    ModelProfiler profiler;
+
+    /**
+     *  cycles since last recorded in a Flight Recorder event
+     */
+
+    int unrecordedCycles;
+
+    /**
+     *  JMX counters; null unless registered
+     */
+
+    ModelMonitor monitor;
+
+    /**
+     *  server and name we're registered under
+     */
+
+    MBeanServer mbeanServer;
+    ObjectName mbeanName;
     
     /**
      * Code generation dialects
@@ -131,6 +245,12 @@ public class Model
     public static final int DT_FORTRAN = 0;
     public static final int DT_ANSI_C  = 1;
 
+    /**
+     * prefix of references to arrays parsed by the streaming loader
+     */
+
+    static final String LOADED_VALUES_PREFIX = "#loaded-values:";
+
     /**
      * private return codes
      */
@@ -158,7 +278,9 @@ public class Model
     {
 	this.signals = new SignalArrayList(numSignals);
 	this.blocks  = new  BlockArrayList(numBlocks );
+	this.createIndexes();
 	this.breakpointSets = new HashMap<String, BreakpointSet>();
+	this.loadedValues = new HashMap<String, double[]>();
 	this.tables = new HashMap<String, FuncTable>();
 	this.bpBlocks = new HashMap<String, BlockBP>();
 	this.executeOrder = new BlockArrayList(numBlocks);
@@ -167,6 +289,16 @@ public class Model
 	this.initialized = false;
 	this.verbose = false;
 	this.cycleCounter = 0;
+	this.compiled = null;
+	this.context = null;
+	this.selectiveEvaluation = false;
+	this.selectedSchedule = null;
+	this.selectedProgram = null;
+	this.incrementalEvaluation = false;
+	this.dirty = null;
+	this.orderPosition = null;
+	this.incrementalProgram = null;
+	this.incrementalKeep = null;
 	this.ourName = "untitled";
         this.codeDialect = DT_ANSI_C;
         this.dataFormat = defaultDataFormat;
@@ -184,6 +316,139 @@ public class Model
 	this(20, 20);
     }
 
+
+    /**
+     *
+     * <p> Creates the varID and name lookups, indexing any signals and
+     * blocks already present </p>
+     *
+     **/
+
+    private void createIndexes()
+    {
+	this.signalIndex = new KeyedIndex<Signal>(this.signals) {
+		String keyOf( Signal s ) { return s.getVarID(); }
+	    };
+	this.blockIndex = new KeyedIndex<Block>(this.blocks) {
+		String keyOf( Block b ) { return b.getName(); }
+	    };
+	Iterator<Signal> sigs = this.signals.iterator();
+	while (sigs.hasNext()) {
+	    this.signalIndex.add( sigs.next() );
+	}
+	Iterator<Block> blks = this.blocks.iterator();
+	while (blks.hasNext()) {
+	    this.blockIndex.add( blks.next() );
+	}
+    }
+
+
+    /**
+     *
+     * <p> Writes this model's own fields to a cache entry (see
+     * {@link ModelCache}); blocks, signals, tables and breakpoint sets
+     * are written separately and referred to by index </p>
+     *
+     **/
+
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        out.writeString( this.ourName );
+        out.writeSignals( this.signals );
+        out.writeBlocks( this.blocks );
+        out.writeInt( this.breakpointSets.size() );
+        Iterator<Map.Entry<String,BreakpointSet>> bpit = this.breakpointSets.entrySet().iterator();
+        while (bpit.hasNext()) {
+            Map.Entry<String,BreakpointSet> e = bpit.next();
+            out.writeString( e.getKey() );
+            out.writeBreakpointSet( e.getValue() );
+        }
+        out.writeInt( this.tables.size() );
+        Iterator<Map.Entry<String,FuncTable>> ftit = this.tables.entrySet().iterator();
+        while (ftit.hasNext()) {
+            Map.Entry<String,FuncTable> e = ftit.next();
+            out.writeString( e.getKey() );
+            out.writeTable( e.getValue() );
+        }
+        out.writeInt( this.bpBlocks.size() );
+        Iterator<Map.Entry<String,BlockBP>> bbit = this.bpBlocks.entrySet().iterator();
+        while (bbit.hasNext()) {
+            Map.Entry<String,BlockBP> e = bbit.next();
+            out.writeString( e.getKey() );
+            out.writeBlock( e.getValue() );
+        }
+        out.writeInt( this.loadedValues.size() );
+        Iterator<Map.Entry<String,double[]>> lvit = this.loadedValues.entrySet().iterator();
+        while (lvit.hasNext()) {
+            Map.Entry<String,double[]> e = lvit.next();
+            out.writeString( e.getKey() );
+            out.writeDoubles( e.getValue() );
+        }
+        out.writeBlocks( this.executeOrder );
+        out.writeBlocks( this.inputBlocks );
+        out.writeBlocks( this.outputBlocks );
+        out.writeVectorInfos( this.inputVec );
+        out.writeVectorInfos( this.outputVec );
+        out.writeString( this.dataFormat );
+        out.writeBoolean( this.initialized );
+        out.writeBoolean( this.verbose );
+        out.writeInt( this.cycleCounter );
+        out.writeInt( this.codeDialect );
+        out.writeBoolean( this.selectiveEvaluation );
+        out.writeBoolean( this.incrementalEvaluation );
+        out.writeBoolean( this.profiling );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code>; lookup
+     * indexes are rebuilt rather than stored, and the model is
+     * interpreted until compiled again </p>
+     *
+     **/
+
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        this.ourName = in.readString();
+        this.signals = in.readSignals();
+        this.blocks = in.readBlocks();
+        for (int i = in.readInt(); i > 0; i--) {
+            String key = in.readString();
+            this.breakpointSets.put( key, in.readBreakpointSet() );
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String key = in.readString();
+            this.tables.put( key, in.readTable() );
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String key = in.readString();
+            this.bpBlocks.put( key, (BlockBP) in.readBlock() );
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String key = in.readString();
+            this.loadedValues.put( key, in.readDoubles() );
+        }
+        this.executeOrder = in.readBlocks();
+        this.inputBlocks = in.readBlocks();
+        this.outputBlocks = in.readBlocks();
+        this.inputVec = in.readVectorInfos();
+        this.outputVec = in.readVectorInfos();
+        this.dataFormat = in.readString();
+        this.initialized = in.readBoolean();
+        this.verbose = in.readBoolean();
+        this.cycleCounter = in.readInt();
+        this.codeDialect = in.readInt();
+        this.selectiveEvaluation = in.readBoolean();
+        this.incrementalEvaluation = in.readBoolean();
+        this.profiling = in.readBoolean();
+        if (this.signals == null || this.blocks == null || this.executeOrder == null
+                || this.inputBlocks == null || this.outputBlocks == null) {
+            throw new IOException("Incomplete model in cache entry.");
+        }
+        this.createIndexes();
+    }
+
     /**
      *
      * <p> Sets name of this <code>Model</code> </p>
@@ -303,6 +568,309 @@ public class Model
         }
     }
     
+    /**
+     *
+     * <p> Sets whether <code>cycle()</code> evaluates only the selected
+     * blocks. </p>
+     *
+     * <p> Once <code>clearSelections()</code> and
+     * <code>selectOutputByName()</code> have picked the outputs of
+     * interest, turning this on makes each cycle update just the blocks
+     * feeding those outputs; other outputs keep their previous values.
+     * The reduced schedule is worked out on the next cycle and reused
+     * until the selection changes. With every block selected (the
+     * default) the result is the same as a full cycle. </p>
+     *
+     * @param selective true to evaluate only selected blocks
+     * @since 0.9.8
+     *
+     **/
+
+    public void setSelectiveEvaluation( boolean selective ) {
+        this.selectiveEvaluation = selective;
+    }
+
+    /**
+     * Indicates if <code>cycle()</code> evaluates only selected blocks
+     * @since 0.9.8
+     */
+
+    public boolean isSelectiveEvaluation() { return this.selectiveEvaluation; }
+
+    /**
+     *
+     * <p> Discards the cached selective-evaluation schedule; called
+     * whenever a block's selection or the execution order changes </p>
+     *
+     **/
+
+    void selectionChanged() {
+        this.selectedSchedule = null;
+        this.selectedProgram = null;
+    }
+
+
+    /**
+     *
+     * <p> Sets whether <code>cycle()</code> updates only the blocks
+     * affected by inputs that changed since the previous cycle. </p>
+     *
+     * <p> With this on, an input whose value differs from the last one
+     * given marks every block downstream of it (found by following
+     * {@link Signal#getDestBlocks()}) as needing update; the next cycle
+     * updates just those blocks, in execution order, and the rest keep
+     * their previous results. This pays off when most inputs, such as
+     * configuration or geometry settings, seldom change. The first
+     * cycle after turning it on updates every block. </p>
+     *
+     * <p> Only input blocks, and constants changed through
+     * <code>BlockMathConstant.setValue()</code>, are tracked; after
+     * changing a model any other way, call <code>markAllDirty()</code>
+     * before the next cycle. </p>
+     *
+     * @param incremental true to update only blocks affected by changed
+     * inputs
+     * @since 0.9.8
+     *
+     **/
+
+    public void setIncrementalEvaluation( boolean incremental ) {
+        this.incrementalEvaluation = incremental;
+        this.markAllDirty();
+    }
+
+    /**
+     * Indicates if <code>cycle()</code> updates only blocks affected by
+     * changed inputs
+     * @since 0.9.8
+     */
+
+    public boolean isIncrementalEvaluation() { return this.incrementalEvaluation; }
+
+
+    /**
+     *
+     * <p> Turns per-block profiling on or off </p>
+     *
+     * <p> While profiling, <code>cycle()</code> updates every block (or
+     * every selected block) through its own <code>update()</code> method,
+     * timing each, even if the model is compiled or evaluating
+     * incrementally. Statistics gather in the {@link ModelProfiler}
+     * returned by <code>getProfiler()</code>; turning profiling on starts
+     * a fresh profile. With profiling off, cycles cost nothing extra. </p>
+     *
+     * @param profile true to time each block
+     * @since 0.9.8
+     *
+     **/
+
+    public void setProfiling( boolean profile ) {
+        this.profiling = profile;
+        if (profile) {
+            this.profiler = null;
+        }
+    }
+
+    /**
+     * Indicates if <code>cycle()</code> times each block
+     * @since 0.9.8
+     */
+
+    public boolean isProfiling() { return this.profiling; }
+
+    /**
+     * Returns block timings gathered while profiling, or null if no
+     * cycle has been profiled
+     * @since 0.9.8
+     */
+
+    public ModelProfiler getProfiler() { return this.profiler; }
+
+
+    /**
+     *
+     * <p> Registers a {@link ModelMonitor} for this model with the
+     * platform MBean server </p>
+     *
+     * @return name registered, in domain <code>gov.nasa.daveml</code>
+     * @throws DAVEException if the MBean cannot be registered
+     * @since 0.9.8
+     *
+     **/
+
+    public ObjectName registerMBean() throws DAVEException {
+        return this.registerMBean( ManagementFactory.getPlatformMBeanServer() );
+    }
+
+
+    /**
+     *
+     * <p> Registers a {@link ModelMonitor} for this model </p>
+     *
+     * <p> The MBean is named
+     * <code>gov.nasa.daveml:type=Model,name=</code><i>model name</i>; if
+     * another model of the same name is registered, an
+     * <code>instance</code> key tells them apart. From now on each
+     * <code>cycle()</code> is timed and counted. Registering again first
+     * unregisters. </p>
+     *
+     * @param server MBean server to register with
+     * @return name registered
+     * @throws DAVEException if the MBean cannot be registered
+     * @since 0.9.8
+     *
+     **/
+
+    public ObjectName registerMBean( MBeanServer server ) throws DAVEException {
+        this.unregisterMBean();
+        String base = "gov.nasa.daveml:type=Model,name="
+            + ObjectName.quote( this.getName() == null ? "" : this.getName() );
+        ModelMonitor mon = new ModelMonitor( this );
+        try {
+            ObjectName name = new ObjectName( base );
+            for (int instance = 2; ; instance++) {
+                try {
+                    server.registerMBean( mon, name );
+                    break;
+                } catch (InstanceAlreadyExistsException e) {
+                    name = new ObjectName( base + ",instance=" + instance );
+                }
+            }
+            this.mbeanServer = server;
+            this.mbeanName   = name;
+            this.monitor     = mon;
+            return name;
+        } catch (JMException e) {
+            throw new DAVEException( "Unable to register MBean for model '"
+                                     + this.getName() + "': " + e.getMessage() );
+        }
+    }
+
+
+    /**
+     *
+     * <p> Unregisters this model's MBean, if any, and stops timing
+     * cycles </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public void unregisterMBean() {
+        if (this.mbeanName != null) {
+            try {
+                this.mbeanServer.unregisterMBean( this.mbeanName );
+            } catch (JMException e) {
+                System.err.println("Unable to unregister MBean '" + this.mbeanName
+                                   + "': " + e.getMessage());
+            }
+        }
+        this.mbeanServer = null;
+        this.mbeanName   = null;
+        this.monitor     = null;
+    }
+
+
+    /**
+     * Returns counters published by <code>registerMBean()</code>, or null
+     * if not registered
+     * @since 0.9.8
+     */
+
+    public ModelMonitor getMonitor() { return this.monitor; }
+
+
+    /**
+     *
+     * <p> Causes the next incremental cycle to update every block </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public void markAllDirty() {
+        this.dirty = null;
+    }
+
+
+    /**
+     *
+     * <p> Returns number of blocks the next incremental cycle would
+     * update </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public int getNumDirtyBlocks() {
+        if (this.dirty == null) {
+            return this.executeOrder.size();
+        }
+        int count = 0;
+        for (int i = 0; i < this.dirty.length; i++) {
+            if (this.dirty[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     *
+     * <p> Notes that a block's own value has changed, so that it and
+     * everything downstream of it are updated on the next incremental
+     * cycle </p>
+     *
+     * @param b input or constant block whose value was changed
+     *
+     **/
+
+    void inputChanged( Block b ) {
+        if (!this.incrementalEvaluation || this.dirty == null) {
+            return;     // nothing tracked, or everything dirty already
+        }
+        if (this.orderPosition == null) {
+            this.orderPosition = new IdentityHashMap<Block,Integer>(this.executeOrder.size());
+            for (int i = 0; i < this.executeOrder.size(); i++) {
+                this.orderPosition.put(this.executeOrder.get(i), i);
+            }
+        }
+        ArrayList<Block> pending = new ArrayList<Block>();
+        pending.add(b);
+        while (!pending.isEmpty()) {
+            Block blk = pending.remove(pending.size()-1);
+            Integer pos = this.orderPosition.get(blk);
+            if (pos == null || this.dirty[pos]) {
+                continue;       // not scheduled, or already followed
+            }
+            this.dirty[pos] = true;
+            Signal out = blk.getOutput();
+            if (out != null) {
+                pending.addAll(out.getDestBlocks());
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Discards everything worked out from the execution order;
+     * called whenever it changes </p>
+     *
+     **/
+
+    private void orderChanged() {
+        this.selectionChanged();
+        this.orderPosition = null;
+        this.dirty = null;
+        this.incrementalProgram = null;
+        this.incrementalKeep = null;
+        if (this.profiling) {
+            this.profiler = null;
+        }
+    }
+
     /**
      * Selects all blocks involved in feeding specified input
      * @return found boolean true if varName is found
@@ -411,6 +979,7 @@ public class Model
 	    newBlock.makeVerbose();
 	}
 	blocks.add(newBlock);
+	blockIndex.add(newBlock);
 	if (newBlock instanceof BlockInput) {
 	    inputBlocks.add(newBlock);
 	    if (this.verbose) {
@@ -440,22 +1009,142 @@ public class Model
 	    newSignal.makeVerbose();
 	}	
 	signals.add(newSignal); 
+	signalIndex.add(newSignal);
     }
 
 
     /**
      *
-     * <p> Register breakpoint set definition </p>
+     * <p> Holds an array of values parsed while loading a file and
+     * returns a short reference string to stand in for its text </p>
      *
-     * @param newBPSet <code>BreakpointSet</code> to be added to bpID list
+     * @param values parsed values
+     * @return reference to pass to {@link #resolveValues(String)}
+     * @since 0.9.8
      *
      **/
 
-    public void register( BreakpointSet newBPSet )
-    { 
-	int oldSize = 0;
-	int setSize;
-
+    String addLoadedValues( double[] values )
+    {
+	String ref = LOADED_VALUES_PREFIX + loadedValues.size();
+	loadedValues.put( ref, values );
+	return ref;
+    }
+
+
+    /**
+     *
+     * <p> Converts text of a table or breakpoint element into values </p>
+     *
+     * <p> If the text is a reference left by the streaming loader, the
+     * already-parsed array is returned; otherwise the text is parsed
+     * as a list of comma- or whitespace-separated numbers. A reference
+     * whose values have already been discarded gives an empty array. </p>
+     *
+     * @param text element text, or a reference to loaded values
+     * @since 0.9.8
+     *
+     **/
+
+    public double[] resolveValues( String text )
+    {
+	if (text.startsWith( LOADED_VALUES_PREFIX )) {
+	    double[] values = loadedValues.get( text );
+	    if (values == null) {
+		System.err.println("Loaded values for '" + text + "' are no longer available.");
+		return new double[0];
+	    }
+	    return values;
+	}
+	return ValueListBuilder.parse( text );
+    }
+
+
+    /**
+     *
+     * <p> Discards arrays held for the streaming loader, once all
+     * tables and breakpoint sets have been built </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void clearLoadedValues()
+    {
+	loadedValues.clear();
+    }
+
+
+    /**
+     *
+     * <p> Returns the signal with the given varID, or null if none </p>
+     *
+     * <p> Equivalent to <code>getSignals().findByID(varID)</code> but
+     * uses a hashed index instead of searching the list. </p>
+     *
+     * @param varID variable ID of desired signal
+     * @since 0.9.8
+     *
+     **/
+
+    public Signal getSignalByVarID( String varID )
+    {
+	return signalIndex.get( varID );
+    }
+
+
+    /**
+     *
+     * <p> Returns the first block with the given name, or null if none </p>
+     *
+     * @param name name of desired block
+     * @since 0.9.8
+     *
+     **/
+
+    public Block getBlockByName( String name )
+    {
+	return blockIndex.get( name );
+    }
+
+
+    /**
+     *
+     * <p> Updates signal index after a signal's varID changes </p>
+     *
+     **/
+
+    void reindex( Signal theSignal, String oldVarID )
+    {
+	signalIndex.rekey( theSignal, oldVarID );
+    }
+
+
+    /**
+     *
+     * <p> Updates block index after a block's name changes </p>
+     *
+     **/
+
+    void reindex( Block theBlock, String oldName )
+    {
+	blockIndex.rekey( theBlock, oldName );
+    }
+
+
+    /**
+     *
+     * <p> Register breakpoint set definition </p>
+     *
+     * @param newBPSet <code>BreakpointSet</code> to be added to bpID list
+     *
+     **/
+
+    public void register( BreakpointSet newBPSet )
+    { 
+	int oldSize = 0;
+	int setSize;
+
 	if (this.verbose) {
 	    System.out.println("Registering breakpoint set " + newBPSet.getName() 
 			       + " (" + newBPSet.getBPID() + ") with model.");
@@ -668,6 +1357,7 @@ public class Model
 
     public void wireBlocks()
     {
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.WIRE);
 	Iterator<Block> it = blocks.iterator();
         int numBlocks = blocks.size();
         if (numBlocks > 0 && this.isVerbose()) {
@@ -686,6 +1376,7 @@ public class Model
 		System.exit(0);
 	    }
 	}
+        PhaseEvents.RECORDER.end(phaseEvent, "wireBlocks", this, -1);
     }
 
 
@@ -699,6 +1390,7 @@ public class Model
         Signal theSignal;
 	Iterator<Signal> it;
         ArrayList<Signal> modifiedSignals = new ArrayList<Signal>(0);
+        Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.WIRE);
 
 	// iterate for all signals - find blocks with missing inputs or outputs
 	it = this.signals.iterator();
@@ -761,6 +1453,7 @@ public class Model
         while (it.hasNext()) {
             this.add(it.next());
         }
+        PhaseEvents.RECORDER.end(phaseEvent, "hookUpIO", this, -1);
     }
 
     public void setUpLimiterFor(Signal theSignal,
@@ -912,6 +1605,9 @@ public class Model
      **/
 
     public void generateInternalValues( PrintWriter out ) {
+	if (this.compiled != null && !this.profiling) {
+	    this.compiled.storeAll( this.context );
+	}
 	Iterator<?> it = this.signals.iterator();
 	// make sure there are signals to evaluate
 	if (it != null) {
@@ -949,7 +1645,8 @@ public class Model
      *
      * <p> Performs model initialization: </p>
      * <ol> 
-     *   <li>Determines execution order of blocks</li>
+     *   <li>Determines execution order of blocks from their wiring</li>
+     *   <li>Evaluates each block once, in that order</li>
      *   <li>Invokes reset</li>
      * </ol>
      * @throws DAVEException
@@ -959,7 +1656,24 @@ public class Model
     public void initialize() throws DAVEException 
     {
         if (!this.initialized) { // only do this once
-            
+            Object phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.SORT);
+            try {
+                this.initializeBlocks();
+            } finally {
+                PhaseEvents.RECORDER.end(phaseEvent, "initialize", this, -1);
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Sorts, evaluates and resets the blocks for {@link #initialize()} </p>
+     *
+     **/
+
+    private void initializeBlocks() throws DAVEException
+    {
 	StringWriter strwriter = null;// used only when verbose, so we can call
 				// describeSelf(writer)
 	if (this.isVerbose()) {
@@ -973,95 +1687,29 @@ public class Model
             }
 	}
 
-	// get duplicate list of blocks; find which ones are ready now
-	BlockArrayList blks = (BlockArrayList) blocks.clone();
-	ListIterator<Block> candidates;	// this type of iterator allows for simul. mods.
+	// sort blocks into execution order from the signal wiring
+	this.orderBlocks();
 	Iterator<Block> blockIterator;
 	Block b;
 
-	boolean progress = true;
-	int blocksNotReady;
-	int oldBlocksNotReady = Integer.MAX_VALUE;
-
-	while (!blks.isEmpty() && progress) {
-	    // tell any non-ready blocks to update
-	    blocksNotReady = 0;
-	    blockIterator = blks.iterator();
-		
-	    if (this.verbose) {
-                System.out.println("");
-		System.out.println("Telling " + blks.size() + " non-ready blocks to update.");
-                System.out.println("");
-            }
-	    
-	    while (blockIterator.hasNext()) {
-		b = blockIterator.next();
-		if (!b.isReady()) {
-		    try {
-			blocksNotReady++;
-			b.update();
-		    } catch (DAVEException e) {
-			System.out.print(" Block '" + b.getName() + "':");
-			System.out.println(" threw a DAVE Exception: " + e.getMessage());
-//			e.printStackTrace();
-			System.out.println(" Continuing...");
-		    } catch (RuntimeException e) {
-			System.out.print(" Block '" + b.getName() + "':");
-			System.out.println(" threw a non-DAVE exception: ");
-                        System.out.println(e.getMessage() + ". Quitting...");
-			throw e;
-		    }
-                }
-	    }
-
-	    // removing ready blocks
-
-	    if (this.verbose) {
-                System.out.println("");
-		System.out.println("Moving ready blocks to execution list");
-                System.out.println("");
-            }
-
-            // blks is a cloned list of all previously non-ready model blocks
-            // will search to see if any are ready
-	    candidates = blks.listIterator();
-	    while (candidates.hasNext()) {
-		b = candidates.next();
-		// check each one to see if ready
-		if (this.verbose) {
-		    System.out.print("Checking to see if block '" +
-				     b.getName() + "' is ready...");
-                }
-		if (b.isReady()) {
-		    if (this.verbose) {
-			System.out.println(" yes. Adding to execution list.");
-                    }
-		    // blocks that are ready are added to executeOrder list and taken off this one
-		    executeOrder.add( b );
-		    candidates.remove();	// removes current block
-		} else {
-		    if (this.verbose) {
-			System.out.println(" no.");
-                    }
-                }
+	// evaluate once, in order, so blocks hold values from initial conditions
+	blockIterator = executeOrder.iterator();
+	while (blockIterator.hasNext()) {
+	    b = blockIterator.next();
+	    try {
+		b.update();
+	    } catch (DAVEException e) {
+		System.out.print(" Block '" + b.getName() + "':");
+		System.out.println(" threw a DAVE Exception: " + e.getMessage());
+		System.out.println(" Continuing...");
+	    } catch (RuntimeException e) {
+		System.out.print(" Block '" + b.getName() + "':");
+		System.out.println(" threw a non-DAVE exception: ");
+                System.out.println(e.getMessage() + ". Quitting...");
+		throw e;
 	    }
-
-            // Number of not ready blocks should shrink each pass through loop
-	    progress = blocksNotReady < oldBlocksNotReady;
-	    oldBlocksNotReady = blocksNotReady;
-
-            // if not, we'll kick out of loop and whine.
 	}
 
-        // Here on empty block list OR lack of progress
-	// Check to see if success or if algebraic loop detected
-        if (!blks.isEmpty()) {
-            String errorMsg;
-            errorMsg = "Possible algebraic loop detected; unable to satisfy inputs for ";
-            errorMsg = errorMsg + blks.size() + " blocks.";
-	    throw new DAVEException(errorMsg);
-        }
-
 	// Otherwise, believe we have success
 	this.initialized = true;
 	
@@ -1097,10 +1745,208 @@ public class Model
         }
         
         this.reset(); /* loads initial values into input boxes */
+    }
+
+    /**
+     *
+     * <p> Fills <code>executeOrder</code> from the block wiring,
+     * without evaluating any block. </p>
+     *
+     * <p> Counts, for each block, the inputs whose source block has
+     * not yet been placed (Kahn's algorithm), so the sort is linear in
+     * the number of blocks and signals. The order produced is the one
+     * the former pass-by-pass search gave: a block is assigned to the
+     * first sweep of the block list in which all its sources precede it,
+     * and blocks are listed by sweep, then by position in the model. </p>
+     *
+     * @throws DAVEException if some blocks can never be ready; the
+     * message names each loop found and each unconnected input
+     * @since 0.9.8
+     *
+     **/
+
+    private void orderBlocks() throws DAVEException
+    {
+        final int n = this.blocks.size();
+        IdentityHashMap<Block, Integer> position = new IdentityHashMap<Block, Integer>(2*n);
+        for (int i = 0; i < n; i++) {
+            position.put( this.blocks.get(i), i );
+        }
+
+        // count inputs of each block; note each block's upstream blocks
+        int[] waiting  = new int[n];    // inputs whose source is not yet placed
+        int[] outCount = new int[n];
+        int[][] sources = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Block blk = this.blocks.get(i);
+            sources[i] = new int[(blk.inputs == null) ? 0 : blk.inputs.size()];
+            for (int k = 0; k < sources[i].length; k++) {
+                Signal sig = blk.inputs.get(k);
+                Block src = (sig == null) ? null : sig.getSourceBlock();
+                Integer j = (src == null) ? null : position.get( src );
+                sources[i][k] = (j == null) ? -1 : j;
+                if (j != null) {
+                    outCount[j]++;
+                }
+            }
+            waiting[i] = sources[i].length;
+        }
+
+        // downstream blocks of each block, in compressed-row form
+        int[] succStart = new int[n+1];
+        for (int i = 0; i < n; i++) {
+            succStart[i+1] = succStart[i] + outCount[i];
+        }
+        int[] succ = new int[succStart[n]];
+        int[] fill = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int j : sources[i]) {
+                if (j >= 0) {
+                    succ[succStart[j] + fill[j]++] = i;
+                }
+            }
+        }
+
+        // place blocks whose sources are all placed
+        int[] sweep = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            sweep[i] = 1;
+            if (waiting[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        int maxSweep = 1;
+        while (head < tail) {
+            int j = queue[head++];
+            for (int e = succStart[j]; e < succStart[j+1]; e++) {
+                int i = succ[e];
+                // a source later in the list is only ready on the next sweep
+                int needed = (j < i) ? sweep[j] : sweep[j] + 1;
+                if (needed > sweep[i]) {
+                    sweep[i] = needed;
+                }
+                if (--waiting[i] == 0) {
+                    queue[tail++] = i;
+                    maxSweep = Math.max( maxSweep, sweep[i] );
+                }
+            }
         }
 
+        if (tail < n) {
+            throw new DAVEException( this.describeUnorderable( waiting, sources, succStart, succ ) );
+        }
+
+        // list by sweep, then by position
+        int[] sweepStart = new int[maxSweep+2];
+        for (int i = 0; i < n; i++) {
+            sweepStart[sweep[i]+1]++;
+        }
+        for (int k = 1; k <= maxSweep+1; k++) {
+            sweepStart[k] += sweepStart[k-1];
+        }
+        Block[] ordered = new Block[n];
+        for (int i = 0; i < n; i++) {
+            ordered[sweepStart[sweep[i]]++] = this.blocks.get(i);
+        }
+        this.executeOrder.clear();
+        for (int i = 0; i < n; i++) {
+            this.executeOrder.add( ordered[i] );
+        }
+        this.orderChanged();
+    }
+
+
+    /**
+     *
+     * <p> Explains why some blocks could not be ordered: lists each
+     * loop of blocks feeding one another and each input with no
+     * source. </p>
+     *
+     * @param waiting number of unplaced sources of each block
+     * @param sources model-order index of each input's source block, or -1
+     * @param succStart start of each block's entries in <code>succ</code>
+     * @param succ downstream blocks of each block
+     *
+     **/
+
+    private String describeUnorderable( int[] waiting, int[][] sources,
+                                        int[] succStart, int[] succ )
+    {
+        final int n = waiting.length;
+        int stuck = 0;
+        for (int i = 0; i < n; i++) {
+            if (waiting[i] > 0) {
+                stuck++;
+            }
+        }
+        StringBuilder msg = new StringBuilder();
+        msg.append("Possible algebraic loop detected; unable to satisfy inputs for ");
+        msg.append(stuck).append(" blocks.");
+
+        // unconnected inputs
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < sources[i].length; k++) {
+                if (sources[i][k] < 0) {
+                    msg.append("\n  Input ").append(k+1).append(" of block '");
+                    msg.append(this.blocks.get(i).getName()).append("' has no source block.");
+                }
+            }
+        }
+
+        // depth-first search among the stuck blocks; each edge back to a
+        // block still on the path closes a loop
+        final int maxLoops = 10;
+        int loops = 0;
+        byte[] state = new byte[n];     // 0 unvisited, 1 on path, 2 done
+        int[] path = new int[n];
+        int[] next = new int[n];        // next edge to follow from each path entry
+        for (int root = 0; root < n && loops < maxLoops; root++) {
+            if (waiting[root] == 0 || state[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            next[0] = succStart[root];
+            state[root] = 1;
+            while (depth >= 0) {
+                int j = path[depth];
+                if (next[depth] < succStart[j+1]) {
+                    int i = succ[next[depth]++];
+                    if (waiting[i] == 0) {
+                        continue;
+                    }
+                    if (state[i] == 0) {
+                        state[i] = 1;
+                        path[++depth] = i;
+                        next[depth] = succStart[i];
+                    } else if (state[i] == 1 && loops < maxLoops) {
+                        loops++;
+                        int from = depth;
+                        while (path[from] != i) {
+                            from--;
+                        }
+                        msg.append("\n  Loop: ");
+                        for (int d = from; d <= depth; d++) {
+                            msg.append("'").append(this.blocks.get(path[d]).getName()).append("' -> ");
+                        }
+                        msg.append("'").append(this.blocks.get(i).getName()).append("'");
+                    }
+                } else {
+                    state[j] = 2;
+                    depth--;
+                }
+            }
+        }
+        if (loops == maxLoops) {
+            msg.append("\n  (further loops not listed)");
+        }
+        return msg.toString();
     }
 
+
         /**
      *
      * <p> Performs model reset: </p>
@@ -1130,6 +1976,329 @@ public class Model
     }
     
     
+    /**
+     *
+     * <p> Switches the model to compiled execution. </p>
+     *
+     * <p> Initializes the model if necessary, then lowers the execution
+     * order into a flat instruction program (see {@link CompiledModel}).
+     * Subsequent calls to <code>cycle()</code> run that program instead of
+     * calling <code>update()</code> on each block. Internal block values
+     * are only brought up to date on request, by
+     * <code>getInternalsVector()</code> or
+     * <code>generateInternalValues()</code>. </p>
+     *
+     * @throws DAVEException if model cannot be initialized or compiled
+     * @since 0.9.8
+     *
+     **/
+
+    public void compile() throws DAVEException
+    {
+        this.initialize();
+        this.compiled = new CompiledModel( this );
+        this.context = this.compiled.newContext();
+        this.selectedProgram = null;
+        this.incrementalProgram = null;
+        this.incrementalKeep = null;
+        this.markAllDirty();
+    }
+
+
+    /**
+     *
+     * <p> Returns to interpreted (block-by-block) execution </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public void decompile()
+    {
+        if (this.compiled != null && !this.profiling) {
+            this.compiled.storeAll( this.context );
+        }
+        this.compiled = null;
+        this.context = null;
+        this.selectedProgram = null;
+        this.incrementalProgram = null;
+        this.incrementalKeep = null;
+        this.markAllDirty();
+    }
+
+
+    /**
+     *
+     * <p> Indicates if model runs in compiled mode </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public boolean isCompiled() { return this.compiled != null; }
+
+
+    /**
+     *
+     * <p> Returns compiled program, or null if not compiled </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public CompiledModel getCompiledModel() { return this.compiled; }
+
+
+    /**
+     *
+     * <p> Simplifies the model by constant folding, strength reduction
+     * and common subexpression elimination (see
+     * {@link ModelOptimizer}). </p>
+     *
+     * <p> Initializes the model if necessary. Named variables, inputs and
+     * outputs are unchanged, so checkcases and generated code still refer
+     * to the same variables; only anonymous intermediate blocks are
+     * folded, replaced or removed. If the model was compiled it is
+     * recompiled afterwards. </p>
+     *
+     * @return number of blocks folded, replaced or removed
+     * @throws DAVEException if model cannot be initialized or rewired
+     * @since 0.9.8
+     *
+     **/
+
+    public int optimize() throws DAVEException
+    {
+        return this.rewrite( false );
+    }
+
+
+    /**
+     *
+     * <p> Fuses chains of sum, difference, product and absolute value
+     * blocks whose intermediate results have no other use into single
+     * {@link BlockMathExpression} blocks. </p>
+     *
+     * <p> Results and generated code are unchanged; there are simply
+     * fewer blocks to schedule and update. Tools that map each block to
+     * a diagram element (such as DAVE2SL) should not fuse. Initializes
+     * the model if necessary and recompiles it if it was compiled. </p>
+     *
+     * @return number of blocks merged into expressions
+     * @throws DAVEException if model cannot be initialized or rewired
+     * @since 0.9.8
+     *
+     **/
+
+    public int fuseExpressions() throws DAVEException
+    {
+        return this.rewrite( true );
+    }
+
+
+    /**
+     *
+     * <p> Moves the values of every function table of at least
+     * <code>minPoints</code> points off the heap, into memory-mapped
+     * files in the given directory (see
+     * {@link FuncTable#mapValues(java.io.File)}). Table lookups then read
+     * the mapped files directly. If the model was compiled it is
+     * recompiled afterwards. </p>
+     *
+     * @param dir directory to keep table files in
+     * @param minPoints smallest table to map
+     * @return number of tables mapped
+     * @throws IOException if a table cannot be written or mapped
+     * @throws DAVEException if model cannot be recompiled
+     * @since 0.9.8
+     *
+     **/
+
+    public int mapTables( File dir, int minPoints )
+        throws IOException, DAVEException
+    {
+        IdentityHashMap<FuncTable,Boolean> seen = new IdentityHashMap<FuncTable,Boolean>();
+        int numMapped = 0;
+        Iterator<Block> it = this.blocks.iterator();
+        while (it.hasNext()) {
+            Block b = it.next();
+            if (b instanceof BlockFuncTable) {
+                FuncTable ft = ((BlockFuncTable) b).getFunctionTableDef();
+                if (ft != null && seen.put(ft, Boolean.TRUE) == null
+                        && !ft.isMapped() && ft.size() >= minPoints) {
+                    ft.mapValues( dir );
+                    numMapped++;
+                }
+            }
+        }
+        if (numMapped > 0 && this.isCompiled()) {
+            this.decompile();
+            this.compile();
+        }
+        if (this.isVerbose()) {
+            System.out.println("Mapped " + numMapped + " function tables from '" + dir + "'.");
+        }
+        return numMapped;
+    }
+
+
+    /**
+     *
+     * <p> Runs the optimizer or the expression fuser on the model's
+     * interpreted form </p>
+     *
+     **/
+
+    private int rewrite( boolean fuse ) throws DAVEException
+    {
+        this.initialize();
+        boolean wasCompiled = this.isCompiled();
+        this.decompile();
+        int numBefore = this.getNumBlocks();
+
+        ModelOptimizer opt = new ModelOptimizer( this );
+        int numChanged = fuse ? opt.fuse() : opt.run();
+
+        if (wasCompiled) {
+            this.compile();
+        }
+        if (this.isVerbose()) {
+            if (fuse) {
+                System.out.println("Fused " + opt.numFused + " blocks into expressions;");
+            } else {
+                System.out.println("Optimizer folded " + opt.numFolded + ", reduced "
+                        + opt.numReduced + " and merged " + opt.numMerged + " blocks;");
+            }
+            System.out.println(" model now has " + this.getNumBlocks()
+                    + " blocks (was " + numBefore + ").");
+        }
+        return numChanged;
+    }
+
+
+    /**
+     *
+     * <p> Removes blocks and signals from the model's lists and
+     * indices; used by the optimizer once they are disconnected </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void discard( Set<Block> deadBlocks, Set<Signal> deadSignals )
+    {
+        for (int i = this.blocks.size()-1; i >= 0; i--) {
+            if (deadBlocks.contains( this.blocks.get(i) )) {
+                this.blockIndex.remove( this.blocks.remove(i) );
+            }
+        }
+        for (int i = this.executeOrder.size()-1; i >= 0; i--) {
+            if (deadBlocks.contains( this.executeOrder.get(i) )) {
+                this.executeOrder.remove(i);
+            }
+        }
+        for (int i = this.signals.size()-1; i >= 0; i--) {
+            if (deadSignals.contains( this.signals.get(i) )) {
+                this.signalIndex.remove( this.signals.remove(i) );
+            }
+        }
+        this.orderChanged();
+    }
+
+
+    /**
+     *
+     * <p> Creates an independent evaluation context for this model </p>
+     *
+     * <p> Compiles the model first if necessary. The returned context
+     * shares the model's compiled program but has its own register file
+     * and scratch space, so each thread may evaluate the model through
+     * its own context without locking. Contexts do not read or write the
+     * model's blocks; they start from the block values current at the
+     * time of the call (i.e. inputs at their initial conditions). </p>
+     *
+     * <p> Contexts remain valid after <code>decompile()</code>, but a
+     * context obtained before a later <code>compile()</code> continues
+     * to run the earlier program. </p>
+     *
+     * @throws DAVEException if model cannot be initialized or compiled
+     * @since 0.9.8
+     *
+     **/
+
+    public EvaluationContext newEvaluationContext() throws DAVEException
+    {
+        if (this.compiled == null) {
+            this.compile();
+        }
+        return this.compiled.newContext();
+    }
+
+
+    /**
+     *
+     * <p> Evaluates the model at many input points in one call </p>
+     *
+     * <p> Each row of <code>inputs</code> holds one point, in the same
+     * order as the input vector; the matching row of <code>outputs</code>
+     * receives the outputs in output vector order. The model is compiled
+     * first if necessary, and the points are evaluated a chunk at a time
+     * by the compiled program (see {@link EvaluationContext}). Block,
+     * input vector and output vector values are left as they were. </p>
+     *
+     * @param inputs one row of input values per point
+     * @param outputs one row per point to receive output values
+     * @throws DAVEException if model cannot be compiled or array sizes
+     * do not match the model
+     * @since 0.9.8
+     *
+     **/
+
+    public void cycleBatch( double[][] inputs, double[][] outputs ) throws DAVEException
+    {
+        this.prepareBatch();
+        this.context.cycleBatch( inputs, outputs );
+    }
+
+
+    /**
+     *
+     * <p> Column-major form of {@link #cycleBatch(double[][], double[][])} </p>
+     *
+     * @param inputs one array of values per input, in input vector order
+     * @param outputs one array per output, in output vector order, to
+     * receive output values
+     * @param numRows number of points to evaluate
+     * @throws DAVEException if model cannot be compiled or array sizes
+     * do not match the model
+     * @since 0.9.8
+     *
+     **/
+
+    public void cycleBatchColumns( double[][] inputs, double[][] outputs, int numRows )
+        throws DAVEException
+    {
+        this.prepareBatch();
+        this.context.cycleColumns( inputs, outputs, numRows );
+    }
+
+
+    /**
+     *
+     * <p> Compiles model if needed and refreshes constant values held by
+     * our evaluation context </p>
+     *
+     **/
+
+    private void prepareBatch() throws DAVEException
+    {
+        if (this.compiled == null) {
+            this.compile();
+        }
+        this.compiled.load( this.context );
+    }
+
+
     /**
      * <p> Builds &amp; returns the current values of output blocks </p>
      *
@@ -1193,6 +2362,56 @@ public class Model
     }
 
 
+    /**
+     *
+     * <p> Updates the blocks marked dirty (and, if evaluating
+     * selectively, selected), then marks them clean </p>
+     *
+     * @throws DAVEException
+     *
+     **/
+
+    private void cycleIncremental() throws DAVEException
+    {
+        int n = this.executeOrder.size();
+        if (this.dirty == null) {
+            this.dirty = new boolean[n];
+            Arrays.fill(this.dirty, true);
+        }
+        boolean[] keep = this.dirty;
+        if (this.selectiveEvaluation) {
+            keep = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                keep[i] = this.dirty[i] && this.executeOrder.get(i).isSelected();
+            }
+        }
+
+        if (this.compiled != null) {
+            // slot i of the compiled program is executeOrder position i
+            if (this.incrementalProgram == null ||
+                    !Arrays.equals(keep, this.incrementalKeep)) {
+                this.incrementalKeep = keep.clone();
+                this.incrementalProgram = this.compiled.subProgram( this.incrementalKeep );
+            }
+            this.incrementalProgram.load( this.context );
+            this.incrementalProgram.execute( this.context );
+            this.incrementalProgram.storeOutputs( this.context );
+            for (int i = 0; i < n; i++) {
+                if (keep[i]) {
+                    this.dirty[i] = false;
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                if (keep[i]) {
+                    this.executeOrder.get(i).update();
+                    this.dirty[i] = false;
+                }
+            }
+        }
+    }
+
+
     /**
      *
      * <p> Cycle the model. </p>
@@ -1217,24 +2436,20 @@ public class Model
 	if (this.inputVec == null) {
 	    throw new DAVEException("Input vector is null. Did you obtain one from getInputVector() first?");
         }
+        ModelMonitor mon = this.monitor;
+        long startNanos = mon == null ? 0 : System.nanoTime();
+        Object phaseEvent = null;
+        if (++this.unrecordedCycles >= PhaseEvents.CYCLE_SAMPLE_INTERVAL) {
+            this.unrecordedCycles = 0;
+            phaseEvent = PhaseEvents.RECORDER.begin(PhaseEvents.CYCLE);
+        }
 	// check to see if it has the proper number of elements
 	if (this.inputVec.size() != inputBlocks.size()) {
 	    throw new DAVEException("Input vector length (" + inputVec.size()
 				    + ") does not match number of input blocks (" + inputBlocks.size());
         }
-	// unload the input vector into the input blocks - complain if block refs are nulls
-	Iterator<VectorInfo> inp = this.inputVec.iterator();
-	while (inp.hasNext()) {
-	    VectorInfo vi = inp.next();
-	    if (vi == null) {
-		throw new DAVEException("Unexpected found null in input vector array list.");
-            }
-	    BlockInput theBlk = vi.getSink();
-	    double theValue = vi.getValue();
-	    theBlk.setInputValue( theValue );
-	}
-
-	// make sure the model is initialized - this also cycles the model
+	// make sure the model is initialized (before loading inputs, as
+	// initialize() resets input blocks to their initial values)
 	if (!this.initialized) {
 	    try {
                 if (this.isVerbose()) {
@@ -1248,8 +2463,50 @@ public class Model
 		System.err.println(e.getMessage());
 		System.exit(exit_failure);
 	    }
+        }
+
+	// unload the input vector into the input blocks - complain if block refs are nulls
+	Iterator<VectorInfo> inp = this.inputVec.iterator();
+	while (inp.hasNext()) {
+	    VectorInfo vi = inp.next();
+	    if (vi == null) {
+		throw new DAVEException("Unexpected found null in input vector array list.");
+            }
+	    BlockInput theBlk = vi.getSink();
+	    double theValue = vi.getValue();
+	    theBlk.setInputValue( theValue );
+	}
+
+	if (this.profiling) {		// time each block's update
+            if (this.profiler == null) {
+                this.profiler = new ModelProfiler( this.executeOrder );
+            }
+            this.profiler.cycle( this.selectiveEvaluation );
+            if (this.incrementalEvaluation) {
+                this.markAllDirty();
+            }
+        } else if (this.incrementalEvaluation) { // update only what has changed
+            this.cycleIncremental();
+        } else if (this.compiled != null) { // run compiled program
+            CompiledModel program = this.compiled;
+            if (this.selectiveEvaluation) {
+                if (this.selectedProgram == null) {
+                    this.selectedProgram = this.compiled.selectedProgram();
+                }
+                program = this.selectedProgram;
+            }
+            program.load( this.context );
+            program.execute( this.context );
+            program.storeOutputs( this.context );
         } else { 		// cycle the model once if it is
-            Iterator<?> theBlocks = executeOrder.iterator();
+            BlockArrayList schedule = this.executeOrder;
+            if (this.selectiveEvaluation) {
+                if (this.selectedSchedule == null) {
+                    this.selectedSchedule = this.getSelectedBlocks();
+                }
+                schedule = this.selectedSchedule;
+            }
+            Iterator<?> theBlocks = schedule.iterator();
             while (theBlocks.hasNext()) {
                 Block theBlock = (Block) theBlocks.next();
                 theBlock.update();
@@ -1302,6 +2559,10 @@ public class Model
 		vi.setValue( theValue );
 	    }
 	}
+        PhaseEvents.RECORDER.end(phaseEvent, "cycle", this, -1);
+        if (mon != null) {
+            mon.cycled( System.nanoTime() - startNanos );
+        }
     }
 
     /**
@@ -1381,7 +2642,7 @@ public class Model
         // easiest way is to find single with proper ID, then
         // find source block.
         Block theBlock = null;
-        Signal theSignal = signals.findByID(theVarID);
+        Signal theSignal = signalIndex.get(theVarID);
         if (theSignal != null) {
             theBlock = theSignal.getSource();
         }
@@ -1396,6 +2657,9 @@ public class Model
 
      public VectorInfoArrayList getInternalsVector() throws DAVEException {
         VectorInfoArrayList internalsVec = new VectorInfoArrayList();
+        if (this.compiled != null && !this.profiling) {
+            this.compiled.storeAll( this.context );
+        }
         Iterator<?> allBlks = this.blocks.iterator();
         while (allBlks.hasNext()) {
             Block theBlk = (Block) allBlks.next();
@@ -0,0 +1,880 @@
+// ModelCache
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ *
+ * <p> Directory of fully built models, saved in binary form so that an
+ * unchanged DAVE-ML file need not be parsed again </p>
+ *
+ * <p> Each entry holds an initialized <code>Model</code> (signals,
+ * blocks, wiring, execution order, tables and breakpoint sets) together
+ * with the file's checkcase data. Entries are named by a SHA-1 hash of
+ * the source file's contents and of anything else that affects the
+ * result (such as the DAVE version and optimization options), so an
+ * edited file, or a different set of options, simply misses. Entries
+ * are read through a memory mapping of the cache file. Anything that
+ * cannot be read back, including entries written in another format, is
+ * treated as a miss. </p>
+ *
+ * <p> An entry is a flat list of records rather than an object graph:
+ * the number of breakpoint sets, tables, signals and blocks (and the
+ * type of each block) come first, so that every object can be created
+ * before any is read; each object then writes its own fields (see
+ * <code>writeCache()</code> and <code>readCache()</code> of
+ * {@link Model}, {@link Block}, {@link Signal}, {@link FuncTable} and
+ * {@link BreakpointSet}), referring to the others by index. Table and
+ * breakpoint values are written as raw doubles. Reading needs no
+ * recursion, so models of any size and depth can be cached, and only
+ * the classes listed here are ever created from an entry. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+class ModelCache
+{
+    /**
+     *  first item in every cache file
+     */
+
+    static final String MAGIC = "DAVEtools model cache";
+
+    /**
+     *  suffix of cache file names
+     */
+
+    static final String SUFFIX = ".dmc";
+
+    /**
+     *  version of the entry format
+     */
+
+    static final int FORMAT = 2;
+
+    /**
+     *  block classes that can be cached; an entry refers to them by
+     *  position, so add new ones at the end
+     */
+
+    static final Class<?>[] BLOCK_TYPES = {
+        BlockBP.class, BlockFuncTable.class, BlockInput.class, BlockLimiter.class,
+        BlockMathAbs.class, BlockMathConstant.class, BlockMathExpression.class,
+        BlockMathFunction.class, BlockMathFunctionExtension.class, BlockMathLogic.class,
+        BlockMathMinmax.class, BlockMathMinus.class, BlockMathProduct.class,
+        BlockMathRelation.class, BlockMathSum.class, BlockMathSwitch.class,
+        BlockOutput.class
+    };
+
+    /**
+     *  where cache files are kept
+     */
+
+    private final File directory;
+
+
+    /**
+     *
+     * <p> What is kept for each model </p>
+     *
+     **/
+
+    static final class Entry
+    {
+        Model model;
+        CheckData checkcases;
+        int[] counts;
+    }
+
+
+    /**
+     *
+     * <p> Creates a cache kept in the given directory (created when the
+     * first entry is stored) </p>
+     *
+     * @param directory where cache files are kept
+     *
+     **/
+
+    ModelCache( File directory )
+    {
+        this.directory = directory;
+    }
+
+
+    /**
+     *
+     * <p> Returns the default cache directory, under the user's home
+     * directory so that other users cannot plant entries in it </p>
+     *
+     **/
+
+    static File defaultDirectory()
+    {
+        return new File( new File( System.getProperty("user.home"), ".DAVEtools" ), "cache" );
+    }
+
+
+    /**
+     *
+     * <p> Returns the cache directory </p>
+     *
+     **/
+
+    File getDirectory() { return this.directory; }
+
+
+    /**
+     *
+     * <p> Computes the key for a source file: the hex SHA-1 hash of its
+     * contents followed by the given variant string </p>
+     *
+     * @param source DAVE-ML file
+     * @param variant anything else the built model depends on
+     * @throws IOException if the file cannot be read
+     *
+     **/
+
+    static String keyOf( File source, String variant ) throws IOException
+    {
+        MessageDigest sha = sha1();
+        InputStream in = new FileInputStream( source );
+        try {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sha.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        sha.update( variant.getBytes("UTF-8") );
+
+        return hex( sha.digest() );
+    }
+
+
+    /**
+     *
+     * <p> Returns a new SHA-1 digest </p>
+     *
+     * @throws IOException if the platform has none
+     *
+     **/
+
+    static MessageDigest sha1() throws IOException
+    {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-1 digest not available: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns bytes as a lower-case hexadecimal string </p>
+     *
+     **/
+
+    static String hex( byte[] bytes )
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < bytes.length; i++) {
+            sb.append( Character.forDigit((bytes[i] >> 4) & 0xF, 16) );
+            sb.append( Character.forDigit( bytes[i]       & 0xF, 16) );
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     *
+     * <p> Returns the file holding the entry for a key </p>
+     *
+     **/
+
+    File fileFor( String key )
+    {
+        return new File( this.directory, key + SUFFIX );
+    }
+
+
+    /**
+     *
+     * <p> Reads the entry for a key </p>
+     *
+     * @param key as returned by <code>keyOf()</code>
+     * @return the entry, or null if there is none or it cannot be read
+     *
+     **/
+
+    Entry load( String key )
+    {
+        File f = this.fileFor( key );
+        if (!f.isFile()) {
+            return null;
+        }
+        try {
+            FileInputStream fis = new FileInputStream( f );
+            try {
+                FileChannel ch = fis.getChannel();
+                Input in = new Input( ch.map( FileChannel.MapMode.READ_ONLY, 0, ch.size() ) );
+                if (!MAGIC.equals( in.readString() ) || in.readInt() != FORMAT
+                        || !key.equals( in.readString() )) {
+                    return null;
+                }
+                return in.readEntry();
+            } finally {
+                fis.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {     // malformed entry
+            return null;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Writes the entry for a key, replacing any existing one. The
+     * entry is written to a temporary file first, so that other
+     * processes never see a partial entry. </p>
+     *
+     * @param key as returned by <code>keyOf()</code>
+     * @param entry model and checkcases to keep
+     * @throws IOException if the entry cannot be written
+     *
+     **/
+
+    void store( String key, Entry entry ) throws IOException
+    {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Unable to create model cache directory '"
+                    + this.directory + "'.");
+        }
+        File tmp = File.createTempFile( key, ".tmp", this.directory );
+        try {
+            DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream( new FileOutputStream( tmp ), 65536 ) );
+            try {
+                Output out = new Output( dos, entry );
+                out.writeString( MAGIC );
+                out.writeInt( FORMAT );
+                out.writeString( key );
+                out.writeEntry();
+            } finally {
+                dos.close();
+            }
+            File f = this.fileFor( key );
+            f.delete();         // renameTo() won't replace on all platforms
+            if (!tmp.renameTo( f )) {
+                throw new IOException("Unable to rename '" + tmp + "' to '" + f + "'.");
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns the position of a block's class in
+     * {@link #BLOCK_TYPES} </p>
+     *
+     * @throws IOException if the class cannot be cached
+     *
+     **/
+
+    static int tagOf( Block b ) throws IOException
+    {
+        for (int i = 0; i < BLOCK_TYPES.length; i++) {
+            if (b.getClass() == BLOCK_TYPES[i]) {
+                return i;
+            }
+        }
+        throw new IOException("Unable to cache block '" + b.getName() + "' of class "
+                + b.getClass().getName() + ".");
+    }
+
+
+    /**
+     *
+     * <p> Creates an empty block of the class at a position in
+     * {@link #BLOCK_TYPES}, to be filled by <code>readCache()</code> </p>
+     *
+     * @throws IOException if there is no such class
+     *
+     **/
+
+    static Block newBlock( int tag ) throws IOException
+    {
+        if (tag < 0 || tag >= BLOCK_TYPES.length) {
+            throw new IOException("Unknown block type " + tag + " in model cache entry.");
+        }
+        try {
+            return (Block) BLOCK_TYPES[tag].newInstance();
+        } catch (InstantiationException e) {
+            throw new IOException("Unable to create " + BLOCK_TYPES[tag].getName() + ".");
+        } catch (IllegalAccessException e) {
+            throw new IOException("Unable to create " + BLOCK_TYPES[tag].getName() + ".");
+        }
+    }
+
+
+    /**
+     *
+     * <p> Writes an entry. Every object the model refers to is numbered
+     * before anything is written; references are written as those
+     * numbers (-1 for null). </p>
+     *
+     **/
+
+    static final class Output
+    {
+        private final DataOutputStream out;
+        private final Entry entry;
+
+        private final IdentityHashMap<Object,Integer> index = new IdentityHashMap<Object,Integer>();
+        private final List<BreakpointSet> bpSets = new ArrayList<BreakpointSet>();
+        private final List<FuncTable> tables = new ArrayList<FuncTable>();
+        private final SignalArrayList signals = new SignalArrayList();
+        private final BlockArrayList blocks = new BlockArrayList();
+
+        private final byte[] chunk = new byte[65536];
+
+        Output( DataOutputStream out, Entry entry )
+        {
+            this.out = out;
+            this.entry = entry;
+            this.collect();
+        }
+
+
+        /**
+         *  numbers everything reachable from the model and checkcases
+         */
+
+        private void collect()
+        {
+            Model m = this.entry.model;
+            this.addSignals( m.signals );
+            this.addBlocks( m.blocks );
+            this.addBlocks( m.executeOrder );
+            this.addBlocks( m.inputBlocks );
+            this.addBlocks( m.outputBlocks );
+            this.addBlocks( m.bpBlocks.values() );
+            Iterator<BreakpointSet> bpit = m.breakpointSets.values().iterator();
+            while (bpit.hasNext()) {
+                this.add( bpit.next() );
+            }
+            Iterator<FuncTable> ftit = m.tables.values().iterator();
+            while (ftit.hasNext()) {
+                this.add( ftit.next() );
+            }
+            this.addVectorInfos( m.inputVec );
+            this.addVectorInfos( m.outputVec );
+            if (this.entry.checkcases != null) {
+                Iterator<StaticShot> shots = this.entry.checkcases.staticShots.iterator();
+                while (shots.hasNext()) {
+                    StaticShot shot = shots.next();
+                    this.addVectorInfos( shot.inputs );
+                    this.addVectorInfos( shot.outputs );
+                }
+            }
+
+            // follow the wiring until nothing new turns up
+            int s = 0, b = 0, t = 0, p = 0;
+            while (s < this.signals.size() || b < this.blocks.size()
+                    || t < this.tables.size() || p < this.bpSets.size()) {
+                for (; s < this.signals.size(); s++) {
+                    Signal sig = this.signals.get(s);
+                    this.add( sig.getSourceBlock() );
+                    this.addBlocks( sig.dests );
+                }
+                for (; b < this.blocks.size(); b++) {
+                    Block blk = this.blocks.get(b);
+                    this.addSignals( blk.inputs );
+                    this.add( blk.getOutput() );
+                    if (blk instanceof BlockBP) {
+                        this.add( ((BlockBP) blk).bpSet );
+                    }
+                    if (blk instanceof BlockFuncTable) {
+                        this.add( ((BlockFuncTable) blk).functionTableDef );
+                    }
+                }
+                for (; t < this.tables.size(); t++) {
+                    this.addBlocks( this.tables.get(t).users );
+                }
+                for (; p < this.bpSets.size(); p++) {
+                    this.addBlocks( this.bpSets.get(p).users );
+                }
+            }
+        }
+
+        private void add( Signal sig )
+        {
+            if (sig != null && !this.index.containsKey( sig )) {
+                this.index.put( sig, this.signals.size() );
+                this.signals.add( sig );
+            }
+        }
+
+        private void add( Block blk )
+        {
+            if (blk != null && !this.index.containsKey( blk )) {
+                this.index.put( blk, this.blocks.size() );
+                this.blocks.add( blk );
+            }
+        }
+
+        private void add( FuncTable ft )
+        {
+            if (ft != null && !this.index.containsKey( ft )) {
+                this.index.put( ft, this.tables.size() );
+                this.tables.add( ft );
+            }
+        }
+
+        private void add( BreakpointSet bp )
+        {
+            if (bp != null && !this.index.containsKey( bp )) {
+                this.index.put( bp, this.bpSets.size() );
+                this.bpSets.add( bp );
+            }
+        }
+
+        private void addSignals( List<Signal> list )
+        {
+            for (int i = 0; list != null && i < list.size(); i++) {
+                this.add( list.get(i) );
+            }
+        }
+
+        private void addBlocks( Iterable<? extends Block> list )
+        {
+            if (list != null) {
+                Iterator<? extends Block> it = list.iterator();
+                while (it.hasNext()) {
+                    this.add( it.next() );
+                }
+            }
+        }
+
+        private void addVectorInfos( VectorInfoArrayList list )
+        {
+            for (int i = 0; list != null && i < list.size(); i++) {
+                this.add( list.get(i).source );
+                this.add( list.get(i).sink );
+            }
+        }
+
+
+        /**
+         *  writes the whole entry
+         */
+
+        void writeEntry() throws IOException
+        {
+            this.writeInts( this.entry.counts );
+            this.writeInt( this.bpSets.size() );
+            this.writeInt( this.tables.size() );
+            this.writeInt( this.signals.size() );
+            this.writeInt( this.blocks.size() );
+            for (int i = 0; i < this.blocks.size(); i++) {
+                this.writeInt( tagOf( this.blocks.get(i) ) );
+            }
+            for (int i = 0; i < this.bpSets.size(); i++) {
+                this.bpSets.get(i).writeCache( this );
+            }
+            for (int i = 0; i < this.tables.size(); i++) {
+                this.tables.get(i).writeCache( this );
+            }
+            for (int i = 0; i < this.signals.size(); i++) {
+                this.signals.get(i).writeCache( this );
+            }
+            for (int i = 0; i < this.blocks.size(); i++) {
+                this.blocks.get(i).writeCache( this );
+            }
+            this.entry.model.writeCache( this );
+
+            CheckData checkcases = this.entry.checkcases;
+            this.writeBoolean( checkcases != null );
+            if (checkcases != null) {
+                this.writeInt( checkcases.staticShots.size() );
+                for (int i = 0; i < checkcases.staticShots.size(); i++) {
+                    StaticShot shot = checkcases.staticShots.get(i);
+                    this.writeString( shot.scenario );
+                    this.writeVectorInfos( shot.inputs );
+                    this.writeVectorInfos( shot.outputs );
+                }
+            }
+        }
+
+        void writeInt( int i ) throws IOException { this.out.writeInt( i ); }
+
+        void writeBoolean( boolean b ) throws IOException { this.out.writeBoolean( b ); }
+
+        void writeDouble( double d ) throws IOException { this.out.writeDouble( d ); }
+
+        void writeString( String str ) throws IOException
+        {
+            if (str == null) {
+                this.out.writeInt( -1 );
+            } else {
+                byte[] bytes = str.getBytes( "UTF-8" );
+                this.out.writeInt( bytes.length );
+                this.out.write( bytes );
+            }
+        }
+
+        void writeStrings( List<String> list ) throws IOException
+        {
+            if (list == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            this.out.writeInt( list.size() );
+            for (int i = 0; i < list.size(); i++) {
+                this.writeString( list.get(i) );
+            }
+        }
+
+        void writeInts( int[] values ) throws IOException
+        {
+            if (values == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            this.out.writeInt( values.length );
+            for (int i = 0; i < values.length; i++) {
+                this.out.writeInt( values[i] );
+            }
+        }
+
+        void writeDoubles( double[] values ) throws IOException
+        {
+            if (values == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            this.out.writeInt( values.length );
+            DoubleBuffer doubles = ByteBuffer.wrap( this.chunk ).asDoubleBuffer();
+            for (int i = 0; i < values.length; i += doubles.capacity()) {
+                int len = Math.min( values.length - i, doubles.capacity() );
+                doubles.clear();
+                doubles.put( values, i, len );
+                this.out.write( this.chunk, 0, 8*len );
+            }
+        }
+
+        private void writeRef( Object obj ) throws IOException
+        {
+            if (obj == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            Integer i = this.index.get( obj );
+            if (i == null) {
+                throw new IOException("Model refers to an object outside itself.");
+            }
+            this.out.writeInt( i.intValue() );
+        }
+
+        void writeSignal( Signal sig ) throws IOException { this.writeRef( sig ); }
+
+        void writeBlock( Block blk ) throws IOException { this.writeRef( blk ); }
+
+        void writeTable( FuncTable ft ) throws IOException { this.writeRef( ft ); }
+
+        void writeBreakpointSet( BreakpointSet bp ) throws IOException { this.writeRef( bp ); }
+
+        void writeSignals( List<Signal> list ) throws IOException
+        {
+            if (list == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            this.out.writeInt( list.size() );
+            for (int i = 0; i < list.size(); i++) {
+                this.writeRef( list.get(i) );
+            }
+        }
+
+        void writeBlocks( List<Block> list ) throws IOException
+        {
+            if (list == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            this.out.writeInt( list.size() );
+            for (int i = 0; i < list.size(); i++) {
+                this.writeRef( list.get(i) );
+            }
+        }
+
+        void writeVectorInfos( VectorInfoArrayList list ) throws IOException
+        {
+            if (list == null) {
+                this.out.writeInt( -1 );
+                return;
+            }
+            this.out.writeInt( list.size() );
+            for (int i = 0; i < list.size(); i++) {
+                VectorInfo vi = list.get(i);
+                this.writeString( vi.signalName );
+                this.writeString( vi.myUnits );
+                this.writeBoolean( vi.isInput );
+                this.writeRef( vi.source );
+                this.writeRef( vi.sink );
+                this.writeDouble( vi.value );
+                this.writeDouble( vi.tolerance );
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Reads an entry from a byte buffer. Sizes and references are
+     * checked as they are read; anything out of range throws an
+     * <code>IOException</code>. </p>
+     *
+     **/
+
+    static final class Input
+    {
+        private final ByteBuffer buf;
+
+        Model model;
+        BreakpointSet[] bpSets;
+        FuncTable[] tables;
+        Signal[] signals;
+        Block[] blocks;
+
+        Input( ByteBuffer buf )
+        {
+            this.buf = buf;
+        }
+
+
+        /**
+         *  reads the whole entry
+         */
+
+        Entry readEntry() throws IOException
+        {
+            Entry entry = new Entry();
+            entry.counts = this.readInts();
+
+            this.bpSets  = new BreakpointSet[this.readCount(4)];
+            this.tables  = new FuncTable[this.readCount(4)];
+            this.signals = new Signal[this.readCount(4)];
+            this.blocks  = new Block[this.readCount(4)];
+            this.model = new Model( this.blocks.length, this.signals.length );
+            for (int i = 0; i < this.bpSets.length; i++) {
+                this.bpSets[i] = new BreakpointSet( this.model );
+            }
+            for (int i = 0; i < this.tables.length; i++) {
+                this.tables[i] = new FuncTable( this.model );
+            }
+            for (int i = 0; i < this.signals.length; i++) {
+                this.signals[i] = new Signal();
+            }
+            for (int i = 0; i < this.blocks.length; i++) {
+                this.blocks[i] = newBlock( this.readInt() );
+            }
+
+            for (int i = 0; i < this.bpSets.length; i++) {
+                this.bpSets[i].readCache( this );
+            }
+            for (int i = 0; i < this.tables.length; i++) {
+                this.tables[i].readCache( this );
+            }
+            for (int i = 0; i < this.signals.length; i++) {
+                this.signals[i].readCache( this );
+            }
+            for (int i = 0; i < this.blocks.length; i++) {
+                this.blocks[i].readCache( this );
+            }
+            this.model.readCache( this );
+            entry.model = this.model;
+
+            if (this.readBoolean()) {
+                int numShots = this.readCount(4);
+                entry.checkcases = new CheckData();
+                for (int i = 0; i < numShots; i++) {
+                    StaticShot shot = new StaticShot();
+                    shot.scenario = this.readString();
+                    shot.inputs = this.readVectorInfos();
+                    shot.outputs = this.readVectorInfos();
+                    entry.checkcases.staticShots.add( shot );
+                }
+            }
+            return entry;
+        }
+
+        /**
+         *  reads a count of items of at least the given size each
+         */
+
+        private int readCount( int itemBytes ) throws IOException
+        {
+            int n = this.buf.getInt();
+            if (n < 0 || (long) n*itemBytes > this.buf.remaining()) {
+                throw new IOException("Bad count in model cache entry.");
+            }
+            return n;
+        }
+
+        int readInt() { return this.buf.getInt(); }
+
+        boolean readBoolean() { return this.buf.get() != 0; }
+
+        double readDouble() { return this.buf.getDouble(); }
+
+        String readString() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            byte[] bytes = new byte[this.readCount(1)];
+            this.buf.get( bytes );
+            return new String( bytes, "UTF-8" );
+        }
+
+        ArrayList<String> readStrings() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            int n = this.readCount(4);
+            ArrayList<String> list = new ArrayList<String>(n);
+            for (int i = 0; i < n; i++) {
+                list.add( this.readString() );
+            }
+            return list;
+        }
+
+        int[] readInts() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            int[] values = new int[this.readCount(4)];
+            this.buf.asIntBuffer().get( values );
+            this.buf.position( this.buf.position() + 4*values.length );
+            return values;
+        }
+
+        double[] readDoubles() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            double[] values = new double[this.readCount(8)];
+            this.buf.asDoubleBuffer().get( values );
+            this.buf.position( this.buf.position() + 8*values.length );
+            return values;
+        }
+
+        private static <T> T ref( T[] objects, int i ) throws IOException
+        {
+            if (i == -1) {
+                return null;
+            }
+            if (i < 0 || i >= objects.length) {
+                throw new IOException("Bad reference in model cache entry.");
+            }
+            return objects[i];
+        }
+
+        Signal readSignal() throws IOException { return ref( this.signals, this.readInt() ); }
+
+        Block readBlock() throws IOException { return ref( this.blocks, this.readInt() ); }
+
+        FuncTable readTable() throws IOException { return ref( this.tables, this.readInt() ); }
+
+        BreakpointSet readBreakpointSet() throws IOException { return ref( this.bpSets, this.readInt() ); }
+
+        SignalArrayList readSignals() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            int n = this.readCount(4);
+            SignalArrayList list = new SignalArrayList(n);
+            for (int i = 0; i < n; i++) {
+                list.add( this.readSignal() );
+            }
+            return list;
+        }
+
+        BlockArrayList readBlocks() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            int n = this.readCount(4);
+            BlockArrayList list = new BlockArrayList(n);
+            for (int i = 0; i < n; i++) {
+                list.add( this.readBlock() );
+            }
+            return list;
+        }
+
+        VectorInfoArrayList readVectorInfos() throws IOException
+        {
+            if (this.buf.getInt(this.buf.position()) == -1) {
+                this.buf.getInt();
+                return null;
+            }
+            int n = this.readCount(4);
+            VectorInfoArrayList list = new VectorInfoArrayList(n);
+            for (int i = 0; i < n; i++) {
+                VectorInfo vi = new VectorInfo();
+                vi.signalName = this.readString();
+                vi.myUnits = this.readString();
+                vi.isInput = this.readBoolean();
+                vi.source = this.readBlock();
+                vi.sink = this.readBlock();
+                vi.value = this.readDouble();
+                vi.tolerance = this.readDouble();
+                list.add( vi );
+            }
+            return list;
+        }
+    }
+}
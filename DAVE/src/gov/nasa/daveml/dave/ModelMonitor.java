@@ -0,0 +1,129 @@
+// ModelMonitor
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+/**
+ *
+ * <p> Evaluation counters of a model, published as a JMX MBean </p>
+ *
+ * <p> Created by {@link Model#registerMBean()}. While a model has a
+ * monitor, each <code>cycle()</code> is timed (two calls of
+ * <code>System.nanoTime()</code>) and counted, and {@link DAVE#verify()}
+ * adds its checkcase results. Counters are read from JMX threads while
+ * the model runs on its own, so all access is synchronized. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class ModelMonitor implements ModelMonitorMBean
+{
+    /**
+     *  model watched
+     */
+
+    private final Model ourModel;
+
+    /**
+     *  counters
+     */
+
+    private long cycles;
+    private long totalNanos;
+    private long maxNanos;
+    private long passed;
+    private long failed;
+
+
+    /**
+     *
+     * <p> Creates a monitor with zeroed counters </p>
+     *
+     **/
+
+    ModelMonitor( Model m )
+    {
+        this.ourModel = m;
+    }
+
+
+    /**
+     *
+     * <p> Counts one cycle of the given duration </p>
+     *
+     **/
+
+    synchronized void cycled( long nanos )
+    {
+        this.cycles++;
+        this.totalNanos += nanos;
+        if (nanos > this.maxNanos) {
+            this.maxNanos = nanos;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Counts the results of checking embedded checkcases </p>
+     *
+     **/
+
+    synchronized void verified( int numPassed, int numFailed )
+    {
+        this.passed += numPassed;
+        this.failed += numFailed;
+    }
+
+
+    public String getName()     { return this.ourModel.getName(); }
+
+    public int getNumBlocks()   { return this.ourModel.getNumBlocks(); }
+
+    public int getNumSignals()  { return this.ourModel.getNumSignals(); }
+
+    public int getNumTables()   { return this.ourModel.getNumTables(); }
+
+    public long getTableBytes() { return PhaseEvents.tableBytes( this.ourModel ); }
+
+    public synchronized long getCycleCount() { return this.cycles; }
+
+    public synchronized double getMeanCycleMicros()
+    {
+        return this.cycles == 0 ? 0.0 : 1.0e-3*this.totalNanos/this.cycles;
+    }
+
+    public synchronized double getMaxCycleMicros() { return 1.0e-3*this.maxNanos; }
+
+    public synchronized long getCheckcasesPassed() { return this.passed; }
+
+    public synchronized long getCheckcasesFailed() { return this.failed; }
+
+    public boolean isVerbose()  { return this.ourModel.isVerbose(); }
+
+    public synchronized void resetCounters()
+    {
+        this.cycles     = 0;
+        this.totalNanos = 0;
+        this.maxNanos   = 0;
+        this.passed     = 0;
+        this.failed     = 0;
+    }
+
+    public boolean toggleVerbose()
+    {
+        if (this.ourModel.isVerbose()) {
+            this.ourModel.silence();
+        } else {
+            this.ourModel.makeVerbose();
+        }
+        return this.ourModel.isVerbose();
+    }
+}
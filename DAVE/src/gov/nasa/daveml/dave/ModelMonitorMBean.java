@@ -0,0 +1,63 @@
+// ModelMonitorMBean
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+/**
+ *
+ * <p> JMX management interface of a {@link ModelMonitor} </p>
+ *
+ * <p> Cycle and checkcase counts are since the model was registered or
+ * since <code>resetCounters()</code> was last invoked. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public interface ModelMonitorMBean
+{
+    /** Returns the model's name */
+    String getName();
+
+    /** Returns the number of blocks in the model */
+    int getNumBlocks();
+
+    /** Returns the number of signals in the model */
+    int getNumSignals();
+
+    /** Returns the number of function tables in the model */
+    int getNumTables();
+
+    /** Returns an estimate of the memory held by function table values, in bytes */
+    long getTableBytes();
+
+    /** Returns the number of calls of <code>Model.cycle()</code> */
+    long getCycleCount();
+
+    /** Returns the mean time taken by <code>Model.cycle()</code>, in microseconds */
+    double getMeanCycleMicros();
+
+    /** Returns the longest time taken by <code>Model.cycle()</code>, in microseconds */
+    double getMaxCycleMicros();
+
+    /** Returns the number of embedded checkcases matched by <code>DAVE.verify()</code> */
+    long getCheckcasesPassed();
+
+    /** Returns the number of embedded checkcases not matched by <code>DAVE.verify()</code> */
+    long getCheckcasesFailed();
+
+    /** Indicates if the model is reporting verbosely */
+    boolean isVerbose();
+
+    /** Zeroes the cycle and checkcase counts and timings */
+    void resetCounters();
+
+    /** Turns the model's verbose reporting on or off; returns the new setting */
+    boolean toggleVerbose();
+}
@@ -0,0 +1,779 @@
+// ModelOptimizer
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import org.jdom.Element;
+
+/**
+ *
+ * <p> Simplifies the block graph of an initialized {@link Model} </p>
+ *
+ * <p> Rewrites blocks in place in the model's block, signal and
+ * execution-order lists, so interpreted and compiled evaluation and the
+ * code generators all see the simplified graph. Named variables (signals
+ * that are not <em>derived</em>) are always kept; only the blocks that
+ * compute them may change. Passes: </p>
+ * <ul>
+ *   <li><b>Constant folding</b>: a math block whose inputs all come from
+ *       constant blocks is replaced by a constant holding its value.
+ *       Working in execution order, whole constant subexpressions
+ *       collapse. Table and breakpoint blocks are left alone.</li>
+ *   <li><b>Strength reduction</b>: division by a constant becomes
+ *       multiplication by its reciprocal, and raising a named variable to
+ *       a constant power of 2, 3 or 4 becomes a product.</li>
+ *   <li><b>Common subexpression elimination</b>: a block computing the
+ *       same operation on the same input signals as an earlier block is
+ *       dropped and its destinations rewired to the earlier result.</li>
+ *   <li><b>Expression fusion</b> (separate step, see {@link #fuse()}):
+ *       a sum, difference, product or absolute value whose intermediate
+ *       results feed nothing else is merged with those operations into a
+ *       single {@link BlockMathExpression}.</li>
+ * </ul>
+ * <p> Anonymous constants left with no destinations are removed. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+class ModelOptimizer
+{
+    /**
+     *  largest integer exponent replaced by repeated multiplication
+     */
+
+    static final int MAX_POWER = 4;
+
+    /**
+     *  model being optimized
+     */
+
+    private final Model m;
+
+    /**
+     *  blocks to be removed from the model
+     */
+
+    private final IdentityHashMap<Block, Boolean> deadBlocks;
+
+    /**
+     *  signals to be removed from the model
+     */
+
+    private final IdentityHashMap<Signal, Boolean> deadSignals;
+
+    /**
+     *  number of blocks folded into constants
+     */
+
+    int numFolded;
+
+    /**
+     *  number of operations replaced by cheaper ones
+     */
+
+    int numReduced;
+
+    /**
+     *  number of duplicate blocks removed
+     */
+
+    int numMerged;
+
+    /**
+     *  number of blocks merged into fused expressions
+     */
+
+    int numFused;
+
+
+    /**
+     *
+     * <p> Creates optimizer for an initialized model </p>
+     *
+     **/
+
+    ModelOptimizer( Model m )
+    {
+        this.m = m;
+        this.deadBlocks  = new IdentityHashMap<Block, Boolean>();
+        this.deadSignals = new IdentityHashMap<Signal, Boolean>();
+        this.numFolded  = 0;
+        this.numReduced = 0;
+        this.numMerged  = 0;
+        this.numFused   = 0;
+    }
+
+
+    /**
+     *
+     * <p> Runs all passes and removes blocks and signals no longer
+     * needed </p>
+     *
+     * @return number of blocks changed
+     * @throws DAVEException if a block cannot be rewired
+     *
+     **/
+
+    int run() throws DAVEException
+    {
+        this.foldConstants();
+        this.reduceStrength();
+        this.eliminateCommonSubexpressions();
+        this.discardDead();
+        return this.numFolded + this.numReduced + this.numMerged;
+    }
+
+
+    /**
+     *
+     * <p> Fuses arithmetic chains into expression blocks and removes the
+     * blocks they replace. Kept apart from {@link #run()} because it
+     * changes the set of block types in the model. </p>
+     *
+     * @return number of blocks merged into expressions
+     * @throws DAVEException if a block cannot be rewired
+     *
+     **/
+
+    int fuse() throws DAVEException
+    {
+        this.fuseExpressions();
+        this.discardDead();
+        return this.numFused;
+    }
+
+
+    /**
+     *
+     * <p> Replaces each block computed only from constants with a
+     * constant block </p>
+     *
+     **/
+
+    void foldConstants() throws DAVEException
+    {
+        BlockArrayList order = this.m.executeOrder;
+        for (int i = 0; i < order.size(); i++) {
+            Block b = order.get(i);
+            if (this.deadBlocks.containsKey(b) || !isFoldable(b)) {
+                continue;
+            }
+            b.update();
+            double v = b.value;
+            if (!b.isReady() || Double.isNaN(v) || Double.isInfinite(v)) {
+                continue;
+            }
+            BlockMathConstant c = this.newConstant(v);
+            this.detachInputs(b);
+            c.addOutput(b.getOutput());
+            order.set(i, c);
+            this.deadBlocks.put(b, Boolean.TRUE);
+            this.numFolded++;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Indicates if a block is a pure function of constant inputs </p>
+     *
+     **/
+
+    static boolean isFoldable( Block b )
+    {
+        if (b instanceof BlockInput || b instanceof BlockOutput ||
+            b instanceof BlockMathConstant || b instanceof BlockBP ||
+            b instanceof BlockFuncTable) {
+            return false;
+        }
+        if (b.getOutput() == null || b.numInputs() == 0) {
+            return false;
+        }
+        Iterator<Signal> it = b.getInputIterator();
+        while (it.hasNext()) {
+            Signal s = it.next();
+            if (s == null || !(s.getSourceBlock() instanceof BlockMathConstant)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     *
+     * <p> Replaces costly operations that have a constant operand with
+     * cheaper equivalents </p>
+     *
+     **/
+
+    void reduceStrength() throws DAVEException
+    {
+        BlockArrayList order = this.m.executeOrder;
+        for (int i = 0; i < order.size(); i++) {
+            Block b = order.get(i);
+            if (this.deadBlocks.containsKey(b)) {
+                continue;
+            }
+            if (b instanceof BlockMathProduct) {
+                BlockMathConstant c = this.divideToMultiply((BlockMathProduct) b);
+                if (c != null) {
+                    order.add(i, c);    // reciprocal is computed first
+                    i++;
+                }
+            } else if (b instanceof BlockMathFunction) {
+                Block p = this.powerToProduct((BlockMathFunction) b);
+                if (p != null) {
+                    order.set(i, p);
+                }
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Turns <code>x/c</code> into <code>x*(1/c)</code> for constant
+     * <code>c</code>; returns the new reciprocal constant block, or null
+     * if the block was not changed </p>
+     *
+     **/
+
+    private BlockMathConstant divideToMultiply( BlockMathProduct b ) throws DAVEException
+    {
+        if (b.getBlockType().equals("times") || b.numInputs() != 2) {
+            return null;
+        }
+        Signal divisor = b.getInput(1);
+        Double c = constantValue(divisor);
+        if (c == null || c == 0.0) {
+            return null;
+        }
+        double recip = 1.0/c;
+        if (Double.isInfinite(recip) || recip == 0.0) {
+            return null;
+        }
+        divisor.removeSink(b);
+        if (b.getInput(0) == divisor) {
+            divisor.addSink(b, 1);      // x/x: keep numerator connection
+        }
+        this.dropIfUnused(divisor);
+
+        BlockMathConstant rc = this.newConstant(recip);
+        Signal rs = this.newDerivedSignal(rc);
+        rs.addSink(b, 2);
+        b.renameInVarID(2);
+        b.blockType = "times";
+        this.numReduced++;
+        return rc;
+    }
+
+
+    /**
+     *
+     * <p> Turns <code>x^n</code> into <code>x*x*...</code> for small
+     * constant integer <code>n</code>; returns the new product block, or
+     * null if the block was not changed. Only named (non-derived) bases
+     * are rewritten, so generated code never repeats a subexpression. </p>
+     *
+     **/
+
+    private Block powerToProduct( BlockMathFunction b ) throws DAVEException
+    {
+        if (!"power".equals(b.getFuncType()) || b.numInputs() != 2) {
+            return null;
+        }
+        Signal base = b.getInput(0);
+        Signal exponent = b.getInput(1);
+        Double n = constantValue(exponent);
+        if (base == null || base.isDerived() || n == null ||
+            n != Math.rint(n) || n < 2 || n > MAX_POWER) {
+            return null;
+        }
+        Element apply = new Element("apply");
+        apply.addContent(new Element("times"));
+        BlockMathProduct p = new BlockMathProduct(apply, this.m);
+        this.makeUnique(p);
+
+        base.removeSink(b);
+        exponent.removeSink(b);
+        this.dropIfUnused(exponent);
+        for (int k = 1; k <= n.intValue(); k++) {
+            base.addSink(p, k);
+        }
+        p.addOutput(b.getOutput());
+        this.deadBlocks.put(b, Boolean.TRUE);
+        this.numReduced++;
+        return p;
+    }
+
+
+    /**
+     *
+     * <p> Removes blocks that repeat the work of an earlier block </p>
+     *
+     * <p> Blocks are keyed by class, operation and the identity of their
+     * input signals (and of their table or breakpoint set, if any).
+     * Working in execution order, the inputs of a block have already
+     * been merged by the time it is keyed, so identical subtrees of any
+     * depth collapse. Only blocks with anonymous (derived) outputs are
+     * removed; a named variable keeps its own block. </p>
+     *
+     **/
+
+    void eliminateCommonSubexpressions()
+    {
+        HashMap<String, Block> seen = new HashMap<String, Block>();
+        IdentityHashMap<Object, Integer> ids = new IdentityHashMap<Object, Integer>();
+        BlockArrayList order = this.m.executeOrder;
+        for (int i = 0; i < order.size(); i++) {
+            Block b = order.get(i);
+            if (this.deadBlocks.containsKey(b)) {
+                continue;
+            }
+            String key = structuralKey(b, ids);
+            if (key == null) {
+                continue;
+            }
+            Block earlier = seen.get(key);
+            if (earlier == null) {
+                seen.put(key, b);
+            } else if (b.getOutput().isDerived()) {
+                Signal dup = b.getOutput();
+                redirect(dup, earlier.getOutput());
+                this.detachInputs(b);
+                this.deadBlocks.put(b, Boolean.TRUE);
+                this.deadSignals.put(dup, Boolean.TRUE);
+                this.numMerged++;
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Returns a string identifying the operation a block performs
+     * on its inputs, or null if the block is not a candidate </p>
+     *
+     **/
+
+    static String structuralKey( Block b, IdentityHashMap<Object, Integer> ids )
+    {
+        if (b.getOutput() == null) {
+            return null;
+        }
+        String op;
+        Object data = null;
+        if (b instanceof BlockMathConstant) {
+            op = Long.toString(Double.doubleToLongBits(b.getValue()));
+        } else if (b instanceof BlockMathSum) {
+            op = "plus";
+        } else if (b instanceof BlockMathMinus) {
+            op = "minus";
+        } else if (b instanceof BlockMathProduct) {
+            op = ((BlockMathProduct) b).getBlockType();
+        } else if (b instanceof BlockMathAbs) {
+            op = "abs";
+        } else if (b instanceof BlockMathFunction) {
+            op = ((BlockMathFunction) b).getFuncType();
+        } else if (b instanceof BlockMathMinmax) {
+            op = ((BlockMathMinmax) b).getFuncType();
+        } else if (b instanceof BlockMathRelation) {
+            op = ((BlockMathRelation) b).getRelationOp();
+        } else if (b instanceof BlockMathLogic) {
+            op = ((BlockMathLogic) b).getLogicOp();
+        } else if (b instanceof BlockMathSwitch) {
+            op = "piecewise";
+        } else if (b instanceof BlockMathExpression) {
+            op = Arrays.toString(((BlockMathExpression) b).getProgram());
+        } else if (b instanceof BlockBP) {
+            op = "bp";
+            data = ((BlockBP) b).getBPset();
+        } else if (b instanceof BlockFuncTable) {
+            op = "table";
+            data = ((BlockFuncTable) b).getFunctionTableDef();
+        } else {
+            return null;
+        }
+
+        int numIn = b.numInputs();
+        int[] in = new int[numIn];
+        for (int k = 0; k < numIn; k++) {
+            Signal s = b.getInput(k);
+            if (s == null) {
+                return null;
+            }
+            in[k] = idOf(s, ids);
+        }
+        // a+b and b+a (a*b and b*a) round identically
+        if (numIn == 2 && (op.equals("plus") || op.equals("times")) && in[0] > in[1]) {
+            int t = in[0];
+            in[0] = in[1];
+            in[1] = t;
+        }
+
+        StringBuilder key = new StringBuilder(b.getClass().getName());
+        key.append(' ').append(op);
+        if (data != null) {
+            key.append(" @").append(idOf(data, ids));
+        }
+        for (int k = 0; k < numIn; k++) {
+            key.append(' ').append(in[k]);
+        }
+        return key.toString();
+    }
+
+
+    /**
+     *
+     * <p> Returns a small integer standing for an object's identity </p>
+     *
+     **/
+
+    private static int idOf( Object o, IdentityHashMap<Object, Integer> ids )
+    {
+        Integer id = ids.get(o);
+        if (id == null) {
+            id = ids.size();
+            ids.put(o, id);
+        }
+        return id;
+    }
+
+
+    /**
+     *
+     * <p> Moves every destination of one signal to another </p>
+     *
+     **/
+
+    static void redirect( Signal from, Signal to )
+    {
+        Block[] dests = from.getDestBlocks().toArray(new Block[0]);
+        Integer[] ports = from.getDestPortNumbers().toArray(new Integer[0]);
+        from.removeDestBlocks();
+        for (int k = 0; k < dests.length; k++) {
+            to.addSink(dests[k], ports[k]);
+            dests[k].renameInVarID(ports[k]);
+        }
+    }
+
+
+    /**
+     *
+     * <p> Replaces each chain of arithmetic blocks whose intermediate
+     * results have no other use with a single expression block </p>
+     *
+     **/
+
+    void fuseExpressions() throws DAVEException
+    {
+        BlockArrayList order = this.m.executeOrder;
+        for (int i = 0; i < order.size(); i++) {
+            Block b = order.get(i);
+            if (this.deadBlocks.containsKey(b) || !isFusable(b)) {
+                continue;
+            }
+            boolean worthwhile = false;
+            Iterator<Signal> it = b.getInputIterator();
+            while (it.hasNext()) {
+                worthwhile |= this.isInlinable(it.next());
+            }
+            if (!worthwhile) {
+                continue;
+            }
+
+            ArrayList<Signal> leaves = new ArrayList<Signal>();
+            ArrayList<Block> absorbed = new ArrayList<Block>();
+            ArrayList<Integer> code = new ArrayList<Integer>();
+            this.emit(b, leaves, absorbed, code);
+
+            int[] program = new int[code.size()];
+            for (int k = 0; k < program.length; k++) {
+                program[k] = code.get(k);
+            }
+            BlockMathExpression e = new BlockMathExpression(program, this.m);
+            this.makeUnique(e);
+
+            for (Block a : absorbed) {
+                Iterator<Signal> in = a.getInputIterator();
+                while (in.hasNext()) {
+                    Signal s = in.next();
+                    if (s != null) {
+                        s.removeSink(a);
+                    }
+                }
+                this.deadBlocks.put(a, Boolean.TRUE);
+                if (a != b) {
+                    this.deadSignals.put(a.getOutput(), Boolean.TRUE);
+                }
+            }
+            for (int k = 0; k < leaves.size(); k++) {
+                leaves.get(k).addSink(e, k+1);
+            }
+            e.addOutput(b.getOutput());
+            order.set(i, e);
+            this.numFused += absorbed.size() - 1;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Indicates if a block is an arithmetic operation that can be
+     * part of a fused expression </p>
+     *
+     **/
+
+    static boolean isFusable( Block b )
+    {
+        if (b.getOutput() == null) {
+            return false;
+        }
+        int numIn = b.numInputs();
+        if (b instanceof BlockMathSum || b instanceof BlockMathExpression) {
+            return numIn >= 1;
+        }
+        if (b instanceof BlockMathProduct) {
+            return ((BlockMathProduct) b).getBlockType().equals("times") ? numIn >= 1 : numIn == 2;
+        }
+        if (b instanceof BlockMathMinus) {
+            return numIn == 1 || numIn == 2;
+        }
+        if (b instanceof BlockMathAbs) {
+            return numIn == 1;
+        }
+        return false;
+    }
+
+
+    /**
+     *
+     * <p> Indicates if a signal is an anonymous intermediate result,
+     * used only once, of a fusable block </p>
+     *
+     **/
+
+    private boolean isInlinable( Signal s )
+    {
+        if (s == null || !s.isDerived() || s.getDestBlocks().size() != 1) {
+            return false;
+        }
+        Block source = s.getSourceBlock();
+        return source != null && !this.deadBlocks.containsKey(source) && isFusable(source);
+    }
+
+
+    /**
+     *
+     * <p> Appends the postfix program for a block, inlining inlinable
+     * inputs, to <code>code</code> </p>
+     *
+     **/
+
+    private void emit( Block b, ArrayList<Signal> leaves, ArrayList<Block> absorbed,
+                       ArrayList<Integer> code )
+    {
+        absorbed.add(b);
+        if (b instanceof BlockMathExpression) {
+            int[] program = ((BlockMathExpression) b).getProgram();
+            for (int pc = 0; pc < program.length; pc += 2) {
+                if (program[pc] == BlockMathExpression.LOAD) {
+                    this.emitInput(b.getInput(program[pc+1]), leaves, absorbed, code);
+                } else {
+                    code.add(program[pc]);
+                    code.add(program[pc+1]);
+                }
+            }
+            return;
+        }
+
+        int numIn = b.numInputs();
+        for (int k = 0; k < numIn; k++) {
+            this.emitInput(b.getInput(k), leaves, absorbed, code);
+        }
+        int op;
+        if (b instanceof BlockMathSum) {
+            op = BlockMathExpression.SUM;
+        } else if (b instanceof BlockMathProduct) {
+            op = ((BlockMathProduct) b).getBlockType().equals("times")
+                ? BlockMathExpression.PROD : BlockMathExpression.DIV;
+        } else if (b instanceof BlockMathMinus) {
+            op = (numIn == 1) ? BlockMathExpression.NEG : BlockMathExpression.SUB;
+        } else {
+            op = BlockMathExpression.ABS;
+        }
+        code.add(op);
+        code.add(numIn);
+    }
+
+
+    /**
+     *
+     * <p> Appends the program for one input: either the inlined
+     * program of its source, or a load of a (possibly shared) leaf </p>
+     *
+     **/
+
+    private void emitInput( Signal s, ArrayList<Signal> leaves, ArrayList<Block> absorbed,
+                            ArrayList<Integer> code )
+    {
+        if (this.isInlinable(s)) {
+            this.emit(s.getSourceBlock(), leaves, absorbed, code);
+            return;
+        }
+        int index = -1;
+        for (int k = 0; k < leaves.size(); k++) {
+            if (leaves.get(k) == s) {
+                index = k;
+                break;
+            }
+        }
+        if (index < 0) {
+            index = leaves.size();
+            leaves.add(s);
+        }
+        code.add(BlockMathExpression.LOAD);
+        code.add(index);
+    }
+
+
+    /**
+     *
+     * <p> Returns value of a signal driven by a constant block, or null </p>
+     *
+     **/
+
+    static Double constantValue( Signal s )
+    {
+        if (s == null || !(s.getSourceBlock() instanceof BlockMathConstant)) {
+            return null;
+        }
+        return ((BlockMathConstant) s.getSourceBlock()).getValueAsDouble();
+    }
+
+
+    /**
+     *
+     * <p> Disconnects a block from all its input signals, dropping any
+     * anonymous constants left unused </p>
+     *
+     **/
+
+    private void detachInputs( Block b )
+    {
+        Iterator<Signal> it = b.getInputIterator();
+        while (it.hasNext()) {
+            Signal s = it.next();
+            if (s != null) {
+                s.removeSink(b);
+                this.dropIfUnused(s);
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Marks a derived constant signal and its source for removal if
+     * nothing uses it any more </p>
+     *
+     **/
+
+    private void dropIfUnused( Signal s )
+    {
+        if (s.isDerived() && !s.hasDest() && s.getSourceBlock() instanceof BlockMathConstant) {
+            this.deadSignals.put(s, Boolean.TRUE);
+            this.deadBlocks.put(s.getSourceBlock(), Boolean.TRUE);
+        }
+    }
+
+
+    /**
+     *
+     * <p> Creates a constant block with a unique name; the block is
+     * added to the model but not to the execution order </p>
+     *
+     **/
+
+    private BlockMathConstant newConstant( double value )
+    {
+        BlockMathConstant c = new BlockMathConstant( Double.toString(value), this.m );
+        this.makeUnique(c);
+        try {
+            c.update();             // so downstream blocks see it as ready
+        } catch (DAVEException e) {
+            // constants always update
+        }
+        return c;
+    }
+
+
+    /**
+     *
+     * <p> Creates an anonymous signal carrying a block's output </p>
+     *
+     **/
+
+    private Signal newDerivedSignal( Block source ) throws DAVEException
+    {
+        Signal s = new Signal( source.getName(), this.m );
+        s.setDerivedFlag();
+        source.addOutput(s);
+        return s;
+    }
+
+
+    /**
+     *
+     * <p> Renames a newly created block, if needed, so that neither its
+     * name nor the varID of a signal derived from it is already
+     * taken </p>
+     *
+     **/
+
+    private void makeUnique( Block blk )
+    {
+        String stem = blk.getName();
+        String candidate = stem;
+        int k = 1;
+        Block found = this.m.getBlockByName(candidate);
+        while ((found != null && found != blk) ||
+               this.m.getSignalByVarID(Signal.toValidId(candidate)) != null) {
+            candidate = stem + "_" + (k++);
+            found = this.m.getBlockByName(candidate);
+        }
+        if (!candidate.equals(stem)) {
+            blk.setName(candidate);
+        }
+    }
+
+
+    /**
+     *
+     * <p> Removes dead blocks and signals from all model lists </p>
+     *
+     **/
+
+    private void discardDead()
+    {
+        if (this.deadBlocks.isEmpty() && this.deadSignals.isEmpty()) {
+            return;
+        }
+        this.m.discard( this.deadBlocks.keySet(), this.deadSignals.keySet() );
+        this.deadBlocks.clear();
+        this.deadSignals.clear();
+    }
+}
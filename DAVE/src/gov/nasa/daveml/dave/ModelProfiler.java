@@ -0,0 +1,310 @@
+// ModelProfiler
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ *
+ * <p> Per-block timing of model cycles </p>
+ *
+ * <p> While profiling is on (see {@link Model#setProfiling(boolean)}),
+ * each cycle updates the model's blocks one at a time, in execution
+ * order, and records for each block the number of <code>update()</code>
+ * calls and the total and longest time spent in them. Breakpoint blocks
+ * also record the number of breakpoints compared while searching for
+ * their input's interval. Times are taken with
+ * <code>System.nanoTime()</code>, so include timer overhead of some tens
+ * of nanoseconds per call; they are best used to rank blocks against one
+ * another. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class ModelProfiler
+{
+    /**
+     *  blocks profiled, in execution order
+     */
+
+    private final Block[] blocks;
+
+    /**
+     *  statistics, by execution order position
+     */
+
+    private final long[] calls;
+    private final long[] totalNanos;
+    private final long[] maxNanos;
+    private final long[] searchSteps;
+
+    /**
+     *  number of cycles profiled
+     */
+
+    private long cycles;
+
+    /**
+     *  position of block being updated, or -1 between updates
+     */
+
+    int current;
+
+
+    /**
+     *
+     * <p> Creates an empty profile of the given execution order </p>
+     *
+     **/
+
+    ModelProfiler( BlockArrayList order )
+    {
+        this.blocks      = order.toArray( new Block[order.size()] );
+        this.calls       = new long[this.blocks.length];
+        this.totalNanos  = new long[this.blocks.length];
+        this.maxNanos    = new long[this.blocks.length];
+        this.searchSteps = new long[this.blocks.length];
+        this.current     = -1;
+    }
+
+
+    /**
+     *
+     * <p> Updates, and times, each block of a schedule </p>
+     *
+     * @param skipUnselected true to skip blocks not selected
+     * @throws DAVEException if a block cannot be updated
+     *
+     **/
+
+    void cycle( boolean skipUnselected ) throws DAVEException
+    {
+        try {
+            for (int i = 0; i < this.blocks.length; i++) {
+                Block blk = this.blocks[i];
+                if (skipUnselected && !blk.isSelected()) {
+                    continue;
+                }
+                this.current = i;
+                long start = System.nanoTime();
+                blk.update();
+                long elapsed = System.nanoTime() - start;
+                this.calls[i]++;
+                this.totalNanos[i] += elapsed;
+                if (elapsed > this.maxNanos[i]) {
+                    this.maxNanos[i] = elapsed;
+                }
+            }
+        } finally {
+            this.current = -1;
+        }
+        this.cycles++;
+    }
+
+
+    /**
+     *
+     * <p> Adds breakpoint comparisons to the block being updated </p>
+     *
+     **/
+
+    void addSearchSteps( int steps )
+    {
+        if (this.current >= 0) {
+            this.searchSteps[this.current] += steps;
+        }
+    }
+
+
+    /**
+     *
+     * <p> Clears all statistics </p>
+     *
+     **/
+
+    public void reset()
+    {
+        Arrays.fill( this.calls, 0 );
+        Arrays.fill( this.totalNanos, 0 );
+        Arrays.fill( this.maxNanos, 0 );
+        Arrays.fill( this.searchSteps, 0 );
+        this.cycles = 0;
+    }
+
+
+    /**
+     *
+     * <p> Returns the number of cycles profiled </p>
+     *
+     **/
+
+    public long getNumCycles() { return this.cycles; }
+
+
+    /**
+     *
+     * <p> Returns the number of blocks profiled </p>
+     *
+     **/
+
+    public int getNumBlocks() { return this.blocks.length; }
+
+
+    /**
+     *
+     * <p> Returns the block at an execution order position </p>
+     *
+     **/
+
+    public Block getBlock( int i ) { return this.blocks[i]; }
+
+
+    /**
+     *
+     * <p> Returns the number of updates of a block </p>
+     *
+     **/
+
+    public long getCalls( int i ) { return this.calls[i]; }
+
+
+    /**
+     *
+     * <p> Returns the total nanoseconds spent updating a block </p>
+     *
+     **/
+
+    public long getTotalNanos( int i ) { return this.totalNanos[i]; }
+
+
+    /**
+     *
+     * <p> Returns the longest single update of a block, in nanoseconds </p>
+     *
+     **/
+
+    public long getMaxNanos( int i ) { return this.maxNanos[i]; }
+
+
+    /**
+     *
+     * <p> Returns the number of breakpoints compared by a breakpoint
+     * block's searches (zero for other blocks) </p>
+     *
+     **/
+
+    public long getSearchSteps( int i ) { return this.searchSteps[i]; }
+
+
+    /**
+     *
+     * <p> Returns the total nanoseconds spent updating all blocks </p>
+     *
+     **/
+
+    public long getTotalNanos()
+    {
+        long sum = 0;
+        for (int i = 0; i < this.totalNanos.length; i++) {
+            sum += this.totalNanos[i];
+        }
+        return sum;
+    }
+
+
+    /**
+     *
+     * <p> Returns execution order positions, most time-consuming first </p>
+     *
+     **/
+
+    public Integer[] ranking()
+    {
+        Integer[] order = new Integer[this.blocks.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort( order, new Comparator<Integer>() {
+            public int compare( Integer a, Integer b ) {
+                long ta = totalNanos[a.intValue()];
+                long tb = totalNanos[b.intValue()];
+                return ta < tb ? 1 : (ta > tb ? -1 : a.compareTo(b));
+            }
+        });
+        return order;
+    }
+
+
+    /**
+     *
+     * <p> Writes a table of the most time-consuming blocks </p>
+     *
+     * @param out stream to write to
+     * @param maxRows most blocks to list
+     *
+     **/
+
+    public void report( PrintStream out, int maxRows )
+    {
+        long total = this.getTotalNanos();
+        Integer[] order = this.ranking();
+        int rows = Math.min( maxRows, order.length );
+
+        int width = "block".length();
+        for (int r = 0; r < rows; r++) {
+            width = Math.max( width, this.blocks[order[r]].getName().length() );
+        }
+
+        out.println();
+        out.println("Profile of " + this.cycles + " cycles: " + (total / 1000)
+                + " us in " + this.blocks.length + " blocks");
+        out.println("  rank  " + pad("block", width) + "  " + pad("type", 22)
+                + "     calls   total us    mean ns     max ns  % time  bp steps");
+        for (int r = 0; r < rows; r++) {
+            int i = order[r].intValue();
+            long mean = this.calls[i] == 0 ? 0 : this.totalNanos[i] / this.calls[i];
+            double share = total == 0 ? 0.0 : 100.0 * this.totalNanos[i] / total;
+            out.println(padLeft(Integer.toString(r + 1), 6) + "  "
+                    + pad(this.blocks[i].getName(), width) + "  "
+                    + pad(this.blocks[i].getType(), 22)
+                    + padLeft(Long.toString(this.calls[i]), 10)
+                    + padLeft(Long.toString(this.totalNanos[i] / 1000), 11)
+                    + padLeft(Long.toString(mean), 11)
+                    + padLeft(Long.toString(this.maxNanos[i]), 11)
+                    + padLeft(String.format("%.1f", share), 8)
+                    + padLeft(this.blocks[i] instanceof BlockBP
+                              ? Long.toString(this.searchSteps[i]) : "-", 10));
+        }
+        if (rows < order.length) {
+            out.println("  (" + (order.length - rows) + " more blocks not listed)");
+        }
+    }
+
+    private static String pad( String s, int width )
+    {
+        StringBuilder sb = new StringBuilder( s );
+        while (sb.length() < width) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String padLeft( String s, int width )
+    {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() + s.length() < width) {
+            sb.append(' ');
+        }
+        return sb.append( s ).toString();
+    }
+}
@@ -25,6 +25,8 @@ package gov.nasa.daveml.dave;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 
 /**
  *
@@ -32,11 +34,21 @@ import java.util.ArrayList;
  * methods to add, delete, and create unique names based on an initial
  * namespace. </p>
  *
+ * <p> A hashed count of each name is kept alongside the list so that
+ * <code>isUnique()</code> and <code>addUnique()</code> do not have to
+ * search the list. </p>
+ *
  **/
 
 @SuppressWarnings("serial")
 public class NameList extends ArrayList<String>
 {
+    /**
+     *  number of times each name appears in the list
+     */
+
+    private HashMap<String, Integer> counts = new HashMap<String, Integer>();
+
     public NameList()  {super();}
     public NameList(int initialCapacity) { super(initialCapacity); }
 
@@ -63,7 +75,7 @@ public class NameList extends ArrayList<String>
      *
      **/
 
-    public boolean isUnique(String s) { return (this.indexOf(s) == -1); }
+    public boolean isUnique(String s) { return !this.counts.containsKey(s); }
 
 
     /**
@@ -81,7 +93,7 @@ public class NameList extends ArrayList<String>
     {
 	String name = this.fixName(s);	// perform any unique filtering
 	if (this.isUnique(s)) {
-	    super.add(s);
+	    this.add(s);
         } else {
 //System.out.print("-->Non-unique name " + s + " found; changed to ");
 		int suffix = 1;
@@ -89,9 +101,127 @@ public class NameList extends ArrayList<String>
                     suffix++;
                 }
 		name = s + suffix;
-		super.add(name);
+		this.add(name);
 //System.out.println(name);
 	}
 	return name;
     }
+
+
+    /**
+     *
+     * <p> Records one more occurrence of a name </p>
+     *
+     **/
+
+    private void count(String s)
+    {
+        Integer n = this.counts.get(s);
+        this.counts.put(s, (n == null) ? 1 : n + 1);
+    }
+
+
+    /**
+     *
+     * <p> Records one less occurrence of a name </p>
+     *
+     **/
+
+    private void uncount(Object s)
+    {
+        Integer n = this.counts.get(s);
+        if (n != null) {
+            if (n > 1) {
+                this.counts.put((String) s, n - 1);
+            } else {
+                this.counts.remove(s);
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Rebuilds name counts from the list </p>
+     *
+     **/
+
+    private void recount()
+    {
+        this.counts.clear();
+        for (String s : this) {
+            this.count(s);
+        }
+    }
+
+
+    // keep name counts in step with every change to the list
+
+    @Override
+    public boolean add(String s) { super.add(s); this.count(s); return true; }
+
+    @Override
+    public void add(int index, String s) { super.add(index, s); this.count(s); }
+
+    @Override
+    public String set(int index, String s)
+    {
+        String old = super.set(index, s);
+        this.uncount(old);
+        this.count(s);
+        return old;
+    }
+
+    @Override
+    public String remove(int index)
+    {
+        String old = super.remove(index);
+        this.uncount(old);
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        boolean found = super.remove(o);
+        if (found) {
+            this.uncount(o);
+        }
+        return found;
+    }
+
+    @Override
+    public void clear() { super.clear(); this.counts.clear(); }
+
+    @Override
+    public boolean addAll(Collection<? extends String> c)
+    {
+        boolean changed = super.addAll(c);
+        this.recount();
+        return changed;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends String> c)
+    {
+        boolean changed = super.addAll(index, c);
+        this.recount();
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        boolean changed = super.removeAll(c);
+        this.recount();
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        boolean changed = super.retainAll(c);
+        this.recount();
+        return changed;
+    }
 }
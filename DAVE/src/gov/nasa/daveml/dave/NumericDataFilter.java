@@ -0,0 +1,123 @@
+// NumericDataFilter
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ *
+ * <p> SAX filter that parses bulk numeric content as it streams in </p>
+ *
+ * <p> Sits between the XML parser and JDOM's tree builder. The text of
+ * <code>dataTable</code>, <code>bpVals</code>,
+ * <code>dependentVarPts</code> and <code>independentVarPts</code>
+ * elements is converted chunk by chunk into primitive arrays, which are
+ * handed to the {@link Model}; the element is given a short reference
+ * string in place of its text. The constructors of {@link FuncTable} and
+ * {@link BreakpointSet} resolve these references through
+ * {@link Model#resolveValues(String)}. The rest of the document is
+ * passed through unchanged. </p>
+ *
+ * <p> This keeps the size of the in-memory document proportional to the
+ * model structure rather than to the volume of table data, and avoids
+ * ever holding a table's text as one large <code>String</code>. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+class NumericDataFilter extends XMLFilterImpl
+{
+    /**
+     *  model that will receive the parsed arrays
+     */
+
+    private Model m;
+
+    /**
+     *  converts text of current numeric element
+     */
+
+    private ValueListBuilder builder;
+
+    /**
+     *  true while inside a numeric element
+     */
+
+    private boolean capturing;
+
+
+    /**
+     *
+     * <p> Creates filter that delivers arrays to the given model </p>
+     *
+     **/
+
+    NumericDataFilter( Model m )
+    {
+        super();
+        this.m = m;
+        this.builder = new ValueListBuilder();
+        this.capturing = false;
+    }
+
+
+    /**
+     *
+     * <p> Indicates if an element holds bulk numeric data </p>
+     *
+     **/
+
+    static boolean isNumericElement( String localName )
+    {
+        return localName.equals("dataTable")
+            || localName.equals("bpVals")
+            || localName.equals("dependentVarPts")
+            || localName.equals("independentVarPts");
+    }
+
+
+    @Override
+    public void startElement( String uri, String localName, String qName,
+                              Attributes atts ) throws SAXException
+    {
+        super.startElement(uri, localName, qName, atts);
+        String name = (localName == null || localName.length() == 0) ? qName : localName;
+        if (isNumericElement(name)) {
+            this.capturing = true;
+        }
+    }
+
+
+    @Override
+    public void characters( char[] ch, int start, int length ) throws SAXException
+    {
+        if (this.capturing) {
+            this.builder.append(ch, start, length);
+        } else {
+            super.characters(ch, start, length);
+        }
+    }
+
+
+    @Override
+    public void endElement( String uri, String localName, String qName )
+        throws SAXException
+    {
+        if (this.capturing) {
+            this.capturing = false;
+            char[] ref = this.m.addLoadedValues( this.builder.finish() ).toCharArray();
+            super.characters(ref, 0, ref.length);
+        }
+        super.endElement(uri, localName, qName);
+    }
+}
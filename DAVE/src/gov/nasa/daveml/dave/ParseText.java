@@ -26,15 +26,50 @@ import java.util.Iterator;
  * <p>  Class to convert a string containing comma, tab, or
  *      space-separated values into an array. </p>
  *
+ * <p> A number is a run of the characters <code>0-9 + - . E e</code>;
+ * any other character separates numbers, and runs that do not form a
+ * valid number are skipped. The text is scanned in place, without
+ * creating a <code>String</code> per value. Plain decimal literals of up
+ * to 15 significant digits with small exponents (nearly all table data)
+ * are converted directly; anything else is handed to
+ * <code>Double.parseDouble()</code>. Both give identical results. </p>
+ *
  **/
 
 public class ParseText
 {
     /**
-     * the stream tokenizer chosen
+     * exact powers of ten representable as doubles
+     */
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,
+        1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+        1e20, 1e21, 1e22 };
+
+    /**
+     * most significant digits handled by the fast path
+     */
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /**
+     * the text being scanned
+     */
+
+    protected CharSequence text;
+
+    /**
+     * position of next character to scan
+     */
+
+    protected int pos;
+
+    /**
+     * copy of the token being converted
      */
 
-    protected StreamTokenizer st;
+    private char[] token;
 
     /**
      * indicates a good number has been read
@@ -42,22 +77,30 @@ public class ParseText
 
     protected boolean goodNumber;
 
+    /**
+     * indicates end of text has been reached
+     */
+
+    protected boolean atEOF;
+
     public ParseText(String inputData)
     {
-        StringReader sr = new StringReader(inputData);
-        st = new StreamTokenizer(sr);
-        st.resetSyntax();                       // all chars ignored
-        st.whitespaceChars(0x09, 0x2A); // delimiters: HT to *
-        st.whitespaceChars(0x2C, 0x2C);    // add comma to delimiters
-        st.wordChars(0x2B,0x2B);                // designate '+' as word component
-        st.wordChars(0x2D,0x2e);                // designate '-', '.' as word components
-        st.wordChars(0x30,0x39);                // designate '0' through '9' as word chars
-        st.wordChars(0x45,0x45);                // 'E' is now part of word
-        st.wordChars(0x65,0x65);                // as is 'e'
-
-        //                   st.parseNumbers();
-        //                   st.eolIsSignificant(false);
-        //      System.out.println(inputData);
+        this((CharSequence) inputData);
+    }
+
+    /**
+     * Scans any character sequence (for instance a
+     * <code>java.nio.CharBuffer</code>) without copying it
+     * @param inputData text to scan
+     * @since 0.9.8
+     */
+    public ParseText(CharSequence inputData)
+    {
+        this.text = inputData;
+        this.pos = 0;
+        this.token = new char[32];
+        this.goodNumber = false;
+        this.atEOF = false;
     }
 
     /**
@@ -68,36 +111,33 @@ public class ParseText
     public double next()
         throws IOException
     {
+        final CharSequence t = this.text;
+        final int n = t.length();
         goodNumber = false;
         double value = Double.NaN;
 
-        do{
-            st.nextToken();
-            //  return (double) st.nval;
-            switch(st.ttype) {
-            case StreamTokenizer.TT_NUMBER:     // in present incarnation, should never select
-                //              System.out.println("Input number is '" + st.nval + "'; conversion is ");
-                value = st.nval;
-                goodNumber = true; 
-                break;
-            case StreamTokenizer.TT_WORD:
-                //              System.out.println("Input word is '" + st.sval + "'; conversion is ");
-                try {
-                    value = Double.parseDouble(st.sval);
-                    goodNumber = true;
-                } catch (NumberFormatException e) {goodNumber = false;}
-                break;
-            case StreamTokenizer.TT_EOL:
-                //              System.out.println("End of line");
-                break;
-            case StreamTokenizer.TT_EOF:
-                //              System.out.println("End of file");
-                break;
-            default:
-                System.out.println("Ordinary character, value is " + st.ttype);
+        while (!goodNumber) {
+            // skip separators
+            while (pos < n && !ValueListBuilder.isNumberChar(t.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= n) {
+                atEOF = true;
+                return Double.NaN;
             }
+            // copy out the token
+            int len = 0;
+            while (pos < n && ValueListBuilder.isNumberChar(t.charAt(pos))) {
+                if (len == token.length) {
+                    char[] bigger = new char[2*len];
+                    System.arraycopy(token, 0, bigger, 0, len);
+                    token = bigger;
+                }
+                token[len++] = t.charAt(pos++);
+            }
+            value = parseNumber(token, 0, len);
+            goodNumber = !Double.isNaN(value);
         }
-        while ((!goodNumber) && (st.ttype != StreamTokenizer.TT_EOF));
         return value;
     }
 
@@ -107,7 +147,7 @@ public class ParseText
      */
     public boolean eof()
     {
-        return (st.ttype == StreamTokenizer.TT_EOF);
+        return atEOF;
     }
 
     /**
@@ -116,9 +156,156 @@ public class ParseText
      */
     public boolean validNumber()
     {
-        return ( goodNumber && 
-                 (st.ttype != StreamTokenizer.TT_EOF));
+        return ( goodNumber && !atEOF );
+    }
+
+    /**
+     *
+     * <p> Converts a token made up only of number characters
+     * (<code>0-9 + - . E e</code>) to a double. Returns NaN if the
+     * token is not a valid number (a valid token can never produce
+     * NaN). </p>
+     *
+     * @param c characters
+     * @param start index of first character of token
+     * @param len length of token
+     * @since 0.9.8
+     *
+     **/
+
+    static double parseNumber(char[] c, int start, int len)
+    {
+        final int end = start + len;
+        int i = start;
+        boolean negative = false;
+        if (i < end && (c[i] == '+' || c[i] == '-')) {
+            negative = (c[i] == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int sigDigits = 0;      // significant digits kept in mantissa
+        int scale = 0;          // power of ten to apply to mantissa
+        boolean anyDigits = false;
+
+        // integer part
+        while (i < end && c[i] >= '0' && c[i] <= '9') {
+            int d = c[i++] - '0';
+            anyDigits = true;
+            if (sigDigits < 18) {
+                mantissa = 10*mantissa + d;
+                if (mantissa != 0) {
+                    sigDigits++;
+                }
+            } else {
+                sigDigits++;    // too many for fast path
+                scale++;
+            }
+        }
+        // fractional part
+        if (i < end && c[i] == '.') {
+            i++;
+            while (i < end && c[i] >= '0' && c[i] <= '9') {
+                int d = c[i++] - '0';
+                anyDigits = true;
+                if (sigDigits < 18) {
+                    mantissa = 10*mantissa + d;
+                    if (mantissa != 0) {
+                        sigDigits++;
+                    }
+                    scale--;
+                } else {
+                    sigDigits++;
+                }
+            }
+        }
+        if (!anyDigits) {
+            return Double.NaN;
+        }
+        // exponent
+        if (i < end && (c[i] == 'e' || c[i] == 'E')) {
+            i++;
+            boolean negExp = false;
+            if (i < end && (c[i] == '+' || c[i] == '-')) {
+                negExp = (c[i] == '-');
+                i++;
+            }
+            if (i >= end) {
+                return Double.NaN;
+            }
+            int exp = 0;
+            while (i < end && c[i] >= '0' && c[i] <= '9') {
+                if (exp < 100000) {
+                    exp = 10*exp + (c[i] - '0');
+                }
+                i++;
+            }
+            scale += negExp ? -exp : exp;
+        }
+        if (i != end) {
+            return Double.NaN;  // e.g. run-on numbers like "4.6.5" or "-4-6"
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (sigDigits <= MAX_FAST_DIGITS && scale >= -22 && scale <= 22) {
+            // exact mantissa and power of ten: one correctly rounded operation
+            double value = (double) mantissa;
+            value = (scale < 0) ? value/POWERS_OF_TEN[-scale] : value*POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(c, start, len));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     *
+     * <p> Converts remaining values to an array of doubles </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    public double[] toArray() throws IOException
+    {
+        double[] values = new double[16];
+        int count = 0;
+        while (!this.eof()) {
+            double v = this.next();
+            if (this.validNumber()) {
+                if (count == values.length) {
+                    double[] bigger = new double[2*count];
+                    System.arraycopy(values, 0, bigger, 0, count);
+                    values = bigger;
+                }
+                values[count++] = v;
+            }
+        }
+        double[] result = new double[count];
+        System.arraycopy(values, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     *
+     * <p> Static version of routine toArray </p>
+     *
+     * @param values String containing comma- or whitespace-separated values.
+     * @since 0.9.8
+     *
+     **/
 
+    static public double[] toArray(CharSequence values)
+    {
+        try {
+            return new ParseText(values).toArray();
+        } catch (IOException e) {
+            return new double[0];   // scanning in memory; never thrown
+        }
     }
     
     /**
@@ -0,0 +1,125 @@
+// PhaseEvents
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.util.Iterator;
+
+/**
+ *
+ * <p> Timed events for the phases of loading and running a model </p>
+ *
+ * <p> When DAVE runs in a JVM with the JDK Flight Recorder (Java 8u262
+ * and later), each phase of loading a model (reading and validating the
+ * file, parsing each kind of definition, wiring, sorting) and of checking
+ * it, plus one of every {@link #CYCLE_SAMPLE_INTERVAL} calls of
+ * {@link Model#cycle()}, is recorded as a <code>gov.nasa.daveml.*</code>
+ * event carrying the model name, its block and table counts and a byte
+ * size. Events are only written while a recording has them enabled. </p>
+ *
+ * <p> The Flight Recorder classes are only referenced from
+ * {@link JfrPhaseEvents}, which is loaded reflectively; on older JVMs
+ * {@link #RECORDER} does nothing. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+abstract class PhaseEvents
+{
+    /**
+     *  kinds of phase
+     */
+
+    static final int LOAD   = 0;
+    static final int PARSE  = 1;
+    static final int WIRE   = 2;
+    static final int SORT   = 3;
+    static final int VERIFY = 4;
+    static final int CYCLE  = 5;
+
+    /**
+     *  one of this many calls of <code>Model.cycle()</code> is recorded
+     */
+
+    static final int CYCLE_SAMPLE_INTERVAL = 1000;
+
+    /**
+     *  recorder for this JVM
+     */
+
+    static final PhaseEvents RECORDER = create();
+
+
+    /**
+     *
+     * <p> Starts timing a phase </p>
+     *
+     * @param kind one of {@link #LOAD}, {@link #PARSE}, ...
+     * @return event to pass to {@link #end}, or null if not recording
+     *
+     **/
+
+    abstract Object begin( int kind );
+
+
+    /**
+     *
+     * <p> Finishes timing a phase, and records it </p>
+     *
+     * @param event value returned by {@link #begin}; ignored if null
+     * @param phase name of the phase within its kind
+     * @param m model being loaded or run
+     * @param bytes size of data handled, or -1 for the size of the
+     *        model's function tables
+     *
+     **/
+
+    abstract void end( Object event, String phase, Model m, long bytes );
+
+
+    /**
+     *
+     * <p> Returns the size of a model's function table values, in bytes </p>
+     *
+     **/
+
+    static long tableBytes( Model m )
+    {
+        long bytes = 0;
+        if (m.tables != null) {
+            Iterator<FuncTable> it = m.tables.values().iterator();
+            while (it.hasNext()) {
+                bytes += 8L*it.next().size();
+            }
+        }
+        return bytes;
+    }
+
+
+    /**
+     *
+     * <p> Returns a Flight Recorder recorder if this JVM has one, or a
+     * recorder that does nothing </p>
+     *
+     **/
+
+    private static PhaseEvents create()
+    {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (PhaseEvents) Class.forName("gov.nasa.daveml.dave.JfrPhaseEvents").newInstance();
+        } catch (Throwable t) {
+            return new PhaseEvents() {
+                Object begin( int kind ) { return null; }
+                void end( Object event, String phase, Model m, long bytes ) { }
+            };
+        }
+    }
+}
@@ -309,7 +309,9 @@ public class Signal
                 throw new DAVEException("illegal syntax in <apply> element");
             }
         } else if (name.equals("variableDef") ) { // not an apply element - should check to make sure it is a varDef?
+            String oldVarID = myVarID;
             myVarID = signalElement.getAttributeValue("varID");
+            m.reindex( this, oldVarID );
             myUnits = signalElement.getAttributeValue("units");
 
             // Record the initial condition, if any
@@ -629,7 +631,11 @@ public class Signal
 
     public void setVarID( String theVarID ) { 
         // set our variable ID
+        String oldVarID = this.myVarID;
         this.myVarID = theVarID;
+        if (this.ourModel != null) {
+            this.ourModel.reindex( this, oldVarID );
+        }
         
         // set our source blocks output var ID
         if (this.source != null) {
@@ -972,6 +978,32 @@ public class Signal
         return (!dests.isEmpty()); 
     }
 
+    /**
+     *
+     * <p> Disconnects a downstream block, removing every connection
+     * this signal has to it. The block's own input list is not
+     * changed. </p>
+     *
+     * @param sinkBlock block to disconnect
+     * @since 0.9.8
+     *
+     **/
+
+    void removeSink( Block sinkBlock )
+    {
+        if (this.dests == null) {
+            return;
+        }
+        for (int i = this.dests.size()-1; i >= 0; i--) {
+            if (this.dests.get(i) == sinkBlock) {
+                this.dests.remove(i);
+                if (this.destPorts != null && i < this.destPorts.size()) {
+                    this.destPorts.remove(i);
+                }
+            }
+        }
+    }
+
     /**
      * Clears the list of destination blocks
      */
@@ -1160,4 +1192,92 @@ public class Signal
         }
     }
 
+
+    /**
+     *
+     * <p> Writes this signal's fields to a cache entry (see {@link
+     * ModelCache}) </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void writeCache( ModelCache.Output out ) throws IOException
+    {
+        out.writeString( this.myName );
+        out.writeString( this.myVarID );
+        out.writeString( this.myUnits );
+        out.writeString( this.description );
+        out.writeBlock( this.source );
+        out.writeInt( this.sourcePort );
+        out.writeBlocks( this.dests );
+        int[] ports = null;
+        if (this.destPorts != null) {
+            ports = new int[this.destPorts.size()];
+            for (int i = 0; i < ports.length; i++) {
+                ports[i] = this.destPorts.get(i).intValue();
+            }
+        }
+        out.writeInts( ports );
+        out.writeBoolean( this.hasIC );
+        out.writeString( this.IC );
+        out.writeBoolean( this.isInput );
+        out.writeBoolean( this.isControl );
+        out.writeBoolean( this.isDisturbance );
+        out.writeBoolean( this.isState );
+        out.writeBoolean( this.isStateDeriv );
+        out.writeBoolean( this.isOutput );
+        out.writeBoolean( this.isStdAIAA );
+        out.writeBoolean( this.verboseFlag );
+        out.writeBoolean( this.derived );
+        out.writeBoolean( this.defined );
+        out.writeBoolean( this.marked );
+        out.writeDouble( this.lowerLim );
+        out.writeDouble( this.upperLim );
+    }
+
+
+    /**
+     *
+     * <p> Reads the fields written by <code>writeCache()</code> </p>
+     *
+     * @since 0.9.8
+     *
+     **/
+
+    void readCache( ModelCache.Input in ) throws IOException
+    {
+        this.ourModel = in.model;
+        this.myName = in.readString();
+        this.myVarID = in.readString();
+        this.myUnits = in.readString();
+        this.description = in.readString();
+        this.source = in.readBlock();
+        this.sourcePort = in.readInt();
+        this.dests = in.readBlocks();
+        int[] ports = in.readInts();
+        this.destPorts = null;
+        if (ports != null) {
+            this.destPorts = new ArrayList<Integer>(ports.length);
+            for (int i = 0; i < ports.length; i++) {
+                this.destPorts.add( ports[i] );
+            }
+        }
+        this.hasIC = in.readBoolean();
+        this.IC = in.readString();
+        this.isInput = in.readBoolean();
+        this.isControl = in.readBoolean();
+        this.isDisturbance = in.readBoolean();
+        this.isState = in.readBoolean();
+        this.isStateDeriv = in.readBoolean();
+        this.isOutput = in.readBoolean();
+        this.isStdAIAA = in.readBoolean();
+        this.verboseFlag = in.readBoolean();
+        this.derived = in.readBoolean();
+        this.defined = in.readBoolean();
+        this.marked = in.readBoolean();
+        this.lowerLim = in.readDouble();
+        this.upperLim = in.readDouble();
+    }
+
 }
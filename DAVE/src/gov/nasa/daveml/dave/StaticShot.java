@@ -55,6 +55,21 @@ public class StaticShot
     VectorInfoArrayList outputs;
     
  
+    /**
+     *
+     * <p> Constructor for restoring a cached checkcase (see {@link
+     * ModelCache}) </p>
+     *
+     **/
+
+    StaticShot()
+    {
+        this.scenario = null;
+        this.inputs = null;
+        this.outputs = null;
+    }
+
+
     /** 
      *
      * Constructor to built from JDOM Elements
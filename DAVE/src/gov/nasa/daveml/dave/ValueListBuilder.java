@@ -0,0 +1,192 @@
+// ValueListBuilder
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.util.Arrays;
+
+/**
+ *
+ * <p> Incrementally converts comma-, space- or tab-separated text into
+ * an array of doubles </p>
+ *
+ * <p> Text may be supplied in any number of pieces (for instance, as
+ * character chunks from a SAX parser); a number split across two pieces
+ * is handled correctly. Values are stored in a growable primitive array,
+ * so no <code>String</code> holding the whole list and no boxed
+ * <code>Double</code> objects are created. </p>
+ *
+ * <p> Tokenizing follows {@link ParseText}: a number is a run of the
+ * characters <code>0-9 + - . E e</code>; anything else separates numbers,
+ * and runs that are not valid numbers are skipped. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class ValueListBuilder
+{
+    /**
+     *  values found so far
+     */
+
+    private double[] values;
+
+    /**
+     *  number of values found so far
+     */
+
+    private int count;
+
+    /**
+     *  characters of the number currently being read
+     */
+
+    private char[] token;
+
+    /**
+     *  length of the number currently being read
+     */
+
+    private int tokenLength;
+
+
+    /**
+     *
+     * <p> Creates an empty builder </p>
+     *
+     **/
+
+    public ValueListBuilder()
+    {
+        this.values = new double[16];
+        this.count = 0;
+        this.token = new char[32];
+        this.tokenLength = 0;
+    }
+
+
+    /**
+     *
+     * <p> Indicates if a character can be part of a number </p>
+     *
+     **/
+
+    static boolean isNumberChar( char c )
+    {
+        return (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+'
+            || c == 'E' || c == 'e';
+    }
+
+
+    /**
+     *
+     * <p> Adds a piece of text </p>
+     *
+     * @param ch characters
+     * @param start index of first character to use
+     * @param length number of characters to use
+     *
+     **/
+
+    public void append( char[] ch, int start, int length )
+    {
+        final int end = start + length;
+        for (int i = start; i < end; i++) {
+            char c = ch[i];
+            if (isNumberChar(c)) {
+                if (this.tokenLength == this.token.length) {
+                    this.token = Arrays.copyOf(this.token, 2*this.token.length);
+                }
+                this.token[this.tokenLength++] = c;
+            } else if (this.tokenLength > 0) {
+                this.endToken();
+            }
+        }
+    }
+
+
+    /**
+     *
+     * <p> Adds a piece of text </p>
+     *
+     * @param s text to add
+     *
+     **/
+
+    public void append( String s )
+    {
+        char[] ch = s.toCharArray();
+        this.append(ch, 0, ch.length);
+    }
+
+
+    /**
+     *
+     * <p> Converts the token just completed, if it is a valid number </p>
+     *
+     **/
+
+    private void endToken()
+    {
+        double v = ParseText.parseNumber(this.token, 0, this.tokenLength);
+        if (!Double.isNaN(v)) {     // otherwise not a number; skip it as ParseText does
+            if (this.count == this.values.length) {
+                this.values = Arrays.copyOf(this.values, 2*this.values.length);
+            }
+            this.values[this.count++] = v;
+        }
+        this.tokenLength = 0;
+    }
+
+
+    /**
+     *
+     * <p> Returns number of values found so far (not counting any number
+     * still being read) </p>
+     *
+     **/
+
+    public int size() { return this.count; }
+
+
+    /**
+     *
+     * <p> Ends the text and returns all values found, in order. The
+     * builder is then empty and may be reused. </p>
+     *
+     **/
+
+    public double[] finish()
+    {
+        if (this.tokenLength > 0) {
+            this.endToken();
+        }
+        double[] result = Arrays.copyOf(this.values, this.count);
+        this.count = 0;
+        if (this.values.length > 1024) {
+            this.values = new double[16];   // don't hang on to a big buffer
+        }
+        return result;
+    }
+
+
+    /**
+     *
+     * <p> Converts a complete string to an array of values </p>
+     *
+     * @param s <code>String</code> containing comma- or whitespace-separated values
+     *
+     **/
+
+    public static double[] parse( String s )
+    {
+        return ParseText.toArray(s);
+    }
+}
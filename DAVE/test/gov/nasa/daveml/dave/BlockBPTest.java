@@ -74,6 +74,21 @@ public class BlockBPTest extends TestCase {
 
     }
 
+    public void testUpdateSweep() {
+
+        // sweep up and back down through the table so successive
+        // lookups exercise the interval hint in both directions
+        double[] inputs = { -12.0, -10.0, -3.0, 4.0, 6.5, 13.0, 44.0, 46.0,
+                            44.0, 31.0, 29.0, 0.0, -11.0 };
+        double[] expected = { 0.0, 0.0, 1.4, 2.8, 3.3, 4.6, 10.8, 11.0,
+                              10.8, 8.2, 7.8, 2.0, 0.0 };
+        for (int i = 0; i < inputs.length; i++) {
+            _sourceBlock.setValue(inputs[i]);
+            tryBPBupdate();
+            assertEquals(expected[i], _bpb.getValue(), EPS);
+        }
+    }
+
     public void testGetBPID() {
         assertEquals("ALPHA1", _bpb.getBPID());
     }
@@ -0,0 +1,56 @@
+package gov.nasa.daveml.dave;
+
+import junit.framework.TestCase;
+
+public class BlockMathExpressionTest extends TestCase {
+
+    // |a - b| + a*b/c, in postfix
+    protected static final int[] PROGRAM = {
+        BlockMathExpression.LOAD, 0,
+        BlockMathExpression.LOAD, 1,
+        BlockMathExpression.SUB,  2,
+        BlockMathExpression.ABS,  1,
+        BlockMathExpression.LOAD, 0,
+        BlockMathExpression.LOAD, 1,
+        BlockMathExpression.PROD, 2,
+        BlockMathExpression.LOAD, 2,
+        BlockMathExpression.DIV,  2,
+        BlockMathExpression.SUM,  2 };
+
+    public void testDepth() {
+        assertEquals( 3, BlockMathExpression.depthOf( PROGRAM ) );
+    }
+
+    public void testEvaluate() {
+        double[] values = { 9.0, 2.0, -3.0, 4.0 };
+        double[] stack = new double[3];
+        int[] slots = { 3, 1, 2, 3 };
+        double a = 2.0, b = -3.0, c = 4.0;
+        assertEquals( Math.abs(a - b) + a*b/c,
+                BlockMathExpression.evaluate( PROGRAM, values, slots, 1, stack ), 0.0 );
+
+        int[] neg = { BlockMathExpression.LOAD, 0, BlockMathExpression.NEG, 1 };
+        assertEquals( -4.0, BlockMathExpression.evaluate( neg, values, slots, 0, stack ), 0.0 );
+    }
+
+    public void testUpdate() throws Exception {
+        Model m = new Model(3,3);
+        BlockMathExpression e = new BlockMathExpression( PROGRAM, m );
+        assertEquals( 5, e.getNumOperations() );
+        String[] values = { "2.0", "-3.0", "4.0" };
+        for (int k = 0; k < values.length; k++) {
+            e.addConstInput( values[k], k+1 );
+        }
+        Signal out = new Signal( "y", "y", "nd", 1, m );
+        e.addOutput( out );
+        for (int k = 0; k < values.length; k++) {
+            e.getInput(k).getSourceBlock().update();
+        }
+        e.update();
+        assertTrue( e.isReady() );
+        assertEquals( 5.0 - 1.5, e.getValue(), 0.0 );
+        // same text the unfused blocks would generate
+        assertEquals( "y = (fabs( ((2.0) - (-3.0)) )) + (((2.0)*(-3.0))/(4.0));",
+                e.genCode().getCode().trim() );
+    }
+}
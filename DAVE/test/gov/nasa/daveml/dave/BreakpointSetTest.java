@@ -1,6 +1,6 @@
 package gov.nasa.daveml.dave;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.jdom.Element;
 
@@ -107,14 +107,14 @@ public class BreakpointSetTest extends TestCase {
 		assertEquals( 12, _bps.length() );
 		assertFalse( _bps.isVerbose() );
 		assertNotNull( _bps.values() );
-		ArrayList<Double> vals = _bps.values();
+		List<Double> vals = _bps.values();
 		assertNotNull( vals );
 		assertEquals( 12, vals.size() );
 		checkValues( vals );
 	}
 		
 
-	private void checkValues( ArrayList<Double> vals ) {
+	private void checkValues( List<Double> vals ) {
 		assertEquals( -10., vals.get( 0), EPS );
 		assertEquals(  -5., vals.get( 1), EPS );
 		assertEquals(   0., vals.get( 2), EPS );
@@ -129,6 +129,56 @@ public class BreakpointSetTest extends TestCase {
 		assertEquals(  45., vals.get(11), EPS );	
 	}
 
+	public void testValuesView() {
+		_bps = generateSampleAlphaBreakpointSet( _model );
+		List<Double> vals = _bps.values();
+		double[] bp = _bps.valueArray();
+		assertEquals( bp.length, vals.size() );
+		for (int i = 0; i < bp.length; i++) {
+			assertEquals( bp[i], vals.get(i), 0.0 );
+		}
+		try {
+			vals.set( 0, 1.0 );
+			fail( "Breakpoint list view should be read-only" );
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testFindInterval() {
+		_bps = generateSampleAlphaBreakpointSet( _model );
+		double[] bp = _bps.valueArray();
+		assertEquals( 12, bp.length );
+
+		// every hint must give the same answer as an unhinted search
+		double[] xs = { -20., -10., -7.5, 0., 2.5, 5., 12.15, 44.9, 45., 200. };
+		int[] expected = { -1, 0, 0, 2, 2, 3, 4, 10, 11, 11 };
+		for (int i = 0; i < xs.length; i++) {
+			for (int hint = -1; hint < bp.length; hint++) {
+				assertEquals( expected[i], _bps.findInterval( xs[i], hint ) );
+			}
+		}
+	}
+
+	public void testIndexAndFraction() {
+		_bps = generateSampleAlphaBreakpointSet( _model );
+		assertEquals(  0.00, _bps.indexAndFraction( -20., _bps.findInterval( -20., -1 ) ), EPS );
+		assertEquals(  2.00, _bps.indexAndFraction(   0., _bps.findInterval(   0., -1 ) ), EPS );
+		assertEquals(  8.43, _bps.indexAndFraction( 32.15, _bps.findInterval( 32.15, 3 ) ), EPS );
+		assertEquals( 11.00, _bps.indexAndFraction(  45., _bps.findInterval(  45., 10 ) ), EPS );
+		assertEquals( 11.00, _bps.indexAndFraction( 200., _bps.findInterval( 200., -1 ) ), EPS );
+		assertTrue( Double.isNaN( _bps.indexAndFraction( Double.NaN,
+				_bps.findInterval( Double.NaN, 4 ) ) ) );
+	}
+
+	public void testRepeatedBreakpoints() throws DAVEException {
+		_bps = new BreakpointSet( "step", "STEP1", "0 1 1 2", "repeated breakpoint", _model );
+		assertEquals( 0, _bps.findInterval( 0.5, -1 ) );
+		assertEquals( 2, _bps.findInterval( 1.0, 0 ) );
+		assertEquals( 2, _bps.findInterval( 1.5, 1 ) );
+		assertEquals( 2.5, _bps.indexAndFraction( 1.5, 2 ), EPS );
+	}
+
 	public static BreakpointSet generateSampleAlphaBreakpointSet( Model model ) {
 		BreakpointSet bpAlpha = null;
 		try {
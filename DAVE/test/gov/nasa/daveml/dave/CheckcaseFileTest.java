@@ -0,0 +1,319 @@
+package gov.nasa.daveml.dave;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the CheckcaseFile object by checking the sample model against
+ * comma-separated and binary files built from its own outputs
+ *
+ **/
+
+public class CheckcaseFileTest extends TestCase {
+
+    /**
+     * number of rows written; more than one batch
+     */
+
+    private static final int ROWS = 3*EvaluationContext.BATCH_ROWS + 17;
+
+    private File file;
+    private Model m;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("checkcases", ".csv");
+        m = CompiledModelTest.loadSampleModel();
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+
+    /**
+     * Returns inputs (alpha, beta, de) for a row, cycling through sample points
+     */
+
+    private static double[] inputsFor( int row ) {
+        double[] p = CompiledModelTest.SAMPLE_INPUTS[row % CompiledModelTest.SAMPLE_INPUTS.length];
+        return new double[] { p[0] + 0.001*row, p[1], p[2] };
+    }
+
+
+    /**
+     * Returns expected outputs for each row, from the interpreted model;
+     * the first output of the given row is spoiled by the given amount
+     */
+
+    private double[][] expectedOutputs( int spoilRow, double spoil ) throws Exception {
+        Model ref = CompiledModelTest.loadSampleModel();
+        double[][] result = new double[ROWS][];
+        for (int r = 0; r < ROWS; r++) {
+            CompiledModelTest.setInputs(ref, inputsFor(r));
+            ref.cycle();
+            result[r] = CompiledModelTest.getOutputs(ref);
+            if (r == spoilRow) {
+                result[r][0] += spoil;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Writes a comma-separated file of all rows; outputs in model order
+     */
+
+    private void writeCSV( double[][] outputs, String tolLine ) throws Exception {
+        VectorInfoArrayList outVec = m.getOutputVector();
+        PrintStream ps = new PrintStream(new FileOutputStream(file));
+        ps.println("# sample checkcases");
+        ps.print("alpha (deg), beta, de");
+        for (int j = 0; j < outVec.size(); j++) {
+            ps.print(", " + outVec.get(j).getName());
+        }
+        ps.println();
+        if (tolLine != null) {
+            ps.println(tolLine);
+        }
+        for (int r = 0; r < ROWS; r++) {
+            double[] in = inputsFor(r);
+            ps.print(in[0] + "," + in[1] + "," + in[2]);
+            for (int j = 0; j < outputs[r].length; j++) {
+                ps.print("," + outputs[r][j]);
+            }
+            ps.println();
+        }
+        ps.close();
+    }
+
+
+    public void testAllRowsPass() throws Exception {
+        writeCSV(expectedOutputs(-1, 0.0), null);
+        CheckcaseFile cf = new CheckcaseFile(file);
+        assertFalse( cf.isBinary() );
+        assertEquals( 7, cf.getNumColumns() );
+        assertEquals( "alpha", cf.getColumnName(0) );
+        assertEquals( "deg", cf.getColumnUnits(0) );
+        assertEquals( "", cf.getColumnUnits(1) );
+        assertTrue( Double.isNaN(cf.getTolerance(3)) );
+
+        CheckcaseFile.Summary s = cf.check(m, null, 0);
+        cf.close();
+        assertEquals( ROWS, s.getNumRows() );
+        assertEquals( ROWS, s.getNumPassed() );
+        assertTrue( s.allPassed() );
+        assertEquals( 4, s.getNumOutputs() );
+        for (int k = 0; k < s.getNumOutputs(); k++) {
+            assertEquals( 0, s.getNumFailures(k) );
+            assertTrue( s.getWorstError(k) <= CheckcaseFile.DEFAULT_TOLERANCE );
+        }
+    }
+
+
+    public void testFailureAndWorstError() throws Exception {
+        int bad = EvaluationContext.BATCH_ROWS + 5;
+        writeCSV(expectedOutputs(bad, 0.5), "#tol,,,,0.25,,,");
+        CheckcaseFile cf = new CheckcaseFile(file);
+        assertEquals( 0.25, cf.getTolerance(3), 0.0 );
+        assertTrue( Double.isNaN(cf.getTolerance(4)) );
+
+        ByteArrayOutputStream listing = new ByteArrayOutputStream();
+        CheckcaseFile.Summary s = cf.check(m, new PrintStream(listing), 10);
+        cf.close();
+        assertEquals( ROWS - 1, s.getNumPassed() );
+        assertEquals( 1, s.getNumFailed() );
+        assertFalse( s.allPassed() );
+        assertEquals( 1, s.getNumFailures(0) );
+        assertEquals( 0.5, s.getWorstError(0), 1.0e-9 );
+        assertEquals( bad + 1, s.getWorstRow(0) );
+        assertTrue( listing.toString().indexOf("row " + (bad + 1)) >= 0 );
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        s.report(new PrintStream(report));
+        assertTrue( report.toString().indexOf("Verified " + (ROWS - 1) + " of " + ROWS) >= 0 );
+    }
+
+
+    public void testBinaryMatchesText() throws Exception {
+        double[][] outputs = expectedOutputs(7, 1.0);
+        VectorInfoArrayList outVec = m.getOutputVector();
+        String[] names = new String[3 + outVec.size()];
+        names[0] = "alpha"; names[1] = "beta"; names[2] = "de";
+        for (int j = 0; j < outVec.size(); j++) {
+            names[3+j] = outVec.get(j).getName();
+        }
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        CheckcaseFile.writeBinaryHeader(out, names, null, null);
+        for (int r = 0; r < ROWS; r++) {
+            double[] in = inputsFor(r);
+            for (int i = 0; i < in.length; i++) {
+                out.writeDouble(in[i]);
+            }
+            for (int j = 0; j < outputs[r].length; j++) {
+                out.writeDouble(outputs[r][j]);
+            }
+        }
+        out.close();
+
+        CheckcaseFile cf = new CheckcaseFile(file);
+        assertTrue( cf.isBinary() );
+        CheckcaseFile.Summary s = cf.check(m, null, 0);
+        cf.close();
+        assertEquals( ROWS, s.getNumRows() );
+        assertEquals( 1, s.getNumFailed() );
+        assertEquals( 8, s.getWorstRow(0) );
+        assertEquals( 1.0, s.getWorstError(0), 1.0e-9 );
+    }
+
+
+    public void testMismatchedFileRejected() throws Exception {
+        PrintStream ps = new PrintStream(new FileOutputStream(file));
+        ps.println("alpha, gamma");
+        ps.println("1, 2");
+        ps.close();
+        CheckcaseFile cf = new CheckcaseFile(file);
+        try {
+            cf.check(m, null, 0);
+            fail("Expected unknown column to be rejected");
+        } catch (DAVEException e) {
+            assertTrue( e.getMessage().indexOf("gamma") >= 0 );
+        }
+        cf.close();
+
+        ps = new PrintStream(new FileOutputStream(file));
+        ps.println("alpha (rad)");
+        ps.println("1");
+        ps.close();
+        cf = new CheckcaseFile(file);
+        try {
+            cf.check(m, null, 0);
+            fail("Expected mismatched units to be rejected");
+        } catch (DAVEException e) {
+            assertTrue( e.getMessage().indexOf("units") >= 0 );
+        }
+        cf.close();
+
+        ps = new PrintStream(new FileOutputStream(file));
+        ps.println("alpha, beta");
+        ps.println("1, 2e1, 3");
+        ps.close();
+        cf = new CheckcaseFile(file);
+        try {
+            cf.check(m, null, 0);
+            fail("Expected long row to be rejected");
+        } catch (DAVEException e) {
+            assertTrue( e.getMessage().indexOf("Line 2") >= 0 );
+        }
+        cf.close();
+    }
+
+
+    public void testDAVEVerifiesFile() throws Exception {
+        File dml = File.createTempFile("sample", ".dml");
+        ModelCacheTest.writeFile(dml, CompiledModelTest.SAMPLE_MODEL);
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            DAVE dave = new DAVE();
+            dave.setInputFileName(dml.getAbsolutePath());
+            assertTrue( dave.parseFile() );
+            assertTrue( dave.verifyCheckcaseFile() );       // none given
+
+            writeCSV(expectedOutputs(-1, 0.0), null);
+            dave.setCheckcaseFile(file);
+            assertSame( file, dave.getCheckcaseFile() );
+            assertTrue( dave.verifyCheckcaseFile() );
+
+            writeCSV(expectedOutputs(3, 1.0), null);
+            assertFalse( dave.verifyCheckcaseFile() );
+        } finally {
+            System.setOut(stdout);
+            dml.delete();
+        }
+    }
+
+
+    public void testBatchResultsAreCheckcases() throws Exception {
+        File dml = File.createTempFile("sample", ".dml");
+        ModelCacheTest.writeFile(dml, CompiledModelTest.SAMPLE_MODEL);
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            DAVE dave = new DAVE();
+            dave.setInputFileName(dml.getAbsolutePath());
+            assertTrue( dave.parseFile() );
+
+            // text in, text out; de left at its initial value
+            StringBuilder sb = new StringBuilder("alpha (deg), beta\n");
+            for (int r = 0; r < ROWS; r++) {
+                double[] in = inputsFor(r);
+                sb.append(in[0]).append(", ").append(in[1] * 1.0e3).append("e-3\n");
+            }
+            ByteArrayOutputStream results = new ByteArrayOutputStream();
+            long count = dave.evaluateBatch(
+                    new ByteArrayInputStream(sb.toString().getBytes("UTF-8")),
+                    "rows", results);
+            assertEquals( ROWS, count );
+
+            CheckcaseFile cf = new CheckcaseFile(
+                    new ByteArrayInputStream(results.toByteArray()), "results");
+            assertFalse( cf.isBinary() );
+            assertEquals( 7, cf.getNumColumns() );
+            assertEquals( "de", cf.getColumnName(2) );
+            CheckcaseFile.Summary s = cf.check(m, null, 0);
+            assertEquals( ROWS, s.getNumPassed() );
+            for (int k = 0; k < s.getNumOutputs(); k++) {
+                assertEquals( 0.0, s.getWorstError(k), 0.0 );
+            }
+
+            // binary in (a checkcase file, outputs ignored), binary out
+            writeCSV(expectedOutputs(-1, 0.0), null);
+            ByteArrayOutputStream bin = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bin);
+            CheckcaseFile text = new CheckcaseFile(file);
+            String[] names = new String[text.getNumColumns()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = text.getColumnName(i);
+            }
+            CheckcaseFile.writeBinaryHeader(out, names, null, null);
+            double[] row = new double[names.length];
+            while (text.readRow(row)) {
+                for (int i = 0; i < row.length; i++) {
+                    out.writeDouble(row[i]);
+                }
+            }
+            text.close();
+            results.reset();
+            assertEquals( ROWS, dave.evaluateBatch(
+                    new ByteArrayInputStream(bin.toByteArray()), "rows", results) );
+            cf = new CheckcaseFile(
+                    new ByteArrayInputStream(results.toByteArray()), "results");
+            assertTrue( cf.isBinary() );
+            assertEquals( ROWS, cf.check(m, null, 0).getNumPassed() );
+        } finally {
+            System.setOut(stdout);
+            dml.delete();
+        }
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( CheckcaseFileTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
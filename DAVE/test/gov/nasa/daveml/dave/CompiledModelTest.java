@@ -0,0 +1,382 @@
+package gov.nasa.daveml.dave;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the CompiledModel object by comparing compiled and interpreted
+ * results for a small model that uses every block type
+ *
+ **/
+
+public class CompiledModelTest extends TestCase {
+
+    private final double EPS = 0.000001;
+
+    static final String MATHML = "xmlns=\"http://www.w3.org/1998/Math/MathML\"";
+
+    /**
+     * Sample DAVE-ML model exercising each block type
+     */
+
+    static final String SAMPLE_MODEL =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<DAVEfunc xmlns=\"http://daveml.org/2010/DAVEML\">\n" +
+        " <fileHeader name=\"sample\">\n" +
+        "  <author name=\"test\" org=\"test\"/>\n" +
+        "  <fileCreationDate date=\"2015-03-02\"/>\n" +
+        " </fileHeader>\n" +
+        " <variableDef name=\"alpha\" varID=\"alpha\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"beta\" varID=\"beta\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"de\" varID=\"de\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"gain\" varID=\"gain\" units=\"nd\" initialValue=\"2.5\"/>\n" +
+        " <variableDef name=\"cm0\" varID=\"cm0\" units=\"nd\"/>\n" +
+        " <variableDef name=\"cl0\" varID=\"cl0\" units=\"nd\"/>\n" +
+        " <variableDef name=\"cm\" varID=\"cm\" units=\"nd\" minValue=\"-0.15\" maxValue=\"0.2\">\n" +
+        "  <calculation><math " + MATHML + "><apply><plus/><ci>cm0</ci>" +
+        "<apply><times/><cn>0.01</cn><ci>de</ci><ci>gain</ci></apply></apply></math></calculation><isOutput/>\n" +
+        " </variableDef>\n" +
+        " <variableDef name=\"trig\" varID=\"trig\" units=\"nd\">\n" +
+        "  <calculation><math " + MATHML + "><apply><minus/>" +
+        "<apply><plus/><apply><sin/><ci>alpha</ci></apply><apply><cos/><ci>beta</ci></apply>" +
+        "<apply><tan/><apply><divide/><ci>alpha</ci><cn>100</cn></apply></apply>" +
+        "<apply><arctan/><ci>beta</ci></apply></apply>" +
+        "<apply><minus/><apply><arcsin/><apply><divide/><ci>beta</ci><cn>90</cn></apply></apply></apply>" +
+        "</apply></math></calculation><isOutput/>\n" +
+        " </variableDef>\n" +
+        " <variableDef name=\"misc\" varID=\"misc\" units=\"nd\">\n" +
+        "  <calculation><math " + MATHML + "><apply><plus/>" +
+        "<apply><power/><apply><abs/><ci>beta</ci></apply><cn>2</cn></apply>" +
+        "<apply><floor/><ci>alpha</ci></apply><apply><ceiling/><ci>alpha</ci></apply>" +
+        "<apply><arccos/><apply><divide/><ci>de</ci><cn>30</cn></apply></apply>" +
+        "<apply><csymbol definitionURL=\"http://daveml.org/function_spaces.html#atan2\" encoding=\"text\">atan2</csymbol>" +
+        "<ci>alpha</ci><ci>beta</ci></apply>" +
+        "<apply><max/><ci>alpha</ci><ci>beta</ci><ci>de</ci></apply>" +
+        "<apply><min/><ci>alpha</ci><ci>beta</ci></apply>" +
+        "</apply></math></calculation><isOutput/>\n" +
+        " </variableDef>\n" +
+        " <variableDef name=\"logic\" varID=\"logic\" units=\"nd\">\n" +
+        "  <calculation><math " + MATHML + "><apply><piecewise>" +
+        "<piece><ci>cl0</ci><apply><and/><apply><gt/><ci>alpha</ci><cn>5</cn></apply>" +
+        "<apply><not/><apply><leq/><ci>beta</ci><cn>0</cn></apply></apply></apply></piece>" +
+        "<otherwise><apply><plus/><apply><or/><apply><lt/><ci>alpha</ci><cn>0</cn></apply>" +
+        "<apply><eq/><ci>beta</ci><cn>0</cn></apply></apply>" +
+        "<apply><neq/><ci>de</ci><cn>0</cn></apply><apply><geq/><ci>de</ci><cn>1</cn></apply></apply></otherwise>" +
+        "</piecewise></apply></math></calculation><isOutput/>\n" +
+        " </variableDef>\n" +
+        " <breakpointDef bpID=\"ALPHA1\"><bpVals>-10, -5, 0, 5, 10, 15, 20, 25, 30, 35, 40, 45</bpVals></breakpointDef>\n" +
+        " <breakpointDef bpID=\"DE1\"><bpVals>-24, -12, 0, 12, 24</bpVals></breakpointDef>\n" +
+        " <breakpointDef bpID=\"BETA1\"><bpVals>0, 10, 20</bpVals></breakpointDef>\n" +
+        " <griddedTableDef name=\"Cm0_table\" gtID=\"CM0_TABLE\">\n" +
+        "  <breakpointRefs><bpRef bpID=\"DE1\"/><bpRef bpID=\"ALPHA1\"/></breakpointRefs>\n" +
+        "  <dataTable>\n" +
+        "    .205, .168, .186, .196, .213, .251, .245, .238, .252, .231, .198, .192,\n" +
+        "    .081, .077, .107, .110, .110, .141, .127, .119, .133, .108, .081, .093,\n" +
+        "   -.046,-.020,-.009,-.005,-.006, .010, .006,-.001, .014, .000,-.013, .032,\n" +
+        "   -.174,-.145,-.121,-.127,-.129,-.102,-.097,-.113,-.087,-.084,-.069,-.006,\n" +
+        "   -.259,-.202,-.184,-.193,-.199,-.150,-.160,-.167,-.104,-.076,-.041,-.005\n" +
+        "  </dataTable>\n" +
+        " </griddedTableDef>\n" +
+        " <griddedTableDef name=\"Cl0_table\" gtID=\"CL0_TABLE\">\n" +
+        "  <breakpointRefs><bpRef bpID=\"DE1\"/><bpRef bpID=\"BETA1\"/><bpRef bpID=\"ALPHA1\"/></breakpointRefs>\n" +
+        "  <dataTable>\n" +
+        generateTableValues(5*3*12) +
+        "  </dataTable>\n" +
+        " </griddedTableDef>\n" +
+        " <function name=\"Cm0\">\n" +
+        "  <independentVarRef varID=\"de\"/><independentVarRef varID=\"alpha\"/>\n" +
+        "  <dependentVarRef varID=\"cm0\"/>\n" +
+        "  <functionDefn name=\"Cm0_fn\"><griddedTableRef gtID=\"CM0_TABLE\"/></functionDefn>\n" +
+        " </function>\n" +
+        " <function name=\"Cl0\">\n" +
+        "  <independentVarRef varID=\"de\"/><independentVarRef varID=\"beta\"/><independentVarRef varID=\"alpha\"/>\n" +
+        "  <dependentVarRef varID=\"cl0\"/>\n" +
+        "  <functionDefn name=\"Cl0_fn\"><griddedTableRef gtID=\"CL0_TABLE\"/></functionDefn>\n" +
+        " </function>\n" +
+        "</DAVEfunc>\n";
+
+    /**
+     * Input points (alpha, beta, de) covering interior, edge and out-of-range cases
+     */
+
+    static final double[][] SAMPLE_INPUTS = {
+        {   0.0,   0.0,   0.0 },
+        {  12.15,  3.3,   0.25 },
+        {   7.0,  -2.0,  -5.5 },
+        { -15.0,  25.0, -30.0 },
+        {  45.0,  20.0,  24.0 },
+        {  50.0,   5.0,  12.0 },
+        {  -2.5,  15.0,   1.0 },
+        {  33.3,  10.0, -12.0 }
+    };
+
+
+    /**
+     * Returns comma-separated, reproducible table values
+     */
+
+    static String generateTableValues( int count ) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(Math.sin(0.37*i) + 0.01*i);
+            if (i < count-1) {
+                sb.append(",");
+            }
+            if (i % 10 == 9) {
+                sb.append("\n");
+            }
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+
+
+    /**
+     * Writes the sample model to a temporary file and loads it
+     */
+
+    static Model loadSampleModel() throws IOException {
+        return loadModel(SAMPLE_MODEL);
+    }
+
+
+    /**
+     * Writes the given DAVE-ML text to a temporary file and loads it
+     */
+
+    static Model loadModel( String daveml ) throws IOException {
+        File f = File.createTempFile("sample", ".dml");
+        f.deleteOnExit();
+        FileWriter fw = new FileWriter(f);
+        fw.write(daveml);
+        fw.close();
+        DAVE dave = new DAVE();
+        dave.setInputFileName(f.getAbsolutePath());
+        dave.parseFile();
+        return dave.getModel();
+    }
+
+
+    /**
+     * Loads an input point into a model's input vector
+     */
+
+    static void setInputs( Model m, double[] point ) throws DAVEException {
+        VectorInfoArrayList inVec = m.getInputVector();
+        Iterator<VectorInfo> it = inVec.iterator();
+        while (it.hasNext()) {
+            VectorInfo vi = it.next();
+            if (vi.getName().equals("alpha")) { vi.setValue(point[0]); }
+            if (vi.getName().equals("beta"))  { vi.setValue(point[1]); }
+            if (vi.getName().equals("de"))    { vi.setValue(point[2]); }
+        }
+    }
+
+
+    /**
+     * Returns output values of a model as an array, in output vector order
+     */
+
+    static double[] getOutputs( Model m ) throws DAVEException {
+        VectorInfoArrayList outVec = m.getOutputVector();
+        double[] result = new double[outVec.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = outVec.get(i).getValue();
+        }
+        return result;
+    }
+
+
+    public void testCompiledMatchesInterpreted() throws Exception {
+        Model interpreted = loadSampleModel();
+        Model compiled = loadSampleModel();
+        compiled.compile();
+
+        assertFalse( interpreted.isCompiled() );
+        assertTrue( compiled.isCompiled() );
+        assertNotNull( compiled.getCompiledModel() );
+        assertEquals( compiled.getNumBlocks(), compiled.getCompiledModel().getNumRegisters() );
+        assertTrue( compiled.getCompiledModel().getNumInstructions() > 0 );
+
+        for (int i = 0; i < SAMPLE_INPUTS.length; i++) {
+            setInputs(interpreted, SAMPLE_INPUTS[i]);
+            interpreted.cycle();
+            setInputs(compiled, SAMPLE_INPUTS[i]);
+            compiled.cycle();
+
+            double[] expected = getOutputs(interpreted);
+            double[] actual = getOutputs(compiled);
+            assertEquals( 4, expected.length );
+            assertEquals( expected.length, actual.length );
+            for (int j = 0; j < expected.length; j++) {
+                if (Double.isNaN(expected[j])) {
+                    assertTrue( Double.isNaN(actual[j]) );
+                } else {
+                    assertEquals( expected[j], actual[j], EPS );
+                }
+            }
+        }
+    }
+
+
+    public void testInternalsMatchInterpreted() throws Exception {
+        Model interpreted = loadSampleModel();
+        Model compiled = loadSampleModel();
+        compiled.compile();
+
+        setInputs(interpreted, SAMPLE_INPUTS[1]);
+        interpreted.cycle();
+        setInputs(compiled, SAMPLE_INPUTS[1]);
+        compiled.cycle();
+
+        VectorInfoArrayList expected = interpreted.getInternalsVector();
+        VectorInfoArrayList actual = compiled.getInternalsVector();
+        assertEquals( expected.size(), actual.size() );
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals( expected.get(i).getName(), actual.get(i).getName() );
+            assertEquals( expected.get(i).getValue(), actual.get(i).getValue(), EPS );
+        }
+    }
+
+
+    public void testDecompile() throws Exception {
+        Model m = loadSampleModel();
+        m.compile();
+        setInputs(m, SAMPLE_INPUTS[1]);
+        m.cycle();
+        double[] compiledResult = getOutputs(m);
+
+        m.decompile();
+        assertFalse( m.isCompiled() );
+        assertNull( m.getCompiledModel() );
+        m.cycle();
+        double[] interpretedResult = getOutputs(m);
+        for (int j = 0; j < compiledResult.length; j++) {
+            assertEquals( compiledResult[j], interpretedResult[j], EPS );
+        }
+    }
+
+
+    public void testSelectiveEvaluation() throws Exception {
+        Model reference = loadSampleModel();
+        setInputs(reference, SAMPLE_INPUTS[4]);
+        reference.cycle();
+        double[] expected = getOutputs(reference);
+
+        for (int pass = 0; pass < 2; pass++) {
+            Model m = loadSampleModel();
+            if (pass == 1) {
+                m.compile();
+            }
+            setInputs(m, SAMPLE_INPUTS[1]);
+            m.cycle();
+            double[] before = getOutputs(m);
+
+            VectorInfoArrayList outVec = m.getOutputVector();
+            int cm = -1;
+            int trig = -1;
+            for (int j = 0; j < outVec.size(); j++) {
+                if (outVec.get(j).getName().equals("cm"))   { cm = j; }
+                if (outVec.get(j).getName().equals("trig")) { trig = j; }
+            }
+
+            // only cm is evaluated; the others keep their old values
+            m.clearSelections();
+            assertTrue( m.selectOutputByName("cm") );
+            m.setSelectiveEvaluation(true);
+            assertTrue( m.isSelectiveEvaluation() );
+            setInputs(m, SAMPLE_INPUTS[4]);
+            m.cycle();
+            double[] after = getOutputs(m);
+            for (int j = 0; j < after.length; j++) {
+                assertEquals( (j == cm) ? expected[j] : before[j], after[j], EPS );
+            }
+
+            // widening the selection takes effect on the next cycle
+            assertTrue( m.selectOutputByName("trig") );
+            m.cycle();
+            after = getOutputs(m);
+            assertEquals( expected[trig], after[trig], EPS );
+
+            // full evaluation again
+            m.setSelectiveEvaluation(false);
+            m.cycle();
+            after = getOutputs(m);
+            for (int j = 0; j < after.length; j++) {
+                assertEquals( expected[j], after[j], EPS );
+            }
+        }
+    }
+
+
+    public void testIncrementalEvaluation() throws Exception {
+        // alpha and beta held fixed while de moves
+        double[][] points = { SAMPLE_INPUTS[1], SAMPLE_INPUTS[1].clone(),
+                              SAMPLE_INPUTS[1].clone(), SAMPLE_INPUTS[4] };
+        points[1][2] = -7.5;
+        points[2][2] = 12.0;
+
+        for (int pass = 0; pass < 2; pass++) {
+            Model reference = loadSampleModel();
+            Model m = loadSampleModel();
+            if (pass == 1) {
+                m.compile();
+            }
+            m.setIncrementalEvaluation(true);
+            assertTrue( m.isIncrementalEvaluation() );
+
+            for (int i = 0; i < points.length; i++) {
+                setInputs(reference, points[i]);
+                reference.cycle();
+                setInputs(m, points[i]);
+                m.cycle();
+                assertEquals( 0, m.getNumDirtyBlocks() );
+
+                double[] expected = getOutputs(reference);
+                double[] actual = getOutputs(m);
+                for (int j = 0; j < expected.length; j++) {
+                    if (Double.isNaN(expected[j])) {
+                        assertTrue( Double.isNaN(actual[j]) );
+                    } else {
+                        assertEquals( expected[j], actual[j], 0.0 );
+                    }
+                }
+            }
+
+            // changing one input marks only part of the model; setting
+            // the same value again marks nothing
+            BlockInput de = null;
+            Iterator<VectorInfo> it = m.getInputVector().iterator();
+            while (it.hasNext()) {
+                VectorInfo vi = it.next();
+                if (vi.getName().equals("de")) {
+                    de = vi.getSink();
+                }
+            }
+            de.setInputValue( de.getValue() );
+            assertEquals( 0, m.getNumDirtyBlocks() );
+            de.setInputValue( de.getValue() + 1.0 );
+            int numDirty = m.getNumDirtyBlocks();
+            assertTrue( numDirty > 0 );
+            assertTrue( numDirty < m.getNumBlocks() );
+
+            m.markAllDirty();
+            assertEquals( m.getNumBlocks(), m.getNumDirtyBlocks() );
+        }
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( CompiledModelTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+
+}
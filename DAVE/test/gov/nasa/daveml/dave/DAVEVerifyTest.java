@@ -0,0 +1,143 @@
+package gov.nasa.daveml.dave;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.ByteArrayOutputStream;
+
+import junit.framework.*;
+
+
+/**
+ * Tests DAVE.verify() by comparing results of verifying checkcases on
+ * one thread and on several
+ *
+ **/
+
+public class DAVEVerifyTest extends TestCase {
+
+    private File dml;
+    private PrintStream stdout;
+    private ByteArrayOutputStream captured;
+
+    @Override
+    protected void setUp() throws Exception {
+        dml = File.createTempFile("verify", ".dml");
+        ModelCacheTest.writeFile(dml, modelWithCheckcases(false));
+        stdout = System.out;
+        captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+    }
+
+    @Override
+    protected void tearDown() {
+        System.setOut(stdout);
+        dml.delete();
+    }
+
+
+    /**
+     * Returns the sample model with a checkcase for each sample input point,
+     * using outputs of the interpreted model; optionally spoils the third
+     * checkcase
+     */
+
+    static String modelWithCheckcases( boolean spoil ) throws Exception {
+        Model m = CompiledModelTest.loadSampleModel();
+        VectorInfoArrayList inVec = m.getInputVector();
+        StringBuilder sb = new StringBuilder();
+        sb.append(" <checkData>\n");
+        for (int i = 0; i < CompiledModelTest.SAMPLE_INPUTS.length; i++) {
+            CompiledModelTest.setInputs(m, CompiledModelTest.SAMPLE_INPUTS[i]);
+            m.cycle();
+            VectorInfoArrayList outVec = m.getOutputVector();
+            sb.append("  <staticShot name=\"point ").append(i).append("\">\n");
+            sb.append("   <checkInputs>\n");
+            for (int j = 0; j < inVec.size(); j++) {
+                appendSignal(sb, inVec.get(j), inVec.get(j).getValue(), false);
+            }
+            sb.append("   </checkInputs>\n");
+            sb.append("   <checkOutputs>\n");
+            for (int j = 0; j < outVec.size(); j++) {
+                double value = outVec.get(j).getValue();
+                if (spoil && i == 2 && j == 0) {
+                    value += 1.0;
+                }
+                appendSignal(sb, outVec.get(j), value, true);
+            }
+            sb.append("   </checkOutputs>\n");
+            sb.append("  </staticShot>\n");
+        }
+        sb.append(" </checkData>\n");
+        return CompiledModelTest.SAMPLE_MODEL.replace("</DAVEfunc>", sb + "</DAVEfunc>");
+    }
+
+    private static void appendSignal( StringBuilder sb, VectorInfo vi,
+                                      double value, boolean withTol ) {
+        sb.append("    <signal><signalName>").append(vi.getName()).append("</signalName>");
+        sb.append("<signalUnits>").append(vi.getUnits()).append("</signalUnits>");
+        sb.append("<signalValue>").append(value).append("</signalValue>");
+        if (withTol) {
+            sb.append("<tol>0.000001</tol>");
+        }
+        sb.append("</signal>\n");
+    }
+
+
+    /**
+     * Parses our sample file and verifies its checkcases on the given
+     * number of threads; returns the output written
+     */
+
+    private String verify( int threads, boolean compile, boolean expected ) throws Exception {
+        DAVE dave = new DAVE();
+        dave.setInputFileName(dml.getAbsolutePath());
+        assertTrue( dave.parseFile() );
+        if (compile) {
+            dave.getModel().compile();
+        }
+        dave.setVerifyThreads(threads);
+        assertEquals( threads, dave.getVerifyThreads() );
+        captured.reset();
+        assertEquals( expected, dave.verify() );
+        String output = captured.toString();
+
+        // model is left with results of last checkcase
+        double[] last = CompiledModelTest.SAMPLE_INPUTS[CompiledModelTest.SAMPLE_INPUTS.length - 1];
+        Model reference = CompiledModelTest.loadSampleModel();
+        CompiledModelTest.setInputs(reference, last);
+        reference.cycle();
+        double[] want = CompiledModelTest.getOutputs(reference);
+        double[] got = CompiledModelTest.getOutputs(dave.getModel());
+        for (int j = 0; j < want.length; j++) {
+            assertEquals( want[j], got[j], 0.0 );
+        }
+        return output;
+    }
+
+
+    public void testParallelMatchesSequential() throws Exception {
+        String sequential = verify(1, false, true);
+        assertTrue( sequential.indexOf("Verified 8 of 8") >= 0 );
+        assertEquals( sequential, verify(4, false, true) );
+        assertEquals( sequential, verify(4, true, true) );
+        assertEquals( sequential, verify(100, false, true) );
+    }
+
+
+    public void testParallelReportsFailuresInOrder() throws Exception {
+        ModelCacheTest.writeFile(dml, modelWithCheckcases(true));
+        String sequential = verify(1, false, false);
+        assertTrue( sequential.indexOf("Verified 7 of 8") >= 0 );
+        assertTrue( sequential.indexOf("For output") >= 0 );
+        assertEquals( sequential, verify(3, false, false) );
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( DAVEVerifyTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,264 @@
+package gov.nasa.daveml.dave;
+
+import java.util.ArrayList;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the EvaluationContext object, including concurrent use of one
+ * compiled model by several threads and batch evaluation
+ *
+ **/
+
+public class EvaluationContextTest extends TestCase {
+
+    private final double EPS = 0.000001;
+
+    private static final int NUM_THREADS = 4;
+    private static final int NUM_PASSES  = 200;
+
+    private Model _model;
+    private double[][] _expected;
+    private String[] _outputNames;
+
+    protected void setUp() throws Exception {
+        // reference results from the interpreter
+        Model interpreted = CompiledModelTest.loadSampleModel();
+        _expected = new double[CompiledModelTest.SAMPLE_INPUTS.length][];
+        for (int i = 0; i < _expected.length; i++) {
+            CompiledModelTest.setInputs(interpreted, CompiledModelTest.SAMPLE_INPUTS[i]);
+            interpreted.cycle();
+            _expected[i] = CompiledModelTest.getOutputs(interpreted);
+        }
+        VectorInfoArrayList outVec = interpreted.getOutputVector();
+        _outputNames = new String[outVec.size()];
+        for (int i = 0; i < _outputNames.length; i++) {
+            _outputNames[i] = outVec.get(i).getName();
+        }
+
+        _model = CompiledModelTest.loadSampleModel();
+    }
+
+    public void testNewEvaluationContextCompiles() throws Exception {
+        assertFalse( _model.isCompiled() );
+        EvaluationContext ctx = _model.newEvaluationContext();
+        assertTrue( _model.isCompiled() );
+        assertSame( _model.getCompiledModel(), ctx.getCompiledModel() );
+        assertEquals( 3, ctx.getNumInputs() );
+        assertEquals( 4, ctx.getNumOutputs() );
+        assertEquals( -1, ctx.getCompiledModel().getInputIndex("nonesuch") );
+        assertEquals( -1, ctx.getCompiledModel().getOutputIndex("nonesuch") );
+    }
+
+    public void testSingleContext() throws Exception {
+        EvaluationContext ctx = _model.newEvaluationContext();
+        for (int i = 0; i < _expected.length; i++) {
+            checkPoint(ctx, i);
+        }
+    }
+
+    public void testContextsAreIndependent() throws Exception {
+        EvaluationContext a = _model.newEvaluationContext();
+        EvaluationContext b = _model.newEvaluationContext();
+        int ia = a.getCompiledModel().getInputIndex("alpha");
+        a.setInput(ia, 12.5);
+        b.setInput(ia, -3.0);
+        assertEquals(  12.5, a.getInput(ia), 0.0 );
+        assertEquals(  -3.0, b.getInput(ia), 0.0 );
+
+        // the model's own inputs are untouched
+        CompiledModelTest.setInputs(_model, CompiledModelTest.SAMPLE_INPUTS[2]);
+        _model.cycle();
+        assertEquals(  12.5, a.getInput(ia), 0.0 );
+    }
+
+    public void testConcurrentContexts() throws Exception {
+        final EvaluationContext[] contexts = new EvaluationContext[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            contexts[t] = _model.newEvaluationContext();
+        }
+        final ArrayList<Throwable> failures = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int pass = 0; pass < NUM_PASSES; pass++) {
+                            // each thread walks the points in a different order
+                            int i = (pass + offset) % _expected.length;
+                            checkPoint(contexts[offset], i);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+        }
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads[t].start();
+        }
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads[t].join();
+        }
+        if (!failures.isEmpty()) {
+            Throwable e = failures.get(0);
+            if (e instanceof AssertionFailedError) {
+                throw (AssertionFailedError) e;
+            }
+            fail( "Evaluation thread threw " + e );
+        }
+    }
+
+    public void testModelCycleBatch() throws Exception {
+        // more rows than one chunk, cycling through the sample points
+        int numRows = 2*EvaluationContext.BATCH_ROWS + 5;
+        double[][] inputs = new double[numRows][];
+        double[][] outputs = new double[numRows][4];
+        for (int row = 0; row < numRows; row++) {
+            inputs[row] = modelOrderInputs(row % _expected.length);
+        }
+        _model.cycleBatch(inputs, outputs);
+        assertTrue( _model.isCompiled() );
+        for (int row = 0; row < numRows; row++) {
+            checkOutputs(_model.getCompiledModel(), outputs[row], row % _expected.length);
+        }
+    }
+
+    public void testModelCycleBatchColumns() throws Exception {
+        int numRows = EvaluationContext.BATCH_ROWS + 1;
+        _model.compile();
+        CompiledModel program = _model.getCompiledModel();
+        double[][] inputs = new double[3][numRows];
+        double[][] outputs = new double[4][numRows];
+        for (int row = 0; row < numRows; row++) {
+            double[] point = modelOrderInputs(row % _expected.length);
+            for (int i = 0; i < 3; i++) {
+                inputs[i][row] = point[i];
+            }
+        }
+        _model.cycleBatchColumns(inputs, outputs, numRows);
+        double[] rowOut = new double[4];
+        for (int row = 0; row < numRows; row++) {
+            for (int j = 0; j < 4; j++) {
+                rowOut[j] = outputs[j][row];
+            }
+            checkOutputs(program, rowOut, row % _expected.length);
+        }
+    }
+
+    public void testBatchMatchesCycle() throws Exception {
+        EvaluationContext ctx = _model.newEvaluationContext();
+        double[][] inputs = new double[_expected.length][];
+        double[][] outputs = new double[_expected.length][4];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = modelOrderInputs(i);
+        }
+        ctx.cycleBatch(inputs, outputs);
+        double[] single = new double[4];
+        for (int i = 0; i < inputs.length; i++) {
+            ctx.setInputs(inputs[i]);
+            ctx.cycle();
+            ctx.getOutputs(single);
+            for (int j = 0; j < 4; j++) {
+                assertEquals( Double.doubleToLongBits(single[j]),
+                              Double.doubleToLongBits(outputs[i][j]) );
+            }
+        }
+    }
+
+    public void testBatchColumnsFollowLiveness() throws Exception {
+        _model.compile();
+        CompiledModel program = _model.getCompiledModel();
+        // constants are read from the register file, and columns of
+        // intermediate values are reused
+        assertTrue( program.constSlots.length > 0 );
+        assertTrue( program.getNumBatchColumns() >= 3 + 4 );
+        assertTrue( program.getNumBatchColumns()
+                    < program.getNumRegisters() - program.constSlots.length );
+        for (int k = 0; k < program.batchOutputs.length; k++) {
+            assertTrue( program.batchOutputs[k] >= 0 );
+        }
+    }
+
+    public void testBatchSizeMismatch() throws Exception {
+        EvaluationContext ctx = _model.newEvaluationContext();
+        try {
+            ctx.cycleBatch(new double[][] {{1.0, 2.0}}, new double[1][4]);
+            fail( "Expected exception for short input row" );
+        } catch (DAVEException e) {
+            // expected
+        }
+        try {
+            ctx.cycleColumns(new double[3][10], new double[4][5], 10);
+            fail( "Expected exception for short output column" );
+        } catch (DAVEException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns a sample point rearranged into the model's input vector order
+     */
+
+    private double[] modelOrderInputs( int i ) throws Exception {
+        if (!_model.isCompiled()) {
+            _model.compile();
+        }
+        CompiledModel program = _model.getCompiledModel();
+        double[] point = CompiledModelTest.SAMPLE_INPUTS[i];
+        double[] result = new double[3];
+        result[program.getInputIndex("alpha")] = point[0];
+        result[program.getInputIndex("beta")]  = point[1];
+        result[program.getInputIndex("de")]    = point[2];
+        return result;
+    }
+
+    /**
+     * Compares outputs (in compiled model order) with the interpreter
+     */
+
+    private void checkOutputs( CompiledModel program, double[] outputs, int i ) {
+        for (int j = 0; j < _outputNames.length; j++) {
+            double actual = outputs[program.getOutputIndex(_outputNames[j])];
+            if (Double.isNaN(_expected[i][j])) {
+                assertTrue( Double.isNaN(actual) );
+            } else {
+                assertEquals( _expected[i][j], actual, EPS );
+            }
+        }
+    }
+
+    /**
+     * Evaluates one sample point in a context and compares with the interpreter
+     */
+
+    private void checkPoint( EvaluationContext ctx, int i ) {
+        CompiledModel program = ctx.getCompiledModel();
+        double[] point = CompiledModelTest.SAMPLE_INPUTS[i];
+        ctx.setInput(program.getInputIndex("alpha"), point[0]);
+        ctx.setInput(program.getInputIndex("beta"),  point[1]);
+        ctx.setInput(program.getInputIndex("de"),    point[2]);
+        ctx.cycle();
+        for (int j = 0; j < _outputNames.length; j++) {
+            double actual = ctx.getOutput(program.getOutputIndex(_outputNames[j]));
+            if (Double.isNaN(_expected[i][j])) {
+                assertTrue( Double.isNaN(actual) );
+            } else {
+                assertEquals( _expected[i][j], actual, EPS );
+            }
+        }
+    }
+
+    public static Test suite() {
+	return new TestSuite( EvaluationContextTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+
+}
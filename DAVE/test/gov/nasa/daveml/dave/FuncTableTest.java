@@ -1,10 +1,13 @@
 package gov.nasa.daveml.dave;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.jdom.Element;
 
@@ -160,7 +163,7 @@ public class FuncTableTest extends TestCase {
     }
 
     public void testGetValues() {
-        ArrayList<Double> vals = _gft.getValues();
+        List<Double> vals = _gft.getValues();
         assertNotNull(vals);
         assertEquals(60, vals.size());
         assertEquals(0.205, vals.get(0), EPS);
@@ -236,6 +239,67 @@ public class FuncTableTest extends TestCase {
 
     }
 
+    public void testMapValues() throws Exception {
+        File dir = File.createTempFile("tables", "");
+        dir.delete();
+        try {
+            List<Double> expected = new ArrayList<Double>(_gft.getValues());
+            StringWriter before = new StringWriter();
+            _gft.printTable(before);
+
+            _gft.mapValues(dir);
+            assertTrue(_gft.isMapped());
+            assertNull(_gft.getValueArray());
+            assertNotNull(_gft.getValueBuffer());
+            assertEquals(expected.size(), _gft.size());
+            assertEquals(expected, _gft.getValues());
+            assertEquals(0.010, _gft.getPt(new int[]{2, 5}), EPS);
+            StringWriter after = new StringWriter();
+            _gft.printTable(after);
+            assertEquals(before.toString(), after.toString());
+
+            // an identical table shares the file
+            FuncTable other = new FuncTable(_gtd, _model);
+            other.mapValues(dir);
+            assertEquals(_gft.getMappedFile(), other.getMappedFile());
+            assertEquals(1, dir.listFiles().length);
+        } finally {
+            File[] files = dir.listFiles();
+            for (int i = 0; files != null && i < files.length; i++) {
+                files[i].delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testMapValuesReplacesMismatchedFile() throws Exception {
+        File dir = File.createTempFile("tables", "");
+        dir.delete();
+        try {
+            List<Double> expected = new ArrayList<Double>(_gft.getValues());
+            _gft.mapValues(dir);
+            File f = _gft.getMappedFile();
+
+            // a file of the right size whose contents don't match its name
+            f.delete();
+            FileOutputStream out = new FileOutputStream(f);
+            out.write(new byte[8*expected.size()]);
+            out.close();
+
+            FuncTable other = new FuncTable(_gtd, _model);
+            other.mapValues(dir);
+            assertEquals(f, other.getMappedFile());
+            assertEquals(expected, other.getValues());
+            assertEquals(8L*expected.size(), f.length());
+        } finally {
+            File[] files = dir.listFiles();
+            for (int i = 0; files != null && i < files.length; i++) {
+                files[i].delete();
+            }
+            dir.delete();
+        }
+    }
+
     public void testGetPt() {
 
         // check perimeter and intermediate values
@@ -0,0 +1,164 @@
+package gov.nasa.daveml.dave;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the Interpolator kernel against a straightforward recursive
+ * implementation for tables of one to six dimensions
+ *
+ **/
+
+public class InterpolatorTest extends TestCase {
+
+    private final double EPS = 0.000000001;
+
+    private Random _random;
+
+    protected void setUp() {
+        _random = new Random(19630717L);
+    }
+
+    public void testStrides() {
+        int[] strides = Interpolator.strides(new int[] {5, 3, 12});
+        assertEquals( 36, strides[0] );
+        assertEquals( 12, strides[1] );
+        assertEquals(  1, strides[2] );
+    }
+
+    public void testScratchSize() {
+        assertEquals(  0, Interpolator.scratchSize(1) );
+        assertEquals(  0, Interpolator.scratchSize(4) );
+        assertEquals( 32, Interpolator.scratchSize(5) );
+    }
+
+    public void testOneDimension() {
+        double[] values = { 1.0, 3.0, 7.0 };
+        int[] dims = { 3 };
+        int[] strides = Interpolator.strides(dims);
+        assertEquals( 1.0, Interpolator.interpolate(values, dims, strides, new double[] {0.0}, null), EPS );
+        assertEquals( 2.0, Interpolator.interpolate(values, dims, strides, new double[] {0.5}, null), EPS );
+        assertEquals( 5.0, Interpolator.interpolate(values, dims, strides, new double[] {1.5}, null), EPS );
+        assertEquals( 7.0, Interpolator.interpolate(values, dims, strides, new double[] {2.0}, null), EPS );
+    }
+
+    public void testSinglePointDimension() {
+        double[] values = { 1.0, 3.0 };
+        int[] dims = { 1, 2 };
+        int[] strides = Interpolator.strides(dims);
+        assertEquals( 2.0, Interpolator.interpolate(values, dims, strides, new double[] {0.0, 0.5}, null), EPS );
+    }
+
+    public void testAgainstRecursive() {
+        for (int nDim = 1; nDim <= 6; nDim++) {
+            for (int trial = 0; trial < 20; trial++) {
+                int[] dims = new int[nDim];
+                int size = 1;
+                for (int d = 0; d < nDim; d++) {
+                    dims[d] = 2 + _random.nextInt(4);
+                    size *= dims[d];
+                }
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = _random.nextGaussian();
+                }
+                int[] strides = Interpolator.strides(dims);
+                double[] scratch = new double[Interpolator.scratchSize(nDim)];
+
+                double[] iw = new double[nDim];
+                for (int d = 0; d < nDim; d++) {
+                    switch (_random.nextInt(4)) {
+                    case 0:  iw[d] = 0.0; break;                     // lower edge
+                    case 1:  iw[d] = dims[d]-1; break;               // upper edge
+                    case 2:  iw[d] = _random.nextInt(dims[d]); break; // on a breakpoint
+                    default: iw[d] = _random.nextDouble()*(dims[d]-1);
+                    }
+                }
+
+                double expected = recursive(values, dims, iw, new int[nDim], nDim);
+                double actual = Interpolator.interpolate(values, dims, strides, iw, scratch);
+                assertEquals( expected, actual, EPS );
+            }
+        }
+    }
+
+    public void testBufferMatchesArray() {
+        for (int nDim = 1; nDim <= 6; nDim++) {
+            for (int trial = 0; trial < 20; trial++) {
+                int[] dims = new int[nDim];
+                int size = 1;
+                for (int d = 0; d < nDim; d++) {
+                    dims[d] = 1 + _random.nextInt(5);
+                    size *= dims[d];
+                }
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = _random.nextGaussian();
+                }
+                int[] strides = Interpolator.strides(dims);
+                double[] iw = new double[nDim];
+                for (int d = 0; d < nDim; d++) {
+                    iw[d] = _random.nextDouble()*dims[d];
+                }
+
+                double expected = Interpolator.interpolate(values, dims, strides, iw,
+                        new double[Interpolator.scratchSize(nDim)]);
+                double actual = Interpolator.interpolate(DoubleBuffer.wrap(values).asReadOnlyBuffer(),
+                        dims, strides, iw, new double[Interpolator.bufferScratchSize(nDim)]);
+                assertEquals( expected, actual, 0.0 );
+            }
+        }
+    }
+
+    /**
+     * Reference implementation following the original recursive algorithm
+     */
+
+    private double recursive( double[] values, int[] dims, double[] iw, int[] indices, int interpDim ) {
+        int select = dims.length - interpDim;
+        double weight;
+        indices[select] = (int) iw[select];
+        if (indices[select] >= dims[select]-1) {
+            indices[select]--;
+            weight = 1.0;
+        } else {
+            weight = iw[select] - indices[select];
+        }
+        double a;
+        double b;
+        if (interpDim == 1) {
+            a = values[offset(dims, indices)];
+            indices[select]++;
+            b = values[offset(dims, indices)];
+            indices[select]--;
+        } else {
+            a = recursive(values, dims, iw, indices, interpDim-1);
+            indices[select]++;
+            b = recursive(values, dims, iw, indices, interpDim-1);
+            indices[select]--;
+        }
+        return a + (b-a)*weight;
+    }
+
+    private int offset( int[] dims, int[] indices ) {
+        int mult = 1;
+        int offset = 0;
+        for (int i = indices.length-1; i >= 0; i--) {
+            offset += indices[i]*mult;
+            mult *= dims[i];
+        }
+        return offset;
+    }
+
+    public static Test suite() {
+	return new TestSuite( InterpolatorTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+
+}
@@ -0,0 +1,250 @@
+package gov.nasa.daveml.dave;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the ModelCache by comparing cached and freshly parsed models
+ *
+ **/
+
+public class ModelCacheTest extends TestCase {
+
+    private File dir;
+    private File dml;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = File.createTempFile("cache", "");
+        dir.delete();
+        dml = File.createTempFile("sample", ".dml");
+        writeFile(dml, CompiledModelTest.SAMPLE_MODEL);
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        dir.delete();
+        dml.delete();
+    }
+
+
+    static void writeFile( File f, String text ) throws IOException {
+        FileWriter fw = new FileWriter(f);
+        fw.write(text);
+        fw.close();
+    }
+
+
+    /**
+     * Parses our sample file with caching on
+     */
+
+    private DAVE parse() throws IOException {
+        DAVE dave = new DAVE();
+        dave.setInputFileName(dml.getAbsolutePath());
+        dave.setCacheDirectory(dir);
+        assertTrue( dave.parseFile() );
+        return dave;
+    }
+
+
+    public void testRoundTrip() throws Exception {
+        DAVE first = parse();
+        assertEquals( 1, dir.listFiles().length );
+
+        DAVE second = parse();
+        Model cached = second.getModel();
+        Model reference = CompiledModelTest.loadSampleModel();
+        assertNotSame( first.getModel(), cached );
+        assertEquals( reference.getNumBlocks(), cached.getNumBlocks() );
+        assertEquals( reference.getNumSignals(), cached.getNumSignals() );
+        assertNotNull( cached.getSignalByVarID("alpha") );
+        assertSame( cached.getSignalByVarID("alpha"),
+                    cached.getSignalByVarID("alpha").getSourceBlock().getOutput() );
+
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                cached.compile();
+            }
+            for (int i = 0; i < CompiledModelTest.SAMPLE_INPUTS.length; i++) {
+                CompiledModelTest.setInputs(reference, CompiledModelTest.SAMPLE_INPUTS[i]);
+                reference.cycle();
+                CompiledModelTest.setInputs(cached, CompiledModelTest.SAMPLE_INPUTS[i]);
+                cached.cycle();
+                double[] expected = CompiledModelTest.getOutputs(reference);
+                double[] actual = CompiledModelTest.getOutputs(cached);
+                assertEquals( expected.length, actual.length );
+                for (int j = 0; j < expected.length; j++) {
+                    if (Double.isNaN(expected[j])) {
+                        assertTrue( Double.isNaN(actual[j]) );
+                    } else {
+                        assertEquals( expected[j], actual[j], 0.0 );
+                    }
+                }
+            }
+        }
+    }
+
+
+    public void testKeyFollowsContents() throws Exception {
+        String key = ModelCache.keyOf(dml, "v1");
+        assertEquals( key, ModelCache.keyOf(dml, "v1") );
+        assertFalse( key.equals(ModelCache.keyOf(dml, "v2")) );
+
+        writeFile(dml, CompiledModelTest.SAMPLE_MODEL.replace("initialValue=\"0.0\"",
+                                                              "initialValue=\"1.0\""));
+        assertFalse( key.equals(ModelCache.keyOf(dml, "v1")) );
+    }
+
+
+    public void testUnreadableEntryIgnored() throws Exception {
+        ModelCache cache = new ModelCache(dir);
+        String key = ModelCache.keyOf(dml, "v1");
+        assertNull( cache.load(key) );
+
+        dir.mkdirs();
+        writeFile(cache.fileFor(key), "not a model");
+        assertNull( cache.load(key) );
+        cache.fileFor(key).delete();
+
+        // a bad entry is rebuilt
+        parse();
+        File entry = dir.listFiles()[0];
+        writeFile(entry, "not a model");
+        DAVE dave = parse();
+        assertTrue( dave.getModel().getNumBlocks() > 0 );
+        assertEquals( 1, dir.listFiles().length );
+        assertTrue( entry.length() > "not a model".length() );
+    }
+
+
+    public void testMappedTables() throws Exception {
+        Model reference = CompiledModelTest.loadSampleModel();
+        Model m = CompiledModelTest.loadSampleModel();
+        File tables = new File(dir, "tables");
+        assertTrue( m.mapTables(tables, 0) > 0 );
+        assertEquals( 0, m.mapTables(tables, 0) );
+
+        // a cached model maps the same files again
+        ModelCache cache = new ModelCache(dir);
+        ModelCache.Entry entry = new ModelCache.Entry();
+        entry.model = m;
+        entry.counts = new int[5];
+        cache.store("mapped", entry);
+        Model cached = cache.load("mapped").model;
+
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                m.compile();
+                cached.compile();
+            }
+            for (int i = 0; i < CompiledModelTest.SAMPLE_INPUTS.length; i++) {
+                CompiledModelTest.setInputs(reference, CompiledModelTest.SAMPLE_INPUTS[i]);
+                reference.cycle();
+                double[] expected = CompiledModelTest.getOutputs(reference);
+                Model[] models = { m, cached };
+                for (int k = 0; k < models.length; k++) {
+                    CompiledModelTest.setInputs(models[k], CompiledModelTest.SAMPLE_INPUTS[i]);
+                    models[k].cycle();
+                    double[] actual = CompiledModelTest.getOutputs(models[k]);
+                    for (int j = 0; j < expected.length; j++) {
+                        if (Double.isNaN(expected[j])) {
+                            assertTrue( Double.isNaN(actual[j]) );
+                        } else {
+                            assertEquals( expected[j], actual[j], 0.0 );
+                        }
+                    }
+                }
+            }
+        }
+
+        File[] files = tables.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        tables.delete();
+    }
+
+
+    public void testFailedBuildNotCached() throws Exception {
+        // two variables defined in terms of each other can't be ordered
+        String math = "<math " + CompiledModelTest.MATHML + "><apply><plus/><ci>";
+        writeFile(dml,
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<DAVEfunc xmlns=\"http://daveml.org/2010/DAVEML\">\n" +
+            " <fileHeader name=\"loop\">\n" +
+            "  <author name=\"test\" org=\"test\"/>\n" +
+            "  <fileCreationDate date=\"2015-03-02\"/>\n" +
+            " </fileHeader>\n" +
+            " <variableDef name=\"a\" varID=\"a\" units=\"nd\"><calculation>" + math +
+            "b</ci><cn>1</cn></apply></math></calculation></variableDef>\n" +
+            " <variableDef name=\"b\" varID=\"b\" units=\"nd\"><calculation>" + math +
+            "a</ci><cn>1</cn></apply></math></calculation><isOutput/></variableDef>\n" +
+            "</DAVEfunc>\n");
+
+        DAVE dave = new DAVE();
+        dave.setInputFileName(dml.getAbsolutePath());
+        dave.setCacheDirectory(dir);
+        dave.parseFile();
+        assertFalse( dave.getModel().initialized );
+        File[] files = dir.listFiles();
+        assertTrue( files == null || files.length == 0 );
+    }
+
+
+    public void testDeepModel() throws Exception {
+        // a long chain of variables, each one more than the last
+        final int n = 5000;
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<DAVEfunc xmlns=\"http://daveml.org/2010/DAVEML\">\n");
+        sb.append(" <fileHeader name=\"chain\">\n");
+        sb.append("  <author name=\"test\" org=\"test\"/>\n");
+        sb.append("  <fileCreationDate date=\"2015-03-02\"/>\n");
+        sb.append(" </fileHeader>\n");
+        sb.append(" <variableDef name=\"v0\" varID=\"v0\" units=\"nd\" initialValue=\"0.0\"><isInput/></variableDef>\n");
+        for (int i = 1; i <= n; i++) {
+            sb.append(" <variableDef name=\"v" + i + "\" varID=\"v" + i + "\" units=\"nd\">");
+            sb.append("<calculation><math " + CompiledModelTest.MATHML + "><apply><plus/><ci>v" + (i-1));
+            sb.append("</ci><cn>1</cn></apply></math></calculation>");
+            if (i == n) {
+                sb.append("<isOutput/>");
+            }
+            sb.append("</variableDef>\n");
+        }
+        sb.append("</DAVEfunc>\n");
+        writeFile(dml, sb.toString());
+
+        Model built = parse().getModel();
+        assertEquals( 1, dir.listFiles().length );
+        Model cached = parse().getModel();
+        assertNotSame( built, cached );
+        assertEquals( built.getNumBlocks(), cached.getNumBlocks() );
+        assertEquals( built.getNumSignals(), cached.getNumSignals() );
+
+        VectorInfoArrayList inputs = cached.getInputVector();
+        inputs.get(0).setValue( 0.5 );
+        cached.cycle();
+        VectorInfoArrayList outputs = cached.getOutputVector();
+        assertEquals( n + 0.5, outputs.get(0).getValue(), 0.0 );
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( ModelCacheTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
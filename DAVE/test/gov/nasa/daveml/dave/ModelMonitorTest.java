@@ -0,0 +1,115 @@
+package gov.nasa.daveml.dave;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the ModelMonitor MBean by registering the sample model with a
+ * private MBean server
+ *
+ **/
+
+public class ModelMonitorTest extends TestCase {
+
+    private MBeanServer server;
+    private Model m;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = MBeanServerFactory.newMBeanServer();
+        m = CompiledModelTest.loadSampleModel();
+    }
+
+
+    public void testAttributesAndOperations() throws Exception {
+        assertNull( m.getMonitor() );
+        ObjectName name = m.registerMBean(server);
+        assertEquals( "gov.nasa.daveml", name.getDomain() );
+        assertEquals( "Model", name.getKeyProperty("type") );
+        assertTrue( server.isRegistered(name) );
+
+        assertEquals( m.getName(),       server.getAttribute(name, "Name") );
+        assertEquals( m.getNumBlocks(),  server.getAttribute(name, "NumBlocks") );
+        assertEquals( m.getNumSignals(), server.getAttribute(name, "NumSignals") );
+        assertEquals( m.getNumTables(),  server.getAttribute(name, "NumTables") );
+        assertTrue( (Long) server.getAttribute(name, "TableBytes") > 0 );
+        assertEquals( 0L, server.getAttribute(name, "CycleCount") );
+
+        int n = CompiledModelTest.SAMPLE_INPUTS.length;
+        for (int i = 0; i < n; i++) {
+            CompiledModelTest.setInputs(m, CompiledModelTest.SAMPLE_INPUTS[i]);
+            m.cycle();
+        }
+        assertEquals( (long) n, server.getAttribute(name, "CycleCount") );
+        double mean = (Double) server.getAttribute(name, "MeanCycleMicros");
+        double max  = (Double) server.getAttribute(name, "MaxCycleMicros");
+        assertTrue( mean > 0.0 );
+        assertTrue( max >= mean );
+
+        server.invoke(name, "resetCounters", null, null);
+        assertEquals( 0L, server.getAttribute(name, "CycleCount") );
+        assertEquals( 0.0, server.getAttribute(name, "MaxCycleMicros") );
+
+        assertEquals( Boolean.FALSE, server.getAttribute(name, "Verbose") );
+        assertEquals( Boolean.TRUE, server.invoke(name, "toggleVerbose", null, null) );
+        assertTrue( m.isVerbose() );
+        assertEquals( Boolean.FALSE, server.invoke(name, "toggleVerbose", null, null) );
+        assertFalse( m.isVerbose() );
+
+        m.unregisterMBean();
+        assertFalse( server.isRegistered(name) );
+        assertNull( m.getMonitor() );
+        m.cycle();      // no longer counted, nor an error
+    }
+
+
+    public void testSameNameRegisteredTwice() throws Exception {
+        Model other = CompiledModelTest.loadSampleModel();
+        other.setName(m.getName());
+        ObjectName first  = m.registerMBean(server);
+        ObjectName second = other.registerMBean(server);
+        assertFalse( first.equals(second) );
+        assertEquals( "2", second.getKeyProperty("instance") );
+        assertEquals( first, m.registerMBean(server) );     // re-registers
+        m.unregisterMBean();
+        other.unregisterMBean();
+    }
+
+
+    public void testVerifyCounts() throws Exception {
+        File dml = File.createTempFile("monitor", ".dml");
+        ModelCacheTest.writeFile(dml, DAVEVerifyTest.modelWithCheckcases(true));
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            DAVE dave = new DAVE();
+            dave.setInputFileName(dml.getAbsolutePath());
+            assertTrue( dave.parseFile() );
+            ObjectName name = dave.getModel().registerMBean(server);
+            assertFalse( dave.verify() );
+            assertEquals( 7L, server.getAttribute(name, "CheckcasesPassed") );
+            assertEquals( 1L, server.getAttribute(name, "CheckcasesFailed") );
+            dave.getModel().unregisterMBean();
+        } finally {
+            System.setOut(stdout);
+            dml.delete();
+        }
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( ModelMonitorTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
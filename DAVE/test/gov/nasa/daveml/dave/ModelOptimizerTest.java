@@ -0,0 +1,270 @@
+package gov.nasa.daveml.dave;
+
+import java.util.Iterator;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the ModelOptimizer by comparing optimized and unoptimized results
+ *
+ **/
+
+public class ModelOptimizerTest extends TestCase {
+
+    private final double EPS = 0.000001;
+
+    /**
+     * Model with constant subexpressions, division by constants and
+     * small integer powers of a named variable
+     */
+
+    static final String FOLDABLE_MODEL =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<DAVEfunc xmlns=\"http://daveml.org/2010/DAVEML\">\n" +
+        " <fileHeader name=\"foldable\">\n" +
+        "  <author name=\"test\" org=\"test\"/>\n" +
+        "  <fileCreationDate date=\"2015-03-02\"/>\n" +
+        " </fileHeader>\n" +
+        " <variableDef name=\"alpha\" varID=\"alpha\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"beta\" varID=\"beta\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"de\" varID=\"de\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"scale\" varID=\"scale\" units=\"nd\">\n" +
+        "  <calculation><math " + CompiledModelTest.MATHML + "><apply><plus/>" +
+        "<apply><times/><cn>2</cn><cn>3.5</cn></apply>" +
+        "<apply><sin/><apply><divide/><cn>1</cn><cn>4</cn></apply></apply></apply>" +
+        "</math></calculation>\n" +
+        " </variableDef>\n" +
+        " <variableDef name=\"y\" varID=\"y\" units=\"nd\">\n" +
+        "  <calculation><math " + CompiledModelTest.MATHML + "><apply><plus/>" +
+        "<apply><times/><ci>scale</ci><ci>alpha</ci></apply>" +
+        "<apply><divide/><ci>beta</ci><apply><minus/><cn>8</cn><cn>3</cn></apply></apply>" +
+        "<apply><power/><ci>de</ci><cn>3</cn></apply>" +
+        "<apply><power/><ci>alpha</ci><cn>0.5</cn></apply></apply>" +
+        "</math></calculation><isOutput/>\n" +
+        " </variableDef>\n" +
+        "</DAVEfunc>\n";
+
+    /**
+     * Model computing (alpha*beta) + (alpha*beta)*de, with a repeated
+     * subexpression
+     */
+
+    static final String REPEATED_MODEL =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<DAVEfunc xmlns=\"http://daveml.org/2010/DAVEML\">\n" +
+        " <fileHeader name=\"repeated\">\n" +
+        "  <author name=\"test\" org=\"test\"/>\n" +
+        "  <fileCreationDate date=\"2015-03-02\"/>\n" +
+        " </fileHeader>\n" +
+        " <variableDef name=\"alpha\" varID=\"alpha\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"beta\" varID=\"beta\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"de\" varID=\"de\" units=\"deg\" initialValue=\"0.0\"><isInput/></variableDef>\n" +
+        " <variableDef name=\"y\" varID=\"y\" units=\"nd\">\n" +
+        "  <calculation><math " + CompiledModelTest.MATHML + "><apply><plus/>" +
+        "<apply><times/><ci>alpha</ci><ci>beta</ci></apply>" +
+        "<apply><times/><apply><times/><ci>beta</ci><ci>alpha</ci></apply><ci>de</ci></apply>" +
+        "<apply><abs/><apply><minus/><ci>de</ci><ci>alpha</ci></apply></apply></apply>" +
+        "</math></calculation><isOutput/>\n" +
+        " </variableDef>\n" +
+        "</DAVEfunc>\n";
+
+
+    /**
+     * Counts blocks of the given class in a model's execution order
+     */
+
+    static int countBlocks( Model m, Class<?> c ) throws DAVEException {
+        int count = 0;
+        Iterator<Block> it = m.getSortedBlocks().iterator();
+        while (it.hasNext()) {
+            if (c.isInstance( it.next() )) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    public void testFoldsAndReduces() throws Exception {
+        Model reference = CompiledModelTest.loadModel(FOLDABLE_MODEL);
+        Model m = CompiledModelTest.loadModel(FOLDABLE_MODEL);
+        int numBefore = m.getNumBlocks();
+
+        int numChanged = m.optimize();
+        assertTrue( numChanged > 0 );
+        assertTrue( m.getNumBlocks() < numBefore );
+        assertEquals( m.getNumBlocks(), m.getSortedBlocks().size() );
+
+        // 'scale' is now a single constant
+        Block scaleSource = m.getSignalByVarID("scale").getSourceBlock();
+        assertTrue( scaleSource instanceof BlockMathConstant );
+        assertEquals( 7.0 + Math.sin(0.25),
+                ((BlockMathConstant) scaleSource).getValueAsDouble(), 0.0 );
+
+        // no divides remain; only the non-integer power is left
+        Iterator<Block> it = m.getSortedBlocks().iterator();
+        while (it.hasNext()) {
+            Block b = it.next();
+            if (b instanceof BlockMathProduct) {
+                assertEquals( "times", ((BlockMathProduct) b).getBlockType() );
+            }
+        }
+        assertEquals( 1, countBlocks(m, BlockMathFunction.class) );
+
+        double[][] points = { {0.0, 0.0, 0.0}, {4.0, -3.0, 2.0}, {16.0, 10.0, -1.5} };
+        for (int i = 0; i < points.length; i++) {
+            CompiledModelTest.setInputs(reference, points[i]);
+            reference.cycle();
+            CompiledModelTest.setInputs(m, points[i]);
+            m.cycle();
+            assertEquals( CompiledModelTest.getOutputs(reference)[0],
+                    CompiledModelTest.getOutputs(m)[0], EPS );
+        }
+    }
+
+
+    public void testSampleModelUnchangedResults() throws Exception {
+        for (int pass = 0; pass < 2; pass++) {
+            Model reference = CompiledModelTest.loadSampleModel();
+            Model m = CompiledModelTest.loadSampleModel();
+            if (pass == 1) {
+                m.compile();
+            }
+            assertTrue( m.optimize() > 0 );
+            assertEquals( pass == 1, m.isCompiled() );
+
+            for (int i = 0; i < CompiledModelTest.SAMPLE_INPUTS.length; i++) {
+                CompiledModelTest.setInputs(reference, CompiledModelTest.SAMPLE_INPUTS[i]);
+                reference.cycle();
+                CompiledModelTest.setInputs(m, CompiledModelTest.SAMPLE_INPUTS[i]);
+                m.cycle();
+                double[] expected = CompiledModelTest.getOutputs(reference);
+                double[] actual = CompiledModelTest.getOutputs(m);
+                assertEquals( expected.length, actual.length );
+                for (int j = 0; j < expected.length; j++) {
+                    if (Double.isNaN(expected[j])) {
+                        assertTrue( Double.isNaN(actual[j]) );
+                    } else {
+                        assertEquals( expected[j], actual[j], EPS );
+                    }
+                }
+            }
+        }
+    }
+
+
+    public void testNothingToDo() throws Exception {
+        Model m = CompiledModelTest.loadSampleModel();
+        m.optimize();
+        int numBlocks = m.getNumBlocks();
+        assertEquals( 0, m.optimize() );
+        assertEquals( numBlocks, m.getNumBlocks() );
+    }
+
+
+    /**
+     * Returns generated code for all named variables, in execution order
+     */
+
+    static String generateCode( Model m ) throws DAVEException {
+        Iterator<Signal> sigs = m.getSignals().iterator();
+        while (sigs.hasNext()) {
+            sigs.next().clearDefinedFlag();     // start afresh each time
+        }
+        StringBuilder sb = new StringBuilder();
+        Iterator<Block> it = m.getSortedBlocks().iterator();
+        while (it.hasNext()) {
+            Block b = it.next();
+            if (b instanceof BlockMath && !b.getOutput().isDerived()) {
+                sb.append(b.genCode().getCode());
+            }
+        }
+        return sb.toString();
+    }
+
+
+    public void testCommonSubexpressions() throws Exception {
+        Model reference = CompiledModelTest.loadModel(REPEATED_MODEL);
+        Model m = CompiledModelTest.loadModel(REPEATED_MODEL);
+        assertEquals( 3, countBlocks(m, BlockMathProduct.class) );
+
+        assertTrue( m.optimize() > 0 );
+        // beta*alpha is the same as alpha*beta
+        assertEquals( 2, countBlocks(m, BlockMathProduct.class) );
+
+        double[][] points = { {1.0, 2.0, 3.0}, {-4.0, 0.5, 2.0} };
+        for (int i = 0; i < points.length; i++) {
+            CompiledModelTest.setInputs(reference, points[i]);
+            reference.cycle();
+            CompiledModelTest.setInputs(m, points[i]);
+            m.cycle();
+            assertEquals( CompiledModelTest.getOutputs(reference)[0],
+                    CompiledModelTest.getOutputs(m)[0], 0.0 );
+        }
+    }
+
+
+    public void testFuseExpressions() throws Exception {
+        Model reference = CompiledModelTest.loadModel(REPEATED_MODEL);
+        Model m = CompiledModelTest.loadModel(REPEATED_MODEL);
+        m.optimize();
+        String code = generateCode(m);
+        int numBlocks = m.getNumBlocks();
+
+        assertTrue( m.fuseExpressions() > 0 );
+        assertTrue( m.getNumBlocks() < numBlocks );
+        assertEquals( m.getNumBlocks(), m.getSortedBlocks().size() );
+        // the shared alpha*beta product stays a block of its own
+        assertEquals( 1, countBlocks(m, BlockMathProduct.class) );
+        assertEquals( 1, countBlocks(m, BlockMathExpression.class) );
+        assertEquals( code, generateCode(m) );
+
+        double[][] points = { {1.0, 2.0, 3.0}, {-4.0, 0.5, 2.0}, {0.0, -7.0, 1.5} };
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                m.compile();
+            }
+            for (int i = 0; i < points.length; i++) {
+                CompiledModelTest.setInputs(reference, points[i]);
+                reference.cycle();
+                CompiledModelTest.setInputs(m, points[i]);
+                m.cycle();
+                assertEquals( CompiledModelTest.getOutputs(reference)[0],
+                        CompiledModelTest.getOutputs(m)[0], 0.0 );
+            }
+        }
+    }
+
+
+    public void testFusedSampleModel() throws Exception {
+        Model reference = CompiledModelTest.loadSampleModel();
+        Model m = CompiledModelTest.loadSampleModel();
+        String code = generateCode(m);
+        m.fuseExpressions();
+        assertTrue( countBlocks(m, BlockMathExpression.class) > 0 );
+        assertEquals( code, generateCode(m) );
+
+        reference.compile();
+        m.compile();
+        double[][] in = CompiledModelTest.SAMPLE_INPUTS;
+        double[][] expected = new double[in.length][reference.getOutputVector().size()];
+        double[][] actual = new double[in.length][expected[0].length];
+        reference.newEvaluationContext().cycleBatch(in, expected);
+        m.newEvaluationContext().cycleBatch(in, actual);
+        for (int i = 0; i < in.length; i++) {
+            CompiledModelTest.setInputs(m, in[i]);
+            m.cycle();
+            double[] single = CompiledModelTest.getOutputs(m);
+            for (int j = 0; j < expected[i].length; j++) {
+                if (Double.isNaN(expected[i][j])) {
+                    assertTrue( Double.isNaN(actual[i][j]) );
+                    assertTrue( Double.isNaN(single[j]) );
+                } else {
+                    assertEquals( expected[i][j], actual[i][j], 0.0 );
+                    assertEquals( expected[i][j], single[j], 0.0 );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package gov.nasa.daveml.dave;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the ModelProfiler by profiling the sample model
+ *
+ **/
+
+public class ModelProfilerTest extends TestCase {
+
+    private Model m;
+
+    @Override
+    protected void setUp() throws Exception {
+        m = CompiledModelTest.loadSampleModel();
+    }
+
+
+    /**
+     * Cycles model through each sample point; returns outputs of last
+     */
+
+    private double[] cycleAll( Model model ) throws DAVEException {
+        for (int i = 0; i < CompiledModelTest.SAMPLE_INPUTS.length; i++) {
+            CompiledModelTest.setInputs(model, CompiledModelTest.SAMPLE_INPUTS[i]);
+            model.cycle();
+        }
+        return CompiledModelTest.getOutputs(model);
+    }
+
+
+    public void testProfileCountsEveryUpdate() throws Exception {
+        assertFalse( m.isProfiling() );
+        cycleAll(m);
+        assertNull( m.getProfiler() );
+
+        m.setProfiling(true);
+        assertTrue( m.isProfiling() );
+        double[] profiled = cycleAll(m);
+        ModelProfiler p = m.getProfiler();
+        int n = CompiledModelTest.SAMPLE_INPUTS.length;
+        assertEquals( n, p.getNumCycles() );
+        assertEquals( m.getNumBlocks(), p.getNumBlocks() );
+
+        int bpBlocks = 0;
+        for (int i = 0; i < p.getNumBlocks(); i++) {
+            assertEquals( n, p.getCalls(i) );
+            assertTrue( p.getMaxNanos(i) <= p.getTotalNanos(i) );
+            if (p.getBlock(i) instanceof BlockBP) {
+                bpBlocks++;
+                assertTrue( p.getSearchSteps(i) >= n );
+            } else {
+                assertEquals( 0, p.getSearchSteps(i) );
+            }
+        }
+        assertEquals( 3, bpBlocks );
+
+        // ranked by total time
+        Integer[] order = p.ranking();
+        for (int r = 1; r < order.length; r++) {
+            assertTrue( p.getTotalNanos(order[r-1]) >= p.getTotalNanos(order[r]) );
+        }
+
+        // same answers as without profiling
+        double[] expected = cycleAll(CompiledModelTest.loadSampleModel());
+        for (int j = 0; j < expected.length; j++) {
+            assertEquals( expected[j], profiled[j], 0.0 );
+        }
+
+        // turning off stops counting but keeps profile
+        m.setProfiling(false);
+        cycleAll(m);
+        assertSame( p, m.getProfiler() );
+        assertEquals( n, p.getNumCycles() );
+
+        p.reset();
+        assertEquals( 0, p.getNumCycles() );
+        assertEquals( 0, p.getTotalNanos() );
+    }
+
+
+    public void testProfileCompiledModel() throws Exception {
+        m.compile();
+        m.setProfiling(true);
+        double[] profiled = cycleAll(m);
+        assertEquals( CompiledModelTest.SAMPLE_INPUTS.length, m.getProfiler().getNumCycles() );
+        double[] expected = cycleAll(CompiledModelTest.loadSampleModel());
+        for (int j = 0; j < expected.length; j++) {
+            assertEquals( expected[j], profiled[j], 0.0 );
+        }
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        m.getProfiler().report(new PrintStream(report), 5);
+        String text = report.toString();
+        assertTrue( text.indexOf("Profile of 8 cycles") >= 0 );
+        assertTrue( text.indexOf("more blocks not listed") >= 0 );
+    }
+
+
+    public void testSearchSteps() throws Exception {
+        Model model = new Model(3, 3);
+        BreakpointSet bps = new BreakpointSet("bp", "BP", "0, 1, 2, 3, 4, 5, 6, 7", "", model);
+        BlockArrayList order = new BlockArrayList(1);
+        order.add( new BlockMathConstant("1", model) );
+        ModelProfiler p = new ModelProfiler( order );
+        p.current = 0;
+
+        int[][] cases = {       // x*2, hint, interval, steps
+            {  5,  2, 2, 2 },   // hinted interval
+            {  7,  2, 3, 3 },   // next one up
+            {  3,  2, 1, 2 },   // next one down
+            { 13, -1, 6, 3 },   // binary search of 8
+            { 11,  2, 5, 6 },   // hint, then search
+        };
+        long total = 0;
+        for (int i = 0; i < cases.length; i++) {
+            double x = cases[i][0]/2.0;
+            assertEquals( cases[i][2], bps.findInterval(x, cases[i][1], p) );
+            assertEquals( cases[i][2], bps.findInterval(x, cases[i][1]) );
+            total += cases[i][3];
+            assertEquals( total, p.getSearchSteps(0) );
+        }
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( ModelProfilerTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
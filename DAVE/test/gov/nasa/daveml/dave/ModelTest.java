@@ -54,6 +54,105 @@ public class ModelTest extends TestCase {
 	assertTrue( _simple.getNumOutputBlocks() == 1 );
     }
 
+    public void testGetSignalByVarID() throws Exception {
+	Signal a = new Signal("alpha", "alpha_id", "deg", 1, _simple);
+	Signal b = new Signal("beta",  "beta_id",  "deg", 1, _simple);
+	assertSame( a, _simple.getSignalByVarID("alpha_id") );
+	assertSame( b, _simple.getSignalByVarID("beta_id") );
+	assertNull( _simple.getSignalByVarID("gamma_id") );
+	assertNull( _simple.getSignalByVarID(null) );
+
+	// index follows renames
+	b.setVarID("gamma_id");
+	assertNull( _simple.getSignalByVarID("beta_id") );
+	assertSame( b, _simple.getSignalByVarID("gamma_id") );
+
+	// duplicate IDs resolve to the earliest signal, as findByID does
+	Signal c = new Signal("alpha2", "alpha_id", "deg", 1, _simple);
+	assertSame( a, _simple.getSignalByVarID("alpha_id") );
+	a.setVarID("delta_id");
+	assertSame( c, _simple.getSignalByVarID("alpha_id") );
+	assertSame( _simple.getSignals().findByID("alpha_id"),
+		    _simple.getSignalByVarID("alpha_id") );
+
+	// signals not in the model are never indexed
+	Signal copy = new Signal(a);
+	copy.setVarID("epsilon_id");
+	assertNull( _simple.getSignalByVarID("epsilon_id") );
+    }
+
+    public void testGetBlockByName() throws Exception {
+	Signal s = new Signal("sig", _simple);
+	BlockInput iblk = new BlockInput(s, _simple);
+	BlockOutput oblk = new BlockOutput(s, _simple);
+	// both blocks take the signal's name; earliest wins
+	assertEquals( iblk.getName(), oblk.getName() );
+	assertSame( iblk, _simple.getBlockByName(iblk.getName()) );
+	assertNull( _simple.getBlockByName("nonesuch") );
+
+	// index follows renames
+	oblk.setName("out");
+	assertSame( oblk, _simple.getBlockByName("out") );
+	assertSame( iblk, _simple.getBlockByName(iblk.getName()) );
+	assertSame( iblk, _simple.getBlockByOutputVarID(s.getVarID()) );
+    }
+
+    private BlockMathSum sumOf( String a, String b, Model m ) throws Exception {
+	org.jdom.Element apply = new org.jdom.Element("apply");
+	apply.addContent( new org.jdom.Element("plus") );
+	apply.addContent( new org.jdom.Element("ci").addContent(a) );
+	apply.addContent( new org.jdom.Element("ci").addContent(b) );
+	return new BlockMathSum( apply, m );
+    }
+
+    public void testInitializeOrdersFromWiring() throws Exception {
+	// downstream block is created first
+	Signal x = new Signal("x", "X", "nd", 1, _simple);
+	Signal y = new Signal("y", "Y", "nd", 1, _simple);
+	Signal z = new Signal("z", _simple);
+	BlockMathSum sum = sumOf( "X", "Y", _simple );
+	BlockMathConstant cx = new BlockMathConstant( "1.5", _simple );
+	BlockMathConstant cy = new BlockMathConstant( "2.0", _simple );
+	cx.addOutput(x);
+	cy.addOutput(y);
+	sum.addInput(x, 1);
+	sum.addInput(y, 2);
+	sum.addOutput(z);
+
+	_simple.initialize();
+	BlockArrayList order = _simple.getSortedBlocks();
+	assertEquals( 3, order.size() );
+	assertSame( cx,  order.get(0) );
+	assertSame( cy,  order.get(1) );
+	assertSame( sum, order.get(2) );
+	assertEquals( 3.5, sum.getValue(), 0.0 );
+    }
+
+    public void testInitializeReportsLoop() throws Exception {
+	Signal c  = new Signal("c",  "C",  "nd", 1, _simple);
+	Signal s1 = new Signal("s1", "S1", "nd", 1, _simple);
+	Signal s2 = new Signal("s2", "S2", "nd", 1, _simple);
+	BlockMathConstant cb = new BlockMathConstant( "1.0", _simple );
+	BlockMathSum sum1 = sumOf( "C", "S2", _simple );
+	BlockMathSum sum2 = sumOf( "S1", "C", _simple );
+	cb.addOutput(c);
+	sum1.addInput(c, 1);
+	sum1.addInput(s2, 2);
+	sum1.addOutput(s1);
+	sum2.addInput(s1, 1);
+	sum2.addInput(c, 2);
+	sum2.addOutput(s2);
+
+	try {
+	    _simple.initialize();
+	    fail( "Expected loop to be reported" );
+	} catch (DAVEException e) {
+	    assertTrue( e.getMessage(), e.getMessage().indexOf("2 blocks") > 0 );
+	    assertTrue( e.getMessage(), e.getMessage().indexOf("Loop: '" + sum1.getName() +
+		    "' -> '" + sum2.getName() + "' -> '" + sum1.getName() + "'") > 0 );
+	}
+    }
+
     public static Test suite() {
 	return new TestSuite( ModelTest.class );
     }
@@ -39,4 +39,18 @@ public class NameListTest extends TestCase {
 		assertEquals("name22", nl.get(5) );
 	}
 
+	public void testUniqueAfterChanges() {
+		nl.remove("name2");
+		assertTrue(  nl.isUnique("name2") );
+		nl.set(0, "name4");
+		assertTrue(  nl.isUnique("name1") );
+		assertFalse( nl.isUnique("name4") );
+		nl.add("name3");	// now appears twice
+		nl.remove(nl.size()-1);
+		assertFalse( nl.isUnique("name3") );
+		nl.clear();
+		assertTrue(  nl.isUnique("name3") );
+		assertEquals( "name3", nl.addUnique("name3") );
+	}
+
 }
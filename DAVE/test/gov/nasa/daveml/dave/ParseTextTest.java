@@ -237,4 +237,43 @@ public class ParseTextTest extends TestCase {
 		assertFalse( it.hasNext() );
 	}
 
+
+	public void testToArray() {
+		double[] values = ParseText.toArray( "  ,  1.0, +2.9,3.2,+4  4.6.5 -5.,Z,9.99E99 " );
+		assertEquals( 6, values.length );
+		assertEquals(   1.0,   values[0], 0.0 );
+		assertEquals(   2.9,   values[1], 0.0 );
+		assertEquals(  -5.0,   values[4], 0.0 );
+		assertEquals( 9.99E99, values[5], 0.0 );
+		assertEquals( 0, ParseText.toArray( " , -4-6 " ).length );
+	}
+
+	public void testParseNumberMatchesParseDouble() {
+		String[] tokens = { "0", "-0", "+0.0", "1.", ".5", "007", "0.1", "-2.5e-3",
+				"1E22", "1e23", "123456789012345", "1234567890123456789012",
+				"0.000000000000000000001234", "4.9e-324", "1.7976931348623157E308",
+				"1e400", "9007199254740993" };
+		for (String t : tokens) {
+			char[] c = t.toCharArray();
+			assertEquals( t, Double.parseDouble( t ), ParseText.parseNumber( c, 0, c.length ), 0.0 );
+		}
+		java.util.Random r = new java.util.Random( 42L );
+		for (int i = 0; i < 20000; i++) {
+			double v = (r.nextDouble() - 0.5)*Math.pow( 10.0, r.nextInt( 40 ) - 20 );
+			String[] forms = { Double.toString( v ), String.format( java.util.Locale.US, "%.6f", v ),
+					String.format( java.util.Locale.US, "%.12e", v ), String.format( java.util.Locale.US, "%.4E", v ) };
+			for (String t : forms) {
+				char[] c = t.toCharArray();
+				assertEquals( t, Double.parseDouble( t ), ParseText.parseNumber( c, 0, c.length ), 0.0 );
+			}
+		}
+	}
+
+	public void testParseNumberInvalid() {
+		String[] tokens = { "", "+", "-", ".", "e5", "1e", "1e+", "1-2", "4.6.5", "4E6e5", "--1" };
+		for (String t : tokens) {
+			char[] c = t.toCharArray();
+			assertTrue( t, Double.isNaN( ParseText.parseNumber( c, 0, c.length ) ) );
+		}
+	}
 }
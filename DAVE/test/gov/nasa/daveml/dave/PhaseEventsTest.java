@@ -0,0 +1,61 @@
+package gov.nasa.daveml.dave;
+
+import junit.framework.*;
+
+
+/**
+ * Tests the PhaseEvents recorder outside of any Flight Recorder recording
+ *
+ **/
+
+public class PhaseEventsTest extends TestCase {
+
+    public void testRecorderMatchesJVM() {
+        assertNotNull( PhaseEvents.RECORDER );
+        boolean haveJFR = true;
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+        } catch (ClassNotFoundException e) {
+            haveJFR = false;
+        }
+        assertEquals( haveJFR,
+                PhaseEvents.RECORDER.getClass().getName().endsWith("JfrPhaseEvents") );
+    }
+
+
+    public void testNothingRecordedWhenNotRecording() throws Exception {
+        Model m = CompiledModelTest.loadSampleModel();
+        for (int kind = PhaseEvents.LOAD; kind <= PhaseEvents.CYCLE; kind++) {
+            Object event = PhaseEvents.RECORDER.begin(kind);
+            assertNull( event );
+            PhaseEvents.RECORDER.end(event, "test", m, -1);
+        }
+
+        // sampled cycles give the same answers
+        for (int i = 0; i < 2*PhaseEvents.CYCLE_SAMPLE_INTERVAL + 1; i++) {
+            CompiledModelTest.setInputs(m, CompiledModelTest.SAMPLE_INPUTS[i % CompiledModelTest.SAMPLE_INPUTS.length]);
+            m.cycle();
+        }
+        assertEquals( 1, m.unrecordedCycles );
+    }
+
+
+    public void testTableBytes() throws Exception {
+        Model m = CompiledModelTest.loadSampleModel();
+        long expected = 0;
+        for (FuncTable t : m.tables.values()) {
+            expected += 8*t.size();
+        }
+        assertTrue( expected > 0 );
+        assertEquals( expected, PhaseEvents.tableBytes(m) );
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( PhaseEventsTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
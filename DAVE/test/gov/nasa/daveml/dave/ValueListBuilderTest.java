@@ -0,0 +1,69 @@
+package gov.nasa.daveml.dave;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+public class ValueListBuilderTest extends TestCase {
+
+	protected final double EPS = 0.000000001;
+
+	protected static final String TEXT =
+		"  ,  1.0, +2.9,3.2,+4       -5.,Z,9.99E99 \n\t-4.0, 5.555, 6.6e-6, 3.45E2 ";
+
+	public void testMatchesParseText() throws Exception {
+		ArrayList<Double> expected = ParseText.toList( TEXT );
+		double[] actual = ValueListBuilder.parse( TEXT );
+		assertEquals( expected.size(), actual.length );
+		for (int i = 0; i < actual.length; i++) {
+			assertEquals( expected.get(i), actual[i], EPS );
+		}
+	}
+
+	public void testChunkBoundaries() {
+		double[] whole = ValueListBuilder.parse( TEXT );
+		char[] ch = TEXT.toCharArray();
+		// split the text at every possible point, including mid-number
+		for (int split = 0; split <= ch.length; split++) {
+			ValueListBuilder b = new ValueListBuilder();
+			b.append( ch, 0, split );
+			b.append( ch, split, ch.length - split );
+			double[] pieces = b.finish();
+			assertEquals( whole.length, pieces.length );
+			for (int i = 0; i < whole.length; i++) {
+				assertEquals( whole[i], pieces[i], 0.0 );
+			}
+		}
+	}
+
+	public void testGrowthAndReuse() {
+		ValueListBuilder b = new ValueListBuilder();
+		for (int i = 0; i < 5000; i++) {
+			b.append( i + " " );
+		}
+		assertEquals( 5000, b.size() );
+		double[] values = b.finish();
+		assertEquals( 5000, values.length );
+		assertEquals( 4999.0, values[4999], 0.0 );
+
+		b.append( "7, 8" );
+		values = b.finish();
+		assertEquals( 2, values.length );
+		assertEquals( 8.0, values[1], 0.0 );
+	}
+
+	public void testEmpty() {
+		assertEquals( 0, ValueListBuilder.parse( "" ).length );
+		assertEquals( 0, ValueListBuilder.parse( " , \n" ).length );
+	}
+
+	public void testResolveValues() {
+		Model m = new Model();
+		double[] values = { 1.0, 2.0, 3.0 };
+		String ref = m.addLoadedValues( values );
+		assertSame( values, m.resolveValues( ref ) );
+		assertEquals( 2, m.resolveValues( "4 5" ).length );
+		m.clearLoadedValues();
+		assertEquals( 0, m.resolveValues( ref ).length );
+	}
+}
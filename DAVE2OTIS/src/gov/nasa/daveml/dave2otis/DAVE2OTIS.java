@@ -128,7 +128,7 @@ public class DAVE2OTIS extends DAVE {
      *
      **/
     private void parseOptions(String inArgs[]) {
-        String exampleUse = "Usage: java DAVE2OTIS [-v|--version] | [-c|--count] [-d|--debug] DAVE-ML_document";
+        String exampleUse = "Usage: java DAVE2OTIS [-v|--version] | [-c|--count] [-d|--debug] [-O|--optimize] [-C|--cache] DAVE-ML_document";
         int numArgs = inArgs.length;
 
         // Save arguments into field
@@ -146,6 +146,15 @@ public class DAVE2OTIS extends DAVE {
                 this.makeVerbose();
                 parsedArgs++;
             }
+            if (this.matchOptionArgs("O", "optimize")) {
+                this.optimizeModel = true;
+                this.fuseExpressions = true;
+                parsedArgs++;
+            }
+            if (this.matchOptionArgs("C", "cache")) {
+                this.cacheDirectory = getDefaultCacheDirectory();
+                parsedArgs++;
+            }
             if (matchOptionArgs("v", "version")) {
                 System.out.println("DAVE2OTIS version " + getVersion());
                 System.exit(0);
@@ -6,8 +6,8 @@ package gov.nasa.daveml.dave2otis;
 
 import gov.nasa.daveml.dave.*;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -152,7 +152,7 @@ class OtisTableWriter extends OtisWriter {
             String inVarID    = bft.getVarID(dim); // convert to port (1-based) number
             String inOtisName = inVarID; // translation should have been done previously
             String bpID       = ft.getBPID(dim);
-            ArrayList<Double> bps  = ourModel.getBPSetByID(bpID).values();
+            List<Double> bps  = ourModel.getBPSetByID(bpID).values();
             Iterator<Double> bpIt  = bps.iterator();
 
             writeln(indent + inOtisName);
@@ -188,7 +188,7 @@ class OtisTableWriter extends OtisWriter {
 
         // these are in the stored order, since we wrote breakpoints 
         // in reverse order
-        ArrayList<Double> pts = ft.getValues();
+        List<Double> pts = ft.getValues();
         Iterator<Double> ptIt = pts.iterator();
 
         // duplicate the dims array (vector of integers giving table dimension)
@@ -249,7 +249,7 @@ class OtisTableWriter extends OtisWriter {
         
         if (dim < numDims) {
             String bpID = ft.getBPID(dim);
-            ArrayList<Double> bps = ourModel.getBPSetByID(bpID).values();
+            List<Double> bps = ourModel.getBPSetByID(bpID).values();
             for (int i = 0; i < bps.size(); i++ ) {
                 coords[dim] = i; // increment along this breakpoint dimension
                 double bpVal = bps.get(coords[dim]);
@@ -44,7 +44,7 @@ public abstract class OtisWriter extends FileWriter {
             this.setupMap(); // initialize the mapping of AIAA -> OTIS varnames
         
         // find variable (signal) definition in source XML
-        Signal signal = ourModel.getSignals().findByID(varID);
+        Signal signal = ourModel.getSignalByVarID(varID);
         
         // if standard, do lookup in map
         if( signal.isStdAIAA() ) {
@@ -144,7 +144,7 @@ public abstract class OtisWriter extends FileWriter {
             this.setupMap(); // initialize the mapping of AIAA -> OTIS varnames
         
         // find variable (signal) definition in source XML
-        Signal signal = ourModel.getSignals().findByID(varID);
+        Signal signal = ourModel.getSignalByVarID(varID);
         
         // if standard, do lookup in map
         if( signal.isStdAIAA() ) {
@@ -7,8 +7,8 @@ package gov.nasa.daveml.dave2post;
 import gov.nasa.daveml.dave.*;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -87,7 +87,7 @@ class PostTableFileWriter extends FileWriter {
         } else {
             String inVarID  = bft.getVarID(dimLevel+1); // convert to port (1-based) number
             String bpID     = ft.getBPID(dimLevel+1);
-            ArrayList<Double> bps  = ourModel.getBPSetByID(bpID).values();
+            List<Double> bps  = ourModel.getBPSetByID(bpID).values();
             Iterator<Double> bpIt  = bps.iterator();
             
             try {
@@ -120,8 +120,8 @@ class PostTableFileWriter extends FileWriter {
         String bpID     = ft.getBPID(numDims);
         String inVarID  = bft.getVarID(numDims);
         
-        ArrayList<Double> bps  = ourModel.getBPSetByID(bpID).values();
-        ArrayList<Double> vals = ft.getValues();
+        List<Double> bps  = ourModel.getBPSetByID(bpID).values();
+        List<Double> vals = ft.getValues();
         try {
             write("  " + outVarID + "t = " + outVarID + "t, monovar, " + inVarID );
             writeln(", " + tableNumber + ", lin_inp, noxt,");
@@ -138,7 +138,7 @@ class PostTableFileWriter extends FileWriter {
 
 
 
-    private int generate1DTable(ArrayList<Double> bps, ArrayList<Double> vals, int valOffset) {
+    private int generate1DTable(List<Double> bps, List<Double> vals, int valOffset) {
         int i = 0;
         if (bps.size() > (vals.size() - valOffset)) {
             System.err.println("ERROR - number of remaining values in table " + 
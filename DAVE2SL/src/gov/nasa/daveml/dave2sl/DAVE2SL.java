@@ -133,7 +133,7 @@ public class DAVE2SL extends DAVE {
      *
      **/
     private void parseOptions(String inArgs[]) {
-        String exampleUse = "Usage: java DAVE2SL [-v|--version] | [-c|--count] [-d|--debug] [-w|--warnruntime] [-l|--lib] [-x|--no_checkcases] [-e|--enabled] DAVE_document";
+        String exampleUse = "Usage: java DAVE2SL [-v|--version] | [-c|--count] [-d|--debug] [-w|--warnruntime] [-l|--lib] [-x|--no_checkcases] [-e|--enabled] [-O|--optimize] [-C|--cache] DAVE_document";
         int numArgs = inArgs.length;
 
         // Save arguments into field
@@ -151,6 +151,14 @@ public class DAVE2SL extends DAVE {
                 this.makeVerbose();
                 parsedArgs++;
             }
+            if (this.matchOptionArgs("O", "optimize")) {
+                this.optimizeModel = true;
+                parsedArgs++;
+            }
+            if (this.matchOptionArgs("C", "cache")) {
+                this.cacheDirectory = getDefaultCacheDirectory();
+                parsedArgs++;
+            }
             if (this.matchOptionArgs("w", "warnruntime")) {
                 this.warnRunTimeFlag = true;
                 parsedArgs++;
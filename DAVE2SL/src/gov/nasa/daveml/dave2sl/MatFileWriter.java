@@ -16,6 +16,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  *
@@ -368,7 +369,7 @@ public class MatFileWriter extends FileWriter
      *
      */
 
-    public void writeMatrix( String arrayName, ArrayList<Double> table, int[] dims )
+    public void writeMatrix( String arrayName, List<Double> table, int[] dims )
     throws IOException
     {
         this.writeMatrix( arrayName, table, dims, 0, "" );
@@ -390,7 +391,7 @@ public class MatFileWriter extends FileWriter
      *
      **/
 
-    private int writeMatrix( String arrayName, ArrayList<Double> table, 
+    private int writeMatrix( String arrayName, List<Double> table, 
             int[] dims, int startIndex, String higherDims )
     throws IOException
     {
@@ -17,6 +17,7 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  *
@@ -917,7 +918,7 @@ public class SLBlock
      **/
 
     public static int printTable( Writer writer, 
-				  ArrayList<Double> table, 
+				  List<Double> table, 
 				  int[] dims, int startIndex)
         throws IOException {
 
@@ -965,7 +966,7 @@ public class SLBlock
      *
      **/
 
-    public static void printTable( ArrayList<Double> table, int[] dims)
+    public static void printTable( List<Double> table, int[] dims)
         throws IOException {
 
         // point to System.out
@@ -983,7 +984,7 @@ public class SLBlock
      *
      **/
 
-    public static void printTable( Writer writer, ArrayList<Double> table, int[] dims)
+    public static void printTable( Writer writer, List<Double> table, int[] dims)
         throws IOException {
         printTable(writer, table, dims, 0);
     }
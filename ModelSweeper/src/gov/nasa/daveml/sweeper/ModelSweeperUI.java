@@ -24,9 +24,14 @@ import gov.nasa.daveml.dave.VectorInfoArrayList;
 import java.io.File;
 import java.io.IOException;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import static org.math.array.DoubleArray.*;
 
 
@@ -75,6 +80,9 @@ public class ModelSweeperUI extends javax.swing.JFrame {
     Plot3DPanel plot;
     int plotSurface;
     Projection projection;
+    SweepEngine sweepEngine;
+    SwingWorker<double[][], Void> sweepWorker;
+    AtomicBoolean sweepCancel;
 
     /** Creates new form ModelSweeperUI */
     public ModelSweeperUI() {
@@ -87,6 +95,9 @@ public class ModelSweeperUI extends javax.swing.JFrame {
         plotReady = false;
         plot = null;
         inputTableJFrame = null;
+        sweepEngine = null;
+        sweepWorker = null;
+        sweepCancel = null;
         initComponents();
     }
 
@@ -548,9 +559,89 @@ public class ModelSweeperUI extends javax.swing.JFrame {
             y = increment(ymin, dely, ymax);
         }
 
-        // run model at each intersection
-        double[][] z = sweepModel(x, y, input1Selector, input2Selector,
-                                    outputSelector, inputTable, model);
+        // abandon any sweep still running for an earlier request
+        if (sweepWorker != null) {
+            sweepCancel.set(true);
+            sweepWorker = null;
+        }
+
+        if (sweepEngine == null) {
+            // run model at each intersection on this thread
+            double[][] z = sweepModel(x, y, input1Selector, input2Selector,
+                                        outputSelector, inputTable, model);
+            showPlot(x, y, z);
+        } else {
+            startSweep(x, y);
+        }
+    }
+
+    /**
+     * Runs the sweep engine in the background, with a progress dialog that
+     * allows the user to cancel; plots the result when done.
+     * @param x vector of independent input values for input 1
+     * @param y vector of independent input values for input 2
+     */
+    private void startSweep(final double[] x, final double[] y) {
+        final double[] nominal = new double[inputVec.size()];
+        for (int i = 0; i < nominal.length; i++) {
+            nominal[i] = inputTable.getNomVal(i);
+        }
+        final int in1 = input1Selector;
+        final int in2 = input2Selector;
+        final int out = outputSelector;
+        final SweepEngine engine = sweepEngine;
+        final AtomicBoolean cancel = new AtomicBoolean(false);
+        sweepCancel = cancel;
+        final ProgressMonitor monitor = new ProgressMonitor(this,
+                "Sweeping " + model.getName(), null, 0, x.length);
+        monitor.setMillisToDecideToPopup(250);
+
+        sweepWorker = new SwingWorker<double[][], Void>() {
+            protected double[][] doInBackground() throws DAVEException {
+                return engine.sweep(x, y, nominal, in1, in2, out,
+                        new SweepEngine.ProgressListener() {
+                    public void sweepProgress(final int columnsDone, int totalColumns) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                if (monitor.isCanceled()) {
+                                    cancel.set(true);
+                                } else {
+                                    monitor.setProgress(columnsDone);
+                                }
+                            }
+                        });
+                    }
+                }, cancel);
+            }
+
+            protected void done() {
+                monitor.close();
+                if (sweepWorker != this) {
+                    return;     // superseded by a later request
+                }
+                sweepWorker = null;
+                try {
+                    double[][] z = get();
+                    if (z != null) {
+                        showPlot(x, y, z);
+                    }
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(ModelSweeperUI.class.getName()).log(Level.SEVERE, null, ex);
+                } catch (ExecutionException ex) {
+                    Logger.getLogger(ModelSweeperUI.class.getName()).log(Level.SEVERE, null, ex.getCause());
+                }
+            }
+        };
+        sweepWorker.execute();
+    }
+
+    /**
+     * Creates or updates the surface plot
+     * @param x vector of independent input values for input 1
+     * @param y vector of independent input values for input 2
+     * @param z two-D table of output values for grid of input vectors x and y
+     */
+    private void showPlot(double[] x, double[] y, double[][] z) {
 
         // create or update plot
         if (plot == null) { // generate a new plot
@@ -582,6 +673,7 @@ public class ModelSweeperUI extends javax.swing.JFrame {
         DAVE dave = new DAVE();
         
         dave.setInputFileName(inputFile.getAbsolutePath());
+        dave.setCacheDirectory(DAVE.getDefaultCacheDirectory()); // reloads skip parsing
         boolean keepGoing = true;
         try {
             keepGoing = dave.parseFile();
@@ -621,6 +713,19 @@ public class ModelSweeperUI extends javax.swing.JFrame {
 
             inputTable = new InputTable( dave, this );
 
+            // set up parallel sweeps; fall back to serial if model won't compile
+            if (sweepEngine != null) {
+                sweepEngine.shutdown();
+                sweepEngine = null;
+                sweepWorker = null;
+            }
+            try {
+                sweepEngine = new SweepEngine( model );
+            } catch (DAVEException ex) {
+                Logger.getLogger(ModelSweeperUI.class.getName()).log(Level.WARNING,
+                        "Unable to compile model; sweeps will run serially", ex);
+            }
+
             // load signal list combo boxes
             clearAndLoadComboBox( input1ComboBox, inputVec );
             clearAndLoadComboBox( input2ComboBox, inputVec );
@@ -0,0 +1,237 @@
+/*
+ * SweepEngine.java
+ *
+ * Headless, multi-threaded evaluation of a model over a 2-D input grid.
+ */
+
+package gov.nasa.daveml.sweeper;
+
+import gov.nasa.daveml.dave.DAVEException;
+import gov.nasa.daveml.dave.EvaluationContext;
+import gov.nasa.daveml.dave.Model;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sweeps a model over a grid of two inputs using all available processors.
+ *
+ * The model is compiled once; each worker thread evaluates it through its
+ * own {@link EvaluationContext}, so workers share no mutable state. Work is
+ * handed out one grid column (fixed x value) at a time, and each column is
+ * evaluated with a single batch call. Results are written straight into the
+ * caller's result array as columns complete.
+ *
+ * An engine may be reused for any number of sweeps of the same model; call
+ * {@link #shutdown()} when finished with it. Each sweep is given its own
+ * cancellation flag, so cancelling one sweep never affects another, even
+ * one still waiting for the engine.
+ *
+ * @author Bruce Jackson, NASA Langley Research Center, bruce.jackson@nasa.gov
+ * @since 0.9.8
+ */
+public class SweepEngine {
+
+    /**
+     * Receives progress reports from a running sweep. Called from worker
+     * threads; implementations must be thread-safe (Swing users should
+     * hand off to the event thread).
+     */
+    public interface ProgressListener {
+        /**
+         * Called each time a grid column is finished
+         * @param columnsDone number of columns completed so far
+         * @param totalColumns number of columns in the sweep
+         */
+        void sweepProgress(int columnsDone, int totalColumns);
+    }
+
+    /**
+     * The model being swept
+     */
+    Model model;
+
+    /**
+     * One evaluation context per worker
+     */
+    EvaluationContext[] contexts;
+
+    /**
+     * Worker threads
+     */
+    ExecutorService pool;
+
+    /**
+     * Set when the engine is shut down, to abandon any running sweep
+     */
+    volatile boolean stopped;
+
+    /**
+     * Creates an engine using one worker per available processor
+     * @param model the DAVE-ML encoded model to sweep
+     * @throws DAVEException if the model cannot be compiled
+     */
+    public SweepEngine(Model model) throws DAVEException {
+        this(model, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine with the given number of workers
+     * @param model the DAVE-ML encoded model to sweep
+     * @param numWorkers number of worker threads (at least one is used)
+     * @throws DAVEException if the model cannot be compiled
+     */
+    public SweepEngine(Model model, int numWorkers) throws DAVEException {
+        if (numWorkers < 1) {
+            numWorkers = 1;
+        }
+        this.model = model;
+        this.contexts = new EvaluationContext[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            this.contexts[i] = model.newEvaluationContext();
+        }
+        this.pool = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ModelSweeper worker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.stopped = false;
+    }
+
+    /**
+     * Returns number of worker threads
+     * @return number of workers
+     */
+    public int getNumWorkers() {
+        return this.contexts.length;
+    }
+
+    /**
+     * Evaluates one model output over a grid of two inputs, holding all other
+     * inputs at the given values. Blocks until the sweep is finished or
+     * cancelled; a second sweep on the same engine waits for the first.
+     * @param x vector of independent input values for input 1
+     * @param y vector of independent input values for input 2
+     * @param nominal value of every model input, in input vector order;
+     * entries for the two swept inputs are ignored
+     * @param input1Selector offset into model's input vector for input number 1
+     * @param input2Selector offset into model's input vector for input number 2
+     * @param outputSelector offset into model's output vector for parameter being plotted
+     * @param listener receives progress reports; may be null
+     * @param cancel set from any thread to abandon this sweep; workers
+     * stop once they finish the columns they are on. May be null.
+     * @return two-D table of output values, <code>z[j][i]</code> for
+     * <code>x[i]</code>, <code>y[j]</code>; or null if cancelled
+     * @throws DAVEException if the arguments don't match the model or a
+     * worker fails
+     */
+    public synchronized double[][] sweep(final double[] x, final double[] y,
+            final double[] nominal,
+            final int input1Selector, final int input2Selector,
+            final int outputSelector,
+            final ProgressListener listener,
+            AtomicBoolean cancel) throws DAVEException {
+
+        final int numInputs  = this.contexts[0].getNumInputs();
+        final int numOutputs = this.contexts[0].getNumOutputs();
+        if (nominal.length != numInputs) {
+            throw new DAVEException("Nominal vector has " + nominal.length +
+                    " elements; model has " + numInputs + " inputs.");
+        }
+        if (input1Selector < 0 || input1Selector >= numInputs ||
+                input2Selector < 0 || input2Selector >= numInputs) {
+            throw new DAVEException("Swept input selector out of range.");
+        }
+        if (outputSelector < 0 || outputSelector >= numOutputs) {
+            throw new DAVEException("Output selector out of range.");
+        }
+
+        final AtomicBoolean cancelled = (cancel != null) ? cancel : new AtomicBoolean(false);
+        if (cancelled.get()) {
+            return null;        // cancelled while waiting for an earlier sweep
+        }
+        final double[][] z = new double[y.length][x.length];
+        final AtomicInteger nextColumn = new AtomicInteger(0);
+        final AtomicInteger columnsDone = new AtomicInteger(0);
+
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int w = 0; w < this.contexts.length; w++) {
+            final EvaluationContext ctx = this.contexts[w];
+            futures.add(this.pool.submit(new Runnable() {
+                public void run() {
+                    // input and output columns, reused for every grid column
+                    double[][] in = new double[numInputs][y.length];
+                    double[][] out = new double[numOutputs][y.length];
+                    for (int k = 0; k < numInputs; k++) {
+                        Arrays.fill(in[k], nominal[k]);
+                    }
+
+                    int i;
+                    while (!cancelled.get() && !stopped && (i = nextColumn.getAndIncrement()) < x.length) {
+                        Arrays.fill(in[input1Selector], x[i]);
+                        System.arraycopy(y, 0, in[input2Selector], 0, y.length);
+                        try {
+                            ctx.cycleColumns(in, out, y.length);
+                        } catch (DAVEException e) {
+                            throw new RuntimeException(e);
+                        }
+                        for (int j = 0; j < y.length; j++) {
+                            z[j][i] = out[outputSelector][j];
+                        }
+                        int done = columnsDone.incrementAndGet();
+                        if (listener != null) {
+                            listener.sweepProgress(done, x.length);
+                        }
+                    }
+                }
+            }));
+        }
+
+        // wait for all workers, even after a failure, so contexts are idle
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                cancelled.set(true);
+                interrupted = true;
+            } catch (ExecutionException e) {
+                cancelled.set(true);
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            if (failure.getCause() instanceof DAVEException) {
+                throw (DAVEException) failure.getCause();
+            }
+            throw new DAVEException("Sweep failed: " + failure);
+        }
+        if (cancelled.get() || this.stopped) {
+            return null;
+        }
+        return z;
+    }
+
+    /**
+     * Stops the worker threads, abandoning any running sweep. The engine
+     * cannot be used afterwards.
+     */
+    public void shutdown() {
+        this.stopped = true;
+        this.pool.shutdown();
+    }
+}
@@ -0,0 +1,174 @@
+package gov.nasa.daveml.sweeper;
+
+import gov.nasa.daveml.dave.DAVE;
+import gov.nasa.daveml.dave.Model;
+import gov.nasa.daveml.dave.VectorInfoArrayList;
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.*;
+
+
+/**
+ * Tests SweepEngine by comparing a swept grid with serial evaluation of
+ * the same model
+ *
+ **/
+
+public class SweepEngineTest extends TestCase {
+
+    static final String HL20 = "../Matlab/HL20_aero.dml";
+
+    private Model model;
+    private double[] nominal;
+    private double[] x;
+    private double[] y;
+
+    @Override
+    protected void setUp() throws Exception {
+        File dml = new File(HL20);
+        assertTrue( "Can't find " + dml.getAbsolutePath(), dml.isFile() );
+        DAVE dave = new DAVE();
+        dave.setInputFileName(dml.getAbsolutePath());
+        assertTrue( dave.parseFile() );
+        model = dave.getModel();
+
+        VectorInfoArrayList inputs = model.getInputVector();
+        nominal = new double[inputs.size()];
+        for (int k = 0; k < nominal.length; k++) {
+            nominal[k] = inputs.get(k).getValue();
+        }
+        x = new double[9];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = -10.0 + 5.0*i;
+        }
+        y = new double[5];
+        for (int j = 0; j < y.length; j++) {
+            y[j] = -4.0 + 2.0*j;
+        }
+    }
+
+
+    /**
+     * Evaluates one grid point with Model.cycle()
+     */
+
+    private double serial( int in1, int in2, int out, double xi, double yj )
+        throws Exception {
+        VectorInfoArrayList inputs = model.getInputVector();
+        for (int k = 0; k < nominal.length; k++) {
+            inputs.get(k).setValue( nominal[k] );
+        }
+        inputs.get(in1).setValue( xi );
+        inputs.get(in2).setValue( yj );
+        model.cycle();
+        return model.getOutputVector().get(out).getValue();
+    }
+
+
+    public void testMatchesSerial() throws Exception {
+        int numOutputs = model.getOutputVector().size();
+        int[] outs = { 0, numOutputs/2, numOutputs-1 };
+        SweepEngine engine = new SweepEngine(model, 3);
+        try {
+            for (int n = 0; n < outs.length; n++) {
+                double[][] z = engine.sweep(x, y, nominal, 0, 1, outs[n], null, null);
+                assertNotNull( z );
+                assertEquals( y.length, z.length );
+                for (int j = 0; j < y.length; j++) {
+                    assertEquals( x.length, z[j].length );
+                    for (int i = 0; i < x.length; i++) {
+                        double expected = serial(0, 1, outs[n], x[i], y[j]);
+                        assertEquals( "output " + outs[n] + " at (" + x[i] + ", " + y[j] + ")",
+                                      expected, z[j][i], 1e-12*Math.max(1.0, Math.abs(expected)) );
+                    }
+                }
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+
+    public void testProgress() throws Exception {
+        final boolean[] seen = new boolean[x.length + 1];
+        final AtomicInteger calls = new AtomicInteger(0);
+        final AtomicInteger badTotals = new AtomicInteger(0);
+        SweepEngine engine = new SweepEngine(model, 2);
+        try {
+            double[][] z = engine.sweep(x, y, nominal, 0, 1, 0,
+                    new SweepEngine.ProgressListener() {
+                        public void sweepProgress(int columnsDone, int totalColumns) {
+                            calls.incrementAndGet();
+                            if (totalColumns != x.length) {
+                                badTotals.incrementAndGet();
+                            }
+                            synchronized (seen) {
+                                seen[columnsDone] = true;
+                            }
+                        }
+                    }, null);
+            assertNotNull( z );
+        } finally {
+            engine.shutdown();
+        }
+        assertEquals( x.length, calls.get() );
+        assertEquals( 0, badTotals.get() );
+        for (int done = 1; done <= x.length; done++) {
+            assertTrue( "no report of " + done + " columns", seen[done] );
+        }
+    }
+
+
+    public void testCancel() throws Exception {
+        final AtomicInteger calls = new AtomicInteger(0);
+        final AtomicBoolean cancel = new AtomicBoolean(false);
+        SweepEngine engine = new SweepEngine(model, 1);
+        try {
+            double[][] z = engine.sweep(x, y, nominal, 0, 1, 0,
+                    new SweepEngine.ProgressListener() {
+                        public void sweepProgress(int columnsDone, int totalColumns) {
+                            calls.incrementAndGet();
+                            cancel.set(true);
+                        }
+                    }, cancel);
+            assertNull( z );
+            assertEquals( 1, calls.get() );
+
+            // the engine can sweep again after a cancel
+            z = engine.sweep(x, y, nominal, 0, 1, 0, null, new AtomicBoolean(false));
+            assertNotNull( z );
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+
+    public void testCancelBeforeStart() throws Exception {
+        // a sweep cancelled while waiting for the engine never runs
+        final AtomicInteger calls = new AtomicInteger(0);
+        SweepEngine engine = new SweepEngine(model, 2);
+        try {
+            double[][] z = engine.sweep(x, y, nominal, 0, 1, 0,
+                    new SweepEngine.ProgressListener() {
+                        public void sweepProgress(int columnsDone, int totalColumns) {
+                            calls.incrementAndGet();
+                        }
+                    }, new AtomicBoolean(true));
+            assertNull( z );
+            assertEquals( 0, calls.get() );
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+
+    public static Test suite() {
+	return new TestSuite( SweepEngineTest.class );
+    }
+
+    public static void main (String[] args) {
+	junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,74 @@
+// Benchmark
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+/**
+ *
+ * <p> One operation timed by {@link DAVEBench} </p>
+ *
+ * <p> Subclasses do any untimed preparation in <code>setUp()</code> and
+ * perform the operation <i>n</i> times in <code>run(n)</code>, returning
+ * a value that depends on every result so the JIT compiler can't discard
+ * the work. </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+abstract class Benchmark
+{
+    /**
+     *  name of the operation
+     */
+
+    final String name;
+
+    /**
+     *  name of the model it's applied to
+     */
+
+    final String model;
+
+
+    Benchmark( String name, String model )
+    {
+        this.name  = name;
+        this.model = model;
+    }
+
+
+    /**
+     *
+     * <p> Prepares to run; not timed </p>
+     *
+     **/
+
+    void setUp() throws Exception { }
+
+
+    /**
+     *
+     * <p> Performs the operation <code>n</code> times </p>
+     *
+     * @return a value computed from every result
+     *
+     **/
+
+    abstract double run( int n ) throws Exception;
+
+
+    /**
+     *
+     * <p> Cleans up after the last run; not timed </p>
+     *
+     **/
+
+    void tearDown() throws Exception { }
+}
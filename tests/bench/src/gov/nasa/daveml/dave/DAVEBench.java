@@ -0,0 +1,607 @@
+// DAVEBench
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import gov.nasa.daveml.dave2otis.DAVE2OTIS;
+import gov.nasa.daveml.dave2post.DAVE2POST;
+import gov.nasa.daveml.dave2sl.DAVE2SL;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * <p> Times the stages of loading, running and translating DAVE-ML
+ * models </p>
+ *
+ * <p> For each model named on the command line, measures the average
+ * time of: </p>
+ * <ul>
+ *   <li><code>parseFile</code> - <code>DAVE.parseFile()</code>, from
+ *       file to initialized model</li>
+ *   <li><code>initialize</code> - <code>Model.initialize()</code> of a
+ *       parsed model</li>
+ *   <li><code>cycle</code> - steady-state <code>Model.cycle()</code>,
+ *       sweeping the inputs through a fixed set of points</li>
+ *   <li><code>interpolate.</code><i>n</i><code>D</code> - interpolation
+ *       of the model's <i>n</i>-dimensional function tables, as done by
+ *       <code>BlockFuncTable.update()</code>, at random points</li>
+ *   <li><code>ParseText.toList</code> - conversion of the text of every
+ *       function table in the model</li>
+ *   <li><code>DAVE2SL</code>, <code>DAVE2OTIS</code>,
+ *       <code>DAVE2POST</code> - <code>createModel()</code> of each
+ *       translator (DAVE2OTIS only for models with lift and drag
+ *       coefficient outputs)</li>
+ * </ul>
+ *
+ * <p> Each benchmark runs a number of warmup iterations, whose results
+ * are discarded, and then measurement iterations; each iteration repeats
+ * the operation for a fixed time. The mean and standard deviation of
+ * the measurement iterations are reported. </p>
+ *
+ * <p> Usage: <code>java gov.nasa.daveml.dave.DAVEBench [-w warmups]
+ * [-i iterations] [-t seconds] [-b regex] [-r results.csv] model.dml
+ * ...</code> </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class DAVEBench
+{
+    /**
+     *  number of input points swept by the cycle benchmark
+     */
+
+    static final int SWEEP_POINTS = 64;
+
+    /**
+     *  number of points at which each table is interpolated
+     */
+
+    static final int INTERP_POINTS = 256;
+
+    /**
+     *  shortest timed batch of operations, in nanoseconds
+     */
+
+    static final long MIN_BATCH_NANOS = 10000000L;
+
+    /**
+     *  receives results, so they can't be optimized away
+     */
+
+    static volatile double sink;
+
+    private int warmups = 5;
+    private int iterations = 5;
+    private double seconds = 1.0;
+    private Pattern filter = null;
+    private File resultsFile = null;
+    private List<String> modelFiles = new ArrayList<String>();
+
+    /**
+     *  where to report; System.out is silenced while benchmarks run
+     */
+
+    private final PrintStream out;
+
+    private final PrintStream quiet = new PrintStream(new OutputStream() {
+        public void write(int b) { }
+        public void write(byte[] b, int off, int len) { }
+    });
+
+
+    DAVEBench( PrintStream out )
+    {
+        this.out = out;
+    }
+
+
+    /**
+     *
+     * <p> Parses command-line options; returns false if they are not
+     * understood </p>
+     *
+     **/
+
+    boolean parseOptions( String[] args )
+    {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-w")) {
+                    this.warmups = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-i")) {
+                    this.iterations = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (args[i].equals("-t")) {
+                    this.seconds = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("-b")) {
+                    this.filter = Pattern.compile(args[++i]);
+                } else if (args[i].equals("-r")) {
+                    this.resultsFile = new File(args[++i]);
+                } else if (args[i].startsWith("-")) {
+                    return false;
+                } else {
+                    this.modelFiles.add(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+        return !this.modelFiles.isEmpty();
+    }
+
+
+    /**
+     *
+     * <p> Builds the benchmarks for one model file; translators write
+     * their files to the given directory </p>
+     *
+     **/
+
+    List<Benchmark> benchmarksFor( final File dml, final File outDir ) throws Exception
+    {
+        final String model = new File(DAVE.toStubName(dml.getName())).getName();
+        List<Benchmark> list = new ArrayList<Benchmark>();
+
+        list.add(new Benchmark("parseFile", model) {
+            double run( int n ) throws Exception {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) {
+                    DAVE dave = new DAVE();
+                    dave.setInputFileName(dml.getPath());
+                    dave.parseFile();
+                    sum += dave.getModel().getNumBlocks();
+                }
+                return sum;
+            }
+        });
+
+        list.add(new Benchmark("initialize", model) {
+            Model m;
+            void setUp() throws Exception {
+                this.m = parse(dml);
+            }
+            double run( int n ) throws Exception {
+                for (int i = 0; i < n; i++) {
+                    this.m.initialized = false;
+                    this.m.initialize();
+                }
+                return this.m.executeOrder.size();
+            }
+        });
+
+        list.add(new Benchmark("cycle", model) {
+            Model m;
+            VectorInfoArrayList inVec;
+            VectorInfoArrayList outVec;
+            double[][] points;
+            void setUp() throws Exception {
+                this.m = parse(dml);
+                this.inVec = this.m.getInputVector();
+                this.points = sweep(this.inVec);
+                this.m.cycle();
+                this.outVec = this.m.getOutputVector();
+            }
+            double run( int n ) throws Exception {
+                double sum = 0.0;
+                for (int i = 0; i < n; i++) {
+                    double[] p = this.points[i % SWEEP_POINTS];
+                    for (int j = 0; j < p.length; j++) {
+                        this.inVec.get(j).setValue(p[j]);
+                    }
+                    this.m.cycle();
+                    sum += this.outVec.get(0).getValue();
+                }
+                return sum;
+            }
+        });
+
+        // one interpolation benchmark per table dimension found
+        Model m = parse(dml);
+        TreeMap<Integer, List<FuncTable>> byDim = new TreeMap<Integer, List<FuncTable>>();
+        Iterator<Block> it = m.getBlocks().iterator();
+        while (it.hasNext()) {
+            Block b = it.next();
+            if (b instanceof BlockFuncTable) {
+                FuncTable ft = ((BlockFuncTable) b).getFunctionTableDef();
+                List<FuncTable> tables = byDim.get(ft.numDim());
+                if (tables == null) {
+                    tables = new ArrayList<FuncTable>();
+                    byDim.put(ft.numDim(), tables);
+                }
+                tables.add(ft);
+            }
+        }
+        Iterator<Integer> dimIt = byDim.keySet().iterator();
+        while (dimIt.hasNext()) {
+            int nDim = dimIt.next();
+            list.add(interpolation(model, nDim, byDim.get(nDim)));
+        }
+
+        // text of every table's values, as found in a griddedTableDef
+        final List<String> texts = new ArrayList<String>();
+        Iterator<FuncTable> ftIt = m.tables.values().iterator();
+        while (ftIt.hasNext()) {
+            List<Double> values = ftIt.next().getValues();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < values.size(); i++) {
+                sb.append(i == 0 ? "" : (i % 10 == 0 ? ",\n" : ", ")).append(values.get(i));
+            }
+            texts.add(sb.toString());
+        }
+        if (!texts.isEmpty()) {
+            list.add(new Benchmark("ParseText.toList", model) {
+                double run( int n ) throws Exception {
+                    double sum = 0.0;
+                    for (int i = 0; i < n; i++) {
+                        for (int k = 0; k < texts.size(); k++) {
+                            sum += ParseText.toList(texts.get(k)).size();
+                        }
+                    }
+                    return sum;
+                }
+            });
+        }
+
+        list.add(new Benchmark("DAVE2SL", model) {
+            DAVE2SL gen;
+            void setUp() throws Exception {
+                this.gen = new DAVE2SL(new String[] { dml.getPath() }) {
+                    public String getStubName() {
+                        return new File(outDir, super.getStubName()).getPath();
+                    }
+                };
+                this.gen.parseFile();
+            }
+            double run( int n ) throws Exception {
+                for (int i = 0; i < n; i++) {
+                    this.gen.createModel();
+                }
+                return n;
+            }
+        });
+
+        if (hasOutput(m, "totalCoefficientOfLift") && hasOutput(m, "totalCoefficientOfDrag")) {
+            list.add(new Benchmark("DAVE2OTIS", model) {
+                DAVE2OTIS gen;
+                void setUp() throws Exception {
+                    this.gen = new DAVE2OTIS(new String[] { dml.getPath() }) {
+                        public String getStubName() {
+                            return new File(outDir, super.getStubName()).getPath();
+                        }
+                    };
+                    this.gen.parseFile();
+                }
+                double run( int n ) throws Exception {
+                    for (int i = 0; i < n; i++) {
+                        this.gen.createModel();
+                    }
+                    return n;
+                }
+            });
+        }
+
+        list.add(new Benchmark("DAVE2POST", model) {
+            DAVE2POST gen;
+            void setUp() throws Exception {
+                this.gen = new DAVE2POST(new String[] { dml.getPath() }) {
+                    public String getStubName() {
+                        return new File(outDir, super.getStubName()).getPath();
+                    }
+                };
+                this.gen.parseFile();
+            }
+            double run( int n ) throws Exception {
+                for (int i = 0; i < n; i++) {
+                    this.gen.createModel();
+                }
+                return n;
+            }
+        });
+
+        return list;
+    }
+
+
+    /**
+     *
+     * <p> Returns a benchmark interpolating the given tables at random
+     * points; one operation is one interpolation </p>
+     *
+     **/
+
+    static Benchmark interpolation( String model, int nDim, final List<FuncTable> tables )
+    {
+        return new Benchmark("interpolate." + nDim + "D", model) {
+            double[][][] iw;
+            double[] scratch;
+            void setUp() {
+                Random rand = new Random(1L);
+                this.iw = new double[tables.size()][INTERP_POINTS][];
+                int scratchSize = 0;
+                for (int t = 0; t < tables.size(); t++) {
+                    int[] dims = tables.get(t).getDimensions();
+                    for (int p = 0; p < INTERP_POINTS; p++) {
+                        this.iw[t][p] = new double[dims.length];
+                        for (int d = 0; d < dims.length; d++) {
+                            this.iw[t][p][d] = dims[d] < 2 ? 0.0
+                                : rand.nextInt(dims[d] - 1) + rand.nextDouble();
+                        }
+                    }
+                    scratchSize = Math.max(scratchSize,
+                            Math.max(Interpolator.scratchSize(dims.length),
+                                     Interpolator.bufferScratchSize(dims.length)));
+                }
+                this.scratch = new double[scratchSize];
+            }
+            double run( int n ) {
+                double sum = 0.0;
+                int numTables = tables.size();
+                for (int i = 0; i < n; i++) {
+                    int t = i % numTables;
+                    FuncTable ft = tables.get(t);
+                    double[] pt = this.iw[t][(i / numTables) % INTERP_POINTS];
+                    if (ft.isMapped()) {
+                        sum += Interpolator.interpolate(ft.getValueBuffer(), ft.getDimensions(),
+                                                        ft.getStrides(), pt, this.scratch);
+                    } else {
+                        sum += Interpolator.interpolate(ft.getValueArray(), ft.getDimensions(),
+                                                        ft.getStrides(), pt, this.scratch);
+                    }
+                }
+                return sum;
+            }
+        };
+    }
+
+
+    /**
+     *
+     * <p> Returns a parsed and initialized model </p>
+     *
+     **/
+
+    static Model parse( File dml ) throws IOException
+    {
+        DAVE dave = new DAVE();
+        dave.setInputFileName(dml.getPath());
+        if (!dave.parseFile()) {
+            throw new IOException("Unable to parse '" + dml + "'");
+        }
+        return dave.getModel();
+    }
+
+
+    /**
+     *
+     * <p> Returns input points spread around each input's initial value
+     * (or around zero, if it has none) </p>
+     *
+     **/
+
+    static double[][] sweep( VectorInfoArrayList inVec )
+    {
+        double[][] points = new double[SWEEP_POINTS][inVec.size()];
+        for (int j = 0; j < inVec.size(); j++) {
+            double base = inVec.get(j).getValue();
+            if (Double.isNaN(base)) {
+                base = 0.0;
+            }
+            double step = 0.05*Math.max(1.0, Math.abs(base));
+            for (int k = 0; k < SWEEP_POINTS; k++) {
+                points[k][j] = base + step*(((k + 7*j) % 17) - 8);
+            }
+        }
+        return points;
+    }
+
+
+    static boolean hasOutput( Model m, String name ) throws DAVEException
+    {
+        VectorInfoArrayList outVec = m.getOutputVector();
+        for (int j = 0; j < outVec.size(); j++) {
+            if (outVec.get(j).getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     *
+     * <p> Runs one benchmark; returns the average time of the operation in
+     * each measurement iteration, in microseconds </p>
+     *
+     **/
+
+    double[] measure( Benchmark b ) throws Exception
+    {
+        b.setUp();
+        try {
+            // batch size taking at least MIN_BATCH_NANOS, so timer calls are negligible
+            int n = 1;
+            while (true) {
+                long start = System.nanoTime();
+                sink += b.run(n);
+                if (System.nanoTime() - start >= MIN_BATCH_NANOS || n >= (1 << 30)) {
+                    break;
+                }
+                n *= 2;
+            }
+
+            long iterationNanos = (long) (this.seconds*1.0e9);
+            double[] scores = new double[this.iterations];
+            for (int iter = 0; iter < this.warmups + this.iterations; iter++) {
+                long ops = 0;
+                long start = System.nanoTime();
+                long elapsed;
+                do {
+                    sink += b.run(n);
+                    ops += n;
+                    elapsed = System.nanoTime() - start;
+                } while (elapsed < iterationNanos);
+                double score = 1.0e-3*elapsed/ops;
+                boolean warmup = iter < this.warmups;
+                this.out.println(String.format(Locale.US, "# %s %d: %.3f us/op",
+                        warmup ? "Warmup Iteration" : "Iteration  ",
+                        warmup ? iter + 1 : iter - this.warmups + 1, score));
+                if (!warmup) {
+                    scores[iter - this.warmups] = score;
+                }
+            }
+            return scores;
+        } finally {
+            b.tearDown();
+        }
+    }
+
+
+    /**
+     *
+     * <p> Runs every selected benchmark on every model, then lists
+     * results </p>
+     *
+     * @return true if every benchmark ran
+     *
+     **/
+
+    boolean runAll() throws Exception
+    {
+        boolean ok = true;
+        List<String[]> rows = new ArrayList<String[]>();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+
+        for (int f = 0; f < this.modelFiles.size(); f++) {
+            File dml = new File(this.modelFiles.get(f));
+            if (!dml.canRead()) {
+                this.out.println("# Skipping '" + dml + "': unable to read file.");
+                ok = false;
+                continue;
+            }
+
+            // scratch directory for translator output
+            File dir = File.createTempFile("DAVEBench", "");
+            dir.delete();
+            dir.mkdir();
+
+            try {
+                System.setOut(this.quiet);
+                System.setErr(this.quiet);
+                List<Benchmark> benchmarks = this.benchmarksFor(dml, dir);
+                for (int k = 0; k < benchmarks.size(); k++) {
+                    Benchmark b = benchmarks.get(k);
+                    if (this.filter != null && !this.filter.matcher(b.name).find()) {
+                        continue;
+                    }
+                    this.out.println();
+                    this.out.println("# Benchmark: " + b.name + " (" + b.model + ")");
+                    try {
+                        double[] scores = this.measure(b);
+                        double mean = 0.0;
+                        for (int i = 0; i < scores.length; i++) {
+                            mean += scores[i]/scores.length;
+                        }
+                        double var = 0.0;
+                        for (int i = 0; i < scores.length; i++) {
+                            var += (scores[i] - mean)*(scores[i] - mean);
+                        }
+                        double sd = scores.length < 2 ? Double.NaN : Math.sqrt(var/(scores.length - 1));
+                        rows.add(new String[] { b.name, b.model, Integer.toString(scores.length),
+                                                String.format(Locale.US, "%.3f", mean),
+                                                String.format(Locale.US, "%.3f", sd) });
+                    } catch (Exception e) {
+                        this.out.println("# Failed: " + e);
+                        ok = false;
+                    }
+                }
+            } finally {
+                System.setOut(stdout);
+                System.setErr(stderr);
+                File[] files = dir.listFiles();
+                for (int i = 0; files != null && i < files.length; i++) {
+                    files[i].delete();
+                }
+                dir.delete();
+            }
+        }
+
+        this.report(rows);
+        return ok;
+    }
+
+
+    /**
+     *
+     * <p> Lists results, and writes them to the results file if one was
+     * given </p>
+     *
+     **/
+
+    void report( List<String[]> rows ) throws IOException
+    {
+        int nameWidth = "Benchmark".length();
+        int modelWidth = "Model".length();
+        for (int r = 0; r < rows.size(); r++) {
+            nameWidth  = Math.max(nameWidth,  rows.get(r)[0].length());
+            modelWidth = Math.max(modelWidth, rows.get(r)[1].length());
+        }
+        String format = "%-" + nameWidth + "s  %-" + modelWidth + "s  %4s  %14s  %12s  %s";
+        this.out.println();
+        this.out.println(String.format(format, "Benchmark", "Model", "Cnt", "Score", "Std dev", "Units"));
+        for (int r = 0; r < rows.size(); r++) {
+            String[] row = rows.get(r);
+            this.out.println(String.format(format, row[0], row[1], row[2], row[3],
+                                           row[4], "us/op"));
+        }
+
+        if (this.resultsFile != null) {
+            PrintStream csv = new PrintStream(new FileOutputStream(this.resultsFile));
+            csv.println("benchmark,model,count,score,stddev,units");
+            for (int r = 0; r < rows.size(); r++) {
+                String[] row = rows.get(r);
+                csv.println(row[0] + "," + row[1] + "," + row[2] + "," + row[3] + ","
+                            + row[4] + ",us/op");
+            }
+            csv.close();
+        }
+    }
+
+
+    public static void main( String[] args )
+    {
+        DAVEBench bench = new DAVEBench(System.out);
+        if (!bench.parseOptions(args)) {
+            System.err.println("Usage: java gov.nasa.daveml.dave.DAVEBench [-w warmups] [-i iterations]"
+                    + " [-t seconds] [-b regex] [-r results.csv] model.dml ...");
+            System.exit(1);
+        }
+        try {
+            if (!bench.runAll()) {
+                System.exit(1);
+            }
+        } catch (Exception e) {
+            System.err.println("Benchmarks aborted: " + e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,595 @@
+// SyntheticModel
+//
+//  Part of DAVE-ML utility suite, written by Bruce Jackson, NASA LaRC
+//  <bruce.jackson@nasa.gov>
+//  Visit <http://daveml.org> for more info.
+//  Latest version can be downloaded from http://dscb.larc.nasa.gov/Products/SW/DAVEtools.html
+//  Copyright (c) 2007 United States Government as represented by LAR-17460-1. No copyright is
+//  claimed in the United States under Title 17, U.S. Code. All Other Rights Reserved.
+
+package gov.nasa.daveml.dave;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ *
+ * <p> Writes DAVE-ML models of any size, for scale testing </p>
+ *
+ * <p> A generated model has <i>I</i> inputs followed by <i>M</i>
+ * function tables and <i>N</i> calculated variables, interleaved, each
+ * computed from randomly chosen earlier variables (about half from the
+ * few just before it, so the model has long chains as well as wide
+ * fan-in). Each calculation is a MathML expression nested to a given
+ * depth; each table has a given number of dimensions, drawing its
+ * breakpoints from a shared pool of breakpoint sets of a given length.
+ * Calculated variables and tables not used by any other become model
+ * outputs. The model ends with <i>K</i> checkcases at random input
+ * points. </p>
+ *
+ * <p> Checkcase outputs are computed without building the model: table
+ * values are linear in each breakpoint value, so interpolating them
+ * gives exactly the linear function, and every expression keeps its
+ * value within [0, 10] (the breakpoint range) with gradients summing
+ * to at most one, so rounding errors don't grow along chains. The
+ * structure of each variable is drawn from its own seeded random
+ * sequence and regenerated whenever needed; only a flag and a value per
+ * variable are held in memory, and the file is written as it is
+ * generated, so models of several gigabytes can be produced. </p>
+ *
+ * <p> Usage: <code>java gov.nasa.daveml.dave.SyntheticModel [-n
+ * variables] [-m tables] [-d dimensions] [-b breakpoints] [-s bpsets]
+ * [-e depth] [-i inputs] [-k checkcases] [-r seed] [-o file.dml]</code>
+ * (output to stdout if no file given) </p>
+ *
+ * @since 0.9.8
+ *
+ **/
+
+public class SyntheticModel
+{
+    /**
+     *  all values lie between 0 and RANGE
+     */
+
+    static final double RANGE = 10.0;
+
+    /**
+     *  tolerance written for each checkcase output
+     */
+
+    static final String TOLERANCE = "0.000001";
+
+    /**
+     *  number of preceding variables from which "recent" references are drawn
+     */
+
+    static final int WINDOW = 8;
+
+    /**
+     *  expression operations; see writeExpression() and evaluate()
+     */
+
+    static final int AVG     = 0;
+    static final int BLEND   = 1;
+    static final int REFLECT = 2;
+    static final int MIN     = 3;
+    static final int MAX     = 4;
+    static final int WAVE    = 5;
+    static final int PROD    = 6;
+    static final int NUM_OPS = 7;
+
+    int numVariables   = 1000;
+    int numTables      = 100;
+    int numDims        = 2;
+    int numBreakpoints = 10;
+    int numBpSets      = 16;
+    int depth          = 4;
+    int numInputs      = 8;
+    int numCheckcases  = 10;
+    long seed          = 1L;
+    String outFileName = null;
+
+    /**
+     *  true for each variable used by another
+     */
+
+    private boolean[] consumed;
+
+    /**
+     *  scratch space for one variable's structure
+     */
+
+    private int[]    ops;
+    private int[]    leafRef;
+    private String[] leafText;
+    private double[] coef;
+
+
+    /**
+     *
+     * <p> Parses command-line options; returns false if they are not
+     * understood </p>
+     *
+     **/
+
+    boolean parseOptions( String[] args )
+    {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String opt = args[i];
+                if (opt.equals("-o")) {
+                    this.outFileName = args[++i];
+                    continue;
+                }
+                long value = Long.parseLong(args[++i]);
+                if (value < 0) {
+                    return false;
+                }
+                if      (opt.equals("-n")) { this.numVariables   = (int) value; }
+                else if (opt.equals("-m")) { this.numTables      = (int) value; }
+                else if (opt.equals("-d")) { this.numDims        = (int) value; }
+                else if (opt.equals("-b")) { this.numBreakpoints = (int) value; }
+                else if (opt.equals("-s")) { this.numBpSets      = (int) value; }
+                else if (opt.equals("-e")) { this.depth          = (int) value; }
+                else if (opt.equals("-i")) { this.numInputs      = (int) value; }
+                else if (opt.equals("-k")) { this.numCheckcases  = (int) value; }
+                else if (opt.equals("-r")) { this.seed           = value; }
+                else { return false; }
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+        // a calculation of depth zero would just rename a variable
+        return this.numInputs > 0 && this.depth > 0 && this.numDims > 0 && this.numBreakpoints > 1
+            && (this.numBpSets > 0 || this.numTables == 0);
+    }
+
+
+    /**
+     * Returns the total number of variables
+     */
+
+    int numNodes() { return this.numInputs + this.numTables + this.numVariables; }
+
+
+    /**
+     * Indicates if a variable is the output of a table; tables are spread
+     * evenly among the calculated variables
+     */
+
+    boolean isTable( int node )
+    {
+        if (node < this.numInputs) {
+            return false;
+        }
+        long k = node - this.numInputs;
+        long derived = this.numTables + this.numVariables;
+        return (k*this.numTables)/derived != ((k + 1)*this.numTables)/derived;
+    }
+
+
+    /**
+     * Returns the name (and varID) of a variable
+     */
+
+    String nameOf( int node )
+    {
+        if (node < this.numInputs) {
+            return "x" + node;
+        }
+        return (this.isTable(node) ? "t" : "v") + node;
+    }
+
+
+    /**
+     * Returns the random sequence that determines a variable's structure
+     */
+
+    Random randomFor( long key )
+    {
+        return new Random(this.seed*0x9E3779B97F4A7C15L + key);
+    }
+
+
+    /**
+     * Picks an earlier variable for a variable to use
+     */
+
+    static int pickRef( Random r, int node )
+    {
+        if (r.nextBoolean()) {
+            int w = Math.min(WINDOW, node);
+            return node - 1 - r.nextInt(w);
+        }
+        return r.nextInt(node);
+    }
+
+
+    /**
+     *
+     * <p> Draws the structure of a derived variable into our scratch
+     * arrays: for a table, the variable feeding each dimension
+     * (<code>leafRef</code>), its breakpoint set (<code>ops</code>) and
+     * its coefficient (<code>coef</code>); for a calculation, the
+     * variable at the innermost level (<code>leafRef[0]</code>) and, for
+     * each further level, its operation and its other operand (a variable,
+     * or -1 and the text of a constant) </p>
+     *
+     **/
+
+    void draw( int node )
+    {
+        Random r = this.randomFor(node);
+        if (this.isTable(node)) {
+            for (int d = 0; d < this.numDims; d++) {
+                this.ops[d]     = r.nextInt(this.numBpSets);
+                this.leafRef[d] = pickRef(r, node);
+                this.coef[d]    = (2.0*r.nextDouble() - 1.0)/this.numDims;
+            }
+        } else {
+            this.leafRef[0] = pickRef(r, node);
+            for (int level = 1; level <= this.depth; level++) {
+                this.ops[level] = r.nextInt(NUM_OPS);
+                if (r.nextInt(5) == 0) {
+                    this.leafRef[level]  = -1;
+                    this.leafText[level] = Double.toString(r.nextInt(10001)/1000.0);
+                } else {
+                    this.leafRef[level] = pickRef(r, node);
+                }
+                if (this.ops[level] == BLEND) {
+                    this.coef[level] = 1 + r.nextInt(9);       // tenths
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the breakpoints of a breakpoint set, spread over [0, RANGE]
+     */
+
+    double[] breakpoints( int bpSet )
+    {
+        Random r = this.randomFor(-1L - bpSet);
+        int n = this.numBreakpoints;
+        double[] bp = new double[n];
+        double spacing = RANGE/(n - 1);
+        for (int i = 0; i < n; i++) {
+            bp[i] = i*spacing;
+            if (i > 0 && i < n - 1) {
+                bp[i] += spacing*0.6*(r.nextDouble() - 0.5);
+            }
+        }
+        bp[n-1] = RANGE;
+        return bp;
+    }
+
+
+    /**
+     *
+     * <p> Writes the model </p>
+     *
+     **/
+
+    void write( Writer w ) throws IOException
+    {
+        int nodes = this.numNodes();
+        int scratch = Math.max(this.depth, this.numDims) + 1;
+        this.ops      = new int[scratch];
+        this.leafRef  = new int[scratch];
+        this.leafText = new String[scratch];
+        this.coef     = new double[scratch];
+
+        // which variables are used by others (the rest become outputs)
+        this.consumed = new boolean[nodes];
+        for (int node = this.numInputs; node < nodes; node++) {
+            this.draw(node);
+            int refs = this.isTable(node) ? this.numDims : this.depth + 1;
+            for (int j = 0; j < refs; j++) {
+                if (this.leafRef[j] >= 0) {
+                    this.consumed[this.leafRef[j]] = true;
+                }
+            }
+        }
+
+        w.write("<?xml version=\"1.0\" standalone=\"no\"?>\n");
+        w.write("<!DOCTYPE DAVEfunc PUBLIC \"-//AIAA//DTD for Flight Dynamic Models - Functions 2.0//EN\"\n");
+        w.write("          \"http://www.daveml.org/DTDs/2p0/DAVEfunc.dtd\">\n");
+        w.write("<DAVEfunc xmlns=\"http://daveml.org/2010/DAVEML\">\n");
+        w.write(" <fileHeader name=\"synthetic\">\n");
+        w.write("  <author name=\"SyntheticModel\" org=\"DAVEtools\"/>\n");
+        w.write("  <fileCreationDate date=\"2015-03-02\"/>\n");
+        w.write("  <description>Synthetic model: " + this.numInputs + " inputs, "
+                + this.numVariables + " calculated variables of depth " + this.depth + ", "
+                + this.numTables + " " + this.numDims + "-D tables of " + this.numBreakpoints
+                + " breakpoints per dimension, seed " + this.seed + "</description>\n");
+        w.write(" </fileHeader>\n");
+
+        for (int node = 0; node < nodes; node++) {
+            this.writeVariableDef(w, node);
+        }
+        for (int s = 0; s < this.numBpSets && this.numTables > 0; s++) {
+            w.write(" <breakpointDef bpID=\"BP" + s + "\"><bpVals>");
+            double[] bp = this.breakpoints(s);
+            for (int i = 0; i < bp.length; i++) {
+                w.write((i == 0 ? "" : ", ") + bp[i]);
+            }
+            w.write("</bpVals></breakpointDef>\n");
+        }
+        for (int node = this.numInputs; node < nodes; node++) {
+            if (this.isTable(node)) {
+                this.writeTableDef(w, node);
+            }
+        }
+        for (int node = this.numInputs; node < nodes; node++) {
+            if (this.isTable(node)) {
+                this.writeFunction(w, node);
+            }
+        }
+        if (this.numCheckcases > 0) {
+            this.writeCheckcases(w);
+        }
+        w.write("</DAVEfunc>\n");
+    }
+
+
+    void writeVariableDef( Writer w, int node ) throws IOException
+    {
+        String name = this.nameOf(node);
+        w.write(" <variableDef name=\"" + name + "\" varID=\"" + name + "\" units=\"nd\"");
+        if (node < this.numInputs) {
+            w.write(" initialValue=\"5.0\"><isInput/></variableDef>\n");
+            return;
+        }
+        w.write(">");
+        if (!this.isTable(node)) {
+            this.draw(node);
+            w.write("<calculation><math xmlns=\"http://www.w3.org/1998/Math/MathML\">");
+            this.writeExpression(w, this.depth);
+            w.write("</math></calculation>");
+        }
+        if (!this.consumed[node]) {
+            w.write("<isOutput/>");
+        }
+        w.write("</variableDef>\n");
+    }
+
+
+    /**
+     * Writes the expression of the variable last drawn, to the given level
+     */
+
+    void writeExpression( Writer w, int level ) throws IOException
+    {
+        if (level == 0) {
+            w.write("<ci>" + this.nameOf(this.leafRef[0]) + "</ci>");
+            return;
+        }
+        String y = this.leafRef[level] < 0 ? "<cn>" + this.leafText[level] + "</cn>"
+                                           : "<ci>" + this.nameOf(this.leafRef[level]) + "</ci>";
+        switch (this.ops[level]) {
+            case AVG:       // (x + y)/2
+                w.write("<apply><times/><cn>0.5</cn><apply><plus/>");
+                this.writeExpression(w, level - 1);
+                w.write(y + "</apply></apply>");
+                break;
+            case BLEND:     // c*x + (1 - c)*y
+                int tenths = (int) this.coef[level];
+                w.write("<apply><plus/><apply><times/><cn>0." + tenths + "</cn>");
+                this.writeExpression(w, level - 1);
+                w.write("</apply><apply><times/><cn>0." + (10 - tenths) + "</cn>" + y + "</apply></apply>");
+                break;
+            case REFLECT:   // 10 - x
+                w.write("<apply><minus/><cn>10</cn>");
+                this.writeExpression(w, level - 1);
+                w.write("</apply>");
+                break;
+            case MIN:
+                w.write("<apply><min/>");
+                this.writeExpression(w, level - 1);
+                w.write(y + "</apply>");
+                break;
+            case MAX:
+                w.write("<apply><max/>");
+                this.writeExpression(w, level - 1);
+                w.write(y + "</apply>");
+                break;
+            case WAVE:      // 5 + 5*sin(x/5)
+                w.write("<apply><plus/><cn>5</cn><apply><times/><cn>5</cn><apply><sin/><apply><divide/>");
+                this.writeExpression(w, level - 1);
+                w.write("<cn>5</cn></apply></apply></apply></apply>");
+                break;
+            default:        // PROD: x*y/20 + 2.5
+                w.write("<apply><plus/><apply><divide/><apply><times/>");
+                this.writeExpression(w, level - 1);
+                w.write(y + "</apply><cn>20</cn></apply><cn>2.5</cn></apply>");
+                break;
+        }
+    }
+
+
+    /**
+     * Returns the value of the variable last drawn, given earlier values
+     */
+
+    double evaluate( double[] values )
+    {
+        double x = values[this.leafRef[0]];
+        for (int level = 1; level <= this.depth; level++) {
+            double y = this.leafRef[level] < 0 ? Double.parseDouble(this.leafText[level])
+                                               : values[this.leafRef[level]];
+            switch (this.ops[level]) {
+                case AVG:
+                    x = 0.5*(x + y);
+                    break;
+                case BLEND:
+                    int tenths = (int) this.coef[level];
+                    x = Double.parseDouble("0." + tenths)*x
+                        + Double.parseDouble("0." + (10 - tenths))*y;
+                    break;
+                case REFLECT:
+                    x = 10.0 - x;
+                    break;
+                case MIN:
+                    x = Math.min(x, y);
+                    break;
+                case MAX:
+                    x = Math.max(x, y);
+                    break;
+                case WAVE:
+                    x = 5.0 + 5.0*Math.sin(x/5.0);
+                    break;
+                default:
+                    x = x*y/20.0 + 2.5;
+                    break;
+            }
+        }
+        return x;
+    }
+
+
+    /**
+     *
+     * <p> Writes a table's values, last dimension varying fastest; each
+     * is linear in each breakpoint value </p>
+     *
+     **/
+
+    void writeTableDef( Writer w, int node ) throws IOException
+    {
+        this.draw(node);
+        String name = this.nameOf(node);
+        w.write(" <griddedTableDef name=\"" + name + "_table\" gtID=\"" + name + "_table\">\n");
+        w.write("  <breakpointRefs>");
+        double[][] bp = new double[this.numDims][];
+        for (int d = 0; d < this.numDims; d++) {
+            w.write("<bpRef bpID=\"BP" + this.ops[d] + "\"/>");
+            bp[d] = this.breakpoints(this.ops[d]);
+        }
+        w.write("</breakpointRefs>\n");
+        w.write("  <dataTable>\n");
+        int[] index = new int[this.numDims];
+        int last = this.numDims - 1;
+        boolean done = false;
+        StringBuilder line = new StringBuilder();
+        while (!done) {
+            double v = 0.5*RANGE;
+            for (int d = 0; d < this.numDims; d++) {
+                v += this.coef[d]*(bp[d][index[d]] - 0.5*RANGE);
+            }
+            line.append(v);
+
+            // advance odometer; a line per run of the last dimension
+            int d = last;
+            while (d >= 0 && ++index[d] == this.numBreakpoints) {
+                index[d] = 0;
+                d--;
+            }
+            done = d < 0;
+            if (done || d < last) {
+                w.write(line.append(done ? "\n" : ",\n").toString());
+                line.setLength(0);
+            } else {
+                line.append(", ");
+            }
+        }
+        w.write("  </dataTable>\n");
+        w.write(" </griddedTableDef>\n");
+    }
+
+
+    void writeFunction( Writer w, int node ) throws IOException
+    {
+        this.draw(node);
+        String name = this.nameOf(node);
+        w.write(" <function name=\"" + name + "_fn\">\n  ");
+        for (int d = 0; d < this.numDims; d++) {
+            w.write("<independentVarRef varID=\"" + this.nameOf(this.leafRef[d]) + "\"/>");
+        }
+        w.write("\n  <dependentVarRef varID=\"" + name + "\"/>\n");
+        w.write("  <functionDefn name=\"" + name + "_defn\"><griddedTableRef gtID=\""
+                + name + "_table\"/></functionDefn>\n");
+        w.write(" </function>\n");
+    }
+
+
+    /**
+     *
+     * <p> Writes checkcases at random inputs, evaluating every variable in
+     * order </p>
+     *
+     **/
+
+    void writeCheckcases( Writer w ) throws IOException
+    {
+        int nodes = this.numNodes();
+        double[] values = new double[nodes];
+        Random r = this.randomFor(Long.MIN_VALUE);
+        w.write(" <checkData>\n");
+        for (int k = 0; k < this.numCheckcases; k++) {
+            w.write("  <staticShot name=\"case " + (k + 1) + "\">\n");
+            w.write("   <checkInputs>\n");
+            for (int node = 0; node < this.numInputs; node++) {
+                values[node] = r.nextInt(10000001)/1.0e6;
+                this.writeSignal(w, node, values[node], false);
+            }
+            w.write("   </checkInputs>\n");
+            for (int node = this.numInputs; node < nodes; node++) {
+                this.draw(node);
+                if (this.isTable(node)) {
+                    double v = 0.5*RANGE;
+                    for (int d = 0; d < this.numDims; d++) {
+                        v += this.coef[d]*(values[this.leafRef[d]] - 0.5*RANGE);
+                    }
+                    values[node] = v;
+                } else {
+                    values[node] = this.evaluate(values);
+                }
+            }
+            w.write("   <checkOutputs>\n");
+            for (int node = this.numInputs; node < nodes; node++) {
+                if (!this.consumed[node]) {
+                    this.writeSignal(w, node, values[node], true);
+                }
+            }
+            w.write("   </checkOutputs>\n");
+            w.write("  </staticShot>\n");
+        }
+        w.write(" </checkData>\n");
+    }
+
+
+    void writeSignal( Writer w, int node, double value, boolean withTol ) throws IOException
+    {
+        w.write("    <signal><signalName>" + this.nameOf(node) + "</signalName>"
+                + "<signalUnits>nd</signalUnits><signalValue>" + value + "</signalValue>"
+                + (withTol ? "<tol>" + TOLERANCE + "</tol>" : "") + "</signal>\n");
+    }
+
+
+    public static void main( String[] args )
+    {
+        SyntheticModel gen = new SyntheticModel();
+        if (!gen.parseOptions(args)) {
+            System.err.println("Usage: java gov.nasa.daveml.dave.SyntheticModel [-n variables] [-m tables]"
+                    + " [-d dimensions] [-b breakpoints] [-s bpsets] [-e depth] [-i inputs]"
+                    + " [-k checkcases] [-r seed] [-o file.dml]");
+            System.exit(1);
+        }
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(
+                    gen.outFileName == null ? System.out : new FileOutputStream(gen.outFileName),
+                    "UTF-8"), 1 << 16);
+            gen.write(w);
+            w.close();
+        } catch (IOException e) {
+            System.err.println("Unable to write model: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}